@@ -0,0 +1,283 @@
+package com.dct.proxy.batch;
+
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BodyRejectedException;
+import com.dct.proxy.config.properties.BatchProps;
+import com.dct.proxy.dto.request.BatchItemRequest;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.BatchItemResponse;
+import com.dct.proxy.interceptor.ProxyRouteMatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runs the sub-requests of a batch in parallel <p>
+ * Threads are shared by all batches, at most {@code maxConcurrency} sub-requests of one batch run at the same time
+ * so a single batch cannot take the whole pool. Each sub-request has its own timeout and goes through the same
+ * cache, circuit breaker and suppression checks as a client request, and is only sent on a path proxied for
+ * a client request. A failed sub-request is answered with its own error status, the other ones are not affected
+ *
+ * @author thoaidc
+ */
+public class ProxyBatchExecutor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ProxyBatchExecutor.class);
+    private final ThreadPoolExecutor executor;
+    private final Function<ProxyAPIRequest, ResponseEntity<byte[]>> exchange;
+    private final ObjectMapper objectMapper;
+    private final String upstreamHost;
+    private final ProxyRouteMatcher routeMatcher;
+    private final int maxConcurrency;
+    private final long itemTimeout;
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public ProxyBatchExecutor(BatchProps props,
+                              String upstreamHost,
+                              ProxyRouteMatcher routeMatcher,
+                              ObjectMapper objectMapper,
+                              Function<ProxyAPIRequest, ResponseEntity<byte[]>> exchange) {
+        this.upstreamHost = upstreamHost;
+        this.routeMatcher = routeMatcher;
+        this.objectMapper = objectMapper;
+        this.exchange = exchange;
+        this.maxConcurrency = props.getMaxConcurrency();
+        this.itemTimeout = props.getItemTimeout();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            props.getMaxThreads(),
+            props.getMaxThreads(),
+            60,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(props.getQueueCapacity()),
+            runnable -> {
+                Thread thread = new Thread(runnable, "proxy-batch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run all sub-requests and wait for them
+     * @param items the sub-requests
+     * @param sharedHeaders headers of the batch request, applied to every sub-request unless it overrides them
+     * @param reservation reservation of the batch request in the body budget, the responses of the sub-requests
+     *                    are counted in it. Null without budget
+     * @return one response per sub-request, in the order of the batch
+     */
+    public List<BatchItemResponse> execute(List<BatchItemRequest> items,
+                                           Map<String, String> sharedHeaders,
+                                           BodyBudget.Reservation reservation) {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<CompletableFuture<BatchItemResponse>> futures = new ArrayList<>(items.size());
+
+        for (int i = 0; i < items.size(); i++) {
+            BatchItemRequest item = items.get(i);
+            String id = Optional.ofNullable(item.getId()).orElse(String.valueOf(i));
+
+            if (!isProxiedPath(item.getPath())) {
+                failed.increment();
+                futures.add(CompletableFuture.completedFuture(failure(id, HttpStatus.BAD_REQUEST, "Path is not proxied")));
+                continue;
+            }
+
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.increment();
+                futures.add(CompletableFuture.completedFuture(failure(id, HttpStatus.SERVICE_UNAVAILABLE, "Interrupted")));
+                continue;
+            }
+
+            CompletableFuture<BatchItemResponse> future;
+
+            try {
+                // The timeout starts once the sub-request got its permit, the permit is held until the call really ends
+                future = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return run(id, item, sharedHeaders, reservation);
+                    } finally {
+                        permits.release();
+                    }
+                }, executor).orTimeout(itemTimeout, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                future = CompletableFuture.failedFuture(e);
+            }
+
+            // Counted once here: a sub-request that timed out may still finish later, its result is then dropped
+            futures.add(future.handle((response, error) -> Objects.isNull(error) ? toSuccess(response) : toFailure(id, error)));
+        }
+
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    private BatchItemResponse run(String id,
+                                  BatchItemRequest item,
+                                  Map<String, String> sharedHeaders,
+                                  BodyBudget.Reservation reservation) {
+        ProxyAPIRequest proxyAPIRequest = toProxyAPIRequest(item, sharedHeaders);
+        proxyAPIRequest.setBodyReservation(reservation);
+        ResponseEntity<byte[]> response = exchange.apply(proxyAPIRequest);
+        return toResponse(id, response.getStatusCode().value(), response.getHeaders(), response.getBody());
+    }
+
+    // Same routes as a client request, a path with (encoded) dot segments could be resolved outside them upstream
+    private boolean isProxiedPath(String pathAndQuery) {
+        String path = pathAndQuery.split("\\?", 2)[0];
+
+        try {
+            String decodedPath = UriUtils.decode(path, StandardCharsets.UTF_8);
+            return decodedPath.equals(StringUtils.cleanPath(decodedPath)) && routeMatcher.matches(path);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private ProxyAPIRequest toProxyAPIRequest(BatchItemRequest item, Map<String, String> sharedHeaders) {
+        String[] pathAndQuery = item.getPath().split("\\?", 2);
+        String url = UriComponentsBuilder.fromUriString(upstreamHost)
+                .path(pathAndQuery[0])
+                .query(pathAndQuery.length > 1 ? pathAndQuery[1] : null)
+                .toUriString();
+        Map<String, String> headers = new HashMap<>(sharedHeaders);
+        headers.putAll(item.getHeaders());
+
+        ProxyAPIRequest proxyAPIRequest = new ProxyAPIRequest();
+        proxyAPIRequest.setMethod(item.getMethod());
+        proxyAPIRequest.setUrl(url);
+        proxyAPIRequest.setHeaders(headers);
+        proxyAPIRequest.setBody(item.getBody());
+        return proxyAPIRequest;
+    }
+
+    private BatchItemResponse toSuccess(BatchItemResponse response) {
+        succeeded.increment();
+        return response;
+    }
+
+    private BatchItemResponse toFailure(String id, Throwable error) {
+        Throwable cause = error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error;
+
+        if (cause instanceof HttpStatusCodeException statusCodeException) {
+            succeeded.increment();
+            return toResponse(
+                id,
+                statusCodeException.getStatusCode().value(),
+                Optional.ofNullable(statusCodeException.getResponseHeaders()).orElse(new HttpHeaders()),
+                statusCodeException.getResponseBodyAsByteArray()
+            );
+        }
+
+        if (cause instanceof TimeoutException) {
+            timedOut.increment();
+            return failure(id, HttpStatus.GATEWAY_TIMEOUT, "Sub-request timed out after " + itemTimeout + "ms");
+        }
+
+        failed.increment();
+
+        if (cause instanceof BodyRejectedException rejected) {
+            return failure(id, rejected.getStatus(), rejected.getMessage());
+        }
+
+        if (cause instanceof RejectedExecutionException) {
+            return failure(id, HttpStatus.SERVICE_UNAVAILABLE, "Too many batch requests in progress");
+        }
+
+        log.warn("[PROXY_BATCH] - Sub-request {} failed: {}", id, cause.getMessage());
+        return failure(id, HttpStatus.BAD_GATEWAY, cause.getMessage());
+    }
+
+    private BatchItemResponse failure(String id, HttpStatus status, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", status.value());
+        error.put("status", false);
+        error.put("message", message);
+        return new BatchItemResponse(id, status.value(), Map.of(), error);
+    }
+
+    private BatchItemResponse toResponse(String id, int status, HttpHeaders headers, byte[] body) {
+        Map<String, String> responseHeaders = new LinkedHashMap<>();
+        headers.forEach((name, values) -> {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+                responseHeaders.put(name, String.join(", ", values));
+            }
+        });
+
+        return new BatchItemResponse(id, status, responseHeaders, toBody(headers.getContentType(), body));
+    }
+
+    // JSON bodies are embedded as is, others as text
+    private Object toBody(MediaType contentType, byte[] body) {
+        if (Objects.isNull(body) || body.length == 0) {
+            return null;
+        }
+
+        boolean json = Objects.nonNull(contentType) && (MediaType.APPLICATION_JSON.includes(contentType)
+                || contentType.getSubtype().endsWith("+json"));
+
+        if (json) {
+            try {
+                return objectMapper.readTree(body);
+            } catch (Exception e) {
+                log.debug("[PROXY_BATCH] - Invalid JSON body, embedded as text: {}", e.getMessage());
+            }
+        }
+
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getSucceededCount() {
+        return succeeded.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
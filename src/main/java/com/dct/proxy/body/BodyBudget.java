@@ -0,0 +1,254 @@
+package com.dct.proxy.body;
+
+import com.dct.proxy.config.properties.BodyProps;
+import org.springframework.http.HttpStatus;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Node-wide budget of the request and response bodies held in memory by the requests in progress <p>
+ * A request reserves the bytes of a body before reading it: its {@code Content-Length} when it is known,
+ * chunk after chunk while the body is read otherwise. A reservation waits up to {@code maxWait}
+ * for bytes released by other requests, then the request is rejected with 503. A body that could never fit
+ * is rejected with 413 right away. The bytes are released when the reservation is closed, at the end of the request
+ *
+ * @author thoaidc
+ */
+public class BodyBudget {
+    private final long capacityBytes;
+    private final long maxWaitNanos;
+    private final int chunkBytes;
+    private final long retryAfterSeconds;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder busyRejections = new LongAdder();
+    private final LongAdder tooLargeRejections = new LongAdder();
+    private long usedBytes; // Guarded by lock
+
+    public BodyBudget(BodyProps.BudgetConfig config) {
+        this.capacityBytes = config.getMaxInFlightBytes();
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxWait());
+        this.chunkBytes = Math.max(1, config.getChunkBytes());
+        this.retryAfterSeconds = Math.max(1, config.getRetryAfter());
+    }
+
+    /**
+     * @return a reservation holding nothing yet, to grow as a body is read
+     */
+    public Reservation open() {
+        return new Reservation();
+    }
+
+    /**
+     * @return a reservation holding the given bytes
+     * @throws BodyRejectedException if the bytes cannot be reserved in time
+     */
+    public Reservation reserve(long bytes) {
+        Reservation reservation = new Reservation();
+        reservation.grow(bytes);
+        return reservation;
+    }
+
+    private void acquire(long bytes, long total) {
+        if (total > capacityBytes) {
+            tooLargeRejections.increment();
+            throw new BodyRejectedException(
+                HttpStatus.PAYLOAD_TOO_LARGE,
+                "Body of " + total + " bytes exceeds the in-flight body budget of " + capacityBytes + " bytes"
+            );
+        }
+
+        lock.lock();
+
+        try {
+            if (usedBytes + bytes > capacityBytes) {
+                waits.increment();
+                long remainingNanos = maxWaitNanos;
+
+                while (usedBytes + bytes > capacityBytes) {
+                    if (remainingNanos <= 0) {
+                        throw rejectBusy();
+                    }
+
+                    try {
+                        remainingNanos = released.awaitNanos(remainingNanos);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw rejectBusy();
+                    }
+                }
+            }
+
+            usedBytes += bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private BodyRejectedException rejectBusy() {
+        busyRejections.increment();
+        return new BodyRejectedException(
+            HttpStatus.SERVICE_UNAVAILABLE,
+            "In-flight body budget exhausted, retry after " + retryAfterSeconds + " seconds",
+            retryAfterSeconds
+        );
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+
+        try {
+            usedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public long getUsedBytes() {
+        lock.lock();
+
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    public long getBusyRejectionCount() {
+        return busyRejections.sum();
+    }
+
+    public long getTooLargeRejectionCount() {
+        return tooLargeRejections.sum();
+    }
+
+    /**
+     * Bytes of the budget held by one request, for its request body and the upstream response <p>
+     * Once closed, the bytes are released and the reservation does not grow anymore:
+     * a background refresh outliving the request is not counted
+     */
+    public final class Reservation implements Closeable {
+        private long bytes;
+        private boolean closed;
+
+        private Reservation() {}
+
+        public synchronized long bytes() {
+            return bytes;
+        }
+
+        /**
+         * @throws BodyRejectedException if the bytes cannot be reserved in time
+         */
+        public synchronized void grow(long more) {
+            if (closed || more <= 0) {
+                return;
+            }
+
+            acquire(more, bytes + more);
+            bytes += more;
+        }
+
+        /**
+         * Reserve the bytes of a body before they are read: its length when it is announced, chunk after chunk
+         * while it is read otherwise, ahead of the read by up to one chunk
+         * @param in the body to read
+         * @param contentLength the announced length of the body, -1 if unknown
+         * @param limit bytes after which the body is no longer counted, those read past a spooling threshold
+         *              go to disk
+         * @return the stream to read instead of the given one, closing it closes the given one
+         * @throws BodyRejectedException if the announced length cannot be reserved in time
+         */
+        public InputStream meter(InputStream in, long contentLength, long limit) {
+            long counted = contentLength >= 0 ? Math.min(contentLength, limit) : limit;
+            long reserved = contentLength >= 0 ? counted : 0;
+            grow(reserved);
+            return new MeteredInputStream(in, this, reserved, counted);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(bytes);
+                bytes = 0;
+            }
+        }
+    }
+
+    private final class MeteredInputStream extends FilterInputStream {
+        private final Reservation reservation;
+        private final long limit;
+        private long reserved;
+        private long consumed;
+
+        private MeteredInputStream(InputStream in, Reservation reservation, long reserved, long limit) {
+            super(in);
+            this.reservation = reservation;
+            this.reserved = reserved;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            reserve(1);
+            int b = super.read();
+
+            if (b >= 0) {
+                consumed++;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, reserve(len));
+
+            if (n > 0) {
+                consumed += n;
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            consumed += skipped;
+            return skipped;
+        }
+
+        /**
+         * A large read buffer does not reserve its whole size: the reservation grows by one chunk once
+         * the bytes already reserved are read, the read is cut at the end of the reservation
+         * @return the number of bytes that may be read now
+         */
+        private int reserve(int len) {
+            if (consumed >= reserved && reserved < limit) {
+                long more = Math.min(chunkBytes, limit - reserved);
+                reservation.grow(more);
+                reserved += more;
+            }
+
+            return reserved >= limit ? len : (int) Math.min(len, reserved - consumed);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.dct.proxy.body;
+
+import com.dct.proxy.config.properties.BodyProps;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Maximum size and allowed content types of the request bodies, per route <p>
+ * The headers are checked before the body is touched: a {@code Content-Length} above the limit is answered
+ * with 413, a content type that is not allowed with 415. A body without {@code Content-Length} is counted
+ * while it is read and rejected with 413 as soon as it goes past the limit. The first route whose pattern
+ * matches the request path applies, the defaults apply to the other requests
+ *
+ * @author thoaidc
+ */
+public class BodyLimits {
+    private final Limit defaultLimit;
+    private final List<RouteLimit> routes;
+    private final LongAdder tooLargeAnnounced = new LongAdder();
+    private final LongAdder tooLargeStreamed = new LongAdder();
+    private final LongAdder unsupportedTypes = new LongAdder();
+
+    /**
+     * @param maxSizeBytes maximum body size, -1 for none
+     * @param contentTypes allowed body types, empty for any
+     */
+    public record Limit(long maxSizeBytes, List<MediaType> contentTypes) {}
+
+    private record RouteLimit(PathPattern pattern, Limit limit) {}
+
+    public BodyLimits(BodyProps.LimitsConfig config) {
+        this.defaultLimit = new Limit(config.getMaxSizeBytes(), parseMediaTypes(config.getContentTypes()));
+        this.routes = config.getRoutes()
+                .stream()
+                .filter(route -> StringUtils.hasText(route.getPattern()))
+                .map(route -> new RouteLimit(
+                    PathPatternParser.defaultInstance.parse(route.getPattern()),
+                    new Limit(
+                        Optional.ofNullable(route.getMaxSizeBytes()).orElse(defaultLimit.maxSizeBytes()),
+                        Objects.nonNull(route.getContentTypes())
+                            ? parseMediaTypes(route.getContentTypes())
+                            : defaultLimit.contentTypes()
+                    )
+                ))
+                .toList();
+    }
+
+    /**
+     * Check the headers of a request against the limits of its route, before its body is read
+     * @return the maximum number of body bytes to read, -1 for no limit
+     * @throws BodyRejectedException 413 if the announced length is above the limit,
+     * 415 if the body has a content type that is not allowed
+     */
+    public long check(HttpServletRequest request) {
+        Limit limit = resolve(request);
+        long contentLength = request.getContentLengthLong();
+
+        if (limit.maxSizeBytes() >= 0 && contentLength > limit.maxSizeBytes()) {
+            tooLargeAnnounced.increment();
+            throw new BodyRejectedException(
+                HttpStatus.PAYLOAD_TOO_LARGE,
+                "Request body of " + contentLength + " bytes exceeds the limit of " + limit.maxSizeBytes() + " bytes"
+            );
+        }
+
+        boolean hasBody = contentLength > 0 || Objects.nonNull(request.getHeader(HttpHeaders.TRANSFER_ENCODING));
+
+        if (hasBody && !isAllowed(limit, request.getContentType())) {
+            unsupportedTypes.increment();
+            throw new BodyRejectedException(
+                HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                "Request body type is not allowed: " + request.getContentType()
+            );
+        }
+
+        return limit.maxSizeBytes();
+    }
+
+    /**
+     * @param maxSizeBytes the limit returned by {@link #check}
+     * @return the stream to read instead of the given one, it throws {@link BodyRejectedException}
+     * once the body goes past the limit
+     */
+    public InputStream limit(InputStream in, long maxSizeBytes) {
+        return maxSizeBytes < 0 ? in : new LimitedInputStream(in, maxSizeBytes);
+    }
+
+    private Limit resolve(HttpServletRequest request) {
+        if (routes.isEmpty()) {
+            return defaultLimit;
+        }
+
+        String requestUri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        String lookupPath = requestUri.startsWith(contextPath) ? requestUri.substring(contextPath.length()) : requestUri;
+        PathContainer path = PathContainer.parsePath(lookupPath);
+
+        return routes.stream()
+                .filter(route -> route.pattern().matches(path))
+                .map(RouteLimit::limit)
+                .findFirst()
+                .orElse(defaultLimit);
+    }
+
+    private static boolean isAllowed(Limit limit, String contentType) {
+        if (limit.contentTypes().isEmpty()) {
+            return true;
+        }
+
+        if (!StringUtils.hasText(contentType)) {
+            return false;
+        }
+
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return limit.contentTypes().stream().anyMatch(type -> type.includes(mediaType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private static List<MediaType> parseMediaTypes(List<String> mediaTypes) {
+        return mediaTypes.stream().filter(StringUtils::hasText).map(MediaType::parseMediaType).toList();
+    }
+
+    public long getTooLargeAnnouncedCount() {
+        return tooLargeAnnounced.sum();
+    }
+
+    public long getTooLargeStreamedCount() {
+        return tooLargeStreamed.sum();
+    }
+
+    public long getUnsupportedTypeCount() {
+        return unsupportedTypes.sum();
+    }
+
+    // Reads at most one byte past the limit, enough to know the body is larger
+    private final class LimitedInputStream extends FilterInputStream {
+        private final long maxSizeBytes;
+        private long consumed;
+
+        private LimitedInputStream(InputStream in, long maxSizeBytes) {
+            super(in);
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b >= 0) {
+                count(1);
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, (int) Math.min(len, maxSizeBytes - consumed + 1));
+
+            if (n > 0) {
+                count(n);
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, maxSizeBytes - consumed + 1));
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) {
+            consumed += n;
+
+            if (consumed > maxSizeBytes) {
+                tooLargeStreamed.increment();
+                throw new BodyRejectedException(
+                    HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Request body exceeds the limit of " + maxSizeBytes + " bytes"
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.dct.proxy.body;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * A body is refused before or while it is read, the client is answered with {@link #getStatus()}
+ * and the upstream is not called (or its response is dropped) <p>
+ * Unchecked, so it goes through the streams and the HTTP client unwrapped. It is not a failure of the upstream,
+ * the circuit breaker ignores it and it is never retried
+ *
+ * @author thoaidc
+ */
+public class BodyRejectedException extends RuntimeException {
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public BodyRejectedException(HttpStatus status, String message) {
+        this(status, message, 0);
+    }
+
+    public BodyRejectedException(HttpStatus status, String message, long retryAfterSeconds) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the delay to announce in {@code Retry-After}, 0 for none
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,135 @@
+package com.dct.proxy.body;
+
+import com.dct.proxy.config.properties.BodyProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads bodies into a {@link SpooledBody}: in memory up to the configured threshold, streamed to a temporary file
+ * above it, so a large upload or download never has to fit in the heap <p>
+ * Files are created in a directory owned by the spooler, files left there by a previous run that did not stop
+ * cleanly are deleted on startup. A file lives until its body is closed
+ *
+ * @author thoaidc
+ */
+public class BodySpooler {
+    private static final Logger log = LoggerFactory.getLogger(BodySpooler.class);
+    private static final String FILE_PREFIX = "body-";
+    private static final String FILE_SUFFIX = ".spool";
+    private static final String DEFAULT_DIRECTORY = "proxy-spool";
+    private final int memoryThresholdBytes;
+    private final Path directory;
+    private final BufferPool bufferPool;
+    private final LongAdder spooledBodies = new LongAdder();
+    private final LongAdder spooledBytes = new LongAdder();
+    private final AtomicLong activeFiles = new AtomicLong();
+    private final AtomicLong activeBytes = new AtomicLong();
+
+    public BodySpooler(BodyProps.SpoolConfig config, BufferPool bufferPool) throws IOException {
+        this.bufferPool = bufferPool;
+        this.memoryThresholdBytes = Math.max(0, Math.min(config.getMemoryThresholdBytes(), Integer.MAX_VALUE - 9));
+        Path path = StringUtils.hasText(config.getDirectory())
+                ? Path.of(config.getDirectory())
+                : Path.of(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY);
+        this.directory = Files.createDirectories(path);
+        deleteLeftovers();
+    }
+
+    public int getMemoryThresholdBytes() {
+        return memoryThresholdBytes;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Read the stream to its end, the stream is not closed
+     * @param contentLength the announced length of the body, -1 if unknown: a body announced above the threshold
+     *                      is written to its file right away
+     * @return the body, to be closed by the caller once it is no longer used
+     */
+    public SpooledBody spool(InputStream in, long contentLength) throws IOException {
+        if (contentLength > memoryThresholdBytes) {
+            return spoolToFile(in, null);
+        }
+
+        try (BufferPool.Lease head = bufferPool.read(in, contentLength, memoryThresholdBytes + 1)) {
+            if (head.length() <= memoryThresholdBytes) {
+                return SpooledBody.of(head.toByteArray());
+            }
+
+            return spoolToFile(in, head);
+        }
+    }
+
+    private SpooledBody spoolToFile(InputStream in, BufferPool.Lease head) throws IOException {
+        Path file = Files.createTempFile(directory, FILE_PREFIX, FILE_SUFFIX);
+        long length = 0;
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            if (Objects.nonNull(head)) {
+                out.write(head.array(), 0, head.length());
+                length = head.length();
+            }
+
+            length += bufferPool.copy(in, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        spooledBodies.increment();
+        spooledBytes.add(length);
+        activeFiles.incrementAndGet();
+        activeBytes.addAndGet(length);
+        log.debug("[BODY_SPOOL] - Spooled body of {} bytes to {}", length, file);
+        return SpooledBody.spooled(file, length, this);
+    }
+
+    void release(Path file, long length) throws IOException {
+        activeFiles.decrementAndGet();
+        activeBytes.addAndGet(-length);
+        Files.deleteIfExists(file);
+    }
+
+    private void deleteLeftovers() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+                log.info("[BODY_SPOOL] - Deleted spool file left by a previous run: {}", file);
+            }
+        }
+    }
+
+    public long getSpooledBodyCount() {
+        return spooledBodies.sum();
+    }
+
+    public long getSpooledBytes() {
+        return spooledBytes.sum();
+    }
+
+    public long getActiveFileCount() {
+        return activeFiles.get();
+    }
+
+    public long getActiveBytes() {
+        return activeBytes.get();
+    }
+}
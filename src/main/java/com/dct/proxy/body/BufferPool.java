@@ -0,0 +1,350 @@
+package com.dct.proxy.body;
+
+import com.dct.proxy.config.properties.BodyProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reusable byte arrays for the copies of the request and response bodies, by size class <p>
+ * The size classes are the powers of two from {@code minBufferBytes} to {@code maxBufferBytes}, an array is taken
+ * from the smallest class that fits, a larger one is allocated and never pooled. Each class keeps its share
+ * of {@code maxPooledBytes} of released arrays, the others are left to the garbage collector <p>
+ * A {@link Lease} gives its array back when closed, the array must not be used afterwards. Bodies kept
+ * by the request, the response or the cache are never pooled arrays: {@link Lease#toByteArray()} hands over
+ * an exact-size array, read in place when the length was announced <p>
+ * Leases not closed show in {@link #getOutstandingCount()}. With leak detection, the stack of each acquisition
+ * is kept and a lease garbage collected before being closed is logged with it
+ *
+ * @author thoaidc
+ */
+public class BufferPool {
+    private static final Logger log = LoggerFactory.getLogger(BufferPool.class);
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int MAX_ARRAY_BYTES = Integer.MAX_VALUE - 8;
+    private static final int MAX_CLASS_BYTES = 1 << 30;
+    public static final byte[] EMPTY = new byte[0];
+    private static final BufferPool UNPOOLED = new BufferPool(new BodyProps.PoolConfig(), 0);
+    private final int minBufferBytes;
+    private final int maxBufferBytes;
+    private final int copyBufferBytes;
+    private final int minShift;
+    private final Queue<byte[]>[] classes; // Null when nothing is pooled
+    private final boolean leakDetection;
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final AtomicLong outstanding = new AtomicLong();
+
+    public BufferPool(BodyProps.PoolConfig config) {
+        this(config, config.getMaxPooledBytes());
+    }
+
+    @SuppressWarnings("unchecked")
+    private BufferPool(BodyProps.PoolConfig config, long maxPooledBytes) {
+        this.minBufferBytes = ceilingPowerOfTwo(Math.max(64, config.getMinBufferBytes()));
+        this.maxBufferBytes = Math.max(minBufferBytes, ceilingPowerOfTwo(config.getMaxBufferBytes()));
+        this.copyBufferBytes = Math.max(1, Math.min(config.getCopyBufferBytes(), maxBufferBytes));
+        this.minShift = Integer.numberOfTrailingZeros(minBufferBytes);
+        this.leakDetection = config.isLeakDetection();
+        int classCount = Integer.numberOfTrailingZeros(maxBufferBytes) - minShift + 1;
+
+        if (maxPooledBytes <= 0) {
+            this.classes = null;
+            return;
+        }
+
+        this.classes = new Queue[classCount];
+
+        for (int index = 0; index < classCount; index++) {
+            long arrays = maxPooledBytes / classCount / (minBufferBytes << index);
+            classes[index] = new ArrayBlockingQueue<>((int) Math.max(1, Math.min(arrays, Integer.MAX_VALUE)));
+        }
+    }
+
+    /**
+     * @return a pool that allocates every array, for the copies made without a configured pool
+     */
+    public static BufferPool unpooled() {
+        return UNPOOLED;
+    }
+
+    /**
+     * @return an array of at least the given size, its content is undefined
+     */
+    public Lease acquire(int minCapacity) {
+        int index = classIndex(minCapacity);
+
+        if (index < 0) {
+            allocated.increment();
+            return lease(new byte[minCapacity], -1);
+        }
+
+        byte[] array = Objects.nonNull(classes) ? classes[index].poll() : null;
+
+        if (Objects.isNull(array)) {
+            allocated.increment();
+            array = new byte[minBufferBytes << index];
+        }
+
+        return lease(array, index);
+    }
+
+    /**
+     * Read a body up to the given number of bytes, the stream is not closed
+     * @param contentLength the announced length of the body, -1 if unknown. A known length up to the largest
+     *                      size class is read into an exact-size array, other bodies into pooled arrays
+     *                      of growing size classes
+     * @return the lease holding the bytes read, fewer than {@code max} only at the end of the stream
+     */
+    public Lease read(InputStream in, long contentLength, int max) throws IOException {
+        if (contentLength == 0) {
+            return lease(EMPTY, -1);
+        }
+
+        boolean exactSize = contentLength > 0 && contentLength <= Math.min(max, maxBufferBytes);
+        long initialCapacity = contentLength > 0 ? Math.min(contentLength, maxBufferBytes) : minBufferBytes;
+        Lease lease = exactSize ? lease(new byte[(int) contentLength], -1) : acquire((int) Math.min(initialCapacity, max));
+
+        try {
+            if (exactSize) {
+                lease.length = in.readNBytes(lease.array, 0, lease.array.length);
+                return lease;
+            }
+
+            while (lease.length < max) {
+                if (lease.length == lease.array.length) {
+                    lease = grow(lease, (int) Math.min(2L * lease.array.length, max));
+                }
+
+                int n = in.read(lease.array, lease.length, Math.min(lease.array.length, max) - lease.length);
+
+                if (n < 0) {
+                    break;
+                }
+
+                lease.length += n;
+            }
+
+            return lease;
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link InputStream#readAllBytes()}, without the intermediate arrays
+     * @param contentLength the announced length of the body, -1 if unknown
+     * @return the body in an exact-size array that is not pooled
+     */
+    public byte[] readAllBytes(InputStream in, long contentLength) throws IOException {
+        try (Lease lease = read(in, contentLength, MAX_ARRAY_BYTES)) {
+            if (lease.length == MAX_ARRAY_BYTES && in.read() >= 0) {
+                throw new IOException("Body exceeds the maximum array size");
+            }
+
+            return lease.toByteArray();
+        }
+    }
+
+    /**
+     * Same as {@link InputStream#transferTo(OutputStream)} through a pooled array, neither stream is closed
+     * @return the number of bytes copied
+     */
+    public long copy(InputStream in, OutputStream out) throws IOException {
+        try (Lease lease = acquire(copyBufferBytes)) {
+            byte[] buffer = lease.array;
+            long copied = 0;
+            int n;
+
+            while ((n = in.read(buffer, 0, copyBufferBytes)) >= 0) {
+                out.write(buffer, 0, n);
+                copied += n;
+            }
+
+            return copied;
+        }
+    }
+
+    private Lease grow(Lease lease, int capacity) {
+        Lease larger = acquire(capacity);
+        System.arraycopy(lease.array, 0, larger.array, 0, lease.length);
+        larger.length = lease.length;
+        lease.close();
+        return larger;
+    }
+
+    private Lease lease(byte[] array, int index) {
+        acquired.increment();
+        outstanding.incrementAndGet();
+        Lease lease = new Lease(array, index);
+
+        if (leakDetection) {
+            lease.leak = new LeakTracker(new Throwable("Buffer of " + array.length + " bytes acquired here"));
+            lease.cleanable = CLEANER.register(lease, lease.leak);
+        }
+
+        return lease;
+    }
+
+    private void release(byte[] array, int index) {
+        outstanding.decrementAndGet();
+
+        // A full size class drops the array
+        if (index >= 0 && Objects.nonNull(classes)) {
+            classes[index].offer(array);
+        }
+    }
+
+    private int classIndex(int capacity) {
+        if (capacity <= minBufferBytes) {
+            return 0;
+        }
+
+        if (capacity > maxBufferBytes) {
+            return -1;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - minShift;
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        if (value >= MAX_CLASS_BYTES) {
+            return MAX_CLASS_BYTES;
+        }
+
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    public int getMinBufferBytes() {
+        return minBufferBytes;
+    }
+
+    public int getMaxBufferBytes() {
+        return maxBufferBytes;
+    }
+
+    public boolean isLeakDetection() {
+        return leakDetection;
+    }
+
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    public long getAllocatedCount() {
+        return allocated.sum();
+    }
+
+    public long getOutstandingCount() {
+        return outstanding.get();
+    }
+
+    public long getLeakCount() {
+        return leaks.sum();
+    }
+
+    public long getPooledBytes() {
+        if (Objects.isNull(classes)) {
+            return 0;
+        }
+
+        long pooled = 0;
+
+        for (int index = 0; index < classes.length; index++) {
+            pooled += (long) classes[index].size() * (minBufferBytes << index);
+        }
+
+        return pooled;
+    }
+
+    /**
+     * An array taken from the pool, given back once closed. Not thread-safe, a lease belongs to one request
+     */
+    public final class Lease implements AutoCloseable {
+        private final byte[] array;
+        private final int index;
+        private int length;
+        private boolean closed;
+        private LeakTracker leak;
+        private Cleaner.Cleanable cleanable;
+
+        private Lease(byte[] array, int index) {
+            this.array = array;
+            this.index = index;
+        }
+
+        public byte[] array() {
+            return array;
+        }
+
+        /**
+         * @return the bytes of the array filled by {@link BufferPool#read}
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * @return the bytes read, in an array that outlives the lease
+         */
+        public byte[] toByteArray() {
+            if (length == 0) {
+                return EMPTY;
+            }
+
+            // An exact-size array that is not pooled is handed over as is
+            if (index < 0 && length == array.length) {
+                return array;
+            }
+
+            return Arrays.copyOf(array, length);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            if (Objects.nonNull(cleanable)) {
+                leak.released = true;
+                cleanable.clean();
+            }
+
+            release(array, index);
+        }
+    }
+
+    // Must not reference its lease, the cleaner runs once the lease is unreachable
+    private final class LeakTracker implements Runnable {
+        private final Throwable acquiredAt;
+        private volatile boolean released;
+
+        private LeakTracker(Throwable acquiredAt) {
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public void run() {
+            if (!released) {
+                leaks.increment();
+                outstanding.decrementAndGet();
+                log.error("[BUFFER_POOL] - Buffer garbage collected without being released", acquiredAt);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.dct.proxy.body;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Body of a request or response, held in memory up to the threshold of {@link BodySpooler},
+ * written to a temporary file above it <p>
+ * The content can be read any number of times, each {@link #openStream()} starts from the beginning,
+ * so a retry replays the same bytes. The owner of the body closes it once the exchange has ended,
+ * which deletes the temporary file
+ *
+ * @author thoaidc
+ */
+public final class SpooledBody implements Closeable {
+    private final byte[] bytes;
+    private final Path file;
+    private final long length;
+    private final BodySpooler spooler;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private SpooledBody(byte[] bytes, Path file, long length, BodySpooler spooler) {
+        this.bytes = bytes;
+        this.file = file;
+        this.length = length;
+        this.spooler = spooler;
+    }
+
+    /**
+     * A body held in memory, closing it has no effect
+     */
+    public static SpooledBody of(byte[] bytes) {
+        byte[] content = Objects.nonNull(bytes) ? bytes : BufferPool.EMPTY;
+        return new SpooledBody(content, null, content.length, null);
+    }
+
+    static SpooledBody spooled(Path file, long length, BodySpooler spooler) {
+        return new SpooledBody(null, file, length, spooler);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return true if the body is held in a temporary file
+     */
+    public boolean isSpooled() {
+        return Objects.nonNull(file);
+    }
+
+    /**
+     * @return a new stream over the whole body, to be closed by the caller
+     */
+    public InputStream openStream() throws IOException {
+        if (Objects.isNull(file)) {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        ensureOpen();
+        return Files.newInputStream(file);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (Objects.isNull(file)) {
+            out.write(bytes);
+            return;
+        }
+
+        ensureOpen();
+
+        try (InputStream in = Files.newInputStream(file)) {
+            spooler.getBufferPool().copy(in, out);
+        }
+    }
+
+    /**
+     * @return the body held in memory, a spooled body is read from its file into a new array
+     */
+    public byte[] toByteArray() throws IOException {
+        if (Objects.isNull(file)) {
+            return bytes;
+        }
+
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Spooled body of " + length + " bytes does not fit in an array");
+        }
+
+        ensureOpen();
+        return Files.readAllBytes(file);
+    }
+
+    /**
+     * Delete the temporary file, further reads of a spooled body fail
+     */
+    @Override
+    public void close() throws IOException {
+        if (Objects.nonNull(file) && closed.compareAndSet(false, true)) {
+            spooler.release(file, length);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed.get()) {
+            throw new IOException("Spooled body is closed: " + file);
+        }
+    }
+}
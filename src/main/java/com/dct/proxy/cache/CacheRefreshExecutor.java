@@ -0,0 +1,106 @@
+package com.dct.proxy.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor for background refreshes of cached responses <p>
+ * At most one refresh per key runs at a time. Refreshes beyond the queue capacity are dropped,
+ * the entry is then refreshed later by a client request, so the upstream never sees more than
+ * {@code maxThreads} background calls at once
+ *
+ * @author thoaidc
+ */
+public class CacheRefreshExecutor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CacheRefreshExecutor.class);
+    private final ThreadPoolExecutor executor;
+    private final Set<ResponseCacheKey> refreshing = ConcurrentHashMap.newKeySet();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public CacheRefreshExecutor(int maxThreads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            maxThreads,
+            maxThreads,
+            60,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cache-refresh-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedule a background refresh of one cache entry
+     * @param key the cache key, used to skip refreshes already scheduled or running
+     * @param refresh the refresh task
+     * @return true if the task was scheduled, false if a refresh is pending for this key or the executor is saturated
+     */
+    public boolean submit(ResponseCacheKey key, Runnable refresh) {
+        if (!refreshing.add(key)) {
+            return false;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh.run();
+                    completed.increment();
+                } catch (Exception e) {
+                    failed.increment();
+                    log.warn("[CACHE_REFRESH] - Background refresh failed for {}: {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+
+            return true;
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            rejected.increment();
+            log.debug("[CACHE_REFRESH] - Refresh queue full, skip: {}", key);
+            return false;
+        }
+    }
+
+    public boolean isRefreshing(ResponseCacheKey key) {
+        return refreshing.contains(key);
+    }
+
+    public int getPendingCount() {
+        return refreshing.size();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
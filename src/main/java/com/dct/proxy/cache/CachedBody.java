@@ -0,0 +1,40 @@
+package com.dct.proxy.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Body of a {@link CachedResponse}, which may live on the Java heap or outside it <p>
+ * Off-heap bodies are reference counted: a reader must {@link #retain()} the body before writing it
+ * and {@link #release()} it afterward, so the backing memory is not recycled while a response is being written
+ *
+ * @author thoaidc
+ */
+public interface CachedBody {
+
+    long length();
+
+    /**
+     * Write the whole body to the given stream without materializing it as a single {@code byte[]}
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Return the body as an array, only for callers that really need the bytes on heap <p>
+     * Heap bodies return their backing array, which must not be modified
+     */
+    byte[] toByteArray();
+
+    /**
+     * @return false if the body has already been released and must not be read
+     */
+    default boolean retain() {
+        return true;
+    }
+
+    default void release() {}
+
+    default boolean isOffHeap() {
+        return false;
+    }
+}
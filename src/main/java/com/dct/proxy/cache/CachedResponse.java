@@ -0,0 +1,98 @@
+package com.dct.proxy.cache;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of an upstream response stored in {@link ProxyResponseCache} <p>
+ * {@link #expiresAt} is the end of the freshness lifetime (epoch milliseconds),
+ * {@link #retainUntil} is how long the entry is kept past it to be revalidated against the upstream
+ *
+ * @author thoaidc
+ */
+public class CachedResponse {
+    // Rough per-entry bookkeeping cost (key, metadata, map node), added to the weight of every entry
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    private final int status;
+    private final HttpHeaders headers;
+    private final CachedBody body;
+    private final long storedAt;
+    private final long expiresAt;
+    private final long retainUntil;
+
+    public CachedResponse(int status, HttpHeaders headers, CachedBody body, long storedAt, long expiresAt) {
+        this(status, headers, body, storedAt, expiresAt, expiresAt);
+    }
+
+    public CachedResponse(int status,
+                          HttpHeaders headers,
+                          CachedBody body,
+                          long storedAt,
+                          long expiresAt,
+                          long retainUntil) {
+        this.status = status;
+        this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+        this.body = body;
+        this.storedAt = storedAt;
+        this.expiresAt = expiresAt;
+        this.retainUntil = Math.max(expiresAt, retainUntil);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    public CachedBody getBody() {
+        return body;
+    }
+
+    public long getStoredAt() {
+        return storedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public long getRetainUntil() {
+        return retainUntil;
+    }
+
+    public boolean isFresh(long now) {
+        return now < expiresAt;
+    }
+
+    public boolean isRetained(long now) {
+        return now < retainUntil;
+    }
+
+    /**
+     * @return true if the upstream sent an {@code ETag} or {@code Last-Modified} validator for this response
+     */
+    public boolean hasValidator() {
+        return headers.containsKey(HttpHeaders.ETAG) || headers.containsKey(HttpHeaders.LAST_MODIFIED);
+    }
+
+    public long getAgeSeconds(long now) {
+        return TimeUnit.MILLISECONDS.toSeconds(Math.max(0, now - storedAt));
+    }
+
+    /**
+     * Approximate heap footprint of this entry in bytes, used by the cache weigher <p>
+     * Off-heap bodies are not counted here, they are weighed against the off-heap budget
+     */
+    public int weight() {
+        long headerBytes = headers.entrySet()
+                .stream()
+                .mapToLong(e -> e.getKey().length() + e.getValue().stream().mapToLong(String::length).sum())
+                .sum();
+
+        long bodyBytes = body.isOffHeap() ? 0 : body.length();
+        return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD_BYTES + headerBytes + bodyBytes);
+    }
+}
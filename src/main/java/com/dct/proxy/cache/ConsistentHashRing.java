@@ -0,0 +1,76 @@
+package com.dct.proxy.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Consistent hashing of cache keys onto proxy nodes <p>
+ * Each node is placed on the ring at {@code virtualNodes} points, a key belongs to the first node clockwise
+ * from its hash. Adding or removing a node only moves the keys of its own arcs. The hash only depends on the
+ * key and node names, so every node computes the same owner without coordination
+ *
+ * @author thoaidc
+ */
+public class ConsistentHashRing {
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * @return the node owning this key, or null if the ring is empty
+     */
+    public String nodeFor(String key) {
+        return nodeFor(key, node -> true);
+    }
+
+    /**
+     * @return the first node clockwise from the key accepted by the filter, or null if none is accepted
+     */
+    public String nodeFor(String key, Predicate<String> accepted) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+
+        long hash = hash(key);
+
+        for (Map.Entry<Long, String> entry : ring.tailMap(hash, true).entrySet()) {
+            if (accepted.test(entry.getValue())) {
+                return entry.getValue();
+            }
+        }
+
+        for (Map.Entry<Long, String> entry : ring.headMap(hash, false).entrySet()) {
+            if (accepted.test(entry.getValue())) {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    // FNV-1a followed by the MurmurHash3 finalizer, stable across JVMs unlike identity hashes
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,799 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent cache tier that survives restarts <p>
+ * Response bodies are appended to memory-mapped segment files of a fixed size.
+ * Keys and metadata are recorded in an append-only index log ({@code PUT}, {@code REMOVE}, {@code SEAL}, {@code DROP}),
+ * so a restart only replays the index and never reads the bodies <p>
+ * Durability: a segment is flushed to disk and marked {@code SEAL} in the index when it is full and on shutdown.
+ * Entries of a segment without {@code SEAL} are discarded on startup, so a crash loses at most the active segment <p>
+ * Writes are queued to a single writer thread, the request storing a response never waits for the disk.
+ * Until it is written, an entry is not served from the disk, a later store of the same key replaces it
+ * and a removal cancels it. A full queue drops the write <p>
+ * Eviction is log-structured: when the size limit is reached the oldest segment is dropped.
+ * A background task removes expired entries, compacts sealed segments with little live data
+ * and rewrites the index from the live entries. A dropped segment file is deleted once its last reader,
+ * including a sendfile hand-off ({@link #retainForSendfile}), released it
+ *
+ * @author thoaidc
+ */
+public class DiskCacheStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(DiskCacheStore.class);
+    private static final String INDEX_FILE = "index.log";
+    private static final String INDEX_TEMP_FILE = "index.log.tmp";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int MAX_INDEX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_SEAL = 3;
+    private static final byte OP_DROP = 4;
+    private final Path directory;
+    private final int segmentSizeBytes;
+    private final int maxSegments;
+    private final long maxEntrySizeBytes;
+    private final double compactionThreshold;
+    private final long deleteDelay;
+    private final Map<ResponseCacheKey, DiskEntry> entries = new ConcurrentHashMap<>();
+    private final Map<ResponseCacheKey, PendingPut> pending = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, DiskSegment> segments = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor writer;
+    private final LongAdder droppedWrites = new LongAdder();
+    private final Object writeLock = new Object();
+    private FileChannel indexChannel;
+    private DiskSegment activeSegment;
+    private volatile boolean closed;
+    private volatile Consumer<ResponseCacheKey> evictionListener;
+
+    private DiskCacheStore(ResponseCacheProps.DiskConfig config) {
+        this.directory = Paths.get(config.getDirectory());
+        this.segmentSizeBytes = config.getSegmentSizeBytes();
+        this.maxSegments = (int) Math.max(2, config.getMaxSizeBytes() / config.getSegmentSizeBytes());
+        this.maxEntrySizeBytes = Math.min(config.getMaxEntrySizeBytes(), config.getSegmentSizeBytes());
+        this.compactionThreshold = config.getCompactionThreshold();
+        this.deleteDelay = config.getDeleteDelay();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "disk-cache-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new ThreadPoolExecutor(
+            1,
+            1,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(config.getWriteQueueSize()),
+            runnable -> {
+                Thread thread = new Thread(runnable, "disk-cache-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    /**
+     * Open the store in the configured directory, replaying the existing index if any
+     */
+    public static DiskCacheStore open(ResponseCacheProps.DiskConfig config) throws IOException {
+        DiskCacheStore store = new DiskCacheStore(config);
+        store.load();
+        long interval = config.getCompactionInterval();
+        store.scheduler.scheduleWithFixedDelay(store::compactQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        return store;
+    }
+
+    public long getMaxEntrySizeBytes() {
+        return maxEntrySizeBytes;
+    }
+
+    public long getUsedBytes() {
+        return (long) segments.size() * segmentSizeBytes;
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the writes dropped because the write queue was full
+     */
+    public long getDroppedWriteCount() {
+        return droppedWrites.sum();
+    }
+
+    /**
+     * Set the callback notified of entries dropped by the store itself, on expiry or when their segment is reclaimed
+     */
+    public void setEvictionListener(Consumer<ResponseCacheKey> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * @return true if the key is stored or waiting to be written
+     */
+    public boolean contains(ResponseCacheKey key) {
+        return entries.containsKey(key) || pending.containsKey(key);
+    }
+
+    /**
+     * Visit the key and headers of every stored entry
+     */
+    public void forEach(BiConsumer<ResponseCacheKey, HttpHeaders> action) {
+        entries.values().forEach(entry -> action.accept(entry.key, entry.headers));
+    }
+
+    /**
+     * The body of the returned response is already retained, the caller must release it after use
+     * @return the stored response, or null if absent
+     */
+    public CachedResponse get(ResponseCacheKey key) {
+        DiskEntry entry = entries.get(key);
+
+        if (Objects.isNull(entry)) {
+            return null;
+        }
+
+        DiskSegment segment = segments.get(entry.segmentId);
+
+        if (Objects.isNull(segment) || !segment.retain()) {
+            return null;
+        }
+
+        DiskCachedBody body = new DiskCachedBody(segment, entry.offset, entry.length);
+        return new CachedResponse(entry.status, entry.headers, body, entry.storedAt, entry.expiresAt, entry.retainUntil);
+    }
+
+    /**
+     * Queue the response to be written by the writer thread, the body must not be modified afterwards
+     */
+    public void put(ResponseCacheKey key,
+                    int status,
+                    HttpHeaders headers,
+                    byte[] body,
+                    long storedAt,
+                    long expiresAt,
+                    long retainUntil) {
+        if (body.length > maxEntrySizeBytes || closed) {
+            return;
+        }
+
+        PendingPut put = new PendingPut(status, headers, body, storedAt, expiresAt, retainUntil);
+
+        // A write already queued for the key takes the latest version
+        if (Objects.nonNull(pending.put(key, put))) {
+            return;
+        }
+
+        try {
+            writer.execute(() -> write(key));
+        } catch (RejectedExecutionException e) {
+            // A store of the same key may have joined this write meanwhile, it is dropped as well
+            pending.remove(key);
+            droppedWrites.increment();
+            log.debug("[DISK_CACHE] - Write queue full, not stored: {}", key);
+        }
+    }
+
+    private void write(ResponseCacheKey key) {
+        synchronized (writeLock) {
+            // Taken under the lock, so a removal either cancels the write or removes what it wrote
+            PendingPut put = pending.remove(key);
+
+            if (Objects.isNull(put) || closed) {
+                return;
+            }
+
+            try {
+                ensureRoom(put.body.length);
+                long offset = activeSegment.append(put.body);
+                index(new DiskEntry(
+                    key,
+                    activeSegment.getId(),
+                    offset,
+                    put.body.length,
+                    put.status,
+                    put.headers,
+                    put.storedAt,
+                    put.expiresAt,
+                    put.retainUntil
+                ));
+            } catch (IOException e) {
+                log.warn("[DISK_CACHE] - Could not store {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Wait for the writes queued so far
+     */
+    void awaitWrites() throws InterruptedException, ExecutionException {
+        writer.submit(() -> {}).get();
+    }
+
+    /**
+     * Keep the segment file of a body handed to the servlet container for sendfile. The container opens the file
+     * by name after the request ends, there is no notification once it is sent: the extra reference is released
+     * after {@code delete-delay}, once the container holds the file open itself. Deleting the path afterwards
+     * does not affect the transfer
+     * @return false if the segment is already gone, the body must then be written by the caller
+     */
+    public boolean retainForSendfile(DiskCachedBody body) {
+        if (!body.retain()) {
+            return false;
+        }
+
+        try {
+            scheduler.schedule(body::release, deleteDelay, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Closed, the store no longer maintains its files
+            body.release();
+            return false;
+        }
+    }
+
+    /**
+     * Replace the metadata of a stored response after a successful revalidation, the body stays where it is
+     * @param storedAt the store time of the revalidated version, nothing changes if a newer version was stored since
+     */
+    public void refresh(ResponseCacheKey key,
+                        long storedAt,
+                        HttpHeaders headers,
+                        long refreshedAt,
+                        long expiresAt,
+                        long retainUntil) {
+        synchronized (writeLock) {
+            pending.computeIfPresent(key, (k, put) -> put.storedAt == storedAt
+                    ? new PendingPut(put.status, headers, put.body, refreshedAt, expiresAt, retainUntil)
+                    : put);
+            DiskEntry entry = entries.get(key);
+
+            if (closed || Objects.isNull(entry) || entry.storedAt != storedAt) {
+                return;
+            }
+
+            try {
+                index(entry.refresh(headers, refreshedAt, expiresAt, retainUntil));
+            } catch (IOException e) {
+                log.warn("[DISK_CACHE] - Could not refresh {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    public void remove(ResponseCacheKey key) {
+        synchronized (writeLock) {
+            pending.remove(key);
+            DiskEntry previous = entries.remove(key);
+
+            if (Objects.isNull(previous) || closed) {
+                return;
+            }
+
+            unlink(previous);
+
+            try {
+                appendIndex(encodeRemove(key));
+            } catch (IOException e) {
+                log.warn("[DISK_CACHE] - Could not record removal of {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write the queued responses, seal the active segment and write a compact index,
+     * so everything stored so far is reloaded on next startup. An empty active segment is deleted instead,
+     * the next startup opens a new one anyway
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("[DISK_CACHE] - Queued writes not finished on shutdown, {} dropped", writer.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            scheduler.shutdownNow();
+
+            try {
+                if (activeSegment.isEmpty()) {
+                    segments.remove(activeSegment.getId());
+                    activeSegment.drop();
+                } else {
+                    sealActiveSegment();
+                }
+
+                rewriteIndex();
+                indexChannel.close();
+            } catch (IOException e) {
+                log.warn("[DISK_CACHE] - Could not seal disk cache on shutdown: {}", e.getMessage());
+            }
+
+            segments.values().forEach(DiskSegment::close);
+            log.info("[DISK_CACHE] - Closed with {} entries in {} segments", entries.size(), segments.size());
+        }
+    }
+
+    private void load() throws IOException {
+        long startedAt = System.currentTimeMillis();
+        Files.createDirectories(directory);
+        Map<ResponseCacheKey, DiskEntry> loaded = new HashMap<>();
+        Set<Integer> sealed = new HashSet<>();
+        Set<Integer> dropped = new HashSet<>();
+        Path indexPath = directory.resolve(INDEX_FILE);
+
+        if (Files.exists(indexPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath), 1 << 16))) {
+                byte[] payload;
+
+                // A truncated or corrupted record marks the end of what was written before a crash
+                while (Objects.nonNull(payload = readRecord(in))) {
+                    replay(payload, loaded, sealed, dropped);
+                }
+            }
+        }
+
+        int maxId = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                int id = parseSegmentId(file);
+                maxId = Math.max(maxId, id);
+
+                if (sealed.contains(id) && !dropped.contains(id)) {
+                    segments.put(id, DiskSegment.openSealed(id, file));
+                } else {
+                    log.debug("[DISK_CACHE] - Discard unsealed or dropped segment: {}", file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        long now = System.currentTimeMillis();
+
+        loaded.values().forEach(entry -> {
+            DiskSegment segment = segments.get(entry.segmentId);
+
+            if (Objects.nonNull(segment) && entry.retainUntil > now) {
+                entries.put(entry.key, entry);
+                segment.addLiveBytes(entry.length);
+            }
+        });
+
+        while (segments.size() >= maxSegments) {
+            dropSegment(segments.firstEntry().getValue());
+        }
+
+        openActiveSegment(maxId + 1);
+        rewriteIndex();
+        log.info(
+            "[DISK_CACHE] - Loaded {} entries from {} segments in {}ms",
+            entries.size(),
+            segments.size() - 1,
+            System.currentTimeMillis() - startedAt
+        );
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            log.warn("[DISK_CACHE] - Compaction failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void compact() throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+
+            for (DiskEntry entry : List.copyOf(entries.values())) {
+                if (entry.retainUntil <= now && entries.remove(entry.key, entry)) {
+                    unlink(entry);
+                    notifyEviction(entry.key);
+                }
+            }
+
+            for (DiskSegment segment : List.copyOf(segments.values())) {
+                boolean sparse = segment.getLiveBytes() < compactionThreshold * segmentSizeBytes;
+
+                if (segment != activeSegment && segment.isSealed() && sparse && segments.containsKey(segment.getId())) {
+                    relocate(segment);
+                }
+            }
+
+            rewriteIndex();
+        }
+    }
+
+    // Copy the live entries of a sparse segment into the active one, then drop it
+    private void relocate(DiskSegment segment) throws IOException {
+        List<DiskEntry> liveEntries = entries.values()
+                .stream()
+                .filter(entry -> entry.segmentId == segment.getId())
+                .toList();
+
+        for (DiskEntry entry : liveEntries) {
+            ensureRoom(entry.length);
+
+            // The segment itself may have been dropped to make room
+            if (!segments.containsKey(segment.getId())) {
+                return;
+            }
+
+            long offset = activeSegment.appendFrom(segment, entry.offset, entry.length);
+            index(entry.relocate(activeSegment.getId(), offset));
+        }
+
+        log.debug("[DISK_CACHE] - Compacted segment {}, relocated {} entries", segment.getId(), liveEntries.size());
+        dropSegment(segment);
+    }
+
+    private void index(DiskEntry entry) throws IOException {
+        appendIndex(encodePut(entry));
+        segments.get(entry.segmentId).addLiveBytes(entry.length);
+        unlink(entries.put(entry.key, entry));
+    }
+
+    private void unlink(DiskEntry entry) {
+        if (Objects.nonNull(entry)) {
+            DiskSegment segment = segments.get(entry.segmentId);
+
+            if (Objects.nonNull(segment)) {
+                segment.addLiveBytes(-entry.length);
+            }
+        }
+    }
+
+    private void ensureRoom(long length) throws IOException {
+        if (activeSegment.hasRoom(length)) {
+            return;
+        }
+
+        sealActiveSegment();
+
+        while (segments.size() >= maxSegments) {
+            dropSegment(segments.firstEntry().getValue());
+        }
+
+        openActiveSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+    }
+
+    private void openActiveSegment(int id) throws IOException {
+        DiskSegment segment = DiskSegment.create(id, segmentPath(id), segmentSizeBytes);
+        segments.put(id, segment);
+        activeSegment = segment;
+    }
+
+    private void sealActiveSegment() throws IOException {
+        if (Objects.isNull(activeSegment) || activeSegment.isSealed()) {
+            return;
+        }
+
+        activeSegment.seal();
+        appendIndex(encodeSegmentOp(OP_SEAL, activeSegment.getId()));
+        indexChannel.force(false);
+    }
+
+    private void dropSegment(DiskSegment segment) throws IOException {
+        if (Objects.nonNull(indexChannel)) {
+            appendIndex(encodeSegmentOp(OP_DROP, segment.getId()));
+        }
+
+        segments.remove(segment.getId());
+        List<DiskEntry> dropped = entries.values()
+                .stream()
+                .filter(entry -> entry.segmentId == segment.getId())
+                .toList();
+        dropped.forEach(entry -> {
+            if (entries.remove(entry.key, entry)) {
+                notifyEviction(entry.key);
+            }
+        });
+
+        // The file is deleted once readers and sendfile hand-offs released it
+        segment.drop();
+    }
+
+    private void notifyEviction(ResponseCacheKey key) {
+        Consumer<ResponseCacheKey> listener = evictionListener;
+
+        if (Objects.nonNull(listener)) {
+            listener.accept(key);
+        }
+    }
+
+    private void rewriteIndex() throws IOException {
+        Path tempPath = directory.resolve(INDEX_TEMP_FILE);
+
+        try (FileChannel out = FileChannel.open(
+            tempPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            for (DiskSegment segment : segments.values()) {
+                if (segment.isSealed()) {
+                    writeRecord(out, encodeSegmentOp(OP_SEAL, segment.getId()));
+                }
+            }
+
+            for (DiskEntry entry : entries.values()) {
+                writeRecord(out, encodePut(entry));
+            }
+
+            out.force(true);
+        }
+
+        if (Objects.nonNull(indexChannel)) {
+            indexChannel.close();
+        }
+
+        Path indexPath = directory.resolve(INDEX_FILE);
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void appendIndex(byte[] payload) throws IOException {
+        writeRecord(indexChannel, payload);
+    }
+
+    // Record layout: [int length][payload][int crc32c]
+    private static void writeRecord(FileChannel channel, byte[] payload) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(payload.length + 8)
+                .putInt(payload.length)
+                .put(payload)
+                .putInt((int) crc.getValue())
+                .flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+
+            if (length < 0 || length > MAX_INDEX_RECORD_BYTES) {
+                return null;
+            }
+
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            int expectedCrc = in.readInt();
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            return (int) crc.getValue() == expectedCrc ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void replay(byte[] payload,
+                               Map<ResponseCacheKey, DiskEntry> loaded,
+                               Set<Integer> sealed,
+                               Set<Integer> dropped) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+        switch (in.readByte()) {
+            case OP_PUT -> {
+                DiskEntry entry = decodePut(in);
+                loaded.put(entry.key, entry);
+            }
+            case OP_REMOVE -> loaded.remove(ResponseCacheKey.fromExternalForm(readString(in)));
+            case OP_SEAL -> sealed.add(in.readInt());
+            case OP_DROP -> dropped.add(in.readInt());
+            default -> log.warn("[DISK_CACHE] - Unknown index record ignored");
+        }
+    }
+
+    private static byte[] encodePut(DiskEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_PUT);
+        writeString(out, entry.key.toExternalForm());
+        out.writeInt(entry.segmentId);
+        out.writeLong(entry.offset);
+        out.writeLong(entry.length);
+        out.writeInt(entry.status);
+        out.writeLong(entry.storedAt);
+        out.writeLong(entry.expiresAt);
+        out.writeLong(entry.retainUntil);
+        out.writeInt(entry.headers.size());
+
+        for (Map.Entry<String, List<String>> header : entry.headers.entrySet()) {
+            writeString(out, header.getKey());
+            out.writeInt(header.getValue().size());
+
+            for (String value : header.getValue()) {
+                writeString(out, value);
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static DiskEntry decodePut(DataInputStream in) throws IOException {
+        ResponseCacheKey key = ResponseCacheKey.fromExternalForm(readString(in));
+        int segmentId = in.readInt();
+        long offset = in.readLong();
+        long length = in.readLong();
+        int status = in.readInt();
+        long storedAt = in.readLong();
+        long expiresAt = in.readLong();
+        long retainUntil = in.readLong();
+        int headerCount = in.readInt();
+        HttpHeaders headers = new HttpHeaders();
+
+        for (int i = 0; i < headerCount; i++) {
+            String name = readString(in);
+            int valueCount = in.readInt();
+
+            for (int j = 0; j < valueCount; j++) {
+                headers.add(name, readString(in));
+            }
+        }
+
+        return new DiskEntry(key, segmentId, offset, length, status, headers, storedAt, expiresAt, retainUntil);
+    }
+
+    private static byte[] encodeRemove(ResponseCacheKey key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_REMOVE);
+        writeString(out, key.toExternalForm());
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeSegmentOp(byte op, int segmentId) {
+        return ByteBuffer.allocate(5).put(op).putInt(segmentId).array();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static int parseSegmentId(Path file) {
+        String name = file.getFileName().toString();
+
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A response waiting for the writer thread
+     */
+    private record PendingPut(int status,
+                              HttpHeaders headers,
+                              byte[] body,
+                              long storedAt,
+                              long expiresAt,
+                              long retainUntil) {}
+
+    /**
+     * Location and metadata of one stored body, only this stays in memory
+     */
+    private static final class DiskEntry {
+        private final ResponseCacheKey key;
+        private final int segmentId;
+        private final long offset;
+        private final long length;
+        private final int status;
+        private final HttpHeaders headers;
+        private final long storedAt;
+        private final long expiresAt;
+        private final long retainUntil;
+
+        private DiskEntry(ResponseCacheKey key,
+                          int segmentId,
+                          long offset,
+                          long length,
+                          int status,
+                          HttpHeaders headers,
+                          long storedAt,
+                          long expiresAt,
+                          long retainUntil) {
+            this.key = key;
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+            this.status = status;
+            this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+            this.storedAt = storedAt;
+            this.expiresAt = expiresAt;
+            this.retainUntil = retainUntil;
+        }
+
+        private DiskEntry relocate(int newSegmentId, long newOffset) {
+            return new DiskEntry(key, newSegmentId, newOffset, length, status, headers, storedAt, expiresAt, retainUntil);
+        }
+
+        private DiskEntry refresh(HttpHeaders newHeaders, long newStoredAt, long newExpiresAt, long newRetainUntil) {
+            return new DiskEntry(
+                key,
+                segmentId,
+                offset,
+                length,
+                status,
+                newHeaders,
+                newStoredAt,
+                newExpiresAt,
+                newRetainUntil
+            );
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.dct.proxy.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * {@link CachedBody} stored in a segment file of the {@link DiskCacheStore} <p>
+ * The body is never loaded on heap to be served: {@link #writeTo} uses {@link java.nio.channels.FileChannel#transferTo},
+ * and {@link #getFile()}/{@link #getOffset()} allow the servlet container to send the file region itself (sendfile)
+ *
+ * @author thoaidc
+ */
+public class DiskCachedBody implements CachedBody {
+    private final DiskSegment segment;
+    private final long offset;
+    private final long length;
+
+    // Created by the store with one reference already retained for the reader
+    DiskCachedBody(DiskSegment segment, long offset, long length) {
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public Path getFile() {
+        return segment.getPath();
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = 0;
+
+        while (position < length) {
+            position += segment.getChannel().transferTo(offset + position, length - position, target);
+        }
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+
+        try {
+            while (buffer.hasRemaining()) {
+                if (segment.getChannel().read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of segment file: " + segment.getPath());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read cached body from disk", e);
+        }
+
+        return buffer.array();
+    }
+
+    @Override
+    public boolean retain() {
+        return segment.retain();
+    }
+
+    @Override
+    public void release() {
+        segment.release();
+    }
+}
@@ -0,0 +1,183 @@
+package com.dct.proxy.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One append-only segment file of the {@link DiskCacheStore} <p>
+ * The active segment is memory-mapped for writing, sealed segments are only read through their {@link FileChannel}.
+ * The store holds one reference, each reader holds another one while it transfers a body,
+ * the file is closed and deleted once the segment was dropped and the last reference is released
+ *
+ * @author thoaidc
+ */
+class DiskSegment {
+    private static final Logger log = LoggerFactory.getLogger(DiskSegment.class);
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    private MappedByteBuffer mapped;
+    private long writePosition;
+    private volatile boolean sealed;
+    private volatile boolean dropped;
+
+    private DiskSegment(int id, Path path, FileChannel channel, MappedByteBuffer mapped, boolean sealed) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.mapped = mapped;
+        this.sealed = sealed;
+    }
+
+    static DiskSegment create(int id, Path path, int sizeBytes) throws IOException {
+        FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+        return new DiskSegment(id, path, channel, mapped, false);
+    }
+
+    static DiskSegment openSealed(int id, Path path) throws IOException {
+        return new DiskSegment(id, path, FileChannel.open(path, StandardOpenOption.READ), null, true);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    void addLiveBytes(long delta) {
+        liveBytes.addAndGet(delta);
+    }
+
+    boolean isEmpty() {
+        return writePosition == 0;
+    }
+
+    boolean hasRoom(long length) {
+        return !sealed && writePosition + length <= mapped.capacity();
+    }
+
+    /**
+     * Append bytes to the mapped region, must be called by the single writer only
+     * @return the offset of the appended bytes in the file
+     */
+    long append(byte[] bytes) {
+        long offset = writePosition;
+        mapped.put((int) offset, bytes);
+        writePosition += bytes.length;
+        return offset;
+    }
+
+    /**
+     * Copy a body from another segment straight into the mapped region, without an intermediate heap buffer
+     * @return the offset of the copied bytes in this file
+     */
+    long appendFrom(DiskSegment source, long sourceOffset, long length) throws IOException {
+        long offset = writePosition;
+        ByteBuffer target = mapped.slice((int) offset, (int) length);
+
+        while (target.hasRemaining()) {
+            int read = source.channel.read(target, sourceOffset + target.position());
+
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment " + source.id);
+            }
+        }
+
+        writePosition += length;
+        return offset;
+    }
+
+    /**
+     * Flush the mapped region to disk, no more data is appended after this
+     */
+    void seal() {
+        if (sealed) {
+            return;
+        }
+
+        mapped.force();
+        mapped = null;
+        sealed = true;
+    }
+
+    boolean retain() {
+        int count;
+
+        do {
+            count = refCount.get();
+
+            if (count <= 0) {
+                return false;
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+
+        return true;
+    }
+
+    void release() {
+        if (refCount.decrementAndGet() == 0) {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Release the store reference, the file is deleted when no reader uses it anymore
+     */
+    void drop() {
+        dropped = true;
+        release();
+    }
+
+    /**
+     * Release the store reference on shutdown, the file is kept
+     */
+    void close() {
+        release();
+    }
+
+    private void closeQuietly() {
+        try {
+            channel.close();
+
+            if (dropped) {
+                Files.deleteIfExists(path);
+                log.debug("[DISK_CACHE] - Deleted segment file: {}", path);
+            }
+        } catch (IOException e) {
+            log.warn("[DISK_CACHE] - Could not close segment {}: {}", id, e.getMessage());
+        }
+    }
+}
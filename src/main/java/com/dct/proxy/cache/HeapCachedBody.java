@@ -0,0 +1,32 @@
+package com.dct.proxy.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * {@link CachedBody} backed by a byte array on the Java heap
+ *
+ * @author thoaidc
+ */
+public class HeapCachedBody implements CachedBody {
+    private final byte[] bytes;
+
+    public HeapCachedBody(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public long length() {
+        return bytes.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return bytes;
+    }
+}
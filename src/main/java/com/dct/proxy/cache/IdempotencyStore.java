@@ -0,0 +1,288 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.IdempotencyProps;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the response of requests sent with an {@code Idempotency-Key} header, so client retries are not sent again <p>
+ * The first request with a key is the original: it is forwarded and its response is kept for {@code window}
+ * (expire-after-write, bounded by total size). A duplicate received while the original is in flight waits for it,
+ * a later duplicate is answered from the store. Each key is bound to a fingerprint of the request,
+ * reusing a key for a different request is rejected. Upstream failures (5xx, errors) are not stored,
+ * so a retry after a failure is forwarded again
+ *
+ * @author thoaidc
+ */
+public class IdempotencyStore {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+    private static final int MAX_ATTEMPTS = 2;
+    // Fixed cost of an entry besides its body: key, fingerprint, headers
+    private static final int ENTRY_OVERHEAD_BYTES = 512;
+    private final Cache<String, StoredResponse> responses;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final String headerName;
+    private final Set<String> methods;
+    private final int maxKeyLength;
+    private final long maxEntrySizeBytes;
+    private final long maxWaitNanos;
+    private final LongAdder originals = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder inProgress = new LongAdder();
+
+    public enum Outcome {
+        ORIGINAL, // Forwarded to the upstream
+        REPLAYED, // Response of the original request
+        MISMATCH, // Key already used for a different request
+        IN_PROGRESS // The original did not complete within maxWait
+    }
+
+    public record Result(Outcome outcome, ResponseEntity<byte[]> response) {}
+
+    public IdempotencyStore(IdempotencyProps props) {
+        this.headerName = props.getHeaderName();
+        this.methods = props.getMethods().stream().map(m -> m.toUpperCase(Locale.ROOT)).collect(Collectors.toSet());
+        this.maxKeyLength = props.getMaxKeyLength();
+        this.maxEntrySizeBytes = props.getMaxEntrySizeBytes();
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(props.getMaxWait());
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(props.getMaxSizeBytes())
+                .weigher((String key, StoredResponse value) -> value.weight())
+                .expireAfterWrite(props.getWindow(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    /**
+     * Scope the client key to the request line and to the caller, keys of different endpoints or of different
+     * callers never collide, so a client cannot replay the stored response of another one
+     * @param principal digest of the caller credentials, see {@link ProxyResponseCache#resolvePrincipal},
+     *                  null for an anonymous caller
+     * @return the store key, or null if the request is not handled by the store
+     */
+    public String resolveKey(String method, String path, String idempotencyKey, String principal) {
+        if (!StringUtils.hasText(idempotencyKey) || Objects.isNull(method)) {
+            return null;
+        }
+
+        String normalizedMethod = method.toUpperCase(Locale.ROOT);
+
+        if (!methods.contains(normalizedMethod) || idempotencyKey.length() > maxKeyLength) {
+            return null;
+        }
+
+        // The principal is Base64 and the path has no spaces, the client key comes last as it may contain some
+        return normalizedMethod + " " + path + " " + Optional.ofNullable(principal).orElse("-") + " " + idempotencyKey.trim();
+    }
+
+    /**
+     * Run the original request for this key, or answer a duplicate from it
+     * @param key the store key, see {@link #resolveKey}
+     * @param fingerprint identifies the request content, see {@link #fingerprint}
+     * @param upstreamCall the call to perform for the original request
+     * @return the outcome and, unless the request is rejected, the response shared by all duplicates
+     */
+    public Result execute(String key, String fingerprint, Supplier<ResponseEntity<byte[]>> upstreamCall) {
+        long deadline = System.nanoTime() + maxWaitNanos;
+
+        for (int attempt = 1; ; attempt++) {
+            StoredResponse stored = responses.getIfPresent(key);
+
+            if (Objects.nonNull(stored)) {
+                return replay(key, stored.fingerprint(), fingerprint, stored.response());
+            }
+
+            InFlight flight = new InFlight(fingerprint);
+            InFlight existing = inFlight.putIfAbsent(key, flight);
+
+            if (Objects.isNull(existing)) {
+                // The original may have completed between the lookup and the registration
+                stored = responses.getIfPresent(key);
+
+                if (Objects.nonNull(stored)) {
+                    flight.future.complete(stored.response());
+                    inFlight.remove(key, flight);
+                    return replay(key, stored.fingerprint(), fingerprint, stored.response());
+                }
+
+                return new Result(Outcome.ORIGINAL, lead(key, flight, upstreamCall));
+            }
+
+            if (!existing.fingerprint.equals(fingerprint)) {
+                mismatches.increment();
+                return new Result(Outcome.MISMATCH, null);
+            }
+
+            try {
+                ResponseEntity<byte[]> response = existing.future.get(
+                    Math.max(0, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS
+                );
+                replays.increment();
+                log.debug("[IDEMPOTENCY_STORE] - Duplicate joined in-flight original: {}", key);
+                return new Result(Outcome.REPLAYED, response);
+            } catch (TimeoutException e) {
+                inProgress.increment();
+                return new Result(Outcome.IN_PROGRESS, null);
+            } catch (ExecutionException e) {
+                // The original failed, nothing was stored: one duplicate becomes the new original
+                if (attempt >= MAX_ATTEMPTS || System.nanoTime() >= deadline) {
+                    throw asRuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the original request", e);
+            }
+        }
+    }
+
+    private Result replay(String key, String storedFingerprint, String fingerprint, ResponseEntity<byte[]> response) {
+        if (!storedFingerprint.equals(fingerprint)) {
+            mismatches.increment();
+            log.warn("[IDEMPOTENCY_STORE] - Key reused for a different request: {}", key);
+            return new Result(Outcome.MISMATCH, null);
+        }
+
+        replays.increment();
+        log.debug("[IDEMPOTENCY_STORE] - Replayed stored response: {}", key);
+        return new Result(Outcome.REPLAYED, response);
+    }
+
+    private ResponseEntity<byte[]> lead(String key, InFlight flight, Supplier<ResponseEntity<byte[]>> upstreamCall) {
+        originals.increment();
+
+        try {
+            ResponseEntity<byte[]> response = upstreamCall.get();
+            long bodySize = Optional.ofNullable(response.getBody()).map(body -> body.length).orElse(0);
+
+            // Stored before the in-flight entry is removed, so a duplicate always finds one of them
+            if (!response.getStatusCode().is5xxServerError() && bodySize <= maxEntrySizeBytes) {
+                responses.put(key, new StoredResponse(flight.fingerprint, response));
+            }
+
+            flight.future.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            // Removed before the waiting duplicates wake up, so their retry does not join the failed original again
+            inFlight.remove(key, flight);
+            flight.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return a digest of the request method, URL and body
+     */
+    public static String fingerprint(String method, String url, byte[] body) {
+        MessageDigest digest = newDigest(method, url);
+        digest.update(body);
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * @return a digest of the request method, URL and body, the body is read to its end but not closed
+     */
+    public static String fingerprint(String method, String url, InputStream body) throws IOException {
+        MessageDigest digest = newDigest(method, url);
+        body.transferTo(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private static MessageDigest newDigest(String method, String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(method).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(String.valueOf(url).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static RuntimeException asRuntimeException(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+
+        if (cause instanceof Error error) {
+            throw error;
+        }
+
+        return new IllegalStateException(cause);
+    }
+
+    public long getStoredCount() {
+        return responses.estimatedSize();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getOriginalCount() {
+        return originals.sum();
+    }
+
+    public long getReplayCount() {
+        return replays.sum();
+    }
+
+    public long getMismatchCount() {
+        return mismatches.sum();
+    }
+
+    public long getInProgressCount() {
+        return inProgress.sum();
+    }
+
+    private static final class InFlight {
+        private final String fingerprint;
+        private final CompletableFuture<ResponseEntity<byte[]>> future = new CompletableFuture<>();
+
+        private InFlight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private record StoredResponse(String fingerprint, ResponseEntity<byte[]> response) {
+
+        private int weight() {
+            long bodySize = Optional.ofNullable(response.getBody()).map(body -> body.length).orElse(0);
+            return (int) Math.min(Integer.MAX_VALUE, bodySize + ENTRY_OVERHEAD_BYTES);
+        }
+    }
+}
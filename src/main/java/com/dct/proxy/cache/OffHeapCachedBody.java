@@ -0,0 +1,155 @@
+package com.dct.proxy.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link CachedBody} stored in direct {@link ByteBuffer} slabs from an {@link OffHeapSlabAllocator} <p>
+ * The cache owns one reference, every reader holds another one while writing.
+ * The slabs go back to the allocator when the last reference is released, exactly once: releasing more
+ * than retained throws instead of freeing them again. A body garbage collected with references left
+ * gives its slabs back and is counted in {@link OffHeapSlabAllocator#getLeakCount()}
+ *
+ * @author thoaidc
+ */
+public class OffHeapCachedBody implements CachedBody {
+    private static final Logger log = LoggerFactory.getLogger(OffHeapCachedBody.class);
+    private static final Cleaner CLEANER = Cleaner.create();
+    private final ByteBuffer[] slabs;
+    private final long length;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    private final Cleaner.Cleanable cleanable;
+
+    private OffHeapCachedBody(OffHeapSlabAllocator allocator, ByteBuffer[] slabs, long length) {
+        this.slabs = slabs;
+        this.length = length;
+        this.cleanable = CLEANER.register(this, new SlabRelease(allocator, slabs, refCount));
+    }
+
+    /**
+     * Copy the given bytes into newly acquired slabs
+     * @return the off-heap body, or null if the allocator budget is exhausted
+     */
+    public static OffHeapCachedBody copyOf(OffHeapSlabAllocator allocator, byte[] bytes) {
+        ByteBuffer[] slabs = allocator.acquire(bytes.length);
+
+        if (slabs == null) {
+            return null;
+        }
+
+        int offset = 0;
+
+        for (ByteBuffer slab : slabs) {
+            int count = Math.min(slab.capacity(), bytes.length - offset);
+            slab.put(bytes, offset, count).flip();
+            offset += count;
+        }
+
+        return new OffHeapCachedBody(allocator, slabs, bytes.length);
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Writes each slab through a channel view of the output stream,
+     * the servlet API has no {@link ByteBuffer} entry point so only a small transfer chunk is copied at a time
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+
+        for (ByteBuffer slab : slabs) {
+            ByteBuffer view = slab.duplicate();
+
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[(int) length];
+        int offset = 0;
+
+        for (ByteBuffer slab : slabs) {
+            ByteBuffer view = slab.duplicate();
+            int count = view.remaining();
+            view.get(bytes, offset, count);
+            offset += count;
+        }
+
+        return bytes;
+    }
+
+    @Override
+    public boolean retain() {
+        int count;
+
+        do {
+            count = refCount.get();
+
+            if (count <= 0) {
+                return false;
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+
+        return true;
+    }
+
+    @Override
+    public void release() {
+        int count;
+
+        do {
+            count = refCount.get();
+
+            if (count <= 0) {
+                throw new IllegalStateException("Off-heap body released more times than retained");
+            }
+        } while (!refCount.compareAndSet(count, count - 1));
+
+        if (count == 1) {
+            cleanable.clean();
+        }
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+
+    // Must not reference its body, the cleaner runs once the body is unreachable. Runs at most once
+    private static final class SlabRelease implements Runnable {
+        private final OffHeapSlabAllocator allocator;
+        private final ByteBuffer[] slabs;
+        private final AtomicInteger refCount;
+
+        private SlabRelease(OffHeapSlabAllocator allocator, ByteBuffer[] slabs, AtomicInteger refCount) {
+            this.allocator = allocator;
+            this.slabs = slabs;
+            this.refCount = refCount;
+        }
+
+        @Override
+        public void run() {
+            allocator.release(slabs);
+
+            if (refCount.get() > 0) {
+                allocator.countLeak();
+                log.error("[OFF_HEAP_ALLOCATOR] - Off-heap body garbage collected without being released, {} slabs recovered", slabs.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.dct.proxy.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out fixed-size direct {@link ByteBuffer} slabs within a byte budget <p>
+ * Slabs are allocated lazily and recycled through a free list instead of being left to the garbage collector,
+ * so the off-heap footprint never exceeds {@code maxSizeBytes} and stays stable under churn <p>
+ * Note: direct memory is limited by {@code -XX:MaxDirectMemorySize}, which must be at least the configured budget
+ *
+ * @author thoaidc
+ */
+public class OffHeapSlabAllocator {
+    private static final Logger log = LoggerFactory.getLogger(OffHeapSlabAllocator.class);
+    private final int slabSize;
+    private final int maxSlabs;
+    private final Queue<ByteBuffer> freeSlabs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger createdSlabs = new AtomicInteger();
+    private final AtomicInteger usedSlabs = new AtomicInteger();
+    private final LongAdder leaks = new LongAdder();
+
+    public OffHeapSlabAllocator(long maxSizeBytes, int slabSize) {
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.min(Integer.MAX_VALUE, maxSizeBytes / slabSize);
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public int slabsFor(long length) {
+        return (int) Math.max(1, (length + slabSize - 1) / slabSize);
+    }
+
+    /**
+     * Reserve enough slabs to hold {@code length} bytes
+     * @return the slabs, or null if the budget does not allow it
+     */
+    public ByteBuffer[] acquire(long length) {
+        int count = slabsFor(length);
+        int used;
+
+        do {
+            used = usedSlabs.get();
+
+            if (used + count > maxSlabs) {
+                return null;
+            }
+        } while (!usedSlabs.compareAndSet(used, used + count));
+
+        ByteBuffer[] slabs = new ByteBuffer[count];
+
+        for (int i = 0; i < count; i++) {
+            ByteBuffer slab = freeSlabs.poll();
+
+            if (slab == null) {
+                slab = ByteBuffer.allocateDirect(slabSize);
+                log.debug("[OFF_HEAP_ALLOCATOR] - Allocated new slab, total: {}", createdSlabs.incrementAndGet());
+            }
+
+            slabs[i] = slab.clear();
+        }
+
+        return slabs;
+    }
+
+    public void release(ByteBuffer[] slabs) {
+        for (ByteBuffer slab : slabs) {
+            freeSlabs.offer(slab);
+        }
+
+        usedSlabs.addAndGet(-slabs.length);
+    }
+
+    void countLeak() {
+        leaks.increment();
+    }
+
+    /**
+     * @return the bodies garbage collected without being released, their slabs were recovered
+     */
+    public long getLeakCount() {
+        return leaks.sum();
+    }
+
+    public int getUsedSlabCount() {
+        return usedSlabs.get();
+    }
+
+    public int getCreatedSlabCount() {
+        return createdSlabs.get();
+    }
+
+    public long getUsedBytes() {
+        return (long) usedSlabs.get() * slabSize;
+    }
+
+    public long getMaxSizeBytes() {
+        return (long) maxSlabs * slabSize;
+    }
+}
@@ -0,0 +1,261 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.common.JsonCodec;
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache shared by the proxy nodes listed in {@code app.response-cache.peer.nodes} <p>
+ * Each key is owned by one node, chosen by consistent hashing. On a local miss for a key owned by another node,
+ * the envelope is sent to the owner ({@value #PEER_PATH}), which answers from its cache or loads the response
+ * from the upstream once for the whole cluster. Only the owner stores the response, unless the key becomes hot here:
+ * it is then replicated locally for a short time. A peer that fails is skipped for {@code downTimeout},
+ * its keys go to the next node of the ring meanwhile <p>
+ * Peers authenticate with the shared {@value #PEER_TOKEN_HEADER} token, a node without a token answers no peer
+ *
+ * @author thoaidc
+ */
+public class PeerResponseCache implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(PeerResponseCache.class);
+    public static final String PEER_PATH = "/internal/cache/peer";
+    public static final String PEER_TOKEN_HEADER = "X-Peer-Token";
+    public static final String STORED_AT_HEADER = "X-Proxy-Peer-Stored-At";
+    public static final String EXPIRES_AT_HEADER = "X-Proxy-Peer-Expires-At";
+    // Headers of the peer exchange itself, never part of the cached response
+    private static final Set<String> EXCLUDED_HEADERS = Set.of(
+        "connection", "keep-alive", "transfer-encoding", "content-length", "date",
+        STORED_AT_HEADER.toLowerCase(Locale.ROOT), EXPIRES_AT_HEADER.toLowerCase(Locale.ROOT)
+    );
+    private final String self;
+    private final ConsistentHashRing ring;
+    private final HttpClient httpClient;
+    private final JsonCodec jsonCodec;
+    private final Duration timeout;
+    private final String token;
+    private final long downTimeout;
+    private final int replicateAfterHits;
+    private final long replicaMaxTtl;
+    private final Cache<ResponseCacheKey, AtomicInteger> remoteHits;
+    private final Map<String, Long> downUntil = new ConcurrentHashMap<>();
+    private final LongAdder peerHits = new LongAdder();
+    private final LongAdder peerFailures = new LongAdder();
+    private final LongAdder servedToPeers = new LongAdder();
+    private final LongAdder replicated = new LongAdder();
+    private volatile Function<ProxyAPIRequest, CachedResponse> loader;
+
+    public PeerResponseCache(ResponseCacheProps.PeerConfig config, JsonCodec jsonCodec) {
+        Set<String> nodes = new LinkedHashSet<>(config.getNodes());
+        nodes.add(config.getSelf());
+        this.self = config.getSelf();
+        this.ring = new ConsistentHashRing(nodes, config.getVirtualNodes());
+        this.jsonCodec = jsonCodec;
+        this.timeout = Duration.ofMillis(config.getTimeout());
+        this.token = config.getToken();
+        this.downTimeout = config.getDownTimeout();
+        this.replicateAfterHits = config.getReplicateAfterHits();
+        this.replicaMaxTtl = config.getReplicaMaxTtl();
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(config.getConnectTimeout()))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        this.remoteHits = Caffeine.newBuilder()
+                .maximumSize(config.getMaxTrackedKeys())
+                .expireAfterWrite(config.getHotWindow(), TimeUnit.MILLISECONDS)
+                .build();
+        log.info("[PEER_CACHE] - Node {} joined a ring of {} nodes", self, nodes.size());
+    }
+
+    /**
+     * Set the callback that answers peers for the keys owned by this node, from the local cache or the upstream
+     */
+    public void setLoader(Function<ProxyAPIRequest, CachedResponse> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @return the node owning this key among the available ones, this node if all peers are down
+     */
+    public String ownerOf(ResponseCacheKey key) {
+        long now = System.currentTimeMillis();
+        String owner = ring.nodeFor(key.toExternalForm(), node -> self.equals(node) || !isDown(node, now));
+        return Optional.ofNullable(owner).orElse(self);
+    }
+
+    public boolean isOwnedLocally(ResponseCacheKey key) {
+        return self.equals(ownerOf(key));
+    }
+
+    /**
+     * Ask the owning peer for the response of this request, a peer that cannot be reached is skipped for a while
+     * @return the response of the owner, not fresh if the owner did not cache it, or null if the peer failed
+     */
+    public CachedResponse fetchFromOwner(ResponseCacheKey key, ProxyAPIRequest proxyAPIRequest) {
+        String owner = ownerOf(key);
+
+        if (self.equals(owner)) {
+            return null;
+        }
+
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(owner + PEER_PATH))
+                    .timeout(timeout)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(jsonCodec.writeProxyAPIRequest(proxyAPIRequest)));
+
+            if (StringUtils.hasText(token)) {
+                request.header(PEER_TOKEN_HEADER, token);
+            }
+
+            HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            Optional<String> storedAt = response.headers().firstValue(STORED_AT_HEADER);
+
+            // Only answers of the peer handler carry the metadata, the peer is reachable but could not load the response
+            if (storedAt.isEmpty()) {
+                peerFailures.increment();
+                log.warn("[PEER_CACHE] - Peer {} could not answer, status: {}", owner, response.statusCode());
+                return null;
+            }
+
+            peerHits.increment();
+            return toCachedResponse(response, Long.parseLong(storedAt.get()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            markDown(owner, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Count a response obtained from a peer
+     * @return true if the key is hot enough here to be replicated in the local cache
+     */
+    public boolean recordRemoteHit(ResponseCacheKey key) {
+        int hits = remoteHits.get(key, k -> new AtomicInteger()).incrementAndGet();
+
+        if (hits >= replicateAfterHits) {
+            remoteHits.invalidate(key);
+            replicated.increment();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Replicas expire early, so a purge on the owner reaches every node within this bound
+     */
+    public long getReplicaExpiresAt(CachedResponse response) {
+        return Math.min(response.getExpiresAt(), System.currentTimeMillis() + replicaMaxTtl);
+    }
+
+    /**
+     * Answer a peer for a key owned by this node
+     * @return the response, retained, fresh if it is cached here
+     */
+    public CachedResponse load(ProxyAPIRequest proxyAPIRequest) {
+        Function<ProxyAPIRequest, CachedResponse> currentLoader = loader;
+
+        if (Objects.isNull(currentLoader)) {
+            throw new IllegalStateException("Peer cache loader is not ready");
+        }
+
+        servedToPeers.increment();
+        return currentLoader.apply(proxyAPIRequest);
+    }
+
+    /**
+     * @return true if the value is the shared token, always false when no token is configured
+     */
+    public boolean isValidToken(String value) {
+        return StringUtils.hasText(token)
+                && StringUtils.hasText(value)
+                && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getPeerHitCount() {
+        return peerHits.sum();
+    }
+
+    public long getPeerFailureCount() {
+        return peerFailures.sum();
+    }
+
+    public long getServedToPeersCount() {
+        return servedToPeers.sum();
+    }
+
+    public long getReplicatedCount() {
+        return replicated.sum();
+    }
+
+    private CachedResponse toCachedResponse(HttpResponse<byte[]> response, long storedAt) {
+        HttpHeaders headers = new HttpHeaders();
+        response.headers().map().forEach((name, values) -> {
+            if (!EXCLUDED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                headers.put(name, values);
+            }
+        });
+
+        long expiresAt = response.headers()
+                .firstValue(EXPIRES_AT_HEADER)
+                .map(Long::parseLong)
+                .orElse(storedAt);
+        HeapCachedBody body = new HeapCachedBody(response.body());
+        return new CachedResponse(response.statusCode(), headers, body, storedAt, expiresAt);
+    }
+
+    private boolean isDown(String node, long now) {
+        Long until = downUntil.get(node);
+
+        if (Objects.isNull(until)) {
+            return false;
+        }
+
+        if (until <= now) {
+            downUntil.remove(node, until);
+            return false;
+        }
+
+        return true;
+    }
+
+    private void markDown(String node, String reason) {
+        peerFailures.increment();
+        downUntil.put(node, System.currentTimeMillis() + downTimeout);
+        log.warn("[PEER_CACHE] - Peer {} failed, skip it for {}ms: {}", node, downTimeout, reason);
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+}
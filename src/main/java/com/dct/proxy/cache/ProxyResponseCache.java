@@ -0,0 +1,742 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.constants.ContentCoding;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.NonNull;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * In-memory cache of upstream responses for idempotent proxied requests <p>
+ * Backed by a Caffeine cache bounded by {@link ResponseCacheProps#getMaxSizeBytes()}, which uses W-TinyLFU
+ * admission and eviction, so one-hit wonders cannot flush frequently requested entries.
+ * Each entry expires at the end of its own freshness lifetime, see {@link ResponseCachePolicy} <p>
+ * Responses above the heap entry limit can go to an optional off-heap tier: the body lives in direct memory slabs
+ * with their own byte budget and eviction, only the key and metadata stay on heap <p>
+ * An optional disk tier ({@link DiskCacheStore}) receives a write-through copy of every cacheable response,
+ * it survives restarts and is looked up on memory misses <p>
+ * When purging is enabled, stored keys are indexed by path and tag ({@link ResponseCacheIndex}),
+ * so entries can be invalidated by URL, path prefix or tag without scanning the tiers <p>
+ * Hit, miss and eviction statistics are recorded and bound to Micrometer by the auto configuration
+ *
+ * @author thoaidc
+ */
+public class ProxyResponseCache implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ProxyResponseCache.class);
+    public static final String CACHE_NAME = "proxy-response-cache";
+    public static final String OFF_HEAP_CACHE_NAME = "proxy-response-cache-off-heap";
+    public static final String CACHE_STATUS_HEADER = "X-Proxy-Cache";
+    // Upper bound of evictions when making room for one off-heap entry, slabs still held by readers are not reusable
+    private static final int MAX_OFF_HEAP_EVICTIONS = 64;
+    // Connection-level headers of the upstream exchange, never replayed from the cache
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+        "connection", "keep-alive", "proxy-connection", "transfer-encoding", "te", "trailer", "upgrade"
+    );
+    // Request headers identifying the client, see ResponseCacheKey#getPrincipal
+    private static final List<String> CREDENTIAL_HEADERS = List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE);
+    private final ResponseCachePolicy policy;
+    private final Cache<ResponseCacheKey, CachedResponse> cache;
+    private final OffHeapSlabAllocator offHeapAllocator;
+    private final Cache<ResponseCacheKey, CachedResponse> offHeapCache;
+    private final long offHeapMaxEntrySizeBytes;
+    private final DiskCacheStore diskStore;
+    private final ResponseCacheIndex index;
+    private final List<String> tagHeaders;
+
+    public ProxyResponseCache(ResponseCacheProps props) {
+        this.policy = new ResponseCachePolicy(props);
+        ResponseCacheProps.PurgeConfig purgeConfig = props.getPurge();
+        this.index = ActivateStatus.ENABLED.equals(purgeConfig.getActivate()) ? new ResponseCacheIndex() : null;
+        this.tagHeaders = purgeConfig.getTagHeaders();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(props.getMaxSizeBytes())
+                .weigher((ResponseCacheKey key, CachedResponse value) -> value.weight())
+                .expireAfter(new CachedResponseExpiry())
+                .removalListener((ResponseCacheKey key, CachedResponse value, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        unindexIfAbsent(key);
+                    }
+                })
+                .recordStats()
+                .build();
+
+        ResponseCacheProps.OffHeapConfig offHeapConfig = props.getOffHeap();
+        this.offHeapMaxEntrySizeBytes = offHeapConfig.getMaxEntrySizeBytes();
+
+        if (ActivateStatus.ENABLED.equals(offHeapConfig.getActivate())) {
+            this.offHeapAllocator = new OffHeapSlabAllocator(
+                offHeapConfig.getMaxSizeBytes(),
+                offHeapConfig.getSlabSizeBytes()
+            );
+            // Removal runs on the calling thread, so slabs of evicted entries are recycled before the next allocation
+            this.offHeapCache = Caffeine.newBuilder()
+                    .maximumWeight(offHeapAllocator.getMaxSizeBytes())
+                    .weigher((ResponseCacheKey key, CachedResponse value) -> offHeapWeight(value))
+                    .expireAfter(new CachedResponseExpiry())
+                    .executor(Runnable::run)
+                    .removalListener((ResponseCacheKey key, CachedResponse value, RemovalCause cause) -> {
+                        if (Objects.nonNull(value)) {
+                            value.getBody().release();
+                        }
+
+                        if (cause.wasEvicted()) {
+                            unindexIfAbsent(key);
+                        }
+                    })
+                    .recordStats()
+                    .build();
+        } else {
+            this.offHeapAllocator = null;
+            this.offHeapCache = null;
+        }
+
+        ResponseCacheProps.DiskConfig diskConfig = props.getDisk();
+
+        if (ActivateStatus.ENABLED.equals(diskConfig.getActivate())) {
+            try {
+                this.diskStore = DiskCacheStore.open(diskConfig);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to open disk cache in: " + diskConfig.getDirectory(), e);
+            }
+        } else {
+            this.diskStore = null;
+        }
+
+        if (Objects.nonNull(index) && Objects.nonNull(diskStore)) {
+            diskStore.forEach((key, headers) -> index.add(key, resolveTags(headers)));
+            diskStore.setEvictionListener(this::unindexIfAbsent);
+            log.debug("[RESPONSE_CACHE] - Indexed {} entries reloaded from disk", index.size());
+        }
+    }
+
+    public Cache<ResponseCacheKey, CachedResponse> getNativeCache() {
+        return cache;
+    }
+
+    /**
+     * @return the off-heap tier, or null if it is disabled
+     */
+    public Cache<ResponseCacheKey, CachedResponse> getOffHeapCache() {
+        return offHeapCache;
+    }
+
+    public OffHeapSlabAllocator getOffHeapAllocator() {
+        return offHeapAllocator;
+    }
+
+    /**
+     * @return the disk tier, or null if it is disabled
+     */
+    public DiskCacheStore getDiskStore() {
+        return diskStore;
+    }
+
+    public ResponseCachePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the purge index, or null if purging is disabled
+     */
+    public ResponseCacheIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Build the cache key of a proxied request <p>
+     * A request carrying {@code Authorization} or {@code Cookie} gets a credentialed key: it only reads and stores
+     * responses the upstream marks as shareable, see {@link ResponseCachePolicy#isShareable}
+     *
+     * @param request the envelope that would be sent to the remote proxy server
+     * @return the key, or null if the request method is not cacheable
+     */
+    public ResponseCacheKey buildKey(ProxyAPIRequest request) {
+        if (!policy.isCacheableMethod(request.getMethod()) || !StringUtils.hasText(request.getUrl())) {
+            return null;
+        }
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        request.getHeaders().forEach(requestHeaders::set);
+        UriComponents uri = UriComponentsBuilder.fromUriString(request.getUrl()).build();
+
+        return new ResponseCacheKey(
+            request.getMethod().toUpperCase(Locale.ROOT),
+            normalizeUrl(uri),
+            uri.getPath(),
+            policy.getVaryHeaders()
+                .stream()
+                .map(name -> Optional.ofNullable(requestHeaders.getFirst(name)).orElse(""))
+                .toList(),
+            resolvePrincipal(requestHeaders::getFirst)
+        );
+    }
+
+    /**
+     * Digest of the credentials ({@code Authorization}, {@code Cookie}) of a request, so the raw values are not kept
+     * in a key. Shared with the {@link IdempotencyStore}, which scopes client keys to the caller with it
+     * @param requestHeaders the first value of a request header by name
+     * @return the principal, or null if the request carries no credentials
+     */
+    public static String resolvePrincipal(Function<String, String> requestHeaders) {
+        if (CREDENTIAL_HEADERS.stream().map(requestHeaders).allMatch(Objects::isNull)) {
+            return null;
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (String name : CREDENTIAL_HEADERS) {
+                digest.update(String.valueOf(requestHeaders.apply(name)).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Look up a fresh response in the heap tier, then in the off-heap tier, then on disk <p>
+     * The returned body is retained: the caller must call {@link CachedBody#release()} once it has been written
+     *
+     * @return the fresh cached response for this key, or null on miss
+     */
+    public CachedResponse get(ResponseCacheKey key) {
+        CachedResponse cachedResponse = lookup(key);
+
+        if (Objects.nonNull(cachedResponse) && !cachedResponse.isFresh(System.currentTimeMillis())) {
+            cachedResponse.getBody().release();
+            return null;
+        }
+
+        return cachedResponse;
+    }
+
+    /**
+     * Same as {@link #get}, but also returns expired responses still retained for revalidation,
+     * check {@link CachedResponse#isFresh} before serving it <p>
+     * A credentialed key misses responses that are not shareable with credentials <p>
+     * The returned body is retained: the caller must call {@link CachedBody#release()} once it has been written
+     *
+     * @return the fresh or revalidatable cached response for this key, or null on miss
+     */
+    public CachedResponse lookup(ResponseCacheKey key) {
+        CachedResponse cachedResponse = lookupStored(key);
+
+        if (Objects.nonNull(cachedResponse)
+                && key.isCredentialed()
+                && !policy.isShareable(cachedResponse.getHeaders(), true)) {
+            cachedResponse.getBody().release();
+            log.debug("[RESPONSE_CACHE] - Cache miss, response not shareable with credentials: {}", key);
+            return null;
+        }
+
+        return cachedResponse;
+    }
+
+    private CachedResponse lookupStored(ResponseCacheKey key) {
+        long now = System.currentTimeMillis();
+        CachedResponse cachedResponse = cache.getIfPresent(key);
+
+        if (Objects.isNull(cachedResponse) && Objects.nonNull(offHeapCache)) {
+            cachedResponse = offHeapCache.getIfPresent(key);
+        }
+
+        // An off-heap body evicted concurrently cannot be retained anymore, consider it as a miss
+        if (Objects.nonNull(cachedResponse) && cachedResponse.isRetained(now) && cachedResponse.getBody().retain()) {
+            log.debug("[RESPONSE_CACHE] - Cache hit: {}", key);
+            return cachedResponse;
+        }
+
+        if (Objects.nonNull(diskStore)) {
+            return lookupOnDisk(key, now);
+        }
+
+        log.debug("[RESPONSE_CACHE] - Cache miss: {}", key);
+        return null;
+    }
+
+    // The disk store returns a retained body
+    private CachedResponse lookupOnDisk(ResponseCacheKey key, long now) {
+        CachedResponse diskResponse = diskStore.get(key);
+
+        if (Objects.isNull(diskResponse)) {
+            log.debug("[RESPONSE_CACHE] - Cache miss: {}", key);
+            return null;
+        }
+
+        if (!diskResponse.isRetained(now)) {
+            diskResponse.getBody().release();
+            log.debug("[RESPONSE_CACHE] - Cache miss, disk entry expired: {}", key);
+            return null;
+        }
+
+        // Small bodies are promoted back to the heap tier so following hits avoid the disk
+        if (diskResponse.getBody().length() <= policy.getMaxEntrySizeBytes()) {
+            HeapCachedBody heapBody = new HeapCachedBody(diskResponse.getBody().toByteArray());
+            cache.put(key, new CachedResponse(
+                diskResponse.getStatus(),
+                diskResponse.getHeaders(),
+                heapBody,
+                diskResponse.getStoredAt(),
+                diskResponse.getExpiresAt(),
+                diskResponse.getRetainUntil()
+            ));
+        }
+
+        log.debug("[RESPONSE_CACHE] - Cache hit on disk: {}", key);
+        return diskResponse;
+    }
+
+    /**
+     * Store an upstream response if the cache policy allows it
+     */
+    public void put(ResponseCacheKey key, ResponseEntity<byte[]> response) {
+        long now = System.currentTimeMillis();
+        byte[] body = Optional.ofNullable(response.getBody()).orElse(BufferPool.EMPTY);
+        int status = response.getStatusCode().value();
+        long ttl = policy.resolveTtl(key.getPath(), status, response.getHeaders(), now);
+        long expiresAt = now + ttl;
+        long retainUntil = policy.resolveRetainUntil(status, response.getHeaders(), now, expiresAt);
+
+        // Responses that must be revalidated before each use are only worth storing with a validator
+        if (ttl < 0 || retainUntil <= now || !policy.isShareable(response.getHeaders(), key.isCredentialed())) {
+            log.debug("[RESPONSE_CACHE] - Response not cacheable: {}", key);
+            return;
+        }
+
+        HttpHeaders headers = copyStorableHeaders(response.getHeaders(), new HttpHeaders());
+        boolean stored = storeInMemory(key, status, headers, body, now, expiresAt, retainUntil);
+
+        if (Objects.nonNull(diskStore) && body.length <= diskStore.getMaxEntrySizeBytes()) {
+            diskStore.put(key, status, headers, body, now, expiresAt, retainUntil);
+            stored = true;
+        }
+
+        if (!stored) {
+            log.debug("[RESPONSE_CACHE] - Response too large to cache ({} bytes): {}", body.length, key);
+            return;
+        }
+
+        // Indexed after it is stored, so a concurrent eviction of the previous version cannot unindex it
+        if (Objects.nonNull(index)) {
+            index.add(key, resolveTags(headers));
+        }
+    }
+
+    /**
+     * Keep a local copy of a response owned by another node, in memory only and until {@code expiresAt}
+     * @param key the cache key
+     * @param response the response of the owning peer
+     * @param expiresAt the end of the local freshness lifetime, at most the one of the owner
+     */
+    public void putReplica(ResponseCacheKey key, CachedResponse response, long expiresAt) {
+        long now = System.currentTimeMillis();
+
+        // The owner answers a credentialed request with responses it would not store as well
+        if (expiresAt <= now || !policy.isShareable(response.getHeaders(), key.isCredentialed())) {
+            return;
+        }
+
+        byte[] body = response.getBody().toByteArray();
+        boolean stored = storeInMemory(
+            key,
+            response.getStatus(),
+            response.getHeaders(),
+            body,
+            response.getStoredAt(),
+            expiresAt,
+            expiresAt
+        );
+
+        if (stored && Objects.nonNull(index)) {
+            index.add(key, resolveTags(response.getHeaders()));
+        }
+    }
+
+    /**
+     * Refresh a stored response after the upstream answered 304 to a conditional request (RFC 9111, section 4.3.4) <p>
+     * The headers of the 304 response replace the stored ones and the freshness lifetime is computed again,
+     * the body is kept as is. Nothing changes if the entry was replaced in the meantime
+     *
+     * @param key the cache key
+     * @param stale the stored response whose validators were sent, retained by the caller
+     * @param notModifiedHeaders the headers of the 304 response
+     */
+    public void revalidated(ResponseCacheKey key, CachedResponse stale, HttpHeaders notModifiedHeaders) {
+        long now = System.currentTimeMillis();
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(stale.getHeaders());
+        HttpHeaders updatedHeaders = copyStorableHeaders(notModifiedHeaders, new HttpHeaders());
+        updatedHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+        headers.putAll(updatedHeaders);
+        long ttl = policy.resolveTtl(key.getPath(), stale.getStatus(), headers, now);
+
+        if (ttl < 0) {
+            invalidate(key);
+            return;
+        }
+
+        long expiresAt = now + ttl;
+        long retainUntil = policy.resolveRetainUntil(stale.getStatus(), headers, now, expiresAt);
+        CachedBody body = stale.getBody();
+        CachedResponse refreshed = new CachedResponse(stale.getStatus(), headers, body, now, expiresAt, retainUntil);
+
+        if (body.isOffHeap()) {
+            // The new entry holds its own reference, the replaced one is released by the removal listener
+            if (body.retain() && !offHeapCache.asMap().replace(key, stale, refreshed)) {
+                body.release();
+            }
+        } else if (!(body instanceof DiskCachedBody)) {
+            cache.asMap().replace(key, stale, refreshed);
+        }
+
+        if (Objects.nonNull(diskStore)) {
+            diskStore.refresh(key, stale.getStoredAt(), headers, now, expiresAt, retainUntil);
+        }
+
+        // The 304 may carry new tags
+        if (Objects.nonNull(index) && isCached(key)) {
+            index.add(key, resolveTags(headers));
+        }
+
+        log.debug("[RESPONSE_CACHE] - Revalidated response for {}ms: {}", ttl, key);
+    }
+
+    /**
+     * Body of a stored response in another content coding, kept next to the response: in the heap tier,
+     * or off-heap when it is larger than a heap entry <p>
+     * A copy belongs to one version of the response, it is ignored once the response is replaced or revalidated.
+     * The returned body is retained: the caller must call {@link CachedBody#release()} once it has been written
+     *
+     * @param key the key of the response
+     * @param original the stored response, as returned by {@link #lookup}
+     * @param coding the coding of the copy
+     * @return the encoded body, or null if no copy is stored for this version of the response
+     */
+    public CachedBody getVariant(ResponseCacheKey key, CachedResponse original, ContentCoding coding) {
+        // Not counted in the hit and miss statistics of the cache
+        ResponseCacheKey variantKey = key.withContentCoding(coding);
+        CachedResponse variant = cache.asMap().get(variantKey);
+
+        if (Objects.isNull(variant) && Objects.nonNull(offHeapCache)) {
+            variant = offHeapCache.asMap().get(variantKey);
+        }
+
+        if (Objects.isNull(variant) || variant.getStoredAt() != original.getStoredAt() || !variant.getBody().retain()) {
+            return null;
+        }
+
+        return variant.getBody();
+    }
+
+    /**
+     * Keep the body of a stored response in another content coding, see {@link #getVariant}
+     */
+    public void putVariant(ResponseCacheKey key, CachedResponse original, ContentCoding coding, byte[] body) {
+        ResponseCacheKey variantKey = key.withContentCoding(coding);
+        CachedBody variantBody = null;
+
+        if (body.length <= policy.getMaxEntrySizeBytes()) {
+            variantBody = new HeapCachedBody(body);
+        } else if (Objects.nonNull(offHeapCache) && body.length <= offHeapMaxEntrySizeBytes) {
+            variantBody = allocateOffHeap(body);
+        }
+
+        if (Objects.isNull(variantBody)) {
+            return;
+        }
+
+        CachedResponse variant = new CachedResponse(
+            original.getStatus(),
+            original.getHeaders(),
+            variantBody,
+            original.getStoredAt(),
+            original.getExpiresAt(),
+            original.getRetainUntil()
+        );
+
+        if (variantBody.isOffHeap()) {
+            offHeapCache.put(variantKey, variant);
+            cache.invalidate(variantKey);
+        } else {
+            cache.put(variantKey, variant);
+
+            if (Objects.nonNull(offHeapCache)) {
+                offHeapCache.invalidate(variantKey);
+            }
+        }
+    }
+
+    private boolean storeInMemory(ResponseCacheKey key,
+                                  int status,
+                                  HttpHeaders headers,
+                                  byte[] body,
+                                  long now,
+                                  long expiresAt,
+                                  long retainUntil) {
+        if (body.length <= policy.getMaxEntrySizeBytes()) {
+            HeapCachedBody heapBody = new HeapCachedBody(body);
+            cache.put(key, new CachedResponse(status, headers, heapBody, now, expiresAt, retainUntil));
+            invalidateOffHeap(key);
+            log.debug("[RESPONSE_CACHE] - Stored response for {}ms: {}", expiresAt - now, key);
+            return true;
+        }
+
+        if (Objects.nonNull(offHeapCache) && body.length <= offHeapMaxEntrySizeBytes) {
+            OffHeapCachedBody offHeapBody = allocateOffHeap(body);
+
+            if (Objects.nonNull(offHeapBody)) {
+                offHeapCache.put(key, new CachedResponse(status, headers, offHeapBody, now, expiresAt, retainUntil));
+                cache.invalidate(key);
+                log.debug(
+                    "[RESPONSE_CACHE] - Stored response off-heap for {}ms ({} bytes): {}",
+                    expiresAt - now,
+                    body.length,
+                    key
+                );
+                return true;
+            }
+        }
+
+        // A previous smaller version must not shadow the new one on disk
+        invalidate(key, false);
+        return false;
+    }
+
+    // Copy end-to-end headers only, hop-by-hop headers belong to the upstream connection.
+    // Cookies set by a 304 belong to the client that revalidated, they are not merged into the stored response
+    private static HttpHeaders copyStorableHeaders(HttpHeaders source, HttpHeaders target) {
+        source.forEach((name, values) -> {
+            if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase(Locale.ROOT))
+                    && !HttpHeaders.SET_COOKIE.equalsIgnoreCase(name)) {
+                target.put(name, values);
+            }
+        });
+
+        return target;
+    }
+
+    public void invalidate(ResponseCacheKey key) {
+        invalidate(key, true);
+
+        if (Objects.nonNull(index)) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Invalidate every variant (method, vary values) cached for this URL
+     * @param url the absolute upstream URL, normalized like cache keys
+     * @return the number of invalidated entries
+     */
+    public int purgeUrl(String url) {
+        UriComponents uri = UriComponentsBuilder.fromUriString(url).build();
+        return purge(requireIndex().findByUrl(uri.getPath(), normalizeUrl(uri)));
+    }
+
+    /**
+     * Invalidate every entry whose upstream path is the prefix or below it, see {@link ResponseCacheIndex#findByPathPrefix}
+     * @return the number of invalidated entries
+     */
+    public int purgePathPrefix(String pathPrefix) {
+        return purge(requireIndex().findByPathPrefix(pathPrefix));
+    }
+
+    /**
+     * Invalidate every entry tagged with this value by the upstream, see {@code app.response-cache.purge.tag-headers}
+     * @return the number of invalidated entries
+     */
+    public int purgeTag(String tag) {
+        return purge(requireIndex().findByTag(tag));
+    }
+
+    private int purge(List<ResponseCacheKey> keys) {
+        int purged = 0;
+
+        for (ResponseCacheKey key : keys) {
+            if (isCached(key)) {
+                purged++;
+            }
+
+            invalidate(key);
+        }
+
+        return purged;
+    }
+
+    private ResponseCacheIndex requireIndex() {
+        if (Objects.isNull(index)) {
+            throw new IllegalStateException("Response cache purge is disabled");
+        }
+
+        return index;
+    }
+
+    private boolean isCached(ResponseCacheKey key) {
+        return cache.asMap().containsKey(key)
+                || (Objects.nonNull(offHeapCache) && offHeapCache.asMap().containsKey(key))
+                || (Objects.nonNull(diskStore) && diskStore.contains(key));
+    }
+
+    private void unindexIfAbsent(ResponseCacheKey key) {
+        if (Objects.nonNull(index)) {
+            index.removeIfAbsent(key, this::isCached);
+        }
+    }
+
+    // Tag headers hold a list of tags separated by spaces or commas, like Surrogate-Key and Cache-Tag
+    private List<String> resolveTags(HttpHeaders headers) {
+        return tagHeaders.stream()
+                .map(headers::get)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .flatMap(value -> Arrays.stream(value.split("[\\s,]+")))
+                .filter(StringUtils::hasText)
+                .distinct()
+                .toList();
+    }
+
+    private void invalidate(ResponseCacheKey key, boolean includeDisk) {
+        cache.invalidate(key);
+        invalidateOffHeap(key);
+
+        for (ContentCoding coding : ContentCoding.values()) {
+            cache.invalidate(key.withContentCoding(coding));
+            invalidateOffHeap(key.withContentCoding(coding));
+        }
+
+        if (includeDisk && Objects.nonNull(diskStore)) {
+            diskStore.remove(key);
+        }
+    }
+
+    /**
+     * Seal the disk tier so its content is reloaded on next startup
+     */
+    @Override
+    public void close() {
+        if (Objects.nonNull(diskStore)) {
+            diskStore.close();
+        }
+    }
+
+    private void invalidateOffHeap(ResponseCacheKey key) {
+        if (Objects.nonNull(offHeapCache)) {
+            offHeapCache.invalidate(key);
+        }
+    }
+
+    /**
+     * Copy the body into off-heap slabs, evicting the coldest off-heap entries while the budget is exhausted
+     */
+    private OffHeapCachedBody allocateOffHeap(byte[] body) {
+        OffHeapCachedBody offHeapBody = OffHeapCachedBody.copyOf(offHeapAllocator, body);
+
+        for (int attempt = 0; Objects.isNull(offHeapBody) && attempt < MAX_OFF_HEAP_EVICTIONS; attempt++) {
+            offHeapCache.policy()
+                .eviction()
+                .ifPresent(eviction -> eviction.coldest(1).keySet().forEach(offHeapCache::invalidate));
+            offHeapCache.cleanUp();
+            offHeapBody = OffHeapCachedBody.copyOf(offHeapAllocator, body);
+        }
+
+        return offHeapBody;
+    }
+
+    private int offHeapWeight(CachedResponse value) {
+        long slabs = offHeapAllocator.slabsFor(value.getBody().length());
+        return (int) Math.min(Integer.MAX_VALUE, slabs * offHeapAllocator.getSlabSize());
+    }
+
+    // Lower-case scheme and host, drop default ports and fragments, sort query parameters
+    private static String normalizeUrl(UriComponents uri) {
+        String scheme = Optional.ofNullable(uri.getScheme()).map(s -> s.toLowerCase(Locale.ROOT)).orElse("");
+        String host = Optional.ofNullable(uri.getHost()).map(h -> h.toLowerCase(Locale.ROOT)).orElse("");
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || ("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443);
+        StringBuilder url = new StringBuilder(scheme).append("://").append(host);
+
+        if (!defaultPort) {
+            url.append(':').append(port);
+        }
+
+        url.append(StringUtils.hasText(uri.getPath()) ? uri.getPath() : "/");
+        Map<String, List<String>> sortedParams = new TreeMap<>(uri.getQueryParams());
+
+        if (!sortedParams.isEmpty()) {
+            StringBuilder query = new StringBuilder();
+
+            sortedParams.forEach((name, values) -> values.stream().sorted(Comparator.nullsFirst(String::compareTo))
+                .forEach(value -> {
+                    query.append(query.isEmpty() ? '?' : '&').append(name);
+
+                    if (Objects.nonNull(value)) {
+                        query.append('=').append(value);
+                    }
+                }));
+
+            url.append(query);
+        }
+
+        return url.toString();
+    }
+
+    /**
+     * Expire each entry at the end of its own retention, which is its freshness lifetime unless it can be revalidated
+     */
+    private static class CachedResponseExpiry implements Expiry<ResponseCacheKey, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(@NonNull ResponseCacheKey key, @NonNull CachedResponse value, long currentTime) {
+            long remaining = value.getRetainUntil() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+        }
+
+        @Override
+        public long expireAfterUpdate(@NonNull ResponseCacheKey key,
+                                      @NonNull CachedResponse value,
+                                      long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(@NonNull ResponseCacheKey key,
+                                    @NonNull CachedResponse value,
+                                    long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
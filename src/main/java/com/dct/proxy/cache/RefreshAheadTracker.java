@@ -0,0 +1,147 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Refresh-ahead of hot cache entries <p>
+ * Cache hits are counted per key with an exponential decay (halved at every tick), so the count reflects
+ * the recent request rate. At every tick, entries that are hot enough and close to the end of their freshness
+ * lifetime are handed to the refresher, hottest first and at most {@code maxRefreshesPerTick} of them.
+ * The refresher runs the actual call on the bounded {@link CacheRefreshExecutor}
+ * and skips it while the upstream circuit is open
+ *
+ * @author thoaidc
+ */
+public class RefreshAheadTracker implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RefreshAheadTracker.class);
+    private final Cache<ResponseCacheKey, HotKey> hotKeys;
+    private final ScheduledExecutorService scheduler;
+    private final double aheadRatio;
+    private final long minHits;
+    private final int maxRefreshesPerTick;
+    private final LongAdder triggered = new LongAdder();
+    private volatile BiConsumer<ResponseCacheKey, ProxyAPIRequest> refresher;
+
+    public RefreshAheadTracker(ResponseCacheProps.RefreshAheadConfig config) {
+        this.aheadRatio = config.getAheadRatio();
+        this.minHits = config.getMinHits();
+        this.maxRefreshesPerTick = config.getMaxRefreshesPerTick();
+        this.hotKeys = Caffeine.newBuilder()
+                .maximumSize(config.getMaxTrackedKeys())
+                .expireAfterAccess(config.getIdleTimeout(), TimeUnit.MILLISECONDS)
+                .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-refresh-ahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = config.getInterval();
+        this.scheduler.scheduleWithFixedDelay(this::tickQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Set the callback that refreshes one entry, nothing is refreshed until it is set
+     */
+    public void setRefresher(BiConsumer<ResponseCacheKey, ProxyAPIRequest> refresher) {
+        this.refresher = refresher;
+    }
+
+    /**
+     * Count a cache hit, the request is kept to replay it on refresh. Hits of requests carrying credentials
+     * are not tracked, their credentials must not outlive the request
+     */
+    public void recordHit(ResponseCacheKey key, ProxyAPIRequest request, CachedResponse cachedResponse) {
+        if (key.isCredentialed()) {
+            return;
+        }
+
+        HotKey hotKey = hotKeys.get(key, k -> new HotKey());
+        hotKey.hits.incrementAndGet();
+        hotKey.request = request;
+        hotKey.storedAt = cachedResponse.getStoredAt();
+        hotKey.expiresAt = cachedResponse.getExpiresAt();
+    }
+
+    public long getTrackedKeyCount() {
+        return hotKeys.estimatedSize();
+    }
+
+    public long getTriggeredCount() {
+        return triggered.sum();
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (Exception e) {
+            log.warn("[REFRESH_AHEAD] - Refresh-ahead tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void tick() {
+        BiConsumer<ResponseCacheKey, ProxyAPIRequest> currentRefresher = refresher;
+        long now = System.currentTimeMillis();
+
+        if (Objects.isNull(currentRefresher)) {
+            return;
+        }
+
+        hotKeys.asMap()
+            .entrySet()
+            .stream()
+            .filter(entry -> isDue(entry.getValue(), now))
+            .sorted(Comparator.comparingLong((Map.Entry<ResponseCacheKey, HotKey> entry) -> entry.getValue().hits.get())
+                .reversed())
+            .limit(maxRefreshesPerTick)
+            .forEach(entry -> {
+                HotKey hotKey = entry.getValue();
+                hotKey.refreshedFor = hotKey.expiresAt;
+                triggered.increment();
+                log.debug("[REFRESH_AHEAD] - Refresh hot entry before expiry: {}", entry.getKey());
+                currentRefresher.accept(entry.getKey(), hotKey.request);
+            });
+
+        // Decay, so keys that stopped being requested cool down
+        hotKeys.asMap().values().forEach(hotKey -> hotKey.hits.updateAndGet(hits -> hits >> 1));
+    }
+
+    // Hot enough, inside the refresh-ahead window and not already refreshed for this version
+    private boolean isDue(HotKey hotKey, long now) {
+        long lifetime = hotKey.expiresAt - hotKey.storedAt;
+        long refreshAt = hotKey.expiresAt - (long) (lifetime * aheadRatio);
+
+        return hotKey.hits.get() >= minHits
+                && now >= refreshAt
+                && now < hotKey.expiresAt
+                && hotKey.refreshedFor != hotKey.expiresAt;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class HotKey {
+        private final AtomicLong hits = new AtomicLong();
+        private volatile ProxyAPIRequest request;
+        private volatile long storedAt;
+        private volatile long expiresAt;
+        private volatile long refreshedFor;
+    }
+}
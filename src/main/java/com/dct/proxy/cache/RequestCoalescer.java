@@ -0,0 +1,148 @@
+package com.dct.proxy.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses identical concurrent upstream calls into a single one (single-flight) <p>
+ * The first caller for a key becomes the leader and performs the call, concurrent callers with the same key
+ * wait for its result instead of hitting the upstream. A follower waits at most {@code maxWait},
+ * then calls the upstream itself. If the leader fails, the waiting followers race to become the new leader,
+ * each follower takes part in at most one such promotion before the failure is propagated to it <p>
+ * Requests carrying credentials are only collapsed with requests of the same principal
+ * ({@link ResponseCacheKey#getPrincipal()}), and a response setting cookies is never handed to followers:
+ * it belongs to the client of the leader, followers call the upstream themselves
+ *
+ * @author thoaidc
+ */
+public class RequestCoalescer {
+    private static final Logger log = LoggerFactory.getLogger(RequestCoalescer.class);
+    private static final int MAX_ATTEMPTS = 2;
+    private final Map<FlightKey, CompletableFuture<ResponseEntity<byte[]>>> inFlight = new ConcurrentHashMap<>();
+    private final long maxWaitNanos;
+    private final LongAdder leaderCalls = new LongAdder();
+    private final LongAdder collapsedCalls = new LongAdder();
+    private final LongAdder timedOutWaits = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+
+    public RequestCoalescer(long maxWaitMillis) {
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Run the upstream call for this key, or join the call already in flight for it
+     * @param key the cache key of the request
+     * @param upstreamCall the call to perform when this caller is the leader
+     * @return the upstream response, shared between all collapsed callers: it must not be modified
+     */
+    public ResponseEntity<byte[]> execute(ResponseCacheKey key, Supplier<ResponseEntity<byte[]>> upstreamCall) {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        // The principal is not part of the key identity
+        FlightKey flightKey = new FlightKey(key, key.getPrincipal());
+
+        for (int attempt = 1; ; attempt++) {
+            CompletableFuture<ResponseEntity<byte[]>> flight = new CompletableFuture<>();
+            CompletableFuture<ResponseEntity<byte[]>> existing = inFlight.putIfAbsent(flightKey, flight);
+
+            if (Objects.isNull(existing)) {
+                if (attempt > 1) {
+                    promotions.increment();
+                    log.debug("[REQUEST_COALESCER] - Follower promoted to leader: {}", key);
+                }
+
+                return lead(flightKey, flight, upstreamCall);
+            }
+
+            try {
+                ResponseEntity<byte[]> response = existing.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+                if (response.getHeaders().containsKey(HttpHeaders.SET_COOKIE)) {
+                    log.debug("[REQUEST_COALESCER] - Leader response sets cookies, call upstream directly: {}", key);
+                    return upstreamCall.get();
+                }
+
+                collapsedCalls.increment();
+                return response;
+            } catch (TimeoutException e) {
+                timedOutWaits.increment();
+                log.debug("[REQUEST_COALESCER] - Leader too slow, call upstream directly: {}", key);
+                return upstreamCall.get();
+            } catch (ExecutionException e) {
+                if (attempt >= MAX_ATTEMPTS || System.nanoTime() >= deadline) {
+                    throw asRuntimeException(e.getCause());
+                }
+
+                log.debug("[REQUEST_COALESCER] - Leader failed, retry as follower or leader: {}", key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for in-flight upstream call", e);
+            }
+        }
+    }
+
+    private ResponseEntity<byte[]> lead(FlightKey key,
+                                        CompletableFuture<ResponseEntity<byte[]>> flight,
+                                        Supplier<ResponseEntity<byte[]>> upstreamCall) {
+        leaderCalls.increment();
+        ResponseEntity<byte[]> response;
+
+        // Unregistered before completion, so a woken follower never finds this flight again and can take the lead
+        try {
+            response = upstreamCall.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+
+        inFlight.remove(key, flight);
+        flight.complete(response);
+        return response;
+    }
+
+    private static RuntimeException asRuntimeException(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+
+        if (cause instanceof Error error) {
+            throw error;
+        }
+
+        return new IllegalStateException(cause);
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getLeaderCalls() {
+        return leaderCalls.sum();
+    }
+
+    public long getCollapsedCalls() {
+        return collapsedCalls.sum();
+    }
+
+    public long getTimedOutWaits() {
+        return timedOutWaits.sum();
+    }
+
+    public long getPromotions() {
+        return promotions.sum();
+    }
+
+    private record FlightKey(ResponseCacheKey key, String principal) {}
+}
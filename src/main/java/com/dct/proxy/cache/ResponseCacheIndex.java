@@ -0,0 +1,130 @@
+package com.dct.proxy.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Secondary index of the cached keys by upstream path and by tag, used to purge entries without scanning the cache <p>
+ * Paths are kept sorted, so all keys under a path prefix are one range of the index and a purge costs
+ * O(log n + matching entries). Mutations are cheap and rare compared to cache reads, they are serialized on the index <p>
+ * The index may briefly reference keys already gone from the cache, purging them is a no-op.
+ * It never misses a cached key: keys are indexed after they are stored
+ * and only unindexed once they are confirmed absent from every tier
+ *
+ * @author thoaidc
+ */
+public class ResponseCacheIndex {
+    private final TreeMap<String, Set<ResponseCacheKey>> keysByPath = new TreeMap<>();
+    private final Map<String, Set<ResponseCacheKey>> keysByTag = new HashMap<>();
+    private final Map<ResponseCacheKey, Set<String>> tagsByKey = new HashMap<>();
+    private int size;
+
+    /**
+     * Index a stored key, replacing the tags of a previous version
+     */
+    public synchronized void add(ResponseCacheKey key, Collection<String> tags) {
+        if (keysByPath.computeIfAbsent(pathOf(key), path -> new HashSet<>()).add(key)) {
+            size++;
+        }
+
+        unlinkTags(key);
+
+        if (!tags.isEmpty()) {
+            Set<String> keyTags = Set.copyOf(tags);
+            tagsByKey.put(key, keyTags);
+            keyTags.forEach(tag -> keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key));
+        }
+    }
+
+    public synchronized void remove(ResponseCacheKey key) {
+        String path = pathOf(key);
+        Set<ResponseCacheKey> keys = keysByPath.get(path);
+
+        if (Objects.nonNull(keys) && keys.remove(key)) {
+            size--;
+
+            if (keys.isEmpty()) {
+                keysByPath.remove(path);
+            }
+        }
+
+        unlinkTags(key);
+    }
+
+    /**
+     * Remove the key only if it is not cached anymore, the check is atomic with respect to {@link #add}
+     */
+    public synchronized void removeIfAbsent(ResponseCacheKey key, Predicate<ResponseCacheKey> cached) {
+        if (!cached.test(key)) {
+            remove(key);
+        }
+    }
+
+    /**
+     * @return all variants (methods, vary values) cached for this exact normalized URL
+     */
+    public synchronized List<ResponseCacheKey> findByUrl(String path, String url) {
+        Set<ResponseCacheKey> keys = keysByPath.get(path);
+
+        if (Objects.isNull(keys)) {
+            return List.of();
+        }
+
+        return keys.stream().filter(key -> key.getUrl().equals(url)).toList();
+    }
+
+    /**
+     * Match on path segments: {@code /products/12} matches {@code /products/12} and {@code /products/12/...}
+     * but not {@code /products/123}. A prefix ending with a slash matches everything below it
+     */
+    public synchronized List<ResponseCacheKey> findByPathPrefix(String prefix) {
+        List<ResponseCacheKey> matches = new ArrayList<>();
+        boolean directory = prefix.endsWith("/");
+
+        keysByPath.subMap(prefix, true, prefix + Character.MAX_VALUE, false).forEach((path, keys) -> {
+            boolean segmentMatch = directory || path.length() == prefix.length() || path.charAt(prefix.length()) == '/';
+
+            if (segmentMatch) {
+                matches.addAll(keys);
+            }
+        });
+
+        return matches;
+    }
+
+    public synchronized List<ResponseCacheKey> findByTag(String tag) {
+        return List.copyOf(keysByTag.getOrDefault(tag, Set.of()));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void unlinkTags(ResponseCacheKey key) {
+        Set<String> previousTags = tagsByKey.remove(key);
+
+        if (Objects.isNull(previousTags)) {
+            return;
+        }
+
+        previousTags.forEach(tag -> {
+            Set<ResponseCacheKey> keys = keysByTag.get(tag);
+
+            if (Objects.nonNull(keys) && keys.remove(key) && keys.isEmpty()) {
+                keysByTag.remove(tag);
+            }
+        });
+    }
+
+    private static String pathOf(ResponseCacheKey key) {
+        return Objects.nonNull(key.getPath()) ? key.getPath() : "";
+    }
+}
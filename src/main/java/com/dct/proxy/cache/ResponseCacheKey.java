@@ -0,0 +1,133 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.constants.ContentCoding;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Identifies a cached proxied response by request method, normalized target URL
+ * and the values of the configured {@code Vary} request headers <p>
+ * A key with a content coding identifies the compressed copy of the response stored under the same key without it <p>
+ * A request carrying credentials gets a key with a principal, a digest of its credentials. The principal is not part
+ * of the key identity: the stored response is shared, the cache decides whether a credentialed request may use it
+ *
+ * @author thoaidc
+ */
+public final class ResponseCacheKey {
+    private final String method;
+    private final String url;
+    private final String path;
+    private final List<String> varyValues;
+    private final ContentCoding contentCoding;
+    private final String principal;
+    private final int hash;
+
+    public ResponseCacheKey(String method, String url, String path, List<String> varyValues) {
+        this(method, url, path, varyValues, null, null);
+    }
+
+    public ResponseCacheKey(String method, String url, String path, List<String> varyValues, String principal) {
+        this(method, url, path, varyValues, null, principal);
+    }
+
+    private ResponseCacheKey(String method,
+                             String url,
+                             String path,
+                             List<String> varyValues,
+                             ContentCoding contentCoding,
+                             String principal) {
+        this.method = method;
+        this.url = url;
+        this.path = path;
+        this.varyValues = List.copyOf(varyValues);
+        this.contentCoding = contentCoding;
+        this.principal = principal;
+        this.hash = Objects.hash(method, url, this.varyValues, contentCoding);
+    }
+
+    /**
+     * Key of the copy of this response in another content coding, such copies are kept on or off the heap, never on disk
+     */
+    public ResponseCacheKey withContentCoding(ContentCoding contentCoding) {
+        return new ResponseCacheKey(method, url, path, varyValues, contentCoding, principal);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public List<String> getVaryValues() {
+        return varyValues;
+    }
+
+    /**
+     * @return the coding of a compressed copy, null for the response as stored from the upstream
+     */
+    public ContentCoding getContentCoding() {
+        return contentCoding;
+    }
+
+    /**
+     * @return the digest of the request credentials, null for a request without credentials
+     */
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public boolean isCredentialed() {
+        return Objects.nonNull(principal);
+    }
+
+    /**
+     * Line-separated representation used to persist the key, without the principal. Request lines and header values cannot contain newlines
+     */
+    public String toExternalForm() {
+        StringBuilder value = new StringBuilder(method).append('\n').append(url).append('\n')
+                .append(Objects.nonNull(path) ? path : "");
+        varyValues.forEach(varyValue -> value.append('\n').append(varyValue));
+        return value.toString();
+    }
+
+    public static ResponseCacheKey fromExternalForm(String value) {
+        String[] parts = value.split("\n", -1);
+        List<String> varyValues = Arrays.asList(parts).subList(Math.min(3, parts.length), parts.length);
+        return new ResponseCacheKey(parts[0], parts[1], parts[2], varyValues);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof ResponseCacheKey other))
+            return false;
+
+        return hash == other.hash
+            && method.equals(other.method)
+            && url.equals(other.url)
+            && varyValues.equals(other.varyValues)
+            && contentCoding == other.contentCoding;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return method + ' ' + url
+            + (varyValues.isEmpty() ? "" : " " + varyValues)
+            + (Objects.isNull(contentCoding) ? "" : " (" + contentCoding.getValue() + ")");
+    }
+}
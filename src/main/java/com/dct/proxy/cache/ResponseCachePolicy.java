@@ -0,0 +1,386 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.constants.ActivateStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Decides whether an upstream response may be stored and for how long <p>
+ * The freshness lifetime follows the upstream {@code Cache-Control} ({@code s-maxage}, then {@code max-age})
+ * or {@code Expires} headers, unless a per-route TTL override is configured.
+ * {@code no-store} and {@code private} responses are never stored, neither are responses setting cookies.
+ * Responses to requests carrying credentials are only stored and served to them when the upstream marks them
+ * as shareable (RFC 9111, section 3.5) <p>
+ * When revalidation is enabled, responses carrying an {@code ETag} or {@code Last-Modified} validator are kept
+ * past their freshness lifetime, so they can be refreshed with a conditional request instead of a full download <p>
+ * Stale responses may also be served within the {@code stale-while-revalidate} and {@code stale-if-error} windows
+ * (RFC 5861), taken from the upstream {@code Cache-Control} or from the configured defaults. The defaults only apply
+ * to responses stored with a positive freshness lifetime, a response without freshness information
+ * is not served stale unless the upstream allows it explicitly <p>
+ * Negative caching stores configured error statuses (404, 410, 503...) for a short TTL set by status and route
+ *
+ * @author thoaidc
+ */
+public class ResponseCachePolicy {
+    private static final Set<Integer> CACHEABLE_STATUSES = Set.of(200, 203, 204, 300, 301, 308);
+    private final ResponseCacheProps props;
+    private final Set<String> methods;
+    private final Set<String> varyHeaders;
+    private final List<RouteTtl> routes;
+    private final List<NegativeRouteTtl> negativeRoutes;
+
+    public ResponseCachePolicy(ResponseCacheProps props) {
+        this.props = props;
+        this.methods = props.getMethods().stream().map(m -> m.toUpperCase(Locale.ROOT)).collect(Collectors.toSet());
+        this.varyHeaders = props.getVaryHeaders()
+                .stream()
+                .map(h -> h.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        this.routes = props.getRoutes()
+                .stream()
+                .filter(route -> StringUtils.hasText(route.getPattern()))
+                .map(route -> new RouteTtl(PathPatternParser.defaultInstance.parse(route.getPattern()), route.getTtl()))
+                .toList();
+        this.negativeRoutes = props.getNegative()
+                .getRoutes()
+                .stream()
+                .filter(route -> StringUtils.hasText(route.getPattern()))
+                .map(route -> new NegativeRouteTtl(
+                    PathPatternParser.defaultInstance.parse(route.getPattern()),
+                    Map.copyOf(route.getStatuses())
+                ))
+                .toList();
+    }
+
+    public boolean isCacheableMethod(String method) {
+        return Objects.nonNull(method) && methods.contains(method.toUpperCase(Locale.ROOT));
+    }
+
+    public List<String> getVaryHeaders() {
+        return props.getVaryHeaders();
+    }
+
+    /**
+     * Resolve the freshness lifetime of an upstream response
+     *
+     * @param path the request path, used to look up per-route overrides
+     * @param status the upstream status code
+     * @param headers the upstream response headers
+     * @param now current time in epoch milliseconds
+     * @return lifetime in milliseconds, 0 if the response must be revalidated before each use,
+     * or -1 if the response must not be stored
+     */
+    public long resolveTtl(String path, int status, HttpHeaders headers, long now) {
+        if (!isVaryCompatible(headers)) {
+            return -1;
+        }
+
+        Set<String> directives = parseCacheControl(headers);
+
+        if (directives.contains("no-store") || directives.contains("private")) {
+            return -1;
+        }
+
+        if (!CACHEABLE_STATUSES.contains(status)) {
+            return resolveNegativeTtl(path, status);
+        }
+
+        Optional<Long> routeTtl = findRouteTtl(path);
+
+        if (routeTtl.isPresent()) {
+            return routeTtl.get() > 0 ? routeTtl.get() : -1;
+        }
+
+        if (directives.contains("no-cache")) {
+            return 0;
+        }
+
+        long age = TimeUnit.SECONDS.toMillis(Math.max(0, parseLong(headers.getFirst(HttpHeaders.AGE), 0)));
+        Long sharedMaxAge = findDirectiveSeconds(directives, "s-maxage");
+        Long maxAge = findDirectiveSeconds(directives, "max-age");
+
+        if (Objects.nonNull(sharedMaxAge) || Objects.nonNull(maxAge)) {
+            long lifetime = TimeUnit.SECONDS.toMillis(Objects.nonNull(sharedMaxAge) ? sharedMaxAge : maxAge);
+            return Math.max(0, lifetime - age);
+        }
+
+        long expires = headers.getExpires();
+
+        if (expires > 0) {
+            return Math.max(0, expires - resolveDate(headers, now) - age);
+        }
+
+        return props.getDefaultTtl();
+    }
+
+    /**
+     * Whether a response may be stored and served by this shared cache (RFC 9111, sections 3 and 3.5) <p>
+     * A response setting cookies belongs to one client and is never shared. For a request carrying
+     * {@code Authorization} or {@code Cookie}, the response must be explicitly shareable with
+     * {@code public}, {@code s-maxage} or {@code must-revalidate}
+     *
+     * @param headers the upstream or stored response headers
+     * @param credentialed true if the request carries credentials, see {@link ResponseCacheKey#isCredentialed()}
+     */
+    public boolean isShareable(HttpHeaders headers, boolean credentialed) {
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+
+        if (!credentialed) {
+            return true;
+        }
+
+        Set<String> directives = parseCacheControl(headers);
+
+        return directives.contains("public")
+                || directives.contains("must-revalidate")
+                || Objects.nonNull(findDirectiveSeconds(directives, "s-maxage"));
+    }
+
+    public long getMaxEntrySizeBytes() {
+        return props.getMaxEntrySizeBytes();
+    }
+
+    /**
+     * @return true if upstream error responses with this status may be cached on some route
+     */
+    public boolean isNegativeStatus(int status) {
+        if (!ActivateStatus.ENABLED.equals(props.getNegative().getActivate())) {
+            return false;
+        }
+
+        return props.getNegative().getStatuses().containsKey(status)
+                || negativeRoutes.stream().anyMatch(route -> route.statuses().containsKey(status));
+    }
+
+    /**
+     * @return true for error responses stored by negative caching, they are never served stale or revalidated
+     */
+    public boolean isNegative(CachedResponse cachedResponse) {
+        return !CACHEABLE_STATUSES.contains(cachedResponse.getStatus());
+    }
+
+    // The first matching route that configures this status wins over the global status TTLs
+    private long resolveNegativeTtl(String path, int status) {
+        if (!isNegativeStatus(status)) {
+            return -1;
+        }
+
+        PathContainer pathContainer = Objects.nonNull(path) ? PathContainer.parsePath(path) : null;
+        Long ttl = negativeRoutes.stream()
+                .filter(route -> Objects.nonNull(pathContainer) && route.pattern().matches(pathContainer))
+                .map(route -> route.statuses().get(status))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(props.getNegative().getStatuses().get(status));
+
+        return Objects.nonNull(ttl) && ttl > 0 ? ttl : -1;
+    }
+
+    public boolean isRevalidationEnabled() {
+        return ActivateStatus.ENABLED.equals(props.getRevalidation().getActivate());
+    }
+
+    /**
+     * Resolve until when a response is kept in the cache
+     * @param status the stored response status
+     * @param headers the stored response headers
+     * @param storedAt when the response is stored or revalidated
+     * @param expiresAt the end of its freshness lifetime
+     * @return {@code expiresAt}, extended by the longest window in which the stale response is still usable
+     */
+    public long resolveRetainUntil(int status, HttpHeaders headers, long storedAt, long expiresAt) {
+        if (!CACHEABLE_STATUSES.contains(status)) {
+            return expiresAt;
+        }
+
+        boolean hasValidator = headers.containsKey(HttpHeaders.ETAG) || headers.containsKey(HttpHeaders.LAST_MODIFIED);
+        long lifetime = expiresAt - storedAt;
+        long retention = Math.max(resolveStaleWhileRevalidate(headers, lifetime), resolveStaleIfError(headers, lifetime));
+
+        if (isRevalidationEnabled() && hasValidator) {
+            retention = Math.max(retention, props.getRevalidation().getRetention());
+        }
+
+        return expiresAt + retention;
+    }
+
+    /**
+     * @return true if the expired response may be served while it is refreshed in the background
+     */
+    public boolean canServeStaleWhileRevalidate(CachedResponse cachedResponse, long now) {
+        long lifetime = cachedResponse.getExpiresAt() - cachedResponse.getStoredAt();
+        return now < cachedResponse.getExpiresAt() + resolveStaleWhileRevalidate(cachedResponse.getHeaders(), lifetime);
+    }
+
+    /**
+     * @return true if the expired response may be served because the upstream failed or cannot be called
+     */
+    public boolean canServeStaleIfError(CachedResponse cachedResponse, long now) {
+        long lifetime = cachedResponse.getExpiresAt() - cachedResponse.getStoredAt();
+        return now < cachedResponse.getExpiresAt() + resolveStaleIfError(cachedResponse.getHeaders(), lifetime);
+    }
+
+    private long resolveStaleWhileRevalidate(HttpHeaders headers, long lifetime) {
+        return resolveStaleWindow(headers, "stale-while-revalidate", props.getStale().getWhileRevalidate(), lifetime);
+    }
+
+    private long resolveStaleIfError(HttpHeaders headers, long lifetime) {
+        return resolveStaleWindow(headers, "stale-if-error", props.getStale().getIfError(), lifetime);
+    }
+
+    // Upstream directive first, then the configured default for responses that were fresh for a while.
+    // Responses that must be revalidated are never served stale
+    private long resolveStaleWindow(HttpHeaders headers, String directive, long defaultWindow, long lifetime) {
+        if (!ActivateStatus.ENABLED.equals(props.getStale().getActivate())) {
+            return 0;
+        }
+
+        Set<String> directives = parseCacheControl(headers);
+
+        if (directives.contains("no-cache")
+                || directives.contains("must-revalidate")
+                || directives.contains("proxy-revalidate")) {
+            return 0;
+        }
+
+        Long seconds = findDirectiveSeconds(directives, directive);
+        if (Objects.nonNull(seconds)) {
+            return TimeUnit.SECONDS.toMillis(seconds);
+        }
+
+        return lifetime > 0 ? Math.max(0, defaultWindow) : 0;
+    }
+
+    /**
+     * Evaluate the client conditional request headers against a stored response (RFC 9110, section 13.1) <p>
+     * {@code If-None-Match} takes precedence, {@code If-Modified-Since} is only evaluated without it
+     *
+     * @return true if the client copy is still valid and a 304 can be sent instead of the body
+     */
+    public boolean isNotModified(CachedResponse cachedResponse, String ifNoneMatch, String ifModifiedSince) {
+        if (!isRevalidationEnabled() || cachedResponse.getStatus() != 200) {
+            return false;
+        }
+
+        HttpHeaders headers = cachedResponse.getHeaders();
+
+        if (StringUtils.hasText(ifNoneMatch)) {
+            String etag = headers.getETag();
+
+            if (Objects.isNull(etag)) {
+                return false;
+            }
+
+            // Weak comparison, as required for If-None-Match
+            String opaqueTag = stripWeakPrefix(etag);
+
+            return List.of(ifNoneMatch.split(","))
+                    .stream()
+                    .map(String::trim)
+                    .anyMatch(tag -> "*".equals(tag) || stripWeakPrefix(tag).equals(opaqueTag));
+        }
+
+        if (StringUtils.hasText(ifModifiedSince)) {
+            HttpHeaders conditions = new HttpHeaders();
+            conditions.set(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+            long since = conditions.getIfModifiedSince();
+            long lastModified = resolveLastModified(headers);
+            return since >= 0 && lastModified >= 0 && lastModified <= since;
+        }
+
+        return false;
+    }
+
+    private static long resolveLastModified(HttpHeaders headers) {
+        try {
+            return headers.getLastModified();
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static String stripWeakPrefix(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    // A response that varies on headers outside the cache key cannot be shared safely
+    private boolean isVaryCompatible(HttpHeaders headers) {
+        return headers.getVary()
+                .stream()
+                .allMatch(name -> !"*".equals(name) && varyHeaders.contains(name.toLowerCase(Locale.ROOT)));
+    }
+
+    private Optional<Long> findRouteTtl(String path) {
+        if (routes.isEmpty() || Objects.isNull(path)) {
+            return Optional.empty();
+        }
+
+        PathContainer pathContainer = PathContainer.parsePath(path);
+
+        return routes.stream()
+                .filter(route -> route.pattern().matches(pathContainer))
+                .map(RouteTtl::ttl)
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    static Set<String> parseCacheControl(HttpHeaders headers) {
+        return headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)
+                .stream()
+                .flatMap(value -> List.of(value.split(",")).stream())
+                .map(directive -> directive.trim().toLowerCase(Locale.ROOT))
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toSet());
+    }
+
+    static Long findDirectiveSeconds(Set<String> directives, String name) {
+        String prefix = name + "=";
+
+        return directives.stream()
+                .filter(directive -> directive.startsWith(prefix))
+                .map(directive -> parseLong(directive.substring(prefix.length()).replace("\"", ""), -1))
+                .filter(value -> value >= 0)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static long resolveDate(HttpHeaders headers, long now) {
+        try {
+            long date = headers.getDate();
+            return date > 0 ? date : now;
+        } catch (IllegalArgumentException e) {
+            return now;
+        }
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (!StringUtils.hasText(value)) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private record RouteTtl(PathPattern pattern, Long ttl) {}
+
+    private record NegativeRouteTtl(PathPattern pattern, Map<Integer, Long> statuses) {}
+}
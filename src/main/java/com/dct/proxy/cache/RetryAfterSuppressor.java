@@ -0,0 +1,131 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Suppresses upstream calls to a route after it answered 503 with a {@code Retry-After} header <p>
+ * A route is the first configured negative caching route pattern matching the request path,
+ * or the exact path if none matches. Until the announced time (capped by {@code maxRetryAfter}),
+ * requests to that route are answered locally instead of being forwarded
+ *
+ * @author thoaidc
+ */
+public class RetryAfterSuppressor {
+    private static final Logger log = LoggerFactory.getLogger(RetryAfterSuppressor.class);
+    private final Map<String, Long> suppressedUntil = new ConcurrentHashMap<>();
+    private final List<PathPattern> routes;
+    private final long maxRetryAfter;
+    private final LongAdder suppressedCalls = new LongAdder();
+
+    public RetryAfterSuppressor(ResponseCacheProps.NegativeConfig config) {
+        this.maxRetryAfter = config.getMaxRetryAfter();
+        this.routes = config.getRoutes()
+                .stream()
+                .map(ResponseCacheProps.NegativeRouteConfig::getPattern)
+                .filter(StringUtils::hasText)
+                .map(PathPatternParser.defaultInstance::parse)
+                .toList();
+    }
+
+    /**
+     * Suppress the route of this path for the duration announced by the {@code Retry-After} header, if any
+     * @param path the request path
+     * @param headers the headers of the upstream 503 response
+     */
+    public void suppress(String path, HttpHeaders headers) {
+        long now = System.currentTimeMillis();
+        long retryAfter = resolveRetryAfter(headers, now);
+
+        if (Objects.isNull(path) || retryAfter <= 0) {
+            return;
+        }
+
+        String route = resolveRoute(path);
+        long until = now + Math.min(retryAfter, maxRetryAfter);
+        suppressedUntil.merge(route, until, Math::max);
+        log.warn("[RETRY_AFTER_SUPPRESSOR] - Upstream route unavailable, suppress calls for {}ms: {}", until - now, route);
+    }
+
+    /**
+     * @param path the request path
+     * @return the remaining suppression of the route of this path in milliseconds, 0 if calls are allowed
+     */
+    public long getRemainingMillis(String path) {
+        // Nothing to match against in the common case
+        if (suppressedUntil.isEmpty() || Objects.isNull(path)) {
+            return 0;
+        }
+
+        String route = resolveRoute(path);
+        Long until = suppressedUntil.get(route);
+
+        if (Objects.isNull(until)) {
+            return 0;
+        }
+
+        long remaining = until - System.currentTimeMillis();
+
+        if (remaining <= 0) {
+            suppressedUntil.remove(route, until);
+            return 0;
+        }
+
+        suppressedCalls.increment();
+        return remaining;
+    }
+
+    public long getSuppressedCallCount() {
+        return suppressedCalls.sum();
+    }
+
+    public int getSuppressedRouteCount() {
+        return suppressedUntil.size();
+    }
+
+    private String resolveRoute(String path) {
+        if (routes.isEmpty()) {
+            return path;
+        }
+
+        PathContainer pathContainer = PathContainer.parsePath(path);
+
+        return routes.stream()
+                .filter(pattern -> pattern.matches(pathContainer))
+                .map(PathPattern::getPatternString)
+                .findFirst()
+                .orElse(path);
+    }
+
+    // Retry-After is either a number of seconds or an HTTP date (RFC 9110, section 10.2.3)
+    static long resolveRetryAfter(HttpHeaders headers, long now) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+
+        if (!StringUtils.hasText(value)) {
+            return -1;
+        }
+
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                return headers.getFirstDate(HttpHeaders.RETRY_AFTER) - now;
+            } catch (IllegalArgumentException invalidDate) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.dct.proxy.common;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Writes a JSON array to a file one element at a time <p>
+ * Elements are serialized straight to the file, the array is never held in memory.
+ * A file holding an array can be opened for append: the closing bracket is removed and written again on close,
+ * so the file is a valid array again once the writer is closed
+ *
+ * @author thoaidc
+ */
+public class JsonArrayWriter implements Closeable {
+    private final JsonGenerator generator;
+    private final ObjectWriter elementWriter;
+    private boolean empty;
+
+    private JsonArrayWriter(ObjectMapper objectMapper, File file, boolean append, boolean empty) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(new FileOutputStream(file, append), JsonEncoding.UTF8);
+        // Elements are written as root values, separated by the commas of the array only
+        this.generator.setRootValueSeparator(null);
+        this.elementWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.empty = empty;
+
+        if (!append) {
+            generator.writeRaw('[');
+        }
+    }
+
+    /**
+     * Create the file, or replace its content, with an empty array
+     */
+    static JsonArrayWriter create(ObjectMapper objectMapper, File file) throws IOException {
+        return new JsonArrayWriter(objectMapper, file, false, true);
+    }
+
+    /**
+     * Add elements at the end of the array held by the file, the file is created if it does not exist
+     * @throws IOException if the file does not end with a JSON array
+     */
+    static JsonArrayWriter append(ObjectMapper objectMapper, File file) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return create(objectMapper, file);
+        }
+
+        boolean empty;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long end = lastContentPosition(raf, raf.length() - 1);
+
+            if (end < 0 || readByte(raf, end) != ']') {
+                throw new IOException("File does not end with a JSON array: " + file);
+            }
+
+            long previous = lastContentPosition(raf, end - 1);
+            empty = previous >= 0 && readByte(raf, previous) == '[';
+            raf.setLength(end);
+        }
+
+        return new JsonArrayWriter(objectMapper, file, true, empty);
+    }
+
+    public void write(Object element) throws IOException {
+        if (!empty) {
+            generator.writeRaw(',');
+        }
+
+        elementWriter.writeValue(generator, element);
+        empty = false;
+    }
+
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            generator.writeRaw(']');
+        } finally {
+            generator.close();
+        }
+    }
+
+    // Position of the last byte that is not JSON whitespace, at or before the given position
+    private static long lastContentPosition(RandomAccessFile raf, long position) throws IOException {
+        for (long i = position; i >= 0; i--) {
+            int b = readByte(raf, i);
+
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int readByte(RandomAccessFile raf, long position) throws IOException {
+        raf.seek(position);
+        return raf.read();
+    }
+}
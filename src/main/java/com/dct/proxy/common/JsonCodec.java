@@ -0,0 +1,116 @@
+package com.dct.proxy.common;
+
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.BaseResponseDTO;
+import com.dct.proxy.dto.response.RelayEnvelopeResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * JSON reading and writing of the types handled for every proxied request <p>
+ * {@link ObjectReader} and {@link ObjectWriter} are immutable and thread-safe, they are built once per type
+ * from the application {@link ObjectMapper}, so a call does not look up the type again.
+ * Only byte array and stream entry points are provided, the content is never turned into a {@link String}
+ *
+ * @author thoaidc
+ */
+public class JsonCodec {
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private final ObjectReader mapReader;
+    private final ObjectWriter mapWriter;
+    private final ObjectReader proxyAPIRequestReader;
+    private final ObjectWriter proxyAPIRequestWriter;
+    private final ObjectReader envelopeResponseReader;
+    private final ObjectWriter envelopeResponseWriter;
+    private final ObjectWriter responseDTOWriter;
+    private final ObjectWriter responseDTOStreamWriter;
+
+    public JsonCodec(ObjectMapper objectMapper) {
+        this.mapReader = objectMapper.readerFor(MAP_TYPE);
+        this.mapWriter = objectMapper.writerFor(MAP_TYPE);
+        this.proxyAPIRequestReader = objectMapper.readerFor(ProxyAPIRequest.class);
+        this.proxyAPIRequestWriter = objectMapper.writerFor(ProxyAPIRequest.class);
+        this.envelopeResponseReader = objectMapper.readerFor(RelayEnvelopeResponse.class);
+        this.envelopeResponseWriter = objectMapper.writerFor(RelayEnvelopeResponse.class);
+        this.responseDTOWriter = objectMapper.writerFor(BaseResponseDTO.class);
+        this.responseDTOStreamWriter = responseDTOWriter.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public Map<String, Object> readMap(byte[] json) throws IOException {
+        return mapReader.readValue(json);
+    }
+
+    public Map<String, Object> readMap(InputStream json) throws IOException {
+        return mapReader.readValue(json);
+    }
+
+    public Map<String, Object> readMap(Reader json) throws IOException {
+        return mapReader.readValue(json);
+    }
+
+    /**
+     * Check that the content is a single JSON object by scanning its tokens, nothing is built from it
+     * @return false if the content is not a well-formed JSON object
+     * @throws IOException if the stream cannot be read
+     */
+    public boolean isJsonObject(InputStream json) throws IOException {
+        try (JsonParser parser = mapReader.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+
+            parser.skipChildren();
+            return Objects.isNull(parser.nextToken());
+        } catch (StreamReadException e) {
+            return false;
+        }
+    }
+
+    public byte[] writeMap(Map<String, Object> value) throws IOException {
+        return mapWriter.writeValueAsBytes(value);
+    }
+
+    public ProxyAPIRequest readProxyAPIRequest(byte[] json) throws IOException {
+        return proxyAPIRequestReader.readValue(json);
+    }
+
+    public ProxyAPIRequest readProxyAPIRequest(InputStream json) throws IOException {
+        return proxyAPIRequestReader.readValue(json);
+    }
+
+    public byte[] writeProxyAPIRequest(ProxyAPIRequest value) throws IOException {
+        return proxyAPIRequestWriter.writeValueAsBytes(value);
+    }
+
+    public RelayEnvelopeResponse readEnvelopeResponse(byte[] json) throws IOException {
+        return envelopeResponseReader.readValue(json);
+    }
+
+    public byte[] writeEnvelopeResponse(RelayEnvelopeResponse value) throws IOException {
+        return envelopeResponseWriter.writeValueAsBytes(value);
+    }
+
+    public byte[] writeResponse(BaseResponseDTO value) throws IOException {
+        return responseDTOWriter.writeValueAsBytes(value);
+    }
+
+    /**
+     * Write the response to the stream, which is left open
+     */
+    public void writeResponse(BaseResponseDTO value, OutputStream out) throws IOException {
+        responseDTOStreamWriter.writeValue(out, value);
+    }
+}
@@ -1,9 +1,10 @@
 package com.dct.proxy.common;
 
 import com.dct.proxy.config.DataConverterAutoConfiguration;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.CollectionType;
 import org.slf4j.Logger;
@@ -15,6 +16,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Generic class for handling json with file and string
@@ -26,19 +31,60 @@ public class JsonUtils {
     // Configure ObjectMapper to serialize null fields and format JSON with pretty printing
     private static final ObjectMapper objectMapper = DataConverterAutoConfiguration.buildObjectMapper();
 
+    /**
+     * Check the syntax of the content with a token scan, no tree is built
+     * @return true if the input is one or more well-formed JSON values
+     */
     public static boolean isValidJson(String input) {
         if (Objects.isNull(input) || input.isBlank()) {
             return false;
         }
 
-        try {
-            objectMapper.readTree(input);
-            return true;
+        try (JsonParser parser = objectMapper.createParser(input)) {
+            return scanTokens(parser);
+        } catch (Exception ignored) {
+            return false;
+        }
+    }
+
+    public static boolean isValidJson(byte[] input) {
+        if (!hasContent(input)) {
+            return false;
+        }
+
+        try (JsonParser parser = objectMapper.createParser(input)) {
+            return scanTokens(parser);
         } catch (Exception ignored) {
             return false;
         }
     }
 
+    private static boolean scanTokens(JsonParser parser) throws IOException {
+        // The parser checks the structure while advancing, values are never decoded nor bound
+        while (Objects.nonNull(parser.nextToken())) {
+            // Nothing to do with the token
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the content holds anything other than JSON whitespace
+     */
+    public static boolean hasContent(byte[] json) {
+        if (Objects.isNull(json)) {
+            return false;
+        }
+
+        for (byte b : json) {
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Read an object from json file
      * @param filePath Path to json file
@@ -68,19 +114,12 @@ public class JsonUtils {
      * @param <T> Generics type
      */
     public static <T> List<T> readJsonArrayFromFile(String filePath, Class<T> className) {
-        try {
-            JsonNode jsonNode = objectMapper.readTree(new File(filePath));
+        // An array is read element by element, a single object is read as a list of one element
+        try (MappingIterator<T> iterator = objectMapper.readerFor(className).readValues(new File(filePath))) {
             List<T> results = new ArrayList<>();
 
-            // Check if the JSON is an array or a single object
-            if (jsonNode.isArray()) {
-                // Parse json data as list
-                TypeReference<List<T>> typeRef = new TypeReference<>() {};
-                results = objectMapper.convertValue(jsonNode,
-                        objectMapper.getTypeFactory().constructCollectionType(List.class, className));
-            } else if (jsonNode.isObject()) {
-                // Parse json data as an object then add to list results
-                T object = objectMapper.treeToValue(jsonNode, className);
+            while (iterator.hasNextValue()) {
+                T object = iterator.nextValue();
 
                 if (Objects.nonNull(object))
                     results.add(object);
@@ -98,6 +137,51 @@ public class JsonUtils {
         return new ArrayList<>();
     }
 
+    /**
+     * Iterate over the elements of a json array file, one element is bound at a time
+     * @param filePath Path to json file
+     * @param className Class of the elements
+     * @return An iterator to close once done, it fails with a {@link RuntimeException} on invalid content
+     * @param <T> Generics type
+     * @throws IOException if the file cannot be opened
+     */
+    public static <T> MappingIterator<T> iterateJsonArrayFromFile(String filePath, Class<T> className) throws IOException {
+        return objectMapper.readerFor(className).readValues(new File(filePath));
+    }
+
+    /**
+     * Stream the elements of a json array file, one element is bound at a time
+     * @param filePath Path to json file
+     * @param className Class of the elements
+     * @return A stream to close once done, for example with try-with-resources
+     * @param <T> Generics type
+     * @throws IOException if the file cannot be opened
+     */
+    public static <T> Stream<T> streamJsonArrayFromFile(String filePath, Class<T> className) throws IOException {
+        MappingIterator<T> iterator = iterateJsonArrayFromFile(filePath, className);
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED);
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                iterator.close();
+            } catch (IOException e) {
+                log.error("[READ_JSON_ERROR] - Cannot close file: {}. {}", filePath, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Open a writer of a json array file, elements are written to the file as they are added
+     * @param filePath Path to json file
+     * @param append Add to the array already in the file instead of replacing its content
+     * @return A writer to close once done, the file holds a valid array after closing
+     * @throws IOException if the file cannot be opened, or does not end with an array when appending
+     */
+    public static JsonArrayWriter openJsonArrayWriter(String filePath, boolean append) throws IOException {
+        File file = new File(filePath);
+        return append ? JsonArrayWriter.append(objectMapper, file) : JsonArrayWriter.create(objectMapper, file);
+    }
+
     /**
      * Delete old data in file and overwrite a new json object
      * @param filePath Path to json file
@@ -0,0 +1,53 @@
+package com.dct.proxy.compression;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Brotli through its native library, which is only loaded on the platforms it is built for
+ *
+ * @author thoaidc
+ */
+final class BrotliCodec {
+    private static final Logger log = LoggerFactory.getLogger(BrotliCodec.class);
+    private static final boolean AVAILABLE = load();
+
+    private BrotliCodec() {}
+
+    private static boolean load() {
+        try {
+            Brotli4jLoader.ensureAvailability();
+            return true;
+        } catch (LinkageError | RuntimeException e) {
+            log.warn("[COMPRESSION] - Brotli is not available on this platform: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    static byte[] encode(byte[] body, int quality) throws IOException {
+        return Encoder.compress(body, new Encoder.Parameters().setQuality(quality));
+    }
+
+    /**
+     * Compress what is written to the returned stream into the given one, closing it finishes the body
+     */
+    static OutputStream encoder(OutputStream out, int quality) throws IOException {
+        return new BrotliOutputStream(out, new Encoder.Parameters().setQuality(quality));
+    }
+
+    static InputStream decoder(InputStream in) throws IOException {
+        return new BrotliInputStream(in);
+    }
+}
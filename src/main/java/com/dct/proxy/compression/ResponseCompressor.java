@@ -0,0 +1,362 @@
+package com.dct.proxy.compression;
+
+import com.dct.proxy.config.properties.CompressionProps;
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.constants.ContentCoding;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negotiates the content coding of the responses sent to clients from their {@code Accept-Encoding} <p>
+ * Identity bodies of a compressible type and size are compressed with Brotli (when its native library loads)
+ * or gzip, whichever the client prefers. A body the upstream already compressed is relayed as is when the client
+ * accepts its coding, it is only decoded for clients that do not, up to {@code max-decoded-size-bytes}
+ * (a larger body is relayed in its coding). {@code Cache-Control: no-transform},
+ * partial content and bodiless statuses are never touched
+ *
+ * @author thoaidc
+ */
+public class ResponseCompressor {
+    private static final Logger log = LoggerFactory.getLogger(ResponseCompressor.class);
+    // No body, or a range of the body that must be sent as the upstream encoded it
+    private static final Set<Integer> UNTOUCHED_STATUSES = Set.of(204, 206, 304);
+    private static final int GZIP_BUFFER_SIZE = 8192;
+    private final long minSizeBytes;
+    private final List<MediaType> mimeTypes;
+    private final int gzipLevel;
+    private final long maxDecodedSizeBytes;
+    private final boolean brotli;
+    private final int brotliQuality;
+    private final boolean cacheVariants;
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder passedThrough = new LongAdder();
+    private final LongAdder decoded = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    public ResponseCompressor(CompressionProps props) {
+        this.minSizeBytes = props.getMinSizeBytes();
+        this.mimeTypes = props.getMimeTypes().stream().map(MediaType::parseMediaType).toList();
+        this.gzipLevel = props.getGzipLevel();
+        this.maxDecodedSizeBytes = props.getMaxDecodedSizeBytes();
+        this.brotli = ActivateStatus.ENABLED.equals(props.getBrotli().getActivate()) && BrotliCodec.isAvailable();
+        this.brotliQuality = props.getBrotli().getQuality();
+        this.cacheVariants = ActivateStatus.ENABLED.equals(props.getCacheVariants());
+    }
+
+    /**
+     * @return true if the compressed bodies of cached responses are kept in the response cache
+     */
+    public boolean isCacheVariants() {
+        return cacheVariants;
+    }
+
+    public boolean isBrotliEnabled() {
+        return brotli;
+    }
+
+    /**
+     * Decide how the body of a response is sent to a client
+     * @param request the client request, for its method and {@code Accept-Encoding}
+     * @param status the status of the response
+     * @param headers the headers of the response as received or cached
+     * @param length the length of the body as received or cached
+     * @return the plan, {@link Plan#UNCHANGED} if the response is sent as it is
+     */
+    public Plan plan(HttpServletRequest request, int status, HttpHeaders headers, long length) {
+        ContentCoding source = ContentCoding.fromHeader(headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        // Unknown or stacked codings are relayed as they are
+        if (Objects.isNull(source)
+                || HttpMethod.HEAD.matches(request.getMethod())
+                || status < 200
+                || UNTOUCHED_STATUSES.contains(status)
+                || isNoTransform(headers)) {
+            return Plan.UNCHANGED;
+        }
+
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+
+        if (source != ContentCoding.IDENTITY) {
+            if (quality(acceptEncoding, source) > 0) {
+                passedThrough.increment();
+                return new Plan(source, source, true);
+            }
+
+            // The client cannot read the body as the upstream encoded it
+            if (source == ContentCoding.BR && !BrotliCodec.isAvailable()) {
+                return Plan.UNCHANGED;
+            }
+
+            ContentCoding target = isCompressible(headers) ? preferred(acceptEncoding) : ContentCoding.IDENTITY;
+            return new Plan(source, target, true);
+        }
+
+        if (length < minSizeBytes || !isCompressible(headers)) {
+            return Plan.UNCHANGED;
+        }
+
+        return new Plan(ContentCoding.IDENTITY, preferred(acceptEncoding), true);
+    }
+
+    /**
+     * Convert the body as planned
+     * @return the body in the target coding, or unchanged in its source coding if it cannot be converted
+     */
+    public Encoded transcode(Plan plan, byte[] body) {
+        if (!plan.isTranscoding()) {
+            return new Encoded(plan.source(), body);
+        }
+
+        try {
+            byte[] identity = decode(plan.source(), body);
+            byte[] encoded = encode(plan.target(), identity);
+
+            if (plan.source() != ContentCoding.IDENTITY) {
+                decoded.increment();
+            }
+
+            if (plan.target() != ContentCoding.IDENTITY) {
+                compressed.increment();
+                bytesIn.add(identity.length);
+                bytesOut.add(encoded.length);
+            }
+
+            return new Encoded(plan.target(), encoded);
+        } catch (IOException e) {
+            log.warn("[COMPRESSION] - Could not convert body from {} to {}: {}", plan.source(), plan.target(), e.getMessage());
+            return new Encoded(plan.source(), body);
+        }
+    }
+
+    /**
+     * Compress an identity body while it is written, for a body that is not held on the heap as a whole
+     * @param coding the target coding of the plan
+     * @param length the length of the identity body
+     * @param out the stream the encoded body is written to
+     * @return the stream to write the identity body to, closing it finishes the encoded body and closes {@code out}
+     */
+    public OutputStream encoder(ContentCoding coding, long length, OutputStream out) throws IOException {
+        if (coding == ContentCoding.IDENTITY) {
+            return out;
+        }
+
+        OutputStream counted = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesOut.add(len);
+            }
+        };
+
+        compressed.increment();
+        bytesIn.add(length);
+
+        if (coding == ContentCoding.BR) {
+            return BrotliCodec.encoder(counted, brotliQuality);
+        }
+
+        return new GZIPOutputStream(counted, GZIP_BUFFER_SIZE) {{ def.setLevel(gzipLevel); }};
+    }
+
+    /**
+     * Headers of the response sent with a body in the given coding
+     * @param plan the plan of the response
+     * @param coding the coding of the body actually sent
+     * @param length the length of the body actually sent, -1 if it is only known once sent
+     * @param source the headers of the response as received or cached
+     * @return the source headers if nothing changes, an updated copy otherwise
+     */
+    public HttpHeaders headersFor(Plan plan, ContentCoding coding, long length, HttpHeaders source) {
+        if (coding == plan.source() && !plan.vary()) {
+            return source;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        source.forEach((name, values) -> headers.put(name, new ArrayList<>(values)));
+
+        if (coding != plan.source()) {
+            if (coding == ContentCoding.IDENTITY) {
+                headers.remove(HttpHeaders.CONTENT_ENCODING);
+            } else {
+                headers.set(HttpHeaders.CONTENT_ENCODING, coding.getValue());
+            }
+
+            if (length >= 0) {
+                headers.setContentLength(length);
+            } else {
+                headers.remove(HttpHeaders.CONTENT_LENGTH);
+            }
+
+            String etag = headers.getETag();
+
+            // Each coding is another representation, a strong validator must not match both of them
+            if (Objects.nonNull(etag) && !etag.startsWith("W/")) {
+                headers.set(HttpHeaders.ETAG, "W/" + etag);
+            }
+        }
+
+        if (plan.vary() && headers.getVary().stream().noneMatch(HttpHeaders.ACCEPT_ENCODING::equalsIgnoreCase)) {
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        return headers;
+    }
+
+    private ContentCoding preferred(String acceptEncoding) {
+        double gzipQuality = quality(acceptEncoding, ContentCoding.GZIP);
+        double brotliQuality = brotli ? quality(acceptEncoding, ContentCoding.BR) : 0;
+
+        if (brotliQuality > 0 && brotliQuality >= gzipQuality) {
+            return ContentCoding.BR;
+        }
+
+        return gzipQuality > 0 ? ContentCoding.GZIP : ContentCoding.IDENTITY;
+    }
+
+    // Quality value of the coding in Accept-Encoding, 0 if the client does not accept it
+    private static double quality(String acceptEncoding, ContentCoding coding) {
+        double defaultQuality = coding == ContentCoding.IDENTITY ? 1 : 0;
+
+        if (!StringUtils.hasText(acceptEncoding)) {
+            return defaultQuality;
+        }
+
+        double wildcardQuality = -1;
+
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+
+            if (name.equals(coding.getValue()) || (coding == ContentCoding.GZIP && "x-gzip".equals(name))) {
+                return parseQuality(parts);
+            }
+
+            if ("*".equals(name)) {
+                wildcardQuality = parseQuality(parts);
+            }
+        }
+
+        return wildcardQuality >= 0 ? wildcardQuality : defaultQuality;
+    }
+
+    private static double parseQuality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+
+    private boolean isCompressible(HttpHeaders headers) {
+        try {
+            MediaType contentType = headers.getContentType();
+            return Objects.nonNull(contentType) && mimeTypes.stream().anyMatch(type -> type.includes(contentType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private static boolean isNoTransform(HttpHeaders headers) {
+        String cacheControl = headers.getCacheControl();
+        return Objects.nonNull(cacheControl) && cacheControl.toLowerCase(Locale.ROOT).contains("no-transform");
+    }
+
+    // Upstream bodies are decoded in memory for clients that do not accept their coding, up to a bounded size
+    private byte[] decode(ContentCoding coding, byte[] body) throws IOException {
+        if (coding == ContentCoding.IDENTITY) {
+            return body;
+        }
+
+        InputStream compressedBody = new ByteArrayInputStream(body);
+
+        try (InputStream in = coding == ContentCoding.BR ? BrotliCodec.decoder(compressedBody) : new GZIPInputStream(compressedBody)) {
+            byte[] decodedBody = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxDecodedSizeBytes + 1));
+
+            if (decodedBody.length > maxDecodedSizeBytes) {
+                throw new IOException("Decoded body larger than " + maxDecodedSizeBytes + " bytes");
+            }
+
+            return decodedBody;
+        }
+    }
+
+    private byte[] encode(ContentCoding coding, byte[] body) throws IOException {
+        return switch (coding) {
+            case IDENTITY -> body;
+            case BR -> BrotliCodec.encode(body, brotliQuality);
+            case GZIP -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out) {{ def.setLevel(gzipLevel); }}) {
+                    gzip.write(body);
+                }
+
+                yield out.toByteArray();
+            }
+        };
+    }
+
+    public long getCompressedCount() {
+        return compressed.sum();
+    }
+
+    public long getPassedThroughCount() {
+        return passedThrough.sum();
+    }
+
+    public long getDecodedCount() {
+        return decoded.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * How a response body is sent: converted from the source coding to the target coding,
+     * {@code vary} if the choice depends on {@code Accept-Encoding}
+     */
+    public record Plan(ContentCoding source, ContentCoding target, boolean vary) {
+        public static final Plan UNCHANGED = new Plan(ContentCoding.IDENTITY, ContentCoding.IDENTITY, false);
+
+        public boolean isTranscoding() {
+            return source != target;
+        }
+    }
+
+    public record Encoded(ContentCoding coding, byte[] body) {}
+}
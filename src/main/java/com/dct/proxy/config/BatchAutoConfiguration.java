@@ -0,0 +1,96 @@
+package com.dct.proxy.config;
+
+import com.dct.proxy.batch.ProxyBatchExecutor;
+import com.dct.proxy.config.properties.BatchProps;
+import com.dct.proxy.config.properties.ServerProxyProperties;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import com.dct.proxy.interceptor.ProxyRequestInterceptor;
+import com.dct.proxy.interceptor.ProxyRouteMatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+
+import static com.dct.proxy.constants.ActivateStatus.ENABLED_VALUE;
+
+/**
+ * Optional batch endpoint running several proxied sub-requests in parallel <p>
+ * Trigger conditions:
+ * <ul>
+ *     <li>Have property {@link BasePropertiesConstants#ENABLED_BATCH} in config file (Ex: application.yml)</li>
+ *     <li>The interceptor configuration is enabled, sub-requests are only sent on the paths it proxies</li>
+ *     <li>Sub-request metrics are registered when a {@link MeterRegistry} is available</li>
+ * </ul>
+ *
+ * @author thoaidc
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(BatchProps.class)
+@ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_BATCH, havingValue = ENABLED_VALUE)
+public class BatchAutoConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(BatchAutoConfiguration.class);
+    private static final String SUB_REQUESTS_METRIC = "proxy.batch.sub.requests";
+    private static final String ACTIVE_METRIC = "proxy.batch.active";
+    private final BatchProps batchProps;
+
+    public BatchAutoConfiguration(BatchProps batchProps) {
+        this.batchProps = batchProps;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(ProxyBatchExecutor.class)
+    public ProxyBatchExecutor proxyBatchExecutor(ServerProxyProperties proxyProperties,
+                                                 ObjectMapper objectMapper,
+                                                 ProxyRequestInterceptor proxyRequestInterceptor,
+                                                 ObjectProvider<ProxyRouteMatcher> proxyRouteMatcher,
+                                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        ProxyRouteMatcher routeMatcher = proxyRouteMatcher.getIfAvailable();
+
+        // Without the proxied routes, a sub-request could reach any path of the upstream
+        if (Objects.isNull(routeMatcher)) {
+            throw new IllegalStateException("Batch endpoint requires the interceptor configuration: app.interceptors.activate");
+        }
+
+        log.debug("[BATCH_AUTO_CONFIG] - Use batch endpoint, max items: {}, concurrency per batch: {}",
+                batchProps.getMaxItems(), batchProps.getMaxConcurrency());
+        ProxyBatchExecutor batchExecutor = new ProxyBatchExecutor(
+            batchProps,
+            proxyProperties.getPharmaIntegrationHost(),
+            routeMatcher,
+            objectMapper,
+            proxyRequestInterceptor::exchange
+        );
+
+        meterRegistry.ifAvailable(registry -> {
+            registerSubRequestCounter(registry, batchExecutor, "success", ProxyBatchExecutor::getSucceededCount);
+            registerSubRequestCounter(registry, batchExecutor, "failure", ProxyBatchExecutor::getFailedCount);
+            registerSubRequestCounter(registry, batchExecutor, "timeout", ProxyBatchExecutor::getTimedOutCount);
+            Gauge.builder(ACTIVE_METRIC, batchExecutor, ProxyBatchExecutor::getActiveCount)
+                .description("Batch sub-requests running")
+                .register(registry);
+        });
+
+        return batchExecutor;
+    }
+
+    private void registerSubRequestCounter(MeterRegistry registry,
+                                           ProxyBatchExecutor batchExecutor,
+                                           String result,
+                                           ToDoubleFunction<ProxyBatchExecutor> count) {
+        FunctionCounter.builder(SUB_REQUESTS_METRIC, batchExecutor, count)
+            .description("Batch sub-requests by result")
+            .tag("result", result)
+            .register(registry);
+    }
+}
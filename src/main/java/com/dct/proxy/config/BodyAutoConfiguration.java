@@ -0,0 +1,214 @@
+package com.dct.proxy.config;
+
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BodyLimits;
+import com.dct.proxy.body.BodySpooler;
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.config.properties.BodyProps;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.util.function.ToDoubleFunction;
+
+import static com.dct.proxy.constants.ActivateStatus.ENABLED_VALUE;
+
+/**
+ * Optional handling of the request and response bodies of proxied requests <p>
+ * Trigger conditions:
+ * <ul>
+ *     <li>Spooling: have property {@link BasePropertiesConstants#ENABLED_BODY_SPOOL} in config file
+ *     (Ex: application.yml), bodies above the memory threshold are written to temporary files. Requires
+ *     {@link BasePropertiesConstants#ENABLED_RELAY_STREAMING}, for the spooled bodies to be streamed to the relay</li>
+ *     <li>Budget: have property {@link BasePropertiesConstants#ENABLED_BODY_BUDGET}, the bodies held in memory
+ *     by the requests in progress are limited node-wide, requests that cannot reserve theirs are rejected</li>
+ *     <li>Limits: have property {@link BasePropertiesConstants#ENABLED_BODY_LIMITS}, request bodies are checked
+ *     against the maximum size and content types of their route before they are read</li>
+ *     <li>Buffer pool: have property {@link BasePropertiesConstants#ENABLED_BODY_POOL}, the arrays used to read
+ *     and copy the bodies are reused by size class instead of allocated for each request</li>
+ *     <li>Body metrics are registered when a {@link MeterRegistry} is available</li>
+ * </ul>
+ *
+ * @author thoaidc
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(BodyProps.class)
+public class BodyAutoConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(BodyAutoConfiguration.class);
+    private static final String SPOOLED_BODIES_METRIC = "proxy.body.spooled";
+    private static final String SPOOLED_BYTES_METRIC = "proxy.body.spooled.bytes";
+    private static final String SPOOL_FILES_METRIC = "proxy.body.spool.files";
+    private static final String SPOOL_ACTIVE_BYTES_METRIC = "proxy.body.spool.active.bytes";
+    private static final String BUDGET_USED_METRIC = "proxy.body.budget.used";
+    private static final String BUDGET_CAPACITY_METRIC = "proxy.body.budget.capacity";
+    private static final String BUDGET_WAITS_METRIC = "proxy.body.budget.waits";
+    private static final String BUDGET_REJECTIONS_METRIC = "proxy.body.budget.rejections";
+    private static final String LIMITS_REJECTIONS_METRIC = "proxy.body.limits.rejections";
+    private static final String POOL_ACQUIRED_METRIC = "proxy.body.pool.acquired";
+    private static final String POOL_ALLOCATED_METRIC = "proxy.body.pool.allocated";
+    private static final String POOL_OUTSTANDING_METRIC = "proxy.body.pool.outstanding";
+    private static final String POOL_POOLED_BYTES_METRIC = "proxy.body.pool.pooled.bytes";
+    private static final String POOL_LEAKS_METRIC = "proxy.body.pool.leaks";
+    private final BodyProps bodyProps;
+
+    public BodyAutoConfiguration(BodyProps bodyProps) {
+        this.bodyProps = bodyProps;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(BodySpooler.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_BODY_SPOOL, havingValue = ENABLED_VALUE)
+    public BodySpooler bodySpooler(Environment environment,
+                                   ObjectProvider<BufferPool> bufferPool,
+                                   ObjectProvider<MeterRegistry> meterRegistry) throws IOException {
+        // Without the streaming sender a spooled body is parsed in full on the heap, spooling would only add a copy
+        if (!ENABLED_VALUE.equalsIgnoreCase(environment.getProperty(BasePropertiesConstants.ENABLED_RELAY_STREAMING))) {
+            throw new IllegalStateException("Body spooling requires the streaming relay sender: app.relay.streaming.activate");
+        }
+
+        BodySpooler spooler = new BodySpooler(bodyProps.getSpool(), bufferPool.getIfAvailable(BufferPool::unpooled));
+        log.debug("[BODY_AUTO_CONFIG] - Use body spooling above {} bytes in {}",
+                spooler.getMemoryThresholdBytes(), spooler.getDirectory());
+
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder(SPOOLED_BODIES_METRIC, spooler, BodySpooler::getSpooledBodyCount)
+                .description("Bodies written to a spool file")
+                .register(registry);
+            FunctionCounter.builder(SPOOLED_BYTES_METRIC, spooler, BodySpooler::getSpooledBytes)
+                .description("Size of the bodies written to spool files")
+                .baseUnit("bytes")
+                .register(registry);
+            Gauge.builder(SPOOL_FILES_METRIC, spooler, BodySpooler::getActiveFileCount)
+                .description("Spool files of the requests in progress")
+                .register(registry);
+            Gauge.builder(SPOOL_ACTIVE_BYTES_METRIC, spooler, BodySpooler::getActiveBytes)
+                .description("Size of the spool files of the requests in progress")
+                .baseUnit("bytes")
+                .register(registry);
+        });
+
+        return spooler;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(BodyBudget.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_BODY_BUDGET, havingValue = ENABLED_VALUE)
+    public BodyBudget bodyBudget(ObjectProvider<MeterRegistry> meterRegistry) {
+        BodyProps.BudgetConfig config = bodyProps.getBudget();
+        BodyBudget budget = new BodyBudget(config);
+        log.debug("[BODY_AUTO_CONFIG] - Use in-flight body budget of {} bytes, max wait: {}ms",
+                config.getMaxInFlightBytes(), config.getMaxWait());
+
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder(BUDGET_USED_METRIC, budget, BodyBudget::getUsedBytes)
+                .description("Bytes of the in-flight body budget reserved by the requests in progress")
+                .baseUnit("bytes")
+                .register(registry);
+            Gauge.builder(BUDGET_CAPACITY_METRIC, budget, BodyBudget::getCapacityBytes)
+                .description("Bytes of bodies the requests in progress may hold in memory")
+                .baseUnit("bytes")
+                .register(registry);
+            FunctionCounter.builder(BUDGET_WAITS_METRIC, budget, BodyBudget::getWaitCount)
+                .description("Reservations that waited for bytes released by other requests")
+                .register(registry);
+            FunctionCounter.builder(BUDGET_REJECTIONS_METRIC, budget, BodyBudget::getBusyRejectionCount)
+                .description("Requests rejected by the in-flight body budget, by reason")
+                .tag("reason", "busy")
+                .register(registry);
+            FunctionCounter.builder(BUDGET_REJECTIONS_METRIC, budget, BodyBudget::getTooLargeRejectionCount)
+                .description("Requests rejected by the in-flight body budget, by reason")
+                .tag("reason", "too_large")
+                .register(registry);
+        });
+
+        return budget;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(BodyLimits.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_BODY_LIMITS, havingValue = ENABLED_VALUE)
+    public BodyLimits bodyLimits(ObjectProvider<MeterRegistry> meterRegistry) {
+        BodyProps.LimitsConfig config = bodyProps.getLimits();
+        BodyLimits limits = new BodyLimits(config);
+        log.debug("[BODY_AUTO_CONFIG] - Use request body limits, default max size: {} bytes, routes: {}",
+                config.getMaxSizeBytes(), config.getRoutes().size());
+
+        meterRegistry.ifAvailable(registry -> {
+            registerLimitsCounter(registry, limits, "too_large_announced", BodyLimits::getTooLargeAnnouncedCount);
+            registerLimitsCounter(registry, limits, "too_large_streamed", BodyLimits::getTooLargeStreamedCount);
+            registerLimitsCounter(registry, limits, "content_type", BodyLimits::getUnsupportedTypeCount);
+        });
+
+        return limits;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(BufferPool.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_BODY_POOL, havingValue = ENABLED_VALUE)
+    public BufferPool bufferPool(ObjectProvider<MeterRegistry> meterRegistry) {
+        BodyProps.PoolConfig config = bodyProps.getPool();
+        BufferPool pool = new BufferPool(config);
+        log.debug("[BODY_AUTO_CONFIG] - Use body buffer pool, size classes: {} to {} bytes, pooled: {} bytes, leak detection: {}",
+                pool.getMinBufferBytes(), pool.getMaxBufferBytes(), config.getMaxPooledBytes(), pool.isLeakDetection());
+
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder(POOL_ACQUIRED_METRIC, pool, BufferPool::getAcquiredCount)
+                .description("Body buffers acquired")
+                .register(registry);
+            FunctionCounter.builder(POOL_ALLOCATED_METRIC, pool, BufferPool::getAllocatedCount)
+                .description("Body buffers allocated because none of their size was pooled")
+                .register(registry);
+            Gauge.builder(POOL_OUTSTANDING_METRIC, pool, BufferPool::getOutstandingCount)
+                .description("Body buffers acquired and not released yet")
+                .register(registry);
+            Gauge.builder(POOL_POOLED_BYTES_METRIC, pool, BufferPool::getPooledBytes)
+                .description("Size of the released body buffers kept for reuse")
+                .baseUnit("bytes")
+                .register(registry);
+            FunctionCounter.builder(POOL_LEAKS_METRIC, pool, BufferPool::getLeakCount)
+                .description("Body buffers garbage collected without being released, with leak detection")
+                .register(registry);
+        });
+
+        return pool;
+    }
+
+    /**
+     * Tomcat answers {@code Expect: 100-continue} before the request reaches the application by default,
+     * the client then uploads a body that may be rejected from its headers alone.
+     * The interim response is sent on the first read of the body instead, a rejected client gets its 413 first
+     */
+    @Bean
+    @ConditionalOnClass(name = "org.apache.catalina.startup.Tomcat")
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_BODY_LIMITS, havingValue = ENABLED_VALUE)
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> continueOnReadCustomizer() {
+        log.debug("[BODY_AUTO_CONFIG] - Send 100 Continue on the first read of the request body");
+        return factory -> factory.addConnectorCustomizers(
+            connector -> connector.setProperty("continueResponseTiming", "onRead")
+        );
+    }
+
+    private void registerLimitsCounter(MeterRegistry registry,
+                                       BodyLimits limits,
+                                       String reason,
+                                       ToDoubleFunction<BodyLimits> count) {
+        FunctionCounter.builder(LIMITS_REJECTIONS_METRIC, limits, count)
+            .description("Request bodies rejected by the limits of their route, by reason")
+            .tag("reason", reason)
+            .register(registry);
+    }
+}
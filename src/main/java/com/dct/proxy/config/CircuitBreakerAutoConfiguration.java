@@ -1,5 +1,6 @@
 package com.dct.proxy.config;
 
+import com.dct.proxy.body.BodyRejectedException;
 import com.dct.proxy.interceptor.BaseCircuitBreakerRestTemplateInterceptor;
 import com.dct.proxy.interceptor.DefaultCircuitBreakerRestTemplateInterceptor;
 import com.dct.proxy.config.properties.CircuitBreakerProps;
@@ -91,6 +92,8 @@ public class CircuitBreakerAutoConfiguration {
                     TimeoutException.class,
                     RuntimeException.class
                 )
+                // Bodies refused by this node, the upstream is healthy
+                .ignoreExceptions(BodyRejectedException.class)
                 // If the result is Exception then it is considered a failure
                 .recordResult(result -> result instanceof Exception)
                 .build();
@@ -0,0 +1,82 @@
+package com.dct.proxy.config;
+
+import com.dct.proxy.compression.ResponseCompressor;
+import com.dct.proxy.config.properties.CompressionProps;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+import java.util.function.ToDoubleFunction;
+
+import static com.dct.proxy.constants.ActivateStatus.ENABLED_VALUE;
+
+/**
+ * Optional compression of the responses sent to clients, negotiated with their {@code Accept-Encoding} <p>
+ * Trigger conditions:
+ * <ul>
+ *     <li>Have property {@link BasePropertiesConstants#ENABLED_COMPRESSION} in config file (Ex: application.yml)</li>
+ *     <li>Compression metrics are registered when a {@link MeterRegistry} is available</li>
+ * </ul>
+ *
+ * @author thoaidc
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(CompressionProps.class)
+@ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_COMPRESSION, havingValue = ENABLED_VALUE)
+public class CompressionAutoConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(CompressionAutoConfiguration.class);
+    private static final String RESPONSES_METRIC = "proxy.compression.responses";
+    private static final String BYTES_METRIC = "proxy.compression.bytes";
+    private final CompressionProps compressionProps;
+
+    public CompressionAutoConfiguration(CompressionProps compressionProps) {
+        this.compressionProps = compressionProps;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(ResponseCompressor.class)
+    public ResponseCompressor responseCompressor(ObjectProvider<MeterRegistry> meterRegistry) {
+        ResponseCompressor compressor = new ResponseCompressor(compressionProps);
+        log.debug("[COMPRESSION_AUTO_CONFIG] - Use response compression, min size: {} bytes, brotli: {}",
+                compressionProps.getMinSizeBytes(), compressor.isBrotliEnabled());
+
+        meterRegistry.ifAvailable(registry -> {
+            registerResponseCounter(registry, compressor, "compressed", ResponseCompressor::getCompressedCount);
+            registerResponseCounter(registry, compressor, "passthrough", ResponseCompressor::getPassedThroughCount);
+            registerResponseCounter(registry, compressor, "decoded", ResponseCompressor::getDecodedCount);
+            registerBytesCounter(registry, compressor, "in", ResponseCompressor::getBytesIn);
+            registerBytesCounter(registry, compressor, "out", ResponseCompressor::getBytesOut);
+        });
+
+        return compressor;
+    }
+
+    private void registerResponseCounter(MeterRegistry registry,
+                                         ResponseCompressor compressor,
+                                         String result,
+                                         ToDoubleFunction<ResponseCompressor> count) {
+        FunctionCounter.builder(RESPONSES_METRIC, compressor, count)
+            .description("Responses compressed, relayed as compressed by the upstream or decoded for the client")
+            .tag("result", result)
+            .register(registry);
+    }
+
+    private void registerBytesCounter(MeterRegistry registry,
+                                      ResponseCompressor compressor,
+                                      String stage,
+                                      ToDoubleFunction<ResponseCompressor> count) {
+        FunctionCounter.builder(BYTES_METRIC, compressor, count)
+            .description("Size of the compressed bodies before and after compression")
+            .tag("stage", stage)
+            .baseUnit("bytes")
+            .register(registry);
+    }
+}
@@ -1,11 +1,13 @@
 package com.dct.proxy.config;
 
+import com.dct.proxy.common.JsonCodec;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
@@ -41,6 +43,24 @@ public class DataConverterAutoConfiguration {
         return new Jdk8Module();
     }
 
+    /**
+     * Property access through generated lambdas instead of reflection
+     * @return the corresponding Jackson module.
+     */
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    /**
+     * Readers and writers of the hot types, built once from the application {@link ObjectMapper}
+     */
+    @Bean
+    @ConditionalOnMissingBean(JsonCodec.class)
+    public JsonCodec jsonCodec(ObjectMapper objectMapper) {
+        return new JsonCodec(objectMapper);
+    }
+
     public static ObjectMapper buildObjectMapper() {
         ObjectMapper objectMapper = new ObjectMapper();
         // Avoid errors when encountering undefined properties in JSON that are not present in the Java class being converted
@@ -50,6 +70,7 @@ public class DataConverterAutoConfiguration {
         objectMapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
         objectMapper.registerModule(new JavaTimeModule()); // To support Instant datatype of Java 8
         objectMapper.registerModule(new Jdk8Module());
+        objectMapper.registerModule(new BlackbirdModule());
         return objectMapper;
     }
 }
@@ -5,9 +5,11 @@ import com.dct.proxy.config.properties.HttpClientProps;
 import com.dct.proxy.config.properties.ServerProxyProperties;
 import com.dct.proxy.constants.BasePropertiesConstants;
 import com.dct.proxy.interceptor.BaseCircuitBreakerRestTemplateInterceptor;
+import com.dct.proxy.relay.RelayCompressionInterceptor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -87,7 +89,8 @@ public class HttpClientAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean(RestTemplate.class)
     @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_CIRCUIT_BREAKER_CONFIG, havingValue = ENABLED_VALUE)
-    public RestTemplate defaultRestTemplateWithCircuitBreaker(ClientHttpRequestFactory clientHttpRequestFactory) {
+    public RestTemplate defaultRestTemplateWithCircuitBreaker(ClientHttpRequestFactory clientHttpRequestFactory,
+                                                              ObjectProvider<RelayCompressionInterceptor> compression) {
         log.debug("[REST_TEMPLATE_AUTO_CONFIG] - Use default RestTemplate with embedded Circuit Breaker");
         log.debug("[REST_TEMPLATE_AUTO_CONFIG] - Use CB filter: {}", circuitBreakerInterceptor.getClass().getName());
         RestTemplate restTemplate = new RestTemplate(clientHttpRequestFactory);
@@ -95,6 +98,8 @@ public class HttpClientAutoConfiguration {
         MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
         converter.setObjectMapper(objectMapper);
         restTemplate.getMessageConverters().add(converter);
+        // Outside the circuit breaker interceptor, so a retried request is not compressed again
+        compression.ifAvailable(restTemplate.getInterceptors()::add);
         restTemplate.getInterceptors().add(circuitBreakerInterceptor);
         return restTemplate;
     }
@@ -115,12 +120,14 @@ public class HttpClientAutoConfiguration {
         havingValue = DISABLED_VALUE,
         matchIfMissing = true
     )
-    public RestTemplate restTemplateWithoutCircuitBreaker(ClientHttpRequestFactory clientHttpRequestFactoryWithoutCB) {
+    public RestTemplate restTemplateWithoutCircuitBreaker(ClientHttpRequestFactory clientHttpRequestFactoryWithoutCB,
+                                                          ObjectProvider<RelayCompressionInterceptor> compression) {
         log.debug("[REST_TEMPLATE_AUTO_CONFIG] - Use default RestTemplate without CircuitBreaker");
         RestTemplate restTemplate = new RestTemplate(clientHttpRequestFactoryWithoutCB);
         MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
         converter.setObjectMapper(objectMapper);
         restTemplate.getMessageConverters().add(converter);
+        compression.ifAvailable(restTemplate.getInterceptors()::add);
         return restTemplate;
     }
 }
@@ -0,0 +1,78 @@
+package com.dct.proxy.config;
+
+import com.dct.proxy.cache.IdempotencyStore;
+import com.dct.proxy.config.properties.IdempotencyProps;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+import java.util.function.ToDoubleFunction;
+
+import static com.dct.proxy.constants.ActivateStatus.ENABLED_VALUE;
+
+/**
+ * Optional store of responses to requests sent with an {@code Idempotency-Key} header <p>
+ * Trigger conditions:
+ * <ul>
+ *     <li>Have property {@link BasePropertiesConstants#ENABLED_IDEMPOTENCY} in config file (Ex: application.yml)</li>
+ *     <li>Store metrics are registered when a {@link MeterRegistry} is available</li>
+ * </ul>
+ *
+ * @author thoaidc
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(IdempotencyProps.class)
+@ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_IDEMPOTENCY, havingValue = ENABLED_VALUE)
+public class IdempotencyAutoConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyAutoConfiguration.class);
+    private static final String REQUESTS_METRIC = "proxy.idempotency.requests";
+    private static final String STORED_METRIC = "proxy.idempotency.stored";
+    private static final String IN_FLIGHT_METRIC = "proxy.idempotency.in.flight";
+    private final IdempotencyProps idempotencyProps;
+
+    public IdempotencyAutoConfiguration(IdempotencyProps idempotencyProps) {
+        this.idempotencyProps = idempotencyProps;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(IdempotencyStore.class)
+    public IdempotencyStore idempotencyStore(ObjectProvider<MeterRegistry> meterRegistry) {
+        log.debug("[IDEMPOTENCY_AUTO_CONFIG] - Use idempotency store, header: {}, window: {}ms",
+                idempotencyProps.getHeaderName(), idempotencyProps.getWindow());
+        IdempotencyStore store = new IdempotencyStore(idempotencyProps);
+
+        meterRegistry.ifAvailable(registry -> {
+            registerRequestCounter(registry, store, "original", IdempotencyStore::getOriginalCount);
+            registerRequestCounter(registry, store, "replayed", IdempotencyStore::getReplayCount);
+            registerRequestCounter(registry, store, "mismatch", IdempotencyStore::getMismatchCount);
+            registerRequestCounter(registry, store, "in_progress", IdempotencyStore::getInProgressCount);
+            Gauge.builder(STORED_METRIC, store, IdempotencyStore::getStoredCount)
+                .description("Responses stored for their idempotency key")
+                .register(registry);
+            Gauge.builder(IN_FLIGHT_METRIC, store, IdempotencyStore::getInFlightCount)
+                .description("Original requests in flight")
+                .register(registry);
+        });
+
+        return store;
+    }
+
+    private void registerRequestCounter(MeterRegistry registry,
+                                        IdempotencyStore store,
+                                        String outcome,
+                                        ToDoubleFunction<IdempotencyStore> count) {
+        FunctionCounter.builder(REQUESTS_METRIC, store, count)
+            .description("Requests with an idempotency key by outcome")
+            .tag("outcome", outcome)
+            .register(registry);
+    }
+}
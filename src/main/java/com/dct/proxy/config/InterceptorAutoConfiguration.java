@@ -1,13 +1,21 @@
 package com.dct.proxy.config;
 
 import com.dct.proxy.config.properties.InterceptorProps;
+import com.dct.proxy.constants.ActivateStatus;
 import com.dct.proxy.constants.BasePropertiesConstants;
+import com.dct.proxy.interceptor.ProxyFastPathFilter;
+import com.dct.proxy.interceptor.ProxyRequestInterceptor;
+import com.dct.proxy.interceptor.ProxyRouteMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
 import org.springframework.lang.NonNull;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistration;
@@ -37,6 +45,11 @@ public class InterceptorAutoConfiguration implements WebMvcConfigurer {
         log.debug("[INTERCEPTOR_AUTO_CONFIG] - Registering handler interceptors");
 
         interceptorProps.getChain().forEach(interceptorConfig -> {
+            if (isHandledByFastPath(interceptorConfig)) {
+                log.debug("[INTERCEPTOR_AUTO_CONFIG] - Skip interceptor handled by fast path filter");
+                return;
+            }
+
             log.debug("[INTERCEPTOR_AUTO_CONFIG] - Add interceptor: {}", interceptorConfig.getName().getName());
             HandlerInterceptor interceptor = getInterceptorInstance(interceptorConfig.getName());
             InterceptorRegistration interceptorRegistration = registry.addInterceptor(interceptor);
@@ -51,6 +64,51 @@ public class InterceptorAutoConfiguration implements WebMvcConfigurer {
         });
     }
 
+    /**
+     * Forward proxied routes at servlet filter level, so they never reach the {@code DispatcherServlet} <p>
+     * Ordered right after the character encoding filter, the request body is still decoded with the forced charset
+     */
+    @Bean
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_INTERCEPTOR_FAST_PATH, havingValue = ENABLED_VALUE)
+    public FilterRegistrationBean<ProxyFastPathFilter> proxyFastPathFilter(ProxyRequestInterceptor interceptor,
+                                                                           ProxyRouteMatcher proxyRouteMatcher) {
+        FilterRegistrationBean<ProxyFastPathFilter> registration = new FilterRegistrationBean<>(
+            new ProxyFastPathFilter(interceptor, proxyRouteMatcher)
+        );
+
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        registration.setEnabled(Objects.nonNull(getProxyConfig().getName()));
+        log.debug("[INTERCEPTOR_AUTO_CONFIG] - Fast path filter enabled: {}", registration.isEnabled());
+        return registration;
+    }
+
+    /**
+     * Paths proxied by {@link ProxyRequestInterceptor}, the batch endpoint checks its sub-requests against them
+     */
+    @Bean
+    @ConditionalOnMissingBean(ProxyRouteMatcher.class)
+    public ProxyRouteMatcher proxyRouteMatcher() {
+        InterceptorProps.InterceptorConfig proxyConfig = getProxyConfig();
+        return new ProxyRouteMatcher(proxyConfig.getIncludedPatterns(), proxyConfig.getExcludedPatterns());
+    }
+
+    private InterceptorProps.InterceptorConfig getProxyConfig() {
+        return interceptorProps.getChain()
+                .stream()
+                .filter(this::isProxyInterceptor)
+                .findFirst()
+                .orElse(new InterceptorProps.InterceptorConfig());
+    }
+
+    private boolean isProxyInterceptor(InterceptorProps.InterceptorConfig interceptorConfig) {
+        Class<?> clazz = interceptorConfig.getName();
+        return Objects.nonNull(clazz) && ProxyRequestInterceptor.class.isAssignableFrom(clazz);
+    }
+
+    private boolean isHandledByFastPath(InterceptorProps.InterceptorConfig interceptorConfig) {
+        return ActivateStatus.ENABLED.equals(interceptorProps.getFastPath()) && isProxyInterceptor(interceptorConfig);
+    }
+
     private HandlerInterceptor getInterceptorInstance(Class<?> clazz) {
         // If the interceptor is a Spring bean, get it from the context
         Map<String, ?> beans = applicationContext.getBeansOfType(clazz);
@@ -0,0 +1,275 @@
+package com.dct.proxy.config;
+
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.common.JsonCodec;
+import com.dct.proxy.config.properties.RelayProps;
+import com.dct.proxy.config.properties.ServerProxyProperties;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import com.dct.proxy.constants.RelayEnvelopeFormat;
+import com.dct.proxy.relay.RelayCompressionInterceptor;
+import com.dct.proxy.relay.RelayEnvelopeCodec;
+import com.dct.proxy.relay.RelayEnvelopeWriter;
+import com.dct.proxy.relay.StreamingRelaySender;
+import com.dct.proxy.relay.RelayMicroBatcher;
+import com.dct.proxy.relay.RelayTunnelClient;
+import com.dct.proxy.relay.RelayTunnelServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static com.dct.proxy.constants.ActivateStatus.ENABLED_VALUE;
+
+/**
+ * Optional features of the link to the remote proxy server (the relay) <p>
+ * Trigger conditions:
+ * <ul>
+ *     <li>Micro-batching: have property {@link BasePropertiesConstants#ENABLED_RELAY_MICRO_BATCH}
+ *     in config file (Ex: application.yml), envelopes are sent with the proxy {@link RestTemplate}</li>
+ *     <li>Tunnel: have property {@link BasePropertiesConstants#ENABLED_RELAY_TUNNEL}, envelopes are sent
+ *     over persistent multiplexed connections instead of HTTP, it takes precedence over micro-batching</li>
+ *     <li>Loopback tunnel peer: have property {@link BasePropertiesConstants#ENABLED_RELAY_TUNNEL_LOOPBACK},
+ *     a local tunnel endpoint forwarding the envelopes to the HTTP relay, for tests and benchmarks</li>
+ *     <li>Envelope codec: have property {@link BasePropertiesConstants#ENABLED_RELAY_CODEC}, envelopes sent over HTTP
+ *     are encoded in JSON, Smile or CBOR depending on their upstream</li>
+ *     <li>Streaming: have property {@link BasePropertiesConstants#ENABLED_RELAY_STREAMING}, JSON envelopes are
+ *     generated straight onto the connection instead of being buffered by {@link RestTemplate}</li>
+ *     <li>Compression: have property {@link BasePropertiesConstants#ENABLED_RELAY_COMPRESSION}, envelopes and
+ *     responses exchanged with the relay through {@link RestTemplate} are compressed with zstd,
+ *     optionally with a trained dictionary</li>
+ *     <li>Relay metrics are registered when a {@link MeterRegistry} is available</li>
+ * </ul>
+ *
+ * @author thoaidc
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(RelayProps.class)
+public class RelayAutoConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(RelayAutoConfiguration.class);
+    private static final String ENVELOPES_METRIC = "proxy.relay.envelopes";
+    private static final String BATCHES_METRIC = "proxy.relay.batches";
+    private static final String PENDING_METRIC = "proxy.relay.batch.pending";
+    private static final String TUNNEL_EXCHANGES_METRIC = "proxy.relay.tunnel.exchanges";
+    private static final String TUNNEL_STREAMS_METRIC = "proxy.relay.tunnel.streams";
+    private static final String TUNNEL_RECONNECTS_METRIC = "proxy.relay.tunnel.reconnects";
+    private static final String ENVELOPE_BYTES_METRIC = "proxy.relay.envelope.bytes";
+    private static final String ENVELOPE_ENCODE_METRIC = "proxy.relay.envelope.encode";
+    private static final String COMPRESSION_BYTES_METRIC = "proxy.relay.compression.bytes";
+    private static final String COMPRESSION_RESPONSES_METRIC = "proxy.relay.compression.responses";
+    private final RelayProps relayProps;
+
+    public RelayAutoConfiguration(RelayProps relayProps) {
+        this.relayProps = relayProps;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RelayMicroBatcher.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RELAY_MICRO_BATCH, havingValue = ENABLED_VALUE)
+    public RelayMicroBatcher relayMicroBatcher(RestTemplate restTemplate,
+                                               ServerProxyProperties proxyProperties,
+                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        RelayProps.MicroBatchConfig config = relayProps.getMicroBatch();
+        log.debug("[RELAY_AUTO_CONFIG] - Use micro-batching, max items: {}, max delay: {}ms",
+                config.getMaxItems(), config.getMaxDelay());
+        String proxyUrl = proxyProperties.getHost() + proxyProperties.getProxyApi();
+        RelayMicroBatcher batcher = new RelayMicroBatcher(config, restTemplate, proxyUrl);
+
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder(ENVELOPES_METRIC, batcher, RelayMicroBatcher::getBatchedEnvelopeCount)
+                .description("Envelopes sent to the relay, by mode")
+                .tag("mode", "batched")
+                .register(registry);
+            FunctionCounter.builder(ENVELOPES_METRIC, batcher, RelayMicroBatcher::getSingleEnvelopeCount)
+                .description("Envelopes sent to the relay, by mode")
+                .tag("mode", "single")
+                .register(registry);
+            FunctionCounter.builder(BATCHES_METRIC, batcher, RelayMicroBatcher::getBatchCount)
+                .description("Batch requests sent to the relay")
+                .register(registry);
+            Gauge.builder(PENDING_METRIC, batcher, RelayMicroBatcher::getPendingCount)
+                .description("Envelopes waiting in the current batch window")
+                .register(registry);
+        });
+
+        return batcher;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RelayTunnelClient.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RELAY_TUNNEL, havingValue = ENABLED_VALUE)
+    public RelayTunnelClient relayTunnelClient(JsonCodec jsonCodec,
+                                               ObjectProvider<CircuitBreaker> circuitBreaker,
+                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        RelayProps.TunnelConfig config = relayProps.getTunnel();
+        checkTunnelConfig(config);
+        log.debug("[RELAY_AUTO_CONFIG] - Use relay tunnel to {}:{}, connections: {}",
+                config.getHost(), config.getPort(), config.getConnections());
+        RelayTunnelClient tunnelClient = new RelayTunnelClient(config, jsonCodec, circuitBreaker.getIfAvailable());
+
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder(TUNNEL_EXCHANGES_METRIC, tunnelClient, RelayTunnelClient::getExchangeCount)
+                .description("Envelopes sent through the relay tunnel, by result")
+                .tag("result", "sent")
+                .register(registry);
+            FunctionCounter.builder(TUNNEL_EXCHANGES_METRIC, tunnelClient, RelayTunnelClient::getFailureCount)
+                .description("Envelopes sent through the relay tunnel, by result")
+                .tag("result", "failure")
+                .register(registry);
+            FunctionCounter.builder(TUNNEL_RECONNECTS_METRIC, tunnelClient, RelayTunnelClient::getReconnectCount)
+                .description("Relay tunnel connections opened again after a failure")
+                .register(registry);
+            Gauge.builder(TUNNEL_STREAMS_METRIC, tunnelClient, RelayTunnelClient::getOpenStreamCount)
+                .description("Streams waiting for their response on the relay tunnel")
+                .register(registry);
+        });
+
+        return tunnelClient;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RelayTunnelServer.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RELAY_TUNNEL_LOOPBACK, havingValue = ENABLED_VALUE)
+    public RelayTunnelServer loopbackRelayTunnelServer(RestTemplate restTemplate,
+                                                       ServerProxyProperties proxyProperties,
+                                                       JsonCodec jsonCodec) throws IOException {
+        RelayProps.TunnelConfig config = relayProps.getTunnel();
+        checkTunnelConfig(config);
+        RelayProps.LoopbackConfig loopback = config.getLoopback();
+        String proxyUrl = proxyProperties.getHost() + proxyProperties.getProxyApi();
+        log.debug("[RELAY_AUTO_CONFIG] - Use loopback tunnel peer on port {}, forwarding to {}", loopback.getPort(), proxyUrl);
+
+        return new RelayTunnelServer(
+            config,
+            InetAddress.getLoopbackAddress(),
+            loopback.getPort(),
+            loopback.getWorkerThreads(),
+            jsonCodec,
+            envelope -> restTemplate.postForEntity(proxyUrl, new HttpEntity<>(envelope), byte[].class)
+        );
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RelayEnvelopeCodec.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RELAY_CODEC, havingValue = ENABLED_VALUE)
+    public RelayEnvelopeCodec relayEnvelopeCodec(RestTemplate restTemplate,
+                                                 ServerProxyProperties proxyProperties,
+                                                 ObjectMapper objectMapper,
+                                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        RelayProps.CodecConfig config = relayProps.getCodec();
+        log.debug("[RELAY_AUTO_CONFIG] - Use envelope codec, default format: {}, per upstream: {}",
+                config.getFormat(), config.getUpstreams());
+        String proxyUrl = proxyProperties.getHost() + proxyProperties.getProxyApi();
+        RelayEnvelopeCodec codec = new RelayEnvelopeCodec(config, objectMapper, restTemplate, proxyUrl);
+
+        meterRegistry.ifAvailable(registry -> {
+            for (RelayEnvelopeFormat format : RelayEnvelopeFormat.values()) {
+                String tag = format.name().toLowerCase(Locale.ROOT);
+                FunctionCounter.builder(ENVELOPE_BYTES_METRIC, codec, c -> c.getEncodedBytes(format))
+                    .description("Size of the envelopes sent to the relay, by format")
+                    .baseUnit("bytes")
+                    .tag("format", tag)
+                    .register(registry);
+                FunctionTimer.builder(
+                        ENVELOPE_ENCODE_METRIC,
+                        codec,
+                        c -> c.getEncodedCount(format),
+                        c -> c.getEncodeNanos(format),
+                        TimeUnit.NANOSECONDS
+                    )
+                    .description("Encoding time of the envelopes sent to the relay, by format")
+                    .tag("format", tag)
+                    .register(registry);
+            }
+        });
+
+        return codec;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(StreamingRelaySender.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RELAY_STREAMING, havingValue = ENABLED_VALUE)
+    public StreamingRelaySender streamingRelaySender(ClientHttpRequestFactory clientHttpRequestFactory,
+                                                     ServerProxyProperties proxyProperties,
+                                                     ObjectMapper objectMapper,
+                                                     ObjectProvider<CircuitBreaker> circuitBreaker,
+                                                     ObjectProvider<Retry> retry,
+                                                     ObjectProvider<BufferPool> bufferPool) {
+        String proxyUrl = proxyProperties.getHost() + proxyProperties.getProxyApi();
+        log.debug("[RELAY_AUTO_CONFIG] - Use streaming envelope writer to {}", proxyUrl);
+
+        return new StreamingRelaySender(
+            clientHttpRequestFactory,
+            new RelayEnvelopeWriter(objectMapper),
+            circuitBreaker.getIfAvailable(),
+            retry.getIfAvailable(),
+            bufferPool.getIfAvailable(BufferPool::unpooled),
+            proxyUrl
+        );
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RelayCompressionInterceptor.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RELAY_COMPRESSION, havingValue = ENABLED_VALUE)
+    public RelayCompressionInterceptor relayCompressionInterceptor(ServerProxyProperties proxyProperties,
+                                                                   ObjectProvider<MeterRegistry> meterRegistry) throws IOException {
+        RelayProps.CompressionConfig config = relayProps.getCompression();
+        log.debug("[RELAY_AUTO_CONFIG] - Use zstd compression to {}, level: {}, dictionary: {}",
+                proxyProperties.getHost(), config.getLevel(), config.getDictionary());
+        RelayCompressionInterceptor interceptor = new RelayCompressionInterceptor(config, proxyProperties.getHost());
+
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder(COMPRESSION_BYTES_METRIC, interceptor, RelayCompressionInterceptor::getRawBytes)
+                .description("Size of the compressed envelopes sent to the relay, before and after compression")
+                .tag("stage", "raw")
+                .baseUnit("bytes")
+                .register(registry);
+            FunctionCounter.builder(COMPRESSION_BYTES_METRIC, interceptor, RelayCompressionInterceptor::getCompressedBytes)
+                .description("Size of the compressed envelopes sent to the relay, before and after compression")
+                .tag("stage", "compressed")
+                .baseUnit("bytes")
+                .register(registry);
+            FunctionCounter.builder(COMPRESSION_RESPONSES_METRIC, interceptor, RelayCompressionInterceptor::getDecodedResponseCount)
+                .description("Responses of the relay received compressed with zstd")
+                .register(registry);
+        });
+
+        return interceptor;
+    }
+
+    /**
+     * A frame larger than half the window leaves no room for the frames of other streams.
+     * A message takes the credit of all its frames at once, one larger than the window could never be sent
+     */
+    private static void checkTunnelConfig(RelayProps.TunnelConfig config) {
+        if (config.getMaxFrameSize() <= 0 || config.getMaxFrameSize() > config.getWindowSize() / 2) {
+            throw new IllegalStateException(
+                "Relay tunnel requires a frame size of at most half the window: app.relay.tunnel.max-frame-size"
+            );
+        }
+
+        if (config.getMaxMessageSize() > config.getWindowSize()) {
+            throw new IllegalStateException(
+                "Relay tunnel requires a message size of at most the window: app.relay.tunnel.max-message-size"
+            );
+        }
+    }
+}
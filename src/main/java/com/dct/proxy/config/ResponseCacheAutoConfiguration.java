@@ -0,0 +1,248 @@
+package com.dct.proxy.config;
+
+import com.dct.proxy.cache.CacheRefreshExecutor;
+import com.dct.proxy.cache.DiskCacheStore;
+import com.dct.proxy.cache.OffHeapSlabAllocator;
+import com.dct.proxy.cache.PeerResponseCache;
+import com.dct.proxy.cache.ProxyResponseCache;
+import com.dct.proxy.cache.RefreshAheadTracker;
+import com.dct.proxy.cache.RequestCoalescer;
+import com.dct.proxy.cache.RetryAfterSuppressor;
+import com.dct.proxy.common.JsonCodec;
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.util.StringUtils;
+
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+
+import static com.dct.proxy.constants.ActivateStatus.ENABLED_VALUE;
+
+/**
+ * Optional in-memory cache for idempotent proxied requests <p>
+ * Trigger conditions:
+ * <ul>
+ *     <li>Have property {@link BasePropertiesConstants#ENABLED_RESPONSE_CACHE} in config file (Ex: application.yml)</li>
+ *     <li>Hit, miss and eviction metrics are registered when a {@link MeterRegistry} is available</li>
+ * </ul>
+ *
+ * @author thoaidc
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(ResponseCacheProps.class)
+@ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RESPONSE_CACHE, havingValue = ENABLED_VALUE)
+public class ResponseCacheAutoConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(ResponseCacheAutoConfiguration.class);
+    private static final String OFF_HEAP_USED_BYTES_METRIC = "proxy.response.cache.off.heap.used";
+    private static final String DISK_USED_BYTES_METRIC = "proxy.response.cache.disk.used";
+    private static final String DISK_ENTRIES_METRIC = "proxy.response.cache.disk.entries";
+    private static final String COALESCED_CALLS_METRIC = "proxy.response.cache.coalescing.calls";
+    private static final String COALESCING_IN_FLIGHT_METRIC = "proxy.response.cache.coalescing.in.flight";
+    private static final String REFRESH_METRIC = "proxy.response.cache.refresh";
+    private static final String REFRESH_PENDING_METRIC = "proxy.response.cache.refresh.pending";
+    private static final String REFRESH_AHEAD_TRIGGERED_METRIC = "proxy.response.cache.refresh.ahead.triggered";
+    private static final String REFRESH_AHEAD_TRACKED_METRIC = "proxy.response.cache.refresh.ahead.tracked";
+    private static final String SUPPRESSED_CALLS_METRIC = "proxy.response.cache.retry.after.suppressed";
+    private static final String SUPPRESSED_ROUTES_METRIC = "proxy.response.cache.retry.after.routes";
+    private static final String PEER_CALLS_METRIC = "proxy.response.cache.peer.calls";
+    private static final String PEER_REPLICATED_METRIC = "proxy.response.cache.peer.replicated";
+    private final ResponseCacheProps responseCacheProps;
+
+    public ResponseCacheAutoConfiguration(ResponseCacheProps responseCacheProps) {
+        this.responseCacheProps = responseCacheProps;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(ProxyResponseCache.class)
+    public ProxyResponseCache proxyResponseCache(ObjectProvider<MeterRegistry> meterRegistry) {
+        log.debug("[RESPONSE_CACHE_AUTO_CONFIG] - Use in-memory response cache, max size: {} bytes",
+                responseCacheProps.getMaxSizeBytes());
+        ProxyResponseCache responseCache = new ProxyResponseCache(responseCacheProps);
+        meterRegistry.ifAvailable(registry -> {
+            CaffeineCacheMetrics.monitor(registry, responseCache.getNativeCache(), ProxyResponseCache.CACHE_NAME);
+
+            if (Objects.nonNull(responseCache.getOffHeapCache())) {
+                CaffeineCacheMetrics.monitor(
+                    registry,
+                    responseCache.getOffHeapCache(),
+                    ProxyResponseCache.OFF_HEAP_CACHE_NAME
+                );
+                OffHeapSlabAllocator allocator = responseCache.getOffHeapAllocator();
+                Gauge.builder(OFF_HEAP_USED_BYTES_METRIC, allocator, OffHeapSlabAllocator::getUsedBytes)
+                    .description("Direct memory held by cached response bodies")
+                    .baseUnit("bytes")
+                    .register(registry);
+            }
+
+            DiskCacheStore diskStore = responseCache.getDiskStore();
+
+            if (Objects.nonNull(diskStore)) {
+                Gauge.builder(DISK_USED_BYTES_METRIC, diskStore, DiskCacheStore::getUsedBytes)
+                    .description("Disk space held by cache segment files")
+                    .baseUnit("bytes")
+                    .register(registry);
+                Gauge.builder(DISK_ENTRIES_METRIC, diskStore, DiskCacheStore::getEntryCount)
+                    .description("Number of responses stored in the disk cache")
+                    .register(registry);
+            }
+        });
+
+        return responseCache;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RequestCoalescer.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RESPONSE_CACHE_COALESCING, havingValue = ENABLED_VALUE)
+    public RequestCoalescer requestCoalescer(ObjectProvider<MeterRegistry> meterRegistry) {
+        long maxWait = responseCacheProps.getCoalescing().getMaxWait();
+        log.debug("[RESPONSE_CACHE_AUTO_CONFIG] - Use request coalescing, max wait: {}ms", maxWait);
+        RequestCoalescer coalescer = new RequestCoalescer(maxWait);
+
+        meterRegistry.ifAvailable(registry -> {
+            registerCoalescingCounter(registry, coalescer, "leader", RequestCoalescer::getLeaderCalls);
+            registerCoalescingCounter(registry, coalescer, "collapsed", RequestCoalescer::getCollapsedCalls);
+            registerCoalescingCounter(registry, coalescer, "timeout", RequestCoalescer::getTimedOutWaits);
+            registerCoalescingCounter(registry, coalescer, "promoted", RequestCoalescer::getPromotions);
+            Gauge.builder(COALESCING_IN_FLIGHT_METRIC, coalescer, RequestCoalescer::getInFlightCount)
+                .description("Upstream calls currently shared by coalesced requests")
+                .register(registry);
+        });
+
+        return coalescer;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(CacheRefreshExecutor.class)
+    public CacheRefreshExecutor cacheRefreshExecutor(ObjectProvider<MeterRegistry> meterRegistry) {
+        ResponseCacheProps.RefreshConfig refreshConfig = responseCacheProps.getRefresh();
+        log.debug("[RESPONSE_CACHE_AUTO_CONFIG] - Use background cache refresh, max threads: {}, queue capacity: {}",
+                refreshConfig.getMaxThreads(), refreshConfig.getQueueCapacity());
+        CacheRefreshExecutor refreshExecutor = new CacheRefreshExecutor(
+            refreshConfig.getMaxThreads(),
+            refreshConfig.getQueueCapacity()
+        );
+
+        meterRegistry.ifAvailable(registry -> {
+            registerRefreshCounter(registry, refreshExecutor, "completed", CacheRefreshExecutor::getCompletedCount);
+            registerRefreshCounter(registry, refreshExecutor, "failed", CacheRefreshExecutor::getFailedCount);
+            registerRefreshCounter(registry, refreshExecutor, "rejected", CacheRefreshExecutor::getRejectedCount);
+            Gauge.builder(REFRESH_PENDING_METRIC, refreshExecutor, CacheRefreshExecutor::getPendingCount)
+                .description("Background cache refreshes scheduled or running")
+                .register(registry);
+        });
+
+        return refreshExecutor;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RefreshAheadTracker.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RESPONSE_CACHE_REFRESH_AHEAD, havingValue = ENABLED_VALUE)
+    public RefreshAheadTracker refreshAheadTracker(ObjectProvider<MeterRegistry> meterRegistry) {
+        ResponseCacheProps.RefreshAheadConfig refreshAheadConfig = responseCacheProps.getRefreshAhead();
+        log.debug("[RESPONSE_CACHE_AUTO_CONFIG] - Use refresh-ahead, min hits: {}, ahead ratio: {}",
+                refreshAheadConfig.getMinHits(), refreshAheadConfig.getAheadRatio());
+        RefreshAheadTracker tracker = new RefreshAheadTracker(refreshAheadConfig);
+
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder(REFRESH_AHEAD_TRIGGERED_METRIC, tracker, RefreshAheadTracker::getTriggeredCount)
+                .description("Hot entries refreshed before expiry")
+                .register(registry);
+            Gauge.builder(REFRESH_AHEAD_TRACKED_METRIC, tracker, RefreshAheadTracker::getTrackedKeyCount)
+                .description("Cache keys tracked for refresh-ahead")
+                .register(registry);
+        });
+
+        return tracker;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RetryAfterSuppressor.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RESPONSE_CACHE_NEGATIVE, havingValue = ENABLED_VALUE)
+    public RetryAfterSuppressor retryAfterSuppressor(ObjectProvider<MeterRegistry> meterRegistry) {
+        log.debug("[RESPONSE_CACHE_AUTO_CONFIG] - Use negative caching, status TTLs: {}",
+                responseCacheProps.getNegative().getStatuses());
+        RetryAfterSuppressor suppressor = new RetryAfterSuppressor(responseCacheProps.getNegative());
+
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder(SUPPRESSED_CALLS_METRIC, suppressor, RetryAfterSuppressor::getSuppressedCallCount)
+                .description("Upstream calls not sent because of a 503 Retry-After")
+                .register(registry);
+            Gauge.builder(SUPPRESSED_ROUTES_METRIC, suppressor, RetryAfterSuppressor::getSuppressedRouteCount)
+                .description("Upstream routes currently suppressed by a 503 Retry-After")
+                .register(registry);
+        });
+
+        return suppressor;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(PeerResponseCache.class)
+    @ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_RESPONSE_CACHE_PEER, havingValue = ENABLED_VALUE)
+    public PeerResponseCache peerResponseCache(JsonCodec jsonCodec, ObjectProvider<MeterRegistry> meterRegistry) {
+        ResponseCacheProps.PeerConfig peerConfig = responseCacheProps.getPeer();
+
+        if (!StringUtils.hasText(peerConfig.getSelf())) {
+            throw new IllegalStateException("Peer cache requires the URL of this node: app.response-cache.peer.self");
+        }
+
+        if (!StringUtils.hasText(peerConfig.getToken())) {
+            throw new IllegalStateException("Peer cache requires a shared token: app.response-cache.peer.token");
+        }
+
+        log.debug("[RESPONSE_CACHE_AUTO_CONFIG] - Use peer cache, nodes: {}", peerConfig.getNodes());
+        PeerResponseCache peerCache = new PeerResponseCache(peerConfig, jsonCodec);
+
+        meterRegistry.ifAvailable(registry -> {
+            registerPeerCounter(registry, peerCache, "hit", PeerResponseCache::getPeerHitCount);
+            registerPeerCounter(registry, peerCache, "failure", PeerResponseCache::getPeerFailureCount);
+            registerPeerCounter(registry, peerCache, "served", PeerResponseCache::getServedToPeersCount);
+            FunctionCounter.builder(PEER_REPLICATED_METRIC, peerCache, PeerResponseCache::getReplicatedCount)
+                .description("Hot keys owned by a peer replicated in the local cache")
+                .register(registry);
+        });
+
+        return peerCache;
+    }
+
+    private void registerPeerCounter(MeterRegistry registry,
+                                     PeerResponseCache peerCache,
+                                     String result,
+                                     ToDoubleFunction<PeerResponseCache> count) {
+        FunctionCounter.builder(PEER_CALLS_METRIC, peerCache, count)
+            .description("Peer cache calls by result, served counts the requests answered to other nodes")
+            .tag("result", result)
+            .register(registry);
+    }
+
+    private void registerRefreshCounter(MeterRegistry registry,
+                                        CacheRefreshExecutor refreshExecutor,
+                                        String result,
+                                        ToDoubleFunction<CacheRefreshExecutor> count) {
+        FunctionCounter.builder(REFRESH_METRIC, refreshExecutor, count)
+            .description("Background cache refreshes by result")
+            .tag("result", result)
+            .register(registry);
+    }
+
+    private void registerCoalescingCounter(MeterRegistry registry,
+                                           RequestCoalescer coalescer,
+                                           String result,
+                                           ToDoubleFunction<RequestCoalescer> count) {
+        FunctionCounter.builder(COALESCED_CALLS_METRIC, coalescer, count)
+            .description("Upstream calls of cacheable requests by coalescing result")
+            .tag("result", result)
+            .register(registry);
+    }
+}
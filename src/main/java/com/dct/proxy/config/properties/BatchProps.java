@@ -0,0 +1,79 @@
+package com.dct.proxy.config.properties;
+
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Contains configuration properties related to the client-facing batch endpoint<p>
+ * When the application starts, Spring will automatically create an instance of this class
+ * and load the values from configuration files like application.properties or application.yml <p>
+ *
+ * {@link ConfigurationProperties} helps Spring map config properties to fields,
+ * instead of using @{@link Value} for each property individually <p>
+ *
+ * {@link BasePropertiesConstants#BATCH_CONFIG} decides the prefix for the configurations that will be mapped <p>
+ *
+ * See <a href="">application-dev.yml</a> for detail
+ *
+ * @author thoaidc
+ */
+@SuppressWarnings("unused")
+@ConfigurationProperties(prefix = BasePropertiesConstants.BATCH_CONFIG)
+public class BatchProps {
+    private ActivateStatus activate = ActivateStatus.DISABLED;
+    private int maxItems = 50; // Sub-requests accepted in one batch
+    private int maxConcurrency = 8; // Sub-requests of one batch running at the same time
+    private long itemTimeout = 10000; // Milliseconds, a slower sub-request is answered with 504
+    private int maxThreads = 64; // Threads shared by all batches
+    private int queueCapacity = 256;
+
+    public ActivateStatus getActivate() {
+        return activate;
+    }
+
+    public void setActivate(ActivateStatus activate) {
+        this.activate = activate;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public void setMaxItems(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public long getItemTimeout() {
+        return itemTimeout;
+    }
+
+    public void setItemTimeout(long itemTimeout) {
+        this.itemTimeout = itemTimeout;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
@@ -0,0 +1,270 @@
+package com.dct.proxy.config.properties;
+
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Contains configuration properties related to the handling of the request and response bodies of proxied requests<p>
+ * When the application starts, Spring will automatically create an instance of this class
+ * and load the values from configuration files like application.properties or application.yml <p>
+ *
+ * {@link ConfigurationProperties} helps Spring map config properties to fields,
+ * instead of using @{@link Value} for each property individually <p>
+ *
+ * {@link BasePropertiesConstants#BODY_CONFIG} decides the prefix for the configurations that will be mapped <p>
+ *
+ * See <a href="">application-dev.yml</a> for detail
+ *
+ * @author thoaidc
+ */
+@SuppressWarnings("unused")
+@ConfigurationProperties(prefix = BasePropertiesConstants.BODY_CONFIG)
+public class BodyProps {
+    private SpoolConfig spool = new SpoolConfig();
+    private BudgetConfig budget = new BudgetConfig();
+    private LimitsConfig limits = new LimitsConfig();
+    private PoolConfig pool = new PoolConfig();
+
+    public SpoolConfig getSpool() {
+        return Optional.ofNullable(spool).orElse(new SpoolConfig());
+    }
+
+    public void setSpool(SpoolConfig spool) {
+        this.spool = spool;
+    }
+
+    public BudgetConfig getBudget() {
+        return Optional.ofNullable(budget).orElse(new BudgetConfig());
+    }
+
+    public void setBudget(BudgetConfig budget) {
+        this.budget = budget;
+    }
+
+    public LimitsConfig getLimits() {
+        return Optional.ofNullable(limits).orElse(new LimitsConfig());
+    }
+
+    public void setLimits(LimitsConfig limits) {
+        this.limits = limits;
+    }
+
+    public PoolConfig getPool() {
+        return Optional.ofNullable(pool).orElse(new PoolConfig());
+    }
+
+    public void setPool(PoolConfig pool) {
+        this.pool = pool;
+    }
+
+    public static class SpoolConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private int memoryThresholdBytes = 1024 * 1024; // Larger bodies are written to a temporary file
+        private String directory; // Defaults to a proxy-spool directory in java.io.tmpdir
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public int getMemoryThresholdBytes() {
+            return memoryThresholdBytes;
+        }
+
+        public void setMemoryThresholdBytes(int memoryThresholdBytes) {
+            this.memoryThresholdBytes = memoryThresholdBytes;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+    }
+
+    public static class BudgetConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private long maxInFlightBytes = 256 * 1024 * 1024; // Request and response bodies held in memory at once
+        private long maxWait = 500; // Milliseconds a request waits for a reservation before getting 503
+        private int chunkBytes = 64 * 1024; // Reserved at a time for bodies without Content-Length
+        private long retryAfter = 1; // Seconds announced to clients rejected while the budget is exhausted
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public long getMaxInFlightBytes() {
+            return maxInFlightBytes;
+        }
+
+        public void setMaxInFlightBytes(long maxInFlightBytes) {
+            this.maxInFlightBytes = maxInFlightBytes;
+        }
+
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(long maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public int getChunkBytes() {
+            return chunkBytes;
+        }
+
+        public void setChunkBytes(int chunkBytes) {
+            this.chunkBytes = chunkBytes;
+        }
+
+        public long getRetryAfter() {
+            return retryAfter;
+        }
+
+        public void setRetryAfter(long retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    public static class LimitsConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private long maxSizeBytes = 10 * 1024 * 1024; // Request bodies of routes without their own limit, -1 for none
+        private List<String> contentTypes = new ArrayList<>(); // Allowed request body types, empty for any
+        private List<RouteConfig> routes = new ArrayList<>();
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public long getMaxSizeBytes() {
+            return maxSizeBytes;
+        }
+
+        public void setMaxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        public List<String> getContentTypes() {
+            return Optional.ofNullable(contentTypes).orElse(Collections.emptyList());
+        }
+
+        public void setContentTypes(List<String> contentTypes) {
+            this.contentTypes = contentTypes;
+        }
+
+        public List<RouteConfig> getRoutes() {
+            return Optional.ofNullable(routes).orElse(Collections.emptyList());
+        }
+
+        public void setRoutes(List<RouteConfig> routes) {
+            this.routes = routes;
+        }
+    }
+
+    public static class RouteConfig {
+        private String pattern;
+        private Long maxSizeBytes; // Overrides the default limit, -1 for none
+        private List<String> contentTypes; // Overrides the default allowed types, empty for any
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public Long getMaxSizeBytes() {
+            return maxSizeBytes;
+        }
+
+        public void setMaxSizeBytes(Long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        public List<String> getContentTypes() {
+            return contentTypes;
+        }
+
+        public void setContentTypes(List<String> contentTypes) {
+            this.contentTypes = contentTypes;
+        }
+    }
+
+    public static class PoolConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private int minBufferBytes = 8 * 1024; // Smallest size class, rounded up to a power of two
+        private int maxBufferBytes = 1024 * 1024; // Largest size class, larger arrays are not pooled
+        private int copyBufferBytes = 64 * 1024; // Array used to copy a body between two streams
+        private long maxPooledBytes = 32 * 1024 * 1024; // Released arrays kept, shared evenly by the size classes
+        private boolean leakDetection = false; // Keeps the stack of each acquisition, to log buffers never released
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public int getMinBufferBytes() {
+            return minBufferBytes;
+        }
+
+        public void setMinBufferBytes(int minBufferBytes) {
+            this.minBufferBytes = minBufferBytes;
+        }
+
+        public int getMaxBufferBytes() {
+            return maxBufferBytes;
+        }
+
+        public void setMaxBufferBytes(int maxBufferBytes) {
+            this.maxBufferBytes = maxBufferBytes;
+        }
+
+        public int getCopyBufferBytes() {
+            return copyBufferBytes;
+        }
+
+        public void setCopyBufferBytes(int copyBufferBytes) {
+            this.copyBufferBytes = copyBufferBytes;
+        }
+
+        public long getMaxPooledBytes() {
+            return maxPooledBytes;
+        }
+
+        public void setMaxPooledBytes(long maxPooledBytes) {
+            this.maxPooledBytes = maxPooledBytes;
+        }
+
+        public boolean isLeakDetection() {
+            return leakDetection;
+        }
+
+        public void setLeakDetection(boolean leakDetection) {
+            this.leakDetection = leakDetection;
+        }
+    }
+}
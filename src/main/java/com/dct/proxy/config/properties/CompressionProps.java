@@ -0,0 +1,121 @@
+package com.dct.proxy.config.properties;
+
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Contains configuration properties related to the compression of responses sent to clients<p>
+ * When the application starts, Spring will automatically create an instance of this class
+ * and load the values from configuration files like application.properties or application.yml <p>
+ *
+ * {@link ConfigurationProperties} helps Spring map config properties to fields,
+ * instead of using @{@link Value} for each property individually <p>
+ *
+ * {@link BasePropertiesConstants#COMPRESSION_CONFIG} decides the prefix for the configurations that will be mapped <p>
+ *
+ * See <a href="">application-dev.yml</a> for detail
+ *
+ * @author thoaidc
+ */
+@SuppressWarnings("unused")
+@ConfigurationProperties(prefix = BasePropertiesConstants.COMPRESSION_CONFIG)
+public class CompressionProps {
+    private ActivateStatus activate = ActivateStatus.DISABLED;
+    private long minSizeBytes = 1024; // Smaller bodies are sent as is, the framing costs more than it saves
+    private List<String> mimeTypes = new ArrayList<>(List.of(
+        "text/*",
+        "application/json",
+        "application/*+json",
+        "application/xml",
+        "application/*+xml",
+        "application/javascript",
+        "image/svg+xml"
+    ));
+    private int gzipLevel = 6;
+    private long maxDecodedSizeBytes = 16 * 1024 * 1024; // Larger upstream bodies are relayed in their coding
+    private ActivateStatus cacheVariants = ActivateStatus.ENABLED; // Keep compressed bodies of cached responses
+    private BrotliConfig brotli;
+
+    public ActivateStatus getActivate() {
+        return activate;
+    }
+
+    public void setActivate(ActivateStatus activate) {
+        this.activate = activate;
+    }
+
+    public long getMinSizeBytes() {
+        return minSizeBytes;
+    }
+
+    public void setMinSizeBytes(long minSizeBytes) {
+        this.minSizeBytes = minSizeBytes;
+    }
+
+    public List<String> getMimeTypes() {
+        return mimeTypes;
+    }
+
+    public void setMimeTypes(List<String> mimeTypes) {
+        this.mimeTypes = mimeTypes;
+    }
+
+    public int getGzipLevel() {
+        return gzipLevel;
+    }
+
+    public void setGzipLevel(int gzipLevel) {
+        this.gzipLevel = gzipLevel;
+    }
+
+    public long getMaxDecodedSizeBytes() {
+        return maxDecodedSizeBytes;
+    }
+
+    public void setMaxDecodedSizeBytes(long maxDecodedSizeBytes) {
+        this.maxDecodedSizeBytes = maxDecodedSizeBytes;
+    }
+
+    public ActivateStatus getCacheVariants() {
+        return cacheVariants;
+    }
+
+    public void setCacheVariants(ActivateStatus cacheVariants) {
+        this.cacheVariants = cacheVariants;
+    }
+
+    public BrotliConfig getBrotli() {
+        return Optional.ofNullable(brotli).orElse(new BrotliConfig());
+    }
+
+    public void setBrotli(BrotliConfig brotli) {
+        this.brotli = brotli;
+    }
+
+    public static class BrotliConfig {
+        private ActivateStatus activate = ActivateStatus.ENABLED; // Used only when the native library loads
+        private int quality = 4; // 0 to 11, higher levels are too slow for responses compressed on the fly
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public int getQuality() {
+            return quality;
+        }
+
+        public void setQuality(int quality) {
+            this.quality = quality;
+        }
+    }
+}
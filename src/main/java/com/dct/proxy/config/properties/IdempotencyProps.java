@@ -0,0 +1,102 @@
+package com.dct.proxy.config.properties;
+
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Contains configuration properties related to the {@code Idempotency-Key} response store<p>
+ * When the application starts, Spring will automatically create an instance of this class
+ * and load the values from configuration files like application.properties or application.yml <p>
+ *
+ * {@link ConfigurationProperties} helps Spring map config properties to fields,
+ * instead of using @{@link Value} for each property individually <p>
+ *
+ * {@link BasePropertiesConstants#IDEMPOTENCY_CONFIG} decides the prefix for the configurations that will be mapped <p>
+ *
+ * See <a href="">application-dev.yml</a> for detail
+ *
+ * @author thoaidc
+ */
+@SuppressWarnings("unused")
+@ConfigurationProperties(prefix = BasePropertiesConstants.IDEMPOTENCY_CONFIG)
+public class IdempotencyProps {
+    private ActivateStatus activate = ActivateStatus.DISABLED;
+    private String headerName = "Idempotency-Key";
+    private List<String> methods = new ArrayList<>(List.of("POST", "PUT", "PATCH"));
+    private long window = 86400000; // Milliseconds a response is replayed for its key
+    private long maxSizeBytes = 32 * 1024 * 1024; // Total size of the stored responses
+    private long maxEntrySizeBytes = 1024 * 1024; // Larger responses are not stored, only shared with concurrent duplicates
+    private int maxKeyLength = 255;
+    private long maxWait = 30000; // Milliseconds a duplicate waits for the in-flight original before getting 409
+
+    public ActivateStatus getActivate() {
+        return activate;
+    }
+
+    public void setActivate(ActivateStatus activate) {
+        this.activate = activate;
+    }
+
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    public void setHeaderName(String headerName) {
+        this.headerName = headerName;
+    }
+
+    public List<String> getMethods() {
+        return Optional.ofNullable(methods).orElse(Collections.emptyList());
+    }
+
+    public void setMethods(List<String> methods) {
+        this.methods = methods;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    public void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public long getMaxEntrySizeBytes() {
+        return maxEntrySizeBytes;
+    }
+
+    public void setMaxEntrySizeBytes(long maxEntrySizeBytes) {
+        this.maxEntrySizeBytes = maxEntrySizeBytes;
+    }
+
+    public int getMaxKeyLength() {
+        return maxKeyLength;
+    }
+
+    public void setMaxKeyLength(int maxKeyLength) {
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+}
@@ -27,6 +27,7 @@ import java.util.Optional;
 @ConfigurationProperties(prefix = BasePropertiesConstants.INTERCEPTOR_CONFIG)
 public class InterceptorProps {
     private ActivateStatus activate = ActivateStatus.DISABLED;
+    private ActivateStatus fastPath = ActivateStatus.DISABLED;
     private List<InterceptorConfig> chain = new ArrayList<>();
 
     public ActivateStatus getActivate() {
@@ -37,6 +38,14 @@ public class InterceptorProps {
         this.activate = activate;
     }
 
+    public ActivateStatus getFastPath() {
+        return fastPath;
+    }
+
+    public void setFastPath(ActivateStatus fastPath) {
+        this.fastPath = fastPath;
+    }
+
     public List<InterceptorConfig> getChain() {
         return Optional.ofNullable(chain).orElse(Collections.emptyList());
     }
@@ -0,0 +1,375 @@
+package com.dct.proxy.config.properties;
+
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import com.dct.proxy.constants.RelayEnvelopeFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Contains configuration properties related to the link between this proxy and the remote proxy server (the relay)<p>
+ * When the application starts, Spring will automatically create an instance of this class
+ * and load the values from configuration files like application.properties or application.yml <p>
+ *
+ * {@link ConfigurationProperties} helps Spring map config properties to fields,
+ * instead of using @{@link Value} for each property individually <p>
+ *
+ * {@link BasePropertiesConstants#RELAY_CONFIG} decides the prefix for the configurations that will be mapped <p>
+ *
+ * See <a href="">application-dev.yml</a> for detail
+ *
+ * @author thoaidc
+ */
+@SuppressWarnings("unused")
+@ConfigurationProperties(prefix = BasePropertiesConstants.RELAY_CONFIG)
+public class RelayProps {
+    private MicroBatchConfig microBatch = new MicroBatchConfig();
+    private TunnelConfig tunnel = new TunnelConfig();
+    private CodecConfig codec = new CodecConfig();
+    private StreamingConfig streaming = new StreamingConfig();
+    private CompressionConfig compression = new CompressionConfig();
+
+    public MicroBatchConfig getMicroBatch() {
+        return Optional.ofNullable(microBatch).orElse(new MicroBatchConfig());
+    }
+
+    public void setMicroBatch(MicroBatchConfig microBatch) {
+        this.microBatch = microBatch;
+    }
+
+    public TunnelConfig getTunnel() {
+        return Optional.ofNullable(tunnel).orElse(new TunnelConfig());
+    }
+
+    public void setTunnel(TunnelConfig tunnel) {
+        this.tunnel = tunnel;
+    }
+
+    public CodecConfig getCodec() {
+        return Optional.ofNullable(codec).orElse(new CodecConfig());
+    }
+
+    public void setCodec(CodecConfig codec) {
+        this.codec = codec;
+    }
+
+    public StreamingConfig getStreaming() {
+        return Optional.ofNullable(streaming).orElse(new StreamingConfig());
+    }
+
+    public void setStreaming(StreamingConfig streaming) {
+        this.streaming = streaming;
+    }
+
+    public CompressionConfig getCompression() {
+        return Optional.ofNullable(compression).orElse(new CompressionConfig());
+    }
+
+    public void setCompression(CompressionConfig compression) {
+        this.compression = compression;
+    }
+
+    public static class MicroBatchConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private String batchApi = "/batch"; // Appended to app.server.proxy-api, the relay endpoint taking an array of envelopes
+        private int maxItems = 32; // A window is sent as soon as it holds this many envelopes
+        private long maxDelay = 2; // Milliseconds the first envelope of a window waits for others
+        private long timeout = 60000; // Milliseconds a caller waits for the response of its batch
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public String getBatchApi() {
+            return batchApi;
+        }
+
+        public void setBatchApi(String batchApi) {
+            this.batchApi = batchApi;
+        }
+
+        public int getMaxItems() {
+            return maxItems;
+        }
+
+        public void setMaxItems(int maxItems) {
+            this.maxItems = maxItems;
+        }
+
+        public long getMaxDelay() {
+            return maxDelay;
+        }
+
+        public void setMaxDelay(long maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class TunnelConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private String host = "localhost"; // Tunnel endpoint of the relay
+        private int port = 7443;
+        private int connections = 2; // Persistent sockets, streams are spread over them
+        private int maxConcurrentStreams = 256; // Per connection
+        private int connectTimeout = 2000;
+        private long timeout = 60000; // Milliseconds a caller waits for the response of its envelope
+        private long heartbeatInterval = 5000;
+        private long heartbeatTimeout = 15000; // A connection receiving nothing for this long is closed
+        private int windowSize = 16 * 1024 * 1024; // Flow control: bytes not consumed yet, per connection and direction
+        private int maxFrameSize = 16 * 1024; // At most half of the window
+        private int maxMessageSize = 16 * 1024 * 1024; // At most the window
+        private LoopbackConfig loopback = new LoopbackConfig();
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public void setConnections(int connections) {
+            this.connections = connections;
+        }
+
+        public int getMaxConcurrentStreams() {
+            return maxConcurrentStreams;
+        }
+
+        public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+            this.maxConcurrentStreams = maxConcurrentStreams;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public long getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        public void setHeartbeatInterval(long heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+
+        public long getHeartbeatTimeout() {
+            return heartbeatTimeout;
+        }
+
+        public void setHeartbeatTimeout(long heartbeatTimeout) {
+            this.heartbeatTimeout = heartbeatTimeout;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMaxFrameSize() {
+            return maxFrameSize;
+        }
+
+        public void setMaxFrameSize(int maxFrameSize) {
+            this.maxFrameSize = maxFrameSize;
+        }
+
+        public int getMaxMessageSize() {
+            return maxMessageSize;
+        }
+
+        public void setMaxMessageSize(int maxMessageSize) {
+            this.maxMessageSize = maxMessageSize;
+        }
+
+        public LoopbackConfig getLoopback() {
+            return Optional.ofNullable(loopback).orElse(new LoopbackConfig());
+        }
+
+        public void setLoopback(LoopbackConfig loopback) {
+            this.loopback = loopback;
+        }
+    }
+
+    /**
+     * Local tunnel endpoint bridging to the HTTP relay, for tests and benchmarks of the tunnel
+     */
+    public static class LoopbackConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private int port = 7443; // Bound on 127.0.0.1
+        private int workerThreads = 32;
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+    }
+
+    public static class CodecConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private RelayEnvelopeFormat format = RelayEnvelopeFormat.JSON; // Encoding of the envelopes sent to the relay
+        private Map<String, RelayEnvelopeFormat> upstreams = new HashMap<>(); // Per target host[:port] of the envelope
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public RelayEnvelopeFormat getFormat() {
+            return format;
+        }
+
+        public void setFormat(RelayEnvelopeFormat format) {
+            this.format = format;
+        }
+
+        public Map<String, RelayEnvelopeFormat> getUpstreams() {
+            return Optional.ofNullable(upstreams).orElse(new HashMap<>());
+        }
+
+        public void setUpstreams(Map<String, RelayEnvelopeFormat> upstreams) {
+            this.upstreams = upstreams;
+        }
+    }
+
+    public static class StreamingConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+    }
+
+    public static class CompressionConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private int level = 3; // 1 to 19, higher levels mostly cost CPU on small envelopes
+        private String dictionary; // Dictionary trained with ZstdDictionaryTrainer, shared with the relay
+        private int minSizeBytes = 128; // Smaller envelopes are sent as is
+        private String sampleDirectory; // Envelopes are captured there to train a dictionary when set
+        private int maxSamples = 10000;
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public String getDictionary() {
+            return dictionary;
+        }
+
+        public void setDictionary(String dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        public int getMinSizeBytes() {
+            return minSizeBytes;
+        }
+
+        public void setMinSizeBytes(int minSizeBytes) {
+            this.minSizeBytes = minSizeBytes;
+        }
+
+        public String getSampleDirectory() {
+            return sampleDirectory;
+        }
+
+        public void setSampleDirectory(String sampleDirectory) {
+            this.sampleDirectory = sampleDirectory;
+        }
+
+        public int getMaxSamples() {
+            return maxSamples;
+        }
+
+        public void setMaxSamples(int maxSamples) {
+            this.maxSamples = maxSamples;
+        }
+    }
+}
@@ -0,0 +1,730 @@
+package com.dct.proxy.config.properties;
+
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Contains configuration properties related to the proxied response cache<p>
+ * When the application starts, Spring will automatically create an instance of this class
+ * and load the values from configuration files like application.properties or application.yml <p>
+ *
+ * {@link ConfigurationProperties} helps Spring map config properties to fields,
+ * instead of using @{@link Value} for each property individually <p>
+ *
+ * {@link BasePropertiesConstants#RESPONSE_CACHE_CONFIG} decides the prefix for the configurations that will be mapped <p>
+ *
+ * See <a href="">application-dev.yml</a> for detail
+ *
+ * @author thoaidc
+ */
+@SuppressWarnings("unused")
+@ConfigurationProperties(prefix = BasePropertiesConstants.RESPONSE_CACHE_CONFIG)
+public class ResponseCacheProps {
+    private ActivateStatus activate = ActivateStatus.DISABLED;
+    private long maxSizeBytes = 64 * 1024 * 1024;
+    private long maxEntrySizeBytes = 1024 * 1024;
+    private long defaultTtl; // Milliseconds, used when the upstream response has no Cache-Control or Expires header
+    private List<String> methods = new ArrayList<>(List.of("GET", "HEAD"));
+    private List<String> varyHeaders = new ArrayList<>();
+    private List<RouteConfig> routes = new ArrayList<>();
+    private OffHeapConfig offHeap = new OffHeapConfig();
+    private DiskConfig disk = new DiskConfig();
+    private CoalescingConfig coalescing = new CoalescingConfig();
+    private RevalidationConfig revalidation = new RevalidationConfig();
+    private StaleConfig stale = new StaleConfig();
+    private RefreshConfig refresh = new RefreshConfig();
+    private RefreshAheadConfig refreshAhead = new RefreshAheadConfig();
+    private NegativeConfig negative = new NegativeConfig();
+    private PurgeConfig purge = new PurgeConfig();
+    private PeerConfig peer = new PeerConfig();
+
+    public ActivateStatus getActivate() {
+        return activate;
+    }
+
+    public void setActivate(ActivateStatus activate) {
+        this.activate = activate;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    public void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public long getMaxEntrySizeBytes() {
+        return maxEntrySizeBytes;
+    }
+
+    public void setMaxEntrySizeBytes(long maxEntrySizeBytes) {
+        this.maxEntrySizeBytes = maxEntrySizeBytes;
+    }
+
+    public long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    public void setDefaultTtl(long defaultTtl) {
+        this.defaultTtl = defaultTtl;
+    }
+
+    public List<String> getMethods() {
+        return Optional.ofNullable(methods).orElse(Collections.emptyList());
+    }
+
+    public void setMethods(List<String> methods) {
+        this.methods = methods;
+    }
+
+    public List<String> getVaryHeaders() {
+        return Optional.ofNullable(varyHeaders).orElse(Collections.emptyList());
+    }
+
+    public void setVaryHeaders(List<String> varyHeaders) {
+        this.varyHeaders = varyHeaders;
+    }
+
+    public List<RouteConfig> getRoutes() {
+        return Optional.ofNullable(routes).orElse(Collections.emptyList());
+    }
+
+    public void setRoutes(List<RouteConfig> routes) {
+        this.routes = routes;
+    }
+
+    public OffHeapConfig getOffHeap() {
+        return Optional.ofNullable(offHeap).orElse(new OffHeapConfig());
+    }
+
+    public void setOffHeap(OffHeapConfig offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public DiskConfig getDisk() {
+        return Optional.ofNullable(disk).orElse(new DiskConfig());
+    }
+
+    public void setDisk(DiskConfig disk) {
+        this.disk = disk;
+    }
+
+    public CoalescingConfig getCoalescing() {
+        return Optional.ofNullable(coalescing).orElse(new CoalescingConfig());
+    }
+
+    public void setCoalescing(CoalescingConfig coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public RevalidationConfig getRevalidation() {
+        return Optional.ofNullable(revalidation).orElse(new RevalidationConfig());
+    }
+
+    public void setRevalidation(RevalidationConfig revalidation) {
+        this.revalidation = revalidation;
+    }
+
+    public StaleConfig getStale() {
+        return Optional.ofNullable(stale).orElse(new StaleConfig());
+    }
+
+    public void setStale(StaleConfig stale) {
+        this.stale = stale;
+    }
+
+    public RefreshConfig getRefresh() {
+        return Optional.ofNullable(refresh).orElse(new RefreshConfig());
+    }
+
+    public void setRefresh(RefreshConfig refresh) {
+        this.refresh = refresh;
+    }
+
+    public RefreshAheadConfig getRefreshAhead() {
+        return Optional.ofNullable(refreshAhead).orElse(new RefreshAheadConfig());
+    }
+
+    public void setRefreshAhead(RefreshAheadConfig refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    public NegativeConfig getNegative() {
+        return Optional.ofNullable(negative).orElse(new NegativeConfig());
+    }
+
+    public void setNegative(NegativeConfig negative) {
+        this.negative = negative;
+    }
+
+    public PurgeConfig getPurge() {
+        return Optional.ofNullable(purge).orElse(new PurgeConfig());
+    }
+
+    public void setPurge(PurgeConfig purge) {
+        this.purge = purge;
+    }
+
+    public PeerConfig getPeer() {
+        return Optional.ofNullable(peer).orElse(new PeerConfig());
+    }
+
+    public void setPeer(PeerConfig peer) {
+        this.peer = peer;
+    }
+
+    public static class RouteConfig {
+        private String pattern;
+        private Long ttl; // Milliseconds, overrides the freshness lifetime sent by the upstream. 0 disables caching
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public Long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Long ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    /**
+     * Tier for responses larger than {@link ResponseCacheProps#maxEntrySizeBytes}, stored in direct memory
+     */
+    public static class OffHeapConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private long maxSizeBytes = 256 * 1024 * 1024;
+        private long maxEntrySizeBytes = 32 * 1024 * 1024;
+        private int slabSizeBytes = 1024 * 1024;
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public long getMaxSizeBytes() {
+            return maxSizeBytes;
+        }
+
+        public void setMaxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        public long getMaxEntrySizeBytes() {
+            return maxEntrySizeBytes;
+        }
+
+        public void setMaxEntrySizeBytes(long maxEntrySizeBytes) {
+            this.maxEntrySizeBytes = maxEntrySizeBytes;
+        }
+
+        public int getSlabSizeBytes() {
+            return slabSizeBytes;
+        }
+
+        public void setSlabSizeBytes(int slabSizeBytes) {
+            this.slabSizeBytes = slabSizeBytes;
+        }
+    }
+
+    /**
+     * Persistent tier, response bodies are stored in memory-mapped segment files and survive restarts
+     */
+    public static class DiskConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private String directory = Paths.get(System.getProperty("java.io.tmpdir"), "proxy-api-server", "cache").toString();
+        private long maxSizeBytes = 1024L * 1024 * 1024;
+        private int segmentSizeBytes = 64 * 1024 * 1024;
+        private long maxEntrySizeBytes = 32 * 1024 * 1024;
+        private long compactionInterval = 60000; // Milliseconds
+        private double compactionThreshold = 0.5; // Compact sealed segments with less live data than this ratio
+        private long deleteDelay = 60000; // Milliseconds a segment file is kept after being handed to sendfile
+        private int writeQueueSize = 1024; // Responses waiting for the writer thread, further ones are not stored
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getMaxSizeBytes() {
+            return maxSizeBytes;
+        }
+
+        public void setMaxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        public int getSegmentSizeBytes() {
+            return segmentSizeBytes;
+        }
+
+        public void setSegmentSizeBytes(int segmentSizeBytes) {
+            this.segmentSizeBytes = segmentSizeBytes;
+        }
+
+        public long getMaxEntrySizeBytes() {
+            return maxEntrySizeBytes;
+        }
+
+        public void setMaxEntrySizeBytes(long maxEntrySizeBytes) {
+            this.maxEntrySizeBytes = maxEntrySizeBytes;
+        }
+
+        public long getCompactionInterval() {
+            return compactionInterval;
+        }
+
+        public void setCompactionInterval(long compactionInterval) {
+            this.compactionInterval = compactionInterval;
+        }
+
+        public double getCompactionThreshold() {
+            return compactionThreshold;
+        }
+
+        public void setCompactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+        }
+
+        public long getDeleteDelay() {
+            return deleteDelay;
+        }
+
+        public void setDeleteDelay(long deleteDelay) {
+            this.deleteDelay = deleteDelay;
+        }
+
+        public int getWriteQueueSize() {
+            return writeQueueSize;
+        }
+
+        public void setWriteQueueSize(int writeQueueSize) {
+            this.writeQueueSize = writeQueueSize;
+        }
+    }
+
+    /**
+     * Single-flight of identical concurrent upstream calls, keyed by the cache key
+     */
+    public static class CoalescingConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private long maxWait = 5000; // Milliseconds a follower waits for the leader before calling the upstream itself
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(long maxWait) {
+            this.maxWait = maxWait;
+        }
+    }
+
+    /**
+     * Conditional requests: refresh expired entries with {@code If-None-Match}/{@code If-Modified-Since}
+     * and answer matching client conditional requests with 304
+     */
+    public static class RevalidationConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private long retention = 600000; // Milliseconds an expired entry with a validator is kept to be revalidated
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public long getRetention() {
+            return retention;
+        }
+
+        public void setRetention(long retention) {
+            this.retention = retention;
+        }
+    }
+
+    /**
+     * Default stale windows (RFC 5861), used when the upstream {@code Cache-Control} does not set them
+     */
+    public static class StaleConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private long whileRevalidate = 30000; // Milliseconds after expiry served instantly while refreshing
+        private long ifError = 300000; // Milliseconds after expiry served when the upstream fails or the circuit is open
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public long getWhileRevalidate() {
+            return whileRevalidate;
+        }
+
+        public void setWhileRevalidate(long whileRevalidate) {
+            this.whileRevalidate = whileRevalidate;
+        }
+
+        public long getIfError() {
+            return ifError;
+        }
+
+        public void setIfError(long ifError) {
+            this.ifError = ifError;
+        }
+    }
+
+    /**
+     * Bounded executor running background refreshes of cached responses
+     */
+    public static class RefreshConfig {
+        private int maxThreads = 4;
+        private int queueCapacity = 64;
+
+        public int getMaxThreads() {
+            return maxThreads;
+        }
+
+        public void setMaxThreads(int maxThreads) {
+            this.maxThreads = maxThreads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * Background refresh of frequently requested entries shortly before they expire
+     */
+    public static class RefreshAheadConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private long interval = 1000; // Milliseconds between two scans of the hot keys
+        private double aheadRatio = 0.2; // Refresh when less than this part of the freshness lifetime remains
+        private long minHits = 10; // Decayed hit count from which a key is considered hot
+        private int maxTrackedKeys = 10000;
+        private long idleTimeout = 600000; // Milliseconds without hit after which a key is no longer tracked
+        private int maxRefreshesPerTick = 16;
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public long getInterval() {
+            return interval;
+        }
+
+        public void setInterval(long interval) {
+            this.interval = interval;
+        }
+
+        public double getAheadRatio() {
+            return aheadRatio;
+        }
+
+        public void setAheadRatio(double aheadRatio) {
+            this.aheadRatio = aheadRatio;
+        }
+
+        public long getMinHits() {
+            return minHits;
+        }
+
+        public void setMinHits(long minHits) {
+            this.minHits = minHits;
+        }
+
+        public int getMaxTrackedKeys() {
+            return maxTrackedKeys;
+        }
+
+        public void setMaxTrackedKeys(int maxTrackedKeys) {
+            this.maxTrackedKeys = maxTrackedKeys;
+        }
+
+        public long getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        public int getMaxRefreshesPerTick() {
+            return maxRefreshesPerTick;
+        }
+
+        public void setMaxRefreshesPerTick(int maxRefreshesPerTick) {
+            this.maxRefreshesPerTick = maxRefreshesPerTick;
+        }
+    }
+
+    /**
+     * Short-lived caching of upstream error responses, by status code and route
+     */
+    public static class NegativeConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private Map<Integer, Long> statuses = new HashMap<>(Map.of(404, 10000L, 410, 60000L, 503, 5000L)); // TTL by status
+        private long maxRetryAfter = 300000; // Upper bound in milliseconds of a Retry-After suppression
+        private List<NegativeRouteConfig> routes = new ArrayList<>();
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public Map<Integer, Long> getStatuses() {
+            return Optional.ofNullable(statuses).orElse(Collections.emptyMap());
+        }
+
+        public void setStatuses(Map<Integer, Long> statuses) {
+            this.statuses = statuses;
+        }
+
+        public long getMaxRetryAfter() {
+            return maxRetryAfter;
+        }
+
+        public void setMaxRetryAfter(long maxRetryAfter) {
+            this.maxRetryAfter = maxRetryAfter;
+        }
+
+        public List<NegativeRouteConfig> getRoutes() {
+            return Optional.ofNullable(routes).orElse(Collections.emptyList());
+        }
+
+        public void setRoutes(List<NegativeRouteConfig> routes) {
+            this.routes = routes;
+        }
+    }
+
+    public static class NegativeRouteConfig {
+        private String pattern;
+        private Map<Integer, Long> statuses = new HashMap<>(); // TTL by status for this route, 0 disables
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public Map<Integer, Long> getStatuses() {
+            return Optional.ofNullable(statuses).orElse(Collections.emptyMap());
+        }
+
+        public void setStatuses(Map<Integer, Long> statuses) {
+            this.statuses = statuses;
+        }
+    }
+
+    /**
+     * Admin purge API, cached keys are indexed by path and by the tags sent by the upstream
+     */
+    public static class PurgeConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private List<String> tagHeaders = new ArrayList<>(List.of("Surrogate-Key", "Cache-Tag"));
+        private String token; // Expected value of the X-Admin-Token header, required
+        private int maxBatchSize = 1000; // Maximum number of URLs, prefixes and tags in one purge request
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public List<String> getTagHeaders() {
+            return Optional.ofNullable(tagHeaders).orElse(Collections.emptyList());
+        }
+
+        public void setTagHeaders(List<String> tagHeaders) {
+            this.tagHeaders = tagHeaders;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+    }
+
+    /**
+     * Cache shared by several proxy nodes, keys are placed on the nodes by consistent hashing
+     */
+    public static class PeerConfig {
+        private ActivateStatus activate = ActivateStatus.DISABLED;
+        private String self; // Base URL under which the other nodes reach this one (Ex: http://localhost:8080)
+        private List<String> nodes = new ArrayList<>(); // Base URLs of all nodes, this one included or not
+        private int virtualNodes = 128; // Points of each node on the hash ring
+        private long connectTimeout = 200; // Milliseconds
+        private long timeout = 2000; // Milliseconds to get the answer of a peer, which may call the upstream
+        private String token; // Shared value of the X-Peer-Token header, required
+        private long downTimeout = 5000; // Milliseconds an unreachable peer is skipped
+        private int replicateAfterHits = 3; // Responses from a peer within hotWindow before the key is replicated here
+        private long hotWindow = 10000; // Milliseconds
+        private int maxTrackedKeys = 10000;
+        private long replicaMaxTtl = 10000; // Milliseconds, bounds how long a purge on the owner takes to reach replicas
+
+        public ActivateStatus getActivate() {
+            return activate;
+        }
+
+        public void setActivate(ActivateStatus activate) {
+            this.activate = activate;
+        }
+
+        public String getSelf() {
+            return self;
+        }
+
+        public void setSelf(String self) {
+            this.self = self;
+        }
+
+        public List<String> getNodes() {
+            return Optional.ofNullable(nodes).orElse(Collections.emptyList());
+        }
+
+        public void setNodes(List<String> nodes) {
+            this.nodes = nodes;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+
+        public long getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+
+        public long getDownTimeout() {
+            return downTimeout;
+        }
+
+        public void setDownTimeout(long downTimeout) {
+            this.downTimeout = downTimeout;
+        }
+
+        public int getReplicateAfterHits() {
+            return replicateAfterHits;
+        }
+
+        public void setReplicateAfterHits(int replicateAfterHits) {
+            this.replicateAfterHits = replicateAfterHits;
+        }
+
+        public long getHotWindow() {
+            return hotWindow;
+        }
+
+        public void setHotWindow(long hotWindow) {
+            this.hotWindow = hotWindow;
+        }
+
+        public int getMaxTrackedKeys() {
+            return maxTrackedKeys;
+        }
+
+        public void setMaxTrackedKeys(int maxTrackedKeys) {
+            this.maxTrackedKeys = maxTrackedKeys;
+        }
+
+        public long getReplicaMaxTtl() {
+            return replicaMaxTtl;
+        }
+
+        public void setReplicaMaxTtl(long replicaMaxTtl) {
+            this.replicaMaxTtl = replicaMaxTtl;
+        }
+    }
+}
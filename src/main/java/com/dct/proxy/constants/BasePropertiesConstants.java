@@ -21,6 +21,7 @@ public interface BasePropertiesConstants {
 
     String INTERCEPTOR_CONFIG = "app.interceptors";
     String ENABLED_INTERCEPTOR_CONFIG = "app.interceptors.activate";
+    String ENABLED_INTERCEPTOR_FAST_PATH = "app.interceptors.fast-path";
 
     String RESOURCE_CONFIG = "app.resources";
     String ENABLED_RESOURCE = "app.resources.activate";
@@ -44,6 +45,37 @@ public interface BasePropertiesConstants {
 
     String SERVER_PROXY_CONFIG = "app.server";
 
+    String RESPONSE_CACHE_CONFIG = "app.response-cache";
+    String ENABLED_RESPONSE_CACHE = "app.response-cache.activate";
+    String ENABLED_RESPONSE_CACHE_COALESCING = "app.response-cache.coalescing.activate";
+    String ENABLED_RESPONSE_CACHE_REFRESH_AHEAD = "app.response-cache.refresh-ahead.activate";
+    String ENABLED_RESPONSE_CACHE_NEGATIVE = "app.response-cache.negative.activate";
+    String ENABLED_RESPONSE_CACHE_PURGE = "app.response-cache.purge.activate";
+    String ENABLED_RESPONSE_CACHE_PEER = "app.response-cache.peer.activate";
+
+    String IDEMPOTENCY_CONFIG = "app.idempotency";
+    String ENABLED_IDEMPOTENCY = "app.idempotency.activate";
+
+    String BATCH_CONFIG = "app.batch";
+    String ENABLED_BATCH = "app.batch.activate";
+
+    String RELAY_CONFIG = "app.relay";
+    String ENABLED_RELAY_MICRO_BATCH = "app.relay.micro-batch.activate";
+    String ENABLED_RELAY_TUNNEL = "app.relay.tunnel.activate";
+    String ENABLED_RELAY_TUNNEL_LOOPBACK = "app.relay.tunnel.loopback.activate";
+    String ENABLED_RELAY_CODEC = "app.relay.codec.activate";
+    String ENABLED_RELAY_STREAMING = "app.relay.streaming.activate";
+    String ENABLED_RELAY_COMPRESSION = "app.relay.compression.activate";
+
+    String COMPRESSION_CONFIG = "app.compression";
+    String ENABLED_COMPRESSION = "app.compression.activate";
+
+    String BODY_CONFIG = "app.body";
+    String ENABLED_BODY_SPOOL = "app.body.spool.activate";
+    String ENABLED_BODY_BUDGET = "app.body.budget.activate";
+    String ENABLED_BODY_LIMITS = "app.body.limits.activate";
+    String ENABLED_BODY_POOL = "app.body.pool.activate";
+
     String HTTP_CLIENT_CONFIG = "app.http-client";
     String CIRCUIT_BREAKER_CONFIG = "app.http-client.circuit-breaker";
     String CIRCUIT_BREAKER_RETRY_CONFIG = "app.http-client.circuit-breaker.retry";
@@ -0,0 +1,43 @@
+package com.dct.proxy.constants;
+
+import org.springframework.util.StringUtils;
+
+import java.util.Locale;
+
+/**
+ * Content codings of a response body, as announced by the {@code Content-Encoding} header
+ *
+ * @author thoaidc
+ */
+public enum ContentCoding {
+    IDENTITY("identity"),
+    GZIP("gzip"),
+    BR("br");
+
+    private final String value;
+
+    ContentCoding(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @param contentEncoding the {@code Content-Encoding} header, null if absent
+     * @return the coding of the body, or null if it is unknown or several codings are applied
+     */
+    public static ContentCoding fromHeader(String contentEncoding) {
+        if (!StringUtils.hasText(contentEncoding)) {
+            return IDENTITY;
+        }
+
+        return switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "identity" -> IDENTITY;
+            case "gzip", "x-gzip" -> GZIP;
+            case "br" -> BR;
+            default -> null;
+        };
+    }
+}
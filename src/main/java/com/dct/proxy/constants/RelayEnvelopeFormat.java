@@ -0,0 +1,24 @@
+package com.dct.proxy.constants;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Encodings of the envelope sent to the relay, announced by the request {@code Content-Type}
+ *
+ * @author thoaidc
+ */
+public enum RelayEnvelopeFormat {
+    JSON(MediaType.APPLICATION_JSON),
+    SMILE(new MediaType("application", "x-jackson-smile")),
+    CBOR(new MediaType("application", "cbor"));
+
+    private final MediaType mediaType;
+
+    RelayEnvelopeFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,144 @@
+package com.dct.proxy.controllers;
+
+import com.dct.proxy.batch.ProxyBatchExecutor;
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BodyLimits;
+import com.dct.proxy.config.properties.BatchProps;
+import com.dct.proxy.constants.BaseExceptionConstants;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import com.dct.proxy.dto.request.BatchItemRequest;
+import com.dct.proxy.dto.response.BatchItemResponse;
+import com.dct.proxy.exception.BaseBadRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.dct.proxy.constants.ActivateStatus.ENABLED_VALUE;
+
+/**
+ * Client-facing batch endpoint: one request carrying several proxied sub-requests <p>
+ * Mapped outside the proxied paths. The sub-requests run in parallel and the response is a JSON array
+ * with one entry per sub-request, in the same order, each with its own status
+ *
+ * @author thoaidc
+ */
+@RestController
+@ConditionalOnProperty(name = BasePropertiesConstants.ENABLED_BATCH, havingValue = ENABLED_VALUE)
+public class BatchController {
+    private static final Logger log = LoggerFactory.getLogger(BatchController.class);
+    private static final String ENTITY_NAME = "BatchController";
+    public static final String BATCH_PATH = "/batch";
+    // Headers describing the batch request itself, not its sub-requests
+    private static final Set<String> EXCLUDED_HEADERS = Set.of(
+        "host", "connection", "content-length", "transfer-encoding", "expect", "accept-encoding"
+    );
+    private static final TypeReference<List<BatchItemRequest>> ITEMS_TYPE = new TypeReference<>() {};
+    private final ProxyBatchExecutor batchExecutor;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final BodyBudget bodyBudget;
+    private final BodyLimits bodyLimits;
+    private final int maxItems;
+
+    public BatchController(ProxyBatchExecutor batchExecutor,
+                           BatchProps batchProps,
+                           ObjectMapper objectMapper,
+                           ObjectProvider<Validator> validator,
+                           ObjectProvider<BodyBudget> bodyBudget,
+                           ObjectProvider<BodyLimits> bodyLimits) {
+        this.batchExecutor = batchExecutor;
+        this.objectMapper = objectMapper;
+        this.validator = validator.getIfAvailable();
+        this.bodyBudget = bodyBudget.getIfAvailable();
+        this.bodyLimits = bodyLimits.getIfAvailable();
+        this.maxItems = batchProps.getMaxItems();
+    }
+
+    /**
+     * The batch body is checked against the body limits of its route and counted in the in-flight body budget
+     * with the responses of its sub-requests, as the body and the response of a proxied request
+     */
+    @PostMapping(BATCH_PATH)
+    public List<BatchItemResponse> batch(HttpServletRequest request) throws IOException {
+        BodyBudget.Reservation reservation = Objects.nonNull(bodyBudget) ? bodyBudget.open() : null;
+
+        try {
+            List<BatchItemRequest> items = readItems(request, reservation);
+
+            if (items.isEmpty() || items.size() > maxItems) {
+                throw new BaseBadRequestException(ENTITY_NAME, BaseExceptionConstants.DATA_INVALID);
+            }
+
+            Map<String, String> sharedHeaders = new HashMap<>();
+            Collections.list(request.getHeaderNames()).forEach(name -> {
+                if (!EXCLUDED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    sharedHeaders.put(name, request.getHeader(name));
+                }
+            });
+
+            sharedHeaders.putIfAbsent(HttpHeaders.CONTENT_TYPE, "application/json");
+            log.info("[PROXY_BATCH] - Incoming batch of {} sub-requests", items.size());
+            return batchExecutor.execute(items, sharedHeaders, reservation);
+        } finally {
+            if (Objects.nonNull(reservation)) {
+                reservation.close();
+            }
+        }
+    }
+
+    // Read here instead of by a message converter, for the body to be reserved in the budget while it is read
+    private List<BatchItemRequest> readItems(HttpServletRequest request, BodyBudget.Reservation reservation) throws IOException {
+        // Checked from the headers only, before the client is told to send the body
+        long maxBodyBytes = Objects.nonNull(bodyLimits) ? bodyLimits.check(request) : -1;
+        InputStream in = request.getInputStream();
+
+        if (Objects.nonNull(bodyLimits)) {
+            in = bodyLimits.limit(in, maxBodyBytes);
+        }
+
+        if (Objects.nonNull(reservation)) {
+            in = reservation.meter(in, request.getContentLengthLong(), Long.MAX_VALUE);
+        }
+
+        List<BatchItemRequest> items;
+
+        try {
+            items = Optional.ofNullable(objectMapper.readValue(in, ITEMS_TYPE)).orElse(List.of());
+        } catch (JsonProcessingException e) {
+            log.error("[PROXY_BATCH] - Invalid batch body: {}", e.getOriginalMessage());
+            throw new BaseBadRequestException(ENTITY_NAME, BaseExceptionConstants.INVALID_REQUEST_DATA);
+        }
+
+        // Same checks as @Valid on each item
+        if (Objects.nonNull(validator)) {
+            items.stream()
+                .flatMap(item -> validator.validate(Objects.requireNonNull(item)).stream())
+                .findFirst()
+                .ifPresent(violation -> {
+                    throw new BaseBadRequestException(ENTITY_NAME, violation.getMessage());
+                });
+        }
+
+        return items;
+    }
+}
@@ -0,0 +1,120 @@
+package com.dct.proxy.controllers;
+
+import com.dct.proxy.cache.ProxyResponseCache;
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.config.properties.ServerProxyProperties;
+import com.dct.proxy.constants.BaseExceptionConstants;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import com.dct.proxy.dto.request.CachePurgeRequest;
+import com.dct.proxy.dto.response.BaseResponseDTO;
+import com.dct.proxy.dto.response.CachePurgeResponse;
+import com.dct.proxy.exception.BaseAuthenticationException;
+import com.dct.proxy.exception.BaseBadRequestException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static com.dct.proxy.constants.ActivateStatus.ENABLED_VALUE;
+
+/**
+ * Admin API to invalidate cached responses by exact URL, path prefix or tag <p>
+ * Mapped outside the proxied paths so requests are never forwarded. Requests must send the configured token
+ * in the {@value #ADMIN_TOKEN_HEADER} header, the application does not start with purge enabled and no token
+ *
+ * @author thoaidc
+ */
+@RestController
+@RequestMapping("/admin/cache")
+@ConditionalOnProperty(
+    name = { BasePropertiesConstants.ENABLED_RESPONSE_CACHE, BasePropertiesConstants.ENABLED_RESPONSE_CACHE_PURGE },
+    havingValue = ENABLED_VALUE
+)
+public class CachePurgeController {
+    private static final Logger log = LoggerFactory.getLogger(CachePurgeController.class);
+    private static final String ENTITY_NAME = "CachePurgeController";
+    public static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+    private final ProxyResponseCache responseCache;
+    private final ServerProxyProperties proxyProperties;
+    private final ResponseCacheProps.PurgeConfig purgeConfig;
+
+    public CachePurgeController(ProxyResponseCache responseCache,
+                                ServerProxyProperties proxyProperties,
+                                ResponseCacheProps responseCacheProps) {
+        this.responseCache = responseCache;
+        this.proxyProperties = proxyProperties;
+        this.purgeConfig = responseCacheProps.getPurge();
+
+        if (!StringUtils.hasText(purgeConfig.getToken())) {
+            throw new IllegalStateException("Cache purge requires an admin token: app.response-cache.purge.token");
+        }
+    }
+
+    /**
+     * Purge a batch of URLs, path prefixes and tags, each item is looked up in the cache index
+     */
+    @PostMapping("/purge")
+    public BaseResponseDTO purge(@RequestBody CachePurgeRequest request,
+                                 @RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token) {
+        checkToken(token);
+
+        if (request.size() == 0 || request.size() > purgeConfig.getMaxBatchSize()) {
+            throw new BaseBadRequestException(ENTITY_NAME, BaseExceptionConstants.DATA_INVALID);
+        }
+
+        CachePurgeResponse purgeResponse = new CachePurgeResponse();
+
+        request.getUrls()
+            .stream()
+            .filter(StringUtils::hasText)
+            .forEach(url -> purgeResponse.addUrl(url, responseCache.purgeUrl(toUpstreamUrl(url))));
+        request.getPrefixes()
+            .stream()
+            .filter(StringUtils::hasText)
+            .forEach(prefix -> purgeResponse.addPrefix(prefix, responseCache.purgePathPrefix(toUpstreamPath(prefix))));
+        request.getTags()
+            .stream()
+            .filter(StringUtils::hasText)
+            .forEach(tag -> purgeResponse.addTag(tag, responseCache.purgeTag(tag.trim())));
+
+        log.info("[CACHE_PURGE] - Purged {} entries for {} items", purgeResponse.getTotal(), request.size());
+        return BaseResponseDTO.builder().total(purgeResponse.getTotal()).ok(purgeResponse);
+    }
+
+    private void checkToken(String token) {
+        String expectedToken = purgeConfig.getToken();
+        boolean valid = StringUtils.hasText(expectedToken) && StringUtils.hasText(token) && MessageDigest.isEqual(
+            expectedToken.getBytes(StandardCharsets.UTF_8),
+            token.getBytes(StandardCharsets.UTF_8)
+        );
+
+        if (!valid) {
+            throw new BaseAuthenticationException(ENTITY_NAME, BaseExceptionConstants.UNAUTHORIZED);
+        }
+    }
+
+    // Same mapping as the proxy interceptor: the client path and query are appended to the upstream host
+    private String toUpstreamUrl(String url) {
+        String[] parts = url.trim().split("\\?", 2);
+        return UriComponentsBuilder.fromUriString(proxyProperties.getPharmaIntegrationHost())
+                .path(parts[0])
+                .query(parts.length > 1 ? parts[1] : null)
+                .toUriString();
+    }
+
+    private String toUpstreamPath(String prefix) {
+        return UriComponentsBuilder.fromUriString(proxyProperties.getPharmaIntegrationHost())
+                .path(prefix.trim())
+                .build()
+                .getPath();
+    }
+}
@@ -0,0 +1,62 @@
+package com.dct.proxy.controllers;
+
+import com.dct.proxy.cache.CachedResponse;
+import com.dct.proxy.cache.PeerResponseCache;
+import com.dct.proxy.constants.BaseExceptionConstants;
+import com.dct.proxy.constants.BasePropertiesConstants;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.exception.BaseAuthenticationException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import static com.dct.proxy.constants.ActivateStatus.ENABLED_VALUE;
+
+/**
+ * Internal endpoint of the peer cache, answers the other proxy nodes for the keys owned by this one <p>
+ * The response is the cached upstream response as is, with its freshness in the
+ * {@value PeerResponseCache#STORED_AT_HEADER} and {@value PeerResponseCache#EXPIRES_AT_HEADER} headers
+ *
+ * @author thoaidc
+ */
+@RestController
+@ConditionalOnProperty(
+    name = { BasePropertiesConstants.ENABLED_RESPONSE_CACHE, BasePropertiesConstants.ENABLED_RESPONSE_CACHE_PEER },
+    havingValue = ENABLED_VALUE
+)
+public class PeerCacheController {
+    private static final String ENTITY_NAME = "PeerCacheController";
+    private final PeerResponseCache peerResponseCache;
+
+    public PeerCacheController(PeerResponseCache peerResponseCache) {
+        this.peerResponseCache = peerResponseCache;
+    }
+
+    @PostMapping(PeerResponseCache.PEER_PATH)
+    public ResponseEntity<byte[]> load(@RequestBody ProxyAPIRequest request,
+                                       @RequestHeader(value = PeerResponseCache.PEER_TOKEN_HEADER, required = false)
+                                       String token) {
+        if (!peerResponseCache.isValidToken(token)) {
+            throw new BaseAuthenticationException(ENTITY_NAME, BaseExceptionConstants.UNAUTHORIZED);
+        }
+
+        CachedResponse cachedResponse = peerResponseCache.load(request);
+
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(cachedResponse.getHeaders());
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.set(PeerResponseCache.STORED_AT_HEADER, String.valueOf(cachedResponse.getStoredAt()));
+            headers.set(PeerResponseCache.EXPIRES_AT_HEADER, String.valueOf(cachedResponse.getExpiresAt()));
+            return ResponseEntity.status(cachedResponse.getStatus())
+                    .headers(headers)
+                    .body(cachedResponse.getBody().toByteArray());
+        } finally {
+            cachedResponse.getBody().release();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.dct.proxy.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * One sub-request of a batch, sent to the upstream like a client request on the same path
+ */
+@SuppressWarnings("unused")
+public class BatchItemRequest {
+    private String id; // Echoed in the matching response, the index in the batch is used if empty
+
+    @NotBlank(message = "Method could not be empty")
+    @Pattern(regexp = "^(GET|POST|PUT|PATCH|DELETE)$", message = "Invalid method. Please uses GET, POST, PUT, PATCH or DELETE")
+    private String method;
+
+    @NotBlank(message = "Path could not be empty")
+    @Pattern(regexp = "^/.*", message = "Path must start with /")
+    private String path; // Path and query string (Ex: /api/p/products/123?lang=vi)
+
+    private Map<String, String> headers;
+    private Map<String, Object> body;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public Map<String, String> getHeaders() {
+        return Optional.ofNullable(headers).orElse(new HashMap<>());
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    public Map<String, Object> getBody() {
+        return Optional.ofNullable(body).orElse(new HashMap<>());
+    }
+
+    public void setBody(Map<String, Object> body) {
+        this.body = body;
+    }
+}
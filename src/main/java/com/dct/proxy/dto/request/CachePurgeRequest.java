@@ -0,0 +1,43 @@
+package com.dct.proxy.dto.request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A batch of cache invalidations, paths are the ones requested by clients (Ex: /api/p/products/123?lang=vi)
+ */
+@SuppressWarnings("unused")
+public class CachePurgeRequest {
+    private List<String> urls; // Exact path and query, all cached variants are purged
+    private List<String> prefixes; // Path prefixes, matched on path segments
+    private List<String> tags; // Tags sent by the upstream in the configured tag headers
+
+    public List<String> getUrls() {
+        return Optional.ofNullable(urls).orElse(new ArrayList<>());
+    }
+
+    public void setUrls(List<String> urls) {
+        this.urls = urls;
+    }
+
+    public List<String> getPrefixes() {
+        return Optional.ofNullable(prefixes).orElse(new ArrayList<>());
+    }
+
+    public void setPrefixes(List<String> prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    public List<String> getTags() {
+        return Optional.ofNullable(tags).orElse(new ArrayList<>());
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public int size() {
+        return getUrls().size() + getPrefixes().size() + getTags().size();
+    }
+}
@@ -0,0 +1,59 @@
+package com.dct.proxy.dto.request;
+
+import java.util.Map;
+
+/**
+ * Envelope sent to the relay with a binary encoding (Smile, CBOR) <p>
+ * Same content as {@link ProxyAPIRequest}, but the body is the original request body as raw bytes,
+ * the relay forwards it without rebuilding it from a parsed map
+ *
+ * @author thoaidc
+ */
+@SuppressWarnings("unused")
+public class ProxyAPIBinaryRequest {
+    private String url;
+    private String method;
+    private Map<String, String> headers;
+    private Map<String, Object> params;
+    private byte[] body;
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    public Map<String, Object> getParams() {
+        return params;
+    }
+
+    public void setParams(Map<String, Object> params) {
+        this.params = params;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+}
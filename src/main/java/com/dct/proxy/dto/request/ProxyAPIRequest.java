@@ -1,5 +1,8 @@
 package com.dct.proxy.dto.request;
 
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.SpooledBody;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 
@@ -20,6 +23,18 @@ public class ProxyAPIRequest {
     private Map<String, Object> params;
     private Map<String, Object> body;
 
+    // Original request body, sent as is by the binary envelope encodings instead of the parsed body
+    @JsonIgnore
+    private byte[] rawBody;
+
+    // Original request body too large to be parsed, a JSON object spooled to disk and copied as is into the envelope
+    @JsonIgnore
+    private SpooledBody spooledBody;
+
+    // Bytes of the in-flight body budget held by the client request, the upstream response is counted in it
+    @JsonIgnore
+    private BodyBudget.Reservation bodyReservation;
+
     public String getUrl() {
         return url;
     }
@@ -59,4 +74,28 @@ public class ProxyAPIRequest {
     public void setBody(Map<String, Object> body) {
         this.body = body;
     }
+
+    public byte[] getRawBody() {
+        return rawBody;
+    }
+
+    public void setRawBody(byte[] rawBody) {
+        this.rawBody = rawBody;
+    }
+
+    public SpooledBody getSpooledBody() {
+        return spooledBody;
+    }
+
+    public void setSpooledBody(SpooledBody spooledBody) {
+        this.spooledBody = spooledBody;
+    }
+
+    public BodyBudget.Reservation getBodyReservation() {
+        return bodyReservation;
+    }
+
+    public void setBodyReservation(BodyBudget.Reservation bodyReservation) {
+        this.bodyReservation = bodyReservation;
+    }
 }
@@ -0,0 +1,46 @@
+package com.dct.proxy.dto.response;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Number of cache entries invalidated by each item of a purge request
+ */
+@SuppressWarnings("unused")
+public class CachePurgeResponse {
+    private final Map<String, Integer> urls = new LinkedHashMap<>();
+    private final Map<String, Integer> prefixes = new LinkedHashMap<>();
+    private final Map<String, Integer> tags = new LinkedHashMap<>();
+    private long total;
+
+    public void addUrl(String url, int purged) {
+        urls.merge(url, purged, Integer::sum);
+        total += purged;
+    }
+
+    public void addPrefix(String prefix, int purged) {
+        prefixes.merge(prefix, purged, Integer::sum);
+        total += purged;
+    }
+
+    public void addTag(String tag, int purged) {
+        tags.merge(tag, purged, Integer::sum);
+        total += purged;
+    }
+
+    public Map<String, Integer> getUrls() {
+        return urls;
+    }
+
+    public Map<String, Integer> getPrefixes() {
+        return prefixes;
+    }
+
+    public Map<String, Integer> getTags() {
+        return tags;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,42 @@
+package com.dct.proxy.dto.response;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Response to one envelope of a micro-batch sent to the remote proxy server, the body is Base64 encoded in JSON
+ *
+ * @author thoaidc
+ */
+@SuppressWarnings("unused")
+public class RelayEnvelopeResponse {
+    private int status;
+    private Map<String, List<String>> headers;
+    private byte[] body;
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return Optional.ofNullable(headers).orElse(new HashMap<>());
+    }
+
+    public void setHeaders(Map<String, List<String>> headers) {
+        this.headers = headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+}
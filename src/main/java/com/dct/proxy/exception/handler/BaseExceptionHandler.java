@@ -1,5 +1,6 @@
 package com.dct.proxy.exception.handler;
 
+import com.dct.proxy.body.BodyRejectedException;
 import com.dct.proxy.constants.BaseExceptionConstants;
 import com.dct.proxy.dto.response.BaseResponseDTO;
 import com.dct.proxy.exception.*;
@@ -173,6 +174,21 @@ public abstract class BaseExceptionHandler extends ResponseEntityExceptionHandle
         return new ResponseEntity<>(responseDTO, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @ExceptionHandler({ BodyRejectedException.class })
+    public ResponseEntity<BaseResponseDTO> handleBodyRejectedException(BodyRejectedException exception) {
+        log.error("[BODY_REJECTED_EXCEPTION] - status: {}, message: {}", exception.getStatus().value(), exception.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        // The rest of the request body may not have been read, it is not drained to reuse the connection
+        headers.setConnection("close");
+
+        if (exception.getRetryAfterSeconds() > 0) {
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()));
+        }
+
+        BaseResponseDTO responseDTO = convertResponse(exception.getStatus().value(), exception.getMessage());
+        return new ResponseEntity<>(responseDTO, headers, exception.getStatus());
+    }
+
     @ExceptionHandler({ NullPointerException.class })
     public ResponseEntity<Object> handleNullPointerException(NullPointerException exception, WebRequest request) {
         // Handle NullPointerException (include of Objects.requireNonNull())
@@ -0,0 +1,55 @@
+package com.dct.proxy.interceptor;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Servlet {@link jakarta.servlet.Filter} that forwards proxied routes before they reach the {@code DispatcherServlet} <p>
+ * Without it, every proxied request goes through handler mapping, locale resolution and the whole
+ * {@link org.springframework.web.servlet.HandlerInterceptor} chain just for {@link ProxyRequestInterceptor#preHandle}
+ * to return {@code false} <p>
+ * The included/excluded patterns of {@link ProxyRequestInterceptor} are parsed once at startup ({@link ProxyRouteMatcher}),
+ * matching requests are forwarded directly and all other requests fall through to Spring MVC
+ *
+ * @author thoaidc
+ */
+public class ProxyFastPathFilter extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger(ProxyFastPathFilter.class);
+    private final ProxyRequestInterceptor proxyRequestInterceptor;
+    private final ProxyRouteMatcher routeMatcher;
+
+    public ProxyFastPathFilter(ProxyRequestInterceptor proxyRequestInterceptor,
+                               String[] includedPatterns,
+                               String[] excludedPatterns) {
+        this(proxyRequestInterceptor, new ProxyRouteMatcher(includedPatterns, excludedPatterns));
+    }
+
+    public ProxyFastPathFilter(ProxyRequestInterceptor proxyRequestInterceptor, ProxyRouteMatcher routeMatcher) {
+        this.proxyRequestInterceptor = proxyRequestInterceptor;
+        this.routeMatcher = routeMatcher;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String requestUri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        String lookupPath = requestUri.startsWith(contextPath) ? requestUri.substring(contextPath.length()) : requestUri;
+        return !routeMatcher.matches(lookupPath);
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        log.debug("[PROXY_FAST_PATH_FILTER] - Bypass dispatcher for: {} {}", request.getMethod(), request.getRequestURI());
+        proxyRequestInterceptor.forward(request, response);
+    }
+}
@@ -1,95 +1,224 @@
 package com.dct.proxy.interceptor;
 
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BodyLimits;
+import com.dct.proxy.body.BodyRejectedException;
+import com.dct.proxy.body.BodySpooler;
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.body.SpooledBody;
+import com.dct.proxy.cache.CacheRefreshExecutor;
+import com.dct.proxy.cache.CachedBody;
+import com.dct.proxy.cache.CachedResponse;
+import com.dct.proxy.cache.DiskCachedBody;
+import com.dct.proxy.cache.HeapCachedBody;
+import com.dct.proxy.cache.IdempotencyStore;
+import com.dct.proxy.cache.PeerResponseCache;
+import com.dct.proxy.cache.ProxyResponseCache;
+import com.dct.proxy.cache.RefreshAheadTracker;
+import com.dct.proxy.cache.RequestCoalescer;
+import com.dct.proxy.cache.ResponseCacheKey;
+import com.dct.proxy.cache.ResponseCachePolicy;
+import com.dct.proxy.cache.RetryAfterSuppressor;
+import com.dct.proxy.common.JsonCodec;
 import com.dct.proxy.common.JsonUtils;
+import com.dct.proxy.compression.ResponseCompressor;
 import com.dct.proxy.config.properties.ServerProxyProperties;
+import com.dct.proxy.constants.ContentCoding;
 import com.dct.proxy.dto.request.ProxyAPIRequest;
 import com.dct.proxy.dto.response.BaseResponseDTO;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.dct.proxy.relay.RelayEnvelopeCodec;
+import com.dct.proxy.relay.RelayMicroBatcher;
+import com.dct.proxy.relay.RelayTunnelClient;
+import com.dct.proxy.relay.StreamingRelaySender;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Component
 public class ProxyRequestInterceptor implements HandlerInterceptor {
     private static final Logger log = LoggerFactory.getLogger(ProxyRequestInterceptor.class);
+    // Request attributes of the Tomcat sendfile support, the connector sends the file region after the request ends
+    private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final Set<String> CONDITIONAL_HEADERS = Set.of("if-none-match", "if-modified-since");
+    // Headers a 304 response carries over from the stored response (RFC 9110, section 15.4.5)
+    private static final List<String> NOT_MODIFIED_HEADERS = List.of(
+        HttpHeaders.ETAG,
+        HttpHeaders.LAST_MODIFIED,
+        HttpHeaders.CACHE_CONTROL,
+        HttpHeaders.EXPIRES,
+        HttpHeaders.VARY,
+        HttpHeaders.DATE,
+        HttpHeaders.CONTENT_LOCATION
+    );
     private final ServerProxyProperties proxyProperties;
     private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final JsonCodec jsonCodec;
+    private final ProxyResponseCache responseCache;
+    private final RequestCoalescer requestCoalescer;
+    private final CacheRefreshExecutor refreshExecutor;
+    private final CircuitBreaker circuitBreaker;
+    private final RefreshAheadTracker refreshAheadTracker;
+    private final RetryAfterSuppressor retryAfterSuppressor;
+    private final PeerResponseCache peerResponseCache;
+    private final IdempotencyStore idempotencyStore;
+    private final RelayMicroBatcher relayMicroBatcher;
+    private final RelayTunnelClient relayTunnelClient;
+    private final RelayEnvelopeCodec relayEnvelopeCodec;
+    private final StreamingRelaySender streamingRelaySender;
+    private final ResponseCompressor responseCompressor;
+    private final BodySpooler bodySpooler;
+    private final BodyBudget bodyBudget;
+    private final BodyLimits bodyLimits;
+    private final BufferPool bufferPool;
 
     public ProxyRequestInterceptor(ServerProxyProperties proxyProperties,
                                    RestTemplate restTemplate,
-                                   ObjectMapper objectMapper) {
+                                   JsonCodec jsonCodec,
+                                   @Autowired(required = false) ProxyResponseCache responseCache,
+                                   @Autowired(required = false) RequestCoalescer requestCoalescer,
+                                   @Autowired(required = false) CacheRefreshExecutor refreshExecutor,
+                                   @Autowired(required = false) CircuitBreaker circuitBreaker,
+                                   @Autowired(required = false) RefreshAheadTracker refreshAheadTracker,
+                                   @Autowired(required = false) RetryAfterSuppressor retryAfterSuppressor,
+                                   @Autowired(required = false) PeerResponseCache peerResponseCache,
+                                   @Autowired(required = false) IdempotencyStore idempotencyStore,
+                                   @Autowired(required = false) RelayMicroBatcher relayMicroBatcher,
+                                   @Autowired(required = false) RelayTunnelClient relayTunnelClient,
+                                   @Autowired(required = false) RelayEnvelopeCodec relayEnvelopeCodec,
+                                   @Autowired(required = false) StreamingRelaySender streamingRelaySender,
+                                   @Autowired(required = false) ResponseCompressor responseCompressor,
+                                   @Autowired(required = false) BodySpooler bodySpooler,
+                                   @Autowired(required = false) BodyBudget bodyBudget,
+                                   @Autowired(required = false) BodyLimits bodyLimits,
+                                   @Autowired(required = false) BufferPool bufferPool) {
         this.proxyProperties = proxyProperties;
         this.restTemplate = restTemplate;
-        this.objectMapper = objectMapper;
+        this.jsonCodec = jsonCodec;
+        this.responseCache = responseCache;
+        this.requestCoalescer = requestCoalescer;
+        this.refreshExecutor = refreshExecutor;
+        this.circuitBreaker = circuitBreaker;
+        this.refreshAheadTracker = refreshAheadTracker;
+        this.retryAfterSuppressor = retryAfterSuppressor;
+        this.peerResponseCache = peerResponseCache;
+        this.idempotencyStore = idempotencyStore;
+        this.relayMicroBatcher = relayMicroBatcher;
+        this.relayTunnelClient = relayTunnelClient;
+        this.relayEnvelopeCodec = relayEnvelopeCodec;
+        this.streamingRelaySender = streamingRelaySender;
+        this.responseCompressor = responseCompressor;
+        this.bodySpooler = bodySpooler;
+        this.bodyBudget = bodyBudget;
+        this.bodyLimits = bodyLimits;
+        this.bufferPool = Optional.ofNullable(bufferPool).orElse(BufferPool.unpooled());
+
+        if (Objects.nonNull(refreshAheadTracker)) {
+            refreshAheadTracker.setRefresher(this::refreshAhead);
+        }
+
+        if (Objects.nonNull(peerResponseCache)) {
+            peerResponseCache.setLoader(this::loadForPeer);
+        }
     }
 
     @Override
     public boolean preHandle(@NonNull HttpServletRequest request,
                              @NonNull HttpServletResponse response,
                              @NonNull Object handler) throws IOException {
+        forward(request, response);
+        return false;
+    }
+
+    /**
+     * Wrap the original request into a {@link ProxyAPIRequest}, send it to the remote proxy server
+     * and write the upstream response back to the client <p>
+     * Shared by {@link #preHandle} and {@link ProxyFastPathFilter}, so it must not depend on any Spring MVC state
+     *
+     * @param request the original client request
+     * @param response the response to write the upstream result into
+     * @throws IOException if the error response cannot be written
+     */
+    public void forward(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ProxyAPIRequest proxyAPIRequest = null;
+        BodyBudget.Reservation reservation = Objects.nonNull(bodyBudget) ? bodyBudget.open() : null;
+
         try {
-            ProxyAPIRequest proxyAPIRequest = new ProxyAPIRequest();
-            proxyAPIRequest.setMethod(request.getMethod());
-
-            // Build proxy API
-            String url = UriComponentsBuilder.fromUriString(proxyProperties.getPharmaIntegrationHost())
-                    .path(request.getRequestURI())
-                    .query(request.getQueryString())
-                    .toUriString();
-            proxyAPIRequest.setUrl(url);
-            log.info("[PROXY_API_INTERCEPTOR] - Incoming request: method={}, url={}", request.getMethod(), url);
-
-            // Copy and wrapped original request headers
-            Map<String, String> headers = Collections.list(request.getHeaderNames())
-                    .stream()
-                    .collect(Collectors.toMap(name -> name, request::getHeader));
-            proxyAPIRequest.setHeaders(headers);
-
-            String body = new String(request.getInputStream().readAllBytes(), request.getCharacterEncoding());
-            log.debug("[PROXY_API_INTERCEPTOR] - Request headers: {}", headers);
-
-            // Copy and wrapped original body
-            if (StringUtils.hasText(body)) {
-                TypeReference<Map<String, Object>> typeRef = new TypeReference<>() {};
-                Map<String, Object> bodyMap = JsonUtils.parseJson(body, typeRef);
-                proxyAPIRequest.setBody(bodyMap);
-            } else {
-                proxyAPIRequest.setBody(Collections.emptyMap());
+            // Checked from the headers only, before the client is told to send the body
+            long maxBodyBytes = Objects.nonNull(bodyLimits) ? bodyLimits.check(request) : -1;
+            proxyAPIRequest = buildProxyAPIRequest(request, reservation, maxBodyBytes);
+            ResponseCacheKey cacheKey = Objects.nonNull(responseCache) ? responseCache.buildKey(proxyAPIRequest) : null;
+
+            if (Objects.nonNull(cacheKey)) {
+                forwardCacheable(request, response, cacheKey, proxyAPIRequest);
+                return;
             }
 
-            log.debug("[PROXY_API_INTERCEPTOR] - Request original body: {}", proxyAPIRequest.getBody());
-            // Call to proxy server
-            HttpEntity<Object> entity = new HttpEntity<>(proxyAPIRequest);
-            String serverProxyUrl = proxyProperties.getHost() + proxyProperties.getProxyApi();
-            log.info("[PROXY_API_INTERCEPTOR] - Forwarding to proxy URL: {}", serverProxyUrl);
-            ResponseEntity<byte[]> serverResponse = restTemplate.postForEntity(serverProxyUrl, entity, byte[].class);
-            // Return original serverResponse from target API
-            copyHeaders(response, serverResponse.getHeaders());
-            response.setStatus(serverResponse.getStatusCode().value());
-            response.getOutputStream().write(Optional.ofNullable(serverResponse.getBody()).orElse(new byte[0]));
-            log.info("[PROXY_API_INTERCEPTOR] - Received response: status={}", serverResponse.getStatusCode());
+            long suppressedFor = getSuppressedMillis(proxyAPIRequest);
+
+            if (suppressedFor > 0) {
+                writeSuppressedResponse(response, suppressedFor);
+                return;
+            }
+
+            String idempotencyKey = resolveIdempotencyKey(request);
+
+            if (Objects.nonNull(idempotencyKey)) {
+                forwardIdempotent(request, response, idempotencyKey, proxyAPIRequest);
+                return;
+            }
+
+            if (Objects.nonNull(bodySpooler) && isStreamed(proxyAPIRequest)) {
+                writeSpooledResponse(request, response, callProxyServerSpooled(proxyAPIRequest));
+                return;
+            }
+
+            writeServerResponse(request, response, callProxyServer(proxyAPIRequest));
+        } catch (BodyRejectedException e) {
+            writeRejectedResponse(response, e);
         } catch (Exception e) {
             log.error("[PROXY_API_INTERCEPTOR] - Forward failed: {}", e.getMessage());
             response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
@@ -97,14 +226,943 @@ public class ProxyRequestInterceptor implements HandlerInterceptor {
                     .message(e.getMessage())
                     .success(Boolean.FALSE)
                     .build();
-            byte[] jsonBytes = objectMapper.writeValueAsBytes(responseDTO);
+            byte[] jsonBytes = jsonCodec.writeResponse(responseDTO);
             ServletOutputStream out = response.getOutputStream();
             out.write(jsonBytes);
             out.flush();
             out.close();
+        } finally {
+            // The spool file of the request body lives as long as the request, retries included
+            if (Objects.nonNull(proxyAPIRequest) && Objects.nonNull(proxyAPIRequest.getSpooledBody())) {
+                proxyAPIRequest.getSpooledBody().close();
+            }
+
+            if (Objects.nonNull(reservation)) {
+                reservation.close();
+            }
         }
+    }
 
-        return false;
+    /**
+     * Same upstream path as {@link #forward} for an envelope that does not come from a servlet request,
+     * used by the batch endpoint <p>
+     * Cacheable requests are answered from a fresh cache entry, or fetched and cached as usual.
+     * Calls are not sent while the circuit is open or the route is suppressed
+     *
+     * @param proxyAPIRequest the envelope to send to the remote proxy server
+     * @return the upstream or cached response, it must not be modified
+     */
+    public ResponseEntity<byte[]> exchange(ProxyAPIRequest proxyAPIRequest) {
+        ResponseCacheKey cacheKey = null;
+
+        if (Objects.nonNull(responseCache)) {
+            proxyAPIRequest.getHeaders()
+                .keySet()
+                .removeIf(name -> CONDITIONAL_HEADERS.contains(name.toLowerCase(Locale.ROOT)));
+            cacheKey = responseCache.buildKey(proxyAPIRequest);
+        }
+
+        CachedResponse cachedResponse = Objects.nonNull(cacheKey) ? responseCache.get(cacheKey) : null;
+
+        if (Objects.nonNull(cachedResponse)) {
+            try {
+                HttpHeaders headers = new HttpHeaders();
+                headers.putAll(cachedResponse.getHeaders());
+                headers.set(HttpHeaders.AGE, String.valueOf(cachedResponse.getAgeSeconds(System.currentTimeMillis())));
+                headers.set(ProxyResponseCache.CACHE_STATUS_HEADER, "HIT");
+                return ResponseEntity.status(cachedResponse.getStatus())
+                        .headers(headers)
+                        .body(cachedResponse.getBody().toByteArray());
+            } finally {
+                cachedResponse.getBody().release();
+            }
+        }
+
+        long suppressedFor = getSuppressedMillis(proxyAPIRequest);
+
+        if (isCircuitOpen() || suppressedFor > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(suppressedFor + 999));
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .build();
+        }
+
+        if (Objects.isNull(cacheKey)) {
+            return callProxyServer(proxyAPIRequest);
+        }
+
+        ResponseEntity<byte[]> serverResponse = fetch(cacheKey, proxyAPIRequest, null);
+
+        // Joined the conditional call of a revalidation, its 304 has no body to return
+        if (serverResponse.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+            serverResponse = fetchAndCache(cacheKey, proxyAPIRequest, null);
+        }
+
+        return serverResponse;
+    }
+
+    /**
+     * Serve a cacheable request from the cache when the stored response is fresh,
+     * revalidate it with a conditional upstream request when it has expired, fetch it otherwise <p>
+     * An expired response is still served within its stale-while-revalidate window (refreshed in the background)
+     * and within its stale-if-error window when the circuit is open, the route is suppressed or the upstream fails.
+     * Requests carrying credentials are never replayed in the background, their expired responses are revalidated
+     * in the request <p>
+     * With the peer cache, a miss on a key owned by another node is first asked to that node
+     */
+    private void forwardCacheable(HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  ResponseCacheKey cacheKey,
+                                  ProxyAPIRequest proxyAPIRequest) throws IOException {
+        // Client validators are evaluated against the cache, the upstream only receives ours
+        proxyAPIRequest.getHeaders()
+            .keySet()
+            .removeIf(name -> CONDITIONAL_HEADERS.contains(name.toLowerCase(Locale.ROOT)));
+        CachedResponse cachedResponse = responseCache.lookup(cacheKey);
+        ResponseCachePolicy policy = responseCache.getPolicy();
+        long now = System.currentTimeMillis();
+
+        try {
+            if (Objects.nonNull(cachedResponse) && cachedResponse.isFresh(now)) {
+                if (Objects.nonNull(refreshAheadTracker)
+                        && !cacheKey.isCredentialed()
+                        && !policy.isNegative(cachedResponse)) {
+                    refreshAheadTracker.recordHit(cacheKey, proxyAPIRequest, cachedResponse);
+                }
+
+                writeCachedResponse(request, response, cacheKey, cachedResponse, "HIT");
+                log.info("[PROXY_API_INTERCEPTOR] - Served from cache: status={}", cachedResponse.getStatus());
+                return;
+            }
+
+            if (Objects.nonNull(cachedResponse)
+                    && !cacheKey.isCredentialed()
+                    && policy.canServeStaleWhileRevalidate(cachedResponse, now)) {
+                refreshInBackground(cacheKey, proxyAPIRequest, cachedResponse);
+                writeCachedResponse(request, response, cacheKey, cachedResponse, "STALE");
+                log.info("[PROXY_API_INTERCEPTOR] - Served stale response while revalidating");
+                return;
+            }
+
+            long suppressedFor = getSuppressedMillis(proxyAPIRequest);
+
+            if ((isCircuitOpen() || suppressedFor > 0)
+                    && Objects.nonNull(cachedResponse)
+                    && policy.canServeStaleIfError(cachedResponse, now)) {
+                writeCachedResponse(request, response, cacheKey, cachedResponse, "STALE");
+                log.warn("[PROXY_API_INTERCEPTOR] - Upstream unavailable, served stale response");
+                return;
+            }
+
+            if (suppressedFor > 0) {
+                writeSuppressedResponse(response, suppressedFor);
+                return;
+            }
+
+            if (Objects.isNull(cachedResponse) && forwardToPeer(request, response, cacheKey, proxyAPIRequest)) {
+                return;
+            }
+
+            ResponseEntity<byte[]> serverResponse;
+
+            try {
+                serverResponse = fetch(cacheKey, proxyAPIRequest, cachedResponse);
+            } catch (RuntimeException e) {
+                boolean upstreamFailure = !(e instanceof HttpClientErrorException);
+                long failedAt = System.currentTimeMillis();
+
+                // Client errors are the answer of a healthy upstream, only failures fall back to the stale copy
+                if (Objects.isNull(cachedResponse)
+                        || !upstreamFailure
+                        || !policy.canServeStaleIfError(cachedResponse, failedAt)) {
+                    throw e;
+                }
+
+                writeCachedResponse(request, response, cacheKey, cachedResponse, "STALE");
+                log.warn("[PROXY_API_INTERCEPTOR] - Upstream failed, served stale response: {}", e.getMessage());
+                return;
+            }
+
+            if (serverResponse.getStatusCode().is5xxServerError()
+                    && Objects.nonNull(cachedResponse)
+                    && policy.canServeStaleIfError(cachedResponse, System.currentTimeMillis())) {
+                writeCachedResponse(request, response, cacheKey, cachedResponse, "STALE");
+                log.warn("[PROXY_API_INTERCEPTOR] - Upstream error {}, served stale response", serverResponse.getStatusCode());
+                return;
+            }
+
+            if (serverResponse.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                // The stored response was refreshed, by this request or by the leader of a coalesced call
+                CachedResponse revalidated = responseCache.lookup(cacheKey);
+
+                if (Objects.nonNull(revalidated)) {
+                    try {
+                        writeCachedResponse(request, response, cacheKey, revalidated, "REVALIDATED");
+                    } finally {
+                        revalidated.getBody().release();
+                    }
+
+                    log.info("[PROXY_API_INTERCEPTOR] - Served from cache after revalidation");
+                    return;
+                }
+
+                serverResponse = fetchAndCache(cacheKey, proxyAPIRequest, null);
+            }
+
+            response.setHeader(ProxyResponseCache.CACHE_STATUS_HEADER, "MISS");
+            writeServerResponse(request, response, serverResponse);
+        } finally {
+            if (Objects.nonNull(cachedResponse)) {
+                cachedResponse.getBody().release();
+            }
+        }
+    }
+
+    // Ask the node owning the key before the upstream, the response is only kept here once the key is hot on this node
+    private boolean forwardToPeer(HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  ResponseCacheKey cacheKey,
+                                  ProxyAPIRequest proxyAPIRequest) throws IOException {
+        if (Objects.isNull(peerResponseCache)) {
+            return false;
+        }
+
+        CachedResponse peerResponse = peerResponseCache.fetchFromOwner(cacheKey, proxyAPIRequest);
+
+        if (Objects.isNull(peerResponse)) {
+            return false;
+        }
+
+        if (peerResponse.isFresh(System.currentTimeMillis()) && peerResponseCache.recordRemoteHit(cacheKey)) {
+            responseCache.putReplica(cacheKey, peerResponse, peerResponseCache.getReplicaExpiresAt(peerResponse));
+        }
+
+        // Compressed copies are only kept for responses stored on this node
+        writeCachedResponse(request, response, null, peerResponse, "PEER");
+        log.info("[PROXY_API_INTERCEPTOR] - Served from peer cache: status={}", peerResponse.getStatus());
+        return true;
+    }
+
+    /**
+     * Answer a peer for a key owned by this node, from the cache or from the upstream once for the whole cluster
+     * @return the response with a retained body, fresh if it is cached here
+     */
+    private CachedResponse loadForPeer(ProxyAPIRequest proxyAPIRequest) {
+        proxyAPIRequest.getHeaders()
+            .keySet()
+            .removeIf(name -> CONDITIONAL_HEADERS.contains(name.toLowerCase(Locale.ROOT)));
+        ResponseCacheKey cacheKey = responseCache.buildKey(proxyAPIRequest);
+
+        if (Objects.isNull(cacheKey)) {
+            throw new IllegalArgumentException("Request is not cacheable: " + proxyAPIRequest.getMethod());
+        }
+
+        CachedResponse cachedResponse = responseCache.lookup(cacheKey);
+
+        if (Objects.nonNull(cachedResponse) && cachedResponse.isFresh(System.currentTimeMillis())) {
+            return cachedResponse;
+        }
+
+        try {
+            ResponseEntity<byte[]> serverResponse;
+
+            try {
+                serverResponse = fetch(cacheKey, proxyAPIRequest, cachedResponse);
+            } catch (HttpStatusCodeException e) {
+                // The answer of the upstream, passed on to the peer like to a client
+                HttpHeaders errorHeaders = Optional.ofNullable(e.getResponseHeaders()).orElse(new HttpHeaders());
+                serverResponse = ResponseEntity.status(e.getStatusCode())
+                        .headers(errorHeaders)
+                        .body(e.getResponseBodyAsByteArray());
+            }
+
+            CachedResponse stored = responseCache.get(cacheKey);
+
+            if (Objects.nonNull(stored)) {
+                return stored;
+            }
+
+            if (serverResponse.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                serverResponse = fetchAndCache(cacheKey, proxyAPIRequest, null);
+            }
+
+            long now = System.currentTimeMillis();
+            byte[] body = Optional.ofNullable(serverResponse.getBody()).orElse(BufferPool.EMPTY);
+            return new CachedResponse(
+                serverResponse.getStatusCode().value(),
+                serverResponse.getHeaders(),
+                new HeapCachedBody(body),
+                now,
+                now
+            );
+        } finally {
+            if (Objects.nonNull(cachedResponse)) {
+                cachedResponse.getBody().release();
+            }
+        }
+    }
+
+    private String resolveIdempotencyKey(HttpServletRequest request) {
+        if (Objects.isNull(idempotencyStore)) {
+            return null;
+        }
+
+        String idempotencyKey = request.getHeader(idempotencyStore.getHeaderName());
+        String principal = ProxyResponseCache.resolvePrincipal(request::getHeader);
+        return idempotencyStore.resolveKey(request.getMethod(), request.getRequestURI(), idempotencyKey, principal);
+    }
+
+    /**
+     * Forward the original request of an idempotency key, answer its duplicates with the same response <p>
+     * The key header is forwarded as well, so the upstream can also recognize attempts of the relay retry
+     */
+    private void forwardIdempotent(HttpServletRequest request,
+                                   HttpServletResponse response,
+                                   String idempotencyKey,
+                                   ProxyAPIRequest proxyAPIRequest) throws IOException {
+        String fingerprint = fingerprint(proxyAPIRequest);
+        IdempotencyStore.Result result = idempotencyStore.execute(
+            idempotencyKey,
+            fingerprint,
+            () -> callProxyServer(proxyAPIRequest)
+        );
+
+        switch (result.outcome()) {
+            case MISMATCH -> writeErrorResponse(
+                response,
+                HttpStatus.UNPROCESSABLE_ENTITY,
+                "Idempotency key already used for a different request"
+            );
+            case IN_PROGRESS -> writeErrorResponse(
+                response,
+                HttpStatus.CONFLICT,
+                "A request with this idempotency key is still in progress"
+            );
+            case REPLAYED -> {
+                response.setHeader(IDEMPOTENT_REPLAYED_HEADER, Boolean.TRUE.toString());
+                writeServerResponse(request, response, result.response());
+            }
+            default -> writeServerResponse(request, response, result.response());
+        }
+    }
+
+    private String fingerprint(ProxyAPIRequest proxyAPIRequest) throws IOException {
+        SpooledBody spooledBody = proxyAPIRequest.getSpooledBody();
+
+        if (Objects.isNull(spooledBody)) {
+            return IdempotencyStore.fingerprint(
+                proxyAPIRequest.getMethod(),
+                proxyAPIRequest.getUrl(),
+                jsonCodec.writeMap(proxyAPIRequest.getBody())
+            );
+        }
+
+        try (InputStream body = spooledBody.openStream()) {
+            return IdempotencyStore.fingerprint(proxyAPIRequest.getMethod(), proxyAPIRequest.getUrl(), body);
+        }
+    }
+
+    // The stale body is retained once more for the background task, which outlives the client request
+    // and so the spool file of its body. The credentials of a client are never kept to be replayed later
+    private void refreshInBackground(ResponseCacheKey cacheKey, ProxyAPIRequest proxyAPIRequest, CachedResponse stale) {
+        if (Objects.isNull(refreshExecutor)
+                || cacheKey.isCredentialed()
+                || isCircuitOpen()
+                || Objects.nonNull(proxyAPIRequest.getSpooledBody())
+                || !stale.getBody().retain()) {
+            return;
+        }
+
+        boolean scheduled = refreshExecutor.submit(cacheKey, () -> {
+            try {
+                fetch(cacheKey, proxyAPIRequest, stale);
+            } finally {
+                stale.getBody().release();
+            }
+        });
+
+        if (!scheduled) {
+            stale.getBody().release();
+        }
+    }
+
+    // Called by the refresh-ahead tracker for hot entries close to expiry, revalidates the current version
+    private void refreshAhead(ResponseCacheKey cacheKey, ProxyAPIRequest proxyAPIRequest) {
+        CachedResponse current = responseCache.lookup(cacheKey);
+
+        if (Objects.isNull(current)) {
+            return;
+        }
+
+        try {
+            refreshInBackground(cacheKey, proxyAPIRequest, current);
+        } finally {
+            current.getBody().release();
+        }
+    }
+
+    private long getSuppressedMillis(ProxyAPIRequest proxyAPIRequest) {
+        if (Objects.isNull(retryAfterSuppressor)) {
+            return 0;
+        }
+
+        return retryAfterSuppressor.getRemainingMillis(resolvePath(proxyAPIRequest));
+    }
+
+    // The upstream route announced it is unavailable, answer like it would without sending the request
+    private void writeSuppressedResponse(HttpServletResponse response, long suppressedFor) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(suppressedFor + 999));
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        writeErrorResponse(
+            response,
+            HttpStatus.SERVICE_UNAVAILABLE,
+            "Upstream unavailable, retry after " + retryAfterSeconds + " seconds"
+        );
+        log.info("[PROXY_API_INTERCEPTOR] - Upstream route suppressed for {}s", retryAfterSeconds);
+    }
+
+    // Answered locally, without calling the upstream
+    private void writeErrorResponse(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        BaseResponseDTO responseDTO = BaseResponseDTO.builder().code(status.value())
+                .message(message)
+                .success(Boolean.FALSE)
+                .build();
+
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        jsonCodec.writeResponse(responseDTO, response.getOutputStream());
+    }
+
+    // The body is refused by the route limits or the in-flight body budget,
+    // the upstream was not called or its response is dropped
+    private void writeRejectedResponse(HttpServletResponse response, BodyRejectedException e) throws IOException {
+        // The rest of the request body may not have been read, it is not drained to reuse the connection
+        response.setHeader(HttpHeaders.CONNECTION, "close");
+
+        if (e.getRetryAfterSeconds() > 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        }
+
+        writeErrorResponse(response, e.getStatus(), e.getMessage());
+        log.warn("[PROXY_API_INTERCEPTOR] - Body rejected with {}: {}", e.getStatus().value(), e.getMessage());
+    }
+
+    private static String resolvePath(ProxyAPIRequest proxyAPIRequest) {
+        return UriComponentsBuilder.fromUriString(proxyAPIRequest.getUrl()).build().getPath();
+    }
+
+    private boolean isCircuitOpen() {
+        if (Objects.isNull(circuitBreaker)) {
+            return false;
+        }
+
+        CircuitBreaker.State state = circuitBreaker.getState();
+        return CircuitBreaker.State.OPEN.equals(state) || CircuitBreaker.State.FORCED_OPEN.equals(state);
+    }
+
+    private ResponseEntity<byte[]> fetch(ResponseCacheKey cacheKey, ProxyAPIRequest proxyAPIRequest, CachedResponse stale) {
+        Supplier<ResponseEntity<byte[]>> upstreamCall = () -> fetchAndCache(cacheKey, proxyAPIRequest, stale);
+
+        // Concurrent misses on the same key share one upstream call, only its leader stores the response
+        if (Objects.nonNull(requestCoalescer)) {
+            return requestCoalescer.execute(cacheKey, upstreamCall);
+        }
+
+        return upstreamCall.get();
+    }
+
+    private ResponseEntity<byte[]> fetchAndCache(ResponseCacheKey cacheKey,
+                                                 ProxyAPIRequest proxyAPIRequest,
+                                                 CachedResponse stale) {
+        boolean conditional = Objects.nonNull(stale) && stale.hasValidator()
+                && responseCache.getPolicy().isRevalidationEnabled();
+        ProxyAPIRequest upstreamRequest = conditional ? withValidators(proxyAPIRequest, stale) : proxyAPIRequest;
+        ResponseEntity<byte[]> serverResponse = callProxyServer(upstreamRequest);
+
+        // An upstream error must not replace a stale copy that can still be served instead of it
+        boolean keepStale = serverResponse.getStatusCode().is5xxServerError()
+                && Objects.nonNull(stale)
+                && responseCache.getPolicy().canServeStaleIfError(stale, System.currentTimeMillis());
+
+        if (conditional && serverResponse.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+            responseCache.revalidated(cacheKey, stale, serverResponse.getHeaders());
+        } else if (!keepStale) {
+            responseCache.put(cacheKey, serverResponse);
+        }
+
+        return serverResponse;
+    }
+
+    // Copy of the envelope with the validators of the stored response, the original is left untouched
+    private ProxyAPIRequest withValidators(ProxyAPIRequest proxyAPIRequest, CachedResponse stale) {
+        Map<String, String> headers = new HashMap<>(proxyAPIRequest.getHeaders());
+        HttpHeaders storedHeaders = stale.getHeaders();
+        Optional.ofNullable(storedHeaders.getETag()).ifPresent(etag -> headers.put(HttpHeaders.IF_NONE_MATCH, etag));
+        Optional.ofNullable(storedHeaders.getFirst(HttpHeaders.LAST_MODIFIED))
+                .ifPresent(lastModified -> headers.put(HttpHeaders.IF_MODIFIED_SINCE, lastModified));
+
+        ProxyAPIRequest conditionalRequest = new ProxyAPIRequest();
+        conditionalRequest.setUrl(proxyAPIRequest.getUrl());
+        conditionalRequest.setMethod(proxyAPIRequest.getMethod());
+        conditionalRequest.setHeaders(headers);
+        conditionalRequest.setParams(proxyAPIRequest.getParams());
+        conditionalRequest.setBody(proxyAPIRequest.getBody());
+        conditionalRequest.setRawBody(proxyAPIRequest.getRawBody());
+        conditionalRequest.setSpooledBody(proxyAPIRequest.getSpooledBody());
+        conditionalRequest.setBodyReservation(proxyAPIRequest.getBodyReservation());
+        return conditionalRequest;
+    }
+
+    private ProxyAPIRequest buildProxyAPIRequest(HttpServletRequest request,
+                                                 BodyBudget.Reservation reservation,
+                                                 long maxBodyBytes) throws IOException {
+        ProxyAPIRequest proxyAPIRequest = new ProxyAPIRequest();
+        proxyAPIRequest.setMethod(request.getMethod());
+        proxyAPIRequest.setBodyReservation(reservation);
+
+        // Build proxy API
+        String url = UriComponentsBuilder.fromUriString(proxyProperties.getPharmaIntegrationHost())
+                .path(request.getRequestURI())
+                .query(request.getQueryString())
+                .toUriString();
+        proxyAPIRequest.setUrl(url);
+        log.info("[PROXY_API_INTERCEPTOR] - Incoming request: method={}, url={}", request.getMethod(), url);
+
+        // Copy and wrapped original request headers
+        Map<String, String> headers = Collections.list(request.getHeaderNames())
+                .stream()
+                .collect(Collectors.toMap(name -> name, request::getHeader));
+        proxyAPIRequest.setHeaders(headers);
+
+        log.debug("[PROXY_API_INTERCEPTOR] - Request headers: {}", headers);
+        Charset charset = Charset.forName(request.getCharacterEncoding());
+        InputStream in = openRequestBody(request, reservation, maxBodyBytes);
+        long contentLength = request.getContentLengthLong();
+
+        if (Objects.isNull(bodySpooler)) {
+            setBody(proxyAPIRequest, bufferPool.readAllBytes(in, contentLength), charset);
+        } else {
+            SpooledBody body = bodySpooler.spool(in, contentLength);
+
+            if (body.isSpooled()) {
+                setSpooledBody(proxyAPIRequest, body, charset);
+            } else {
+                setBody(proxyAPIRequest, body.toByteArray(), charset);
+            }
+        }
+
+        log.debug("[PROXY_API_INTERCEPTOR] - Request original body: {}", proxyAPIRequest.getBody());
+        return proxyAPIRequest;
+    }
+
+    // The route limit is enforced while the body is read, a body without Content-Length is only known to be too large then.
+    // Reserved from its Content-Length before the body is read, chunk after chunk without it.
+    // Past the spool threshold the body goes to disk, it is no longer counted unless it is parsed on the heap
+    private InputStream openRequestBody(HttpServletRequest request,
+                                        BodyBudget.Reservation reservation,
+                                        long maxBodyBytes) throws IOException {
+        InputStream in = request.getInputStream();
+
+        if (Objects.nonNull(bodyLimits)) {
+            in = bodyLimits.limit(in, maxBodyBytes);
+        }
+
+        if (Objects.isNull(reservation)) {
+            return in;
+        }
+
+        return reservation.meter(in, request.getContentLengthLong(), inMemoryLimit());
+    }
+
+    private long inMemoryLimit() {
+        return Objects.nonNull(bodySpooler) ? bodySpooler.getMemoryThresholdBytes() + 1L : Long.MAX_VALUE;
+    }
+
+    private void setBody(ProxyAPIRequest proxyAPIRequest, byte[] bodyBytes, Charset charset) {
+        // JSON is parsed from UTF-8 bytes, a body in another charset is transcoded once
+        byte[] jsonBody = StandardCharsets.UTF_8.equals(charset)
+                ? bodyBytes
+                : new String(bodyBytes, charset).getBytes(StandardCharsets.UTF_8);
+
+        // Copy and wrapped original body
+        if (JsonUtils.hasContent(jsonBody)) {
+            Map<String, Object> bodyMap = parseBody(jsonBody);
+            proxyAPIRequest.setBody(bodyMap);
+
+            // Kept only when it is the valid JSON object the parsed body comes from
+            if (Objects.nonNull(bodyMap)) {
+                proxyAPIRequest.setRawBody(jsonBody);
+            }
+        } else {
+            proxyAPIRequest.setBody(Collections.emptyMap());
+        }
+    }
+
+    /**
+     * A body above the spool threshold is not parsed when the streaming sender can copy it from the spool file,
+     * its tokens are only scanned to check it is a JSON object. Otherwise the envelope is serialized from
+     * the parsed body, which is read from the file and the file is released right away. The parsed body is held
+     * on the heap: the bytes past the spool threshold, not counted while the body was read, are reserved before
+     */
+    private void setSpooledBody(ProxyAPIRequest proxyAPIRequest, SpooledBody body, Charset charset) throws IOException {
+        if (Objects.isNull(streamingRelaySender) || !StandardCharsets.UTF_8.equals(charset)) {
+            try (body; Reader reader = new InputStreamReader(body.openStream(), charset)) {
+                if (Objects.nonNull(proxyAPIRequest.getBodyReservation())) {
+                    proxyAPIRequest.getBodyReservation().grow(body.length() - inMemoryLimit());
+                }
+
+                proxyAPIRequest.setBody(parseBody(reader, body.length()));
+            }
+
+            return;
+        }
+
+        boolean jsonObject;
+
+        try (InputStream in = body.openStream()) {
+            jsonObject = jsonCodec.isJsonObject(in);
+        }
+
+        if (!jsonObject) {
+            body.close();
+            log.error("[INVALID_JSON_FORMAT] - Request body of {} bytes is not a JSON object", body.length());
+            proxyAPIRequest.setBody(null);
+            return;
+        }
+
+        proxyAPIRequest.setBody(Collections.emptyMap());
+        proxyAPIRequest.setSpooledBody(body);
+        log.info("[PROXY_API_INTERCEPTOR] - Request body of {} bytes spooled to disk", body.length());
+    }
+
+    private Map<String, Object> parseBody(byte[] jsonBody) {
+        try {
+            return jsonCodec.readMap(jsonBody);
+        } catch (IOException e) {
+            log.error("[INVALID_JSON_FORMAT] - Request body of {} bytes is not a JSON object: {}", jsonBody.length, e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<String, Object> parseBody(Reader jsonBody, long length) {
+        try {
+            return jsonCodec.readMap(jsonBody);
+        } catch (IOException e) {
+            log.error("[INVALID_JSON_FORMAT] - Request body of {} bytes is not a JSON object: {}", length, e.getMessage());
+            return null;
+        }
+    }
+
+    // The envelope is sent by the streaming sender, the only one copying a spooled body from its file
+    private boolean isStreamed(ProxyAPIRequest proxyAPIRequest) {
+        if (Objects.isNull(streamingRelaySender)) {
+            return false;
+        }
+
+        return Objects.nonNull(proxyAPIRequest.getSpooledBody())
+                || (Objects.isNull(relayTunnelClient) && Objects.isNull(relayMicroBatcher) && Objects.isNull(relayEnvelopeCodec));
+    }
+
+    private ResponseEntity<byte[]> callProxyServer(ProxyAPIRequest proxyAPIRequest) {
+        // Call to proxy server
+        HttpEntity<Object> entity = new HttpEntity<>(proxyAPIRequest);
+        String serverProxyUrl = proxyProperties.getHost() + proxyProperties.getProxyApi();
+        log.info("[PROXY_API_INTERCEPTOR] - Forwarding to proxy URL: {}", serverProxyUrl);
+
+        try {
+            if (Objects.nonNull(proxyAPIRequest.getSpooledBody())) {
+                return streamingRelaySender.exchange(proxyAPIRequest);
+            }
+
+            if (Objects.nonNull(relayTunnelClient)) {
+                return reserveBody(proxyAPIRequest, relayTunnelClient.exchange(proxyAPIRequest));
+            }
+
+            if (Objects.nonNull(relayMicroBatcher)) {
+                return reserveBody(proxyAPIRequest, relayMicroBatcher.exchange(proxyAPIRequest));
+            }
+
+            if (Objects.nonNull(relayEnvelopeCodec)) {
+                return relayEnvelopeCodec.exchange(proxyAPIRequest);
+            }
+
+            if (Objects.nonNull(streamingRelaySender)) {
+                return streamingRelaySender.exchange(proxyAPIRequest);
+            }
+
+            BodyBudget.Reservation reservation = proxyAPIRequest.getBodyReservation();
+
+            if (Objects.nonNull(reservation)) {
+                return restTemplate.execute(
+                    serverProxyUrl,
+                    HttpMethod.POST,
+                    restTemplate.httpEntityCallback(entity, byte[].class),
+                    serverResponse -> readResponse(serverResponse, reservation)
+                );
+            }
+
+            return restTemplate.postForEntity(serverProxyUrl, entity, byte[].class);
+        } catch (HttpStatusCodeException e) {
+            // Error bodies are read by the error handlers, outside the metered stream. The streaming sender meters them
+            if (!isStreamed(proxyAPIRequest)) {
+                reserveBody(proxyAPIRequest, e.getResponseBodyAsByteArray());
+            }
+
+            return handleErrorStatus(proxyAPIRequest, e);
+        }
+    }
+
+    /**
+     * The tunnel and the micro-batcher receive the whole response before returning it, its body is counted
+     * in the reservation of the client request once received. Until then, the tunnel holds at most
+     * its flow control window per stream
+     * @throws BodyRejectedException if the bytes cannot be reserved in time
+     */
+    private static ResponseEntity<byte[]> reserveBody(ProxyAPIRequest proxyAPIRequest, ResponseEntity<byte[]> response) {
+        reserveBody(proxyAPIRequest, response.getBody());
+        return response;
+    }
+
+    private static void reserveBody(ProxyAPIRequest proxyAPIRequest, byte[] body) {
+        BodyBudget.Reservation reservation = proxyAPIRequest.getBodyReservation();
+
+        if (Objects.nonNull(reservation) && Objects.nonNull(body)) {
+            reservation.grow(body.length);
+        }
+    }
+
+    // Same as postForEntity, with the body counted in the reservation of the client request while it is read
+    private ResponseEntity<byte[]> readResponse(ClientHttpResponse serverResponse,
+                                                BodyBudget.Reservation reservation) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(serverResponse.getHeaders());
+        long contentLength = headers.getContentLength();
+
+        try (InputStream in = reservation.meter(serverResponse.getBody(), contentLength, Long.MAX_VALUE)) {
+            byte[] body = bufferPool.readAllBytes(in, contentLength);
+            return ResponseEntity.status(serverResponse.getStatusCode()).headers(headers).body(body);
+        }
+    }
+
+    // Same as callProxyServer through the streaming sender, a large response body is spooled instead of buffered
+    private ResponseEntity<SpooledBody> callProxyServerSpooled(ProxyAPIRequest proxyAPIRequest) {
+        log.info("[PROXY_API_INTERCEPTOR] - Forwarding to proxy URL: {}", proxyProperties.getHost() + proxyProperties.getProxyApi());
+
+        try {
+            return streamingRelaySender.exchange(proxyAPIRequest, bodySpooler);
+        } catch (HttpStatusCodeException e) {
+            ResponseEntity<byte[]> errorResponse = handleErrorStatus(proxyAPIRequest, e);
+            return ResponseEntity.status(errorResponse.getStatusCode())
+                    .headers(errorResponse.getHeaders())
+                    .body(SpooledBody.of(errorResponse.getBody()));
+        }
+    }
+
+    private ResponseEntity<byte[]> handleErrorStatus(ProxyAPIRequest proxyAPIRequest, HttpStatusCodeException e) {
+        int status = e.getStatusCode().value();
+        HttpHeaders errorHeaders = Optional.ofNullable(e.getResponseHeaders()).orElse(new HttpHeaders());
+
+        if (status == HttpStatus.SERVICE_UNAVAILABLE.value() && Objects.nonNull(retryAfterSuppressor)) {
+            retryAfterSuppressor.suppress(resolvePath(proxyAPIRequest), errorHeaders);
+        }
+
+        // Negatively cached statuses are regular responses, for the client as for the cache
+        if (Objects.isNull(responseCache) || !responseCache.getPolicy().isNegativeStatus(status)) {
+            throw e;
+        }
+
+        return ResponseEntity.status(e.getStatusCode()).headers(errorHeaders).body(e.getResponseBodyAsByteArray());
+    }
+
+    private void writeServerResponse(HttpServletRequest request,
+                                     HttpServletResponse response,
+                                     ResponseEntity<byte[]> serverResponse) throws IOException {
+        // Return original serverResponse from target API
+        HttpHeaders headers = serverResponse.getHeaders();
+        byte[] body = Optional.ofNullable(serverResponse.getBody()).orElse(BufferPool.EMPTY);
+
+        if (Objects.nonNull(responseCompressor)) {
+            int status = serverResponse.getStatusCode().value();
+            ResponseCompressor.Plan plan = responseCompressor.plan(request, status, headers, body.length);
+            ResponseCompressor.Encoded encoded = responseCompressor.transcode(plan, body);
+            headers = responseCompressor.headersFor(plan, encoded.coding(), encoded.body().length, headers);
+            body = encoded.body();
+        }
+
+        copyHeaders(response, headers);
+        response.setStatus(serverResponse.getStatusCode().value());
+        response.getOutputStream().write(body);
+        log.info("[PROXY_API_INTERCEPTOR] - Received response: status={}", serverResponse.getStatusCode());
+    }
+
+    /**
+     * A body held in memory goes through {@link #writeServerResponse}, a spooled body is copied from its file
+     * as the upstream sent it, it is not compressed. The spool file is deleted once the body is written
+     */
+    private void writeSpooledResponse(HttpServletRequest request,
+                                      HttpServletResponse response,
+                                      ResponseEntity<SpooledBody> serverResponse) throws IOException {
+        try (SpooledBody body = Optional.ofNullable(serverResponse.getBody()).orElse(SpooledBody.of(null))) {
+            if (!body.isSpooled()) {
+                writeServerResponse(request, response, ResponseEntity.status(serverResponse.getStatusCode())
+                        .headers(serverResponse.getHeaders())
+                        .body(body.toByteArray()));
+                return;
+            }
+
+            copyHeaders(response, serverResponse.getHeaders());
+            response.setStatus(serverResponse.getStatusCode().value());
+            response.setContentLengthLong(body.length());
+            body.writeTo(response.getOutputStream());
+            log.info("[PROXY_API_INTERCEPTOR] - Received response: status={}, spooled body of {} bytes",
+                    serverResponse.getStatusCode(), body.length());
+        }
+    }
+
+    /**
+     * @param cacheKey the key the response is stored under, null if it is not stored on this node
+     */
+    private void writeCachedResponse(HttpServletRequest request,
+                                     HttpServletResponse response,
+                                     ResponseCacheKey cacheKey,
+                                     CachedResponse cachedResponse,
+                                     String cacheStatus) throws IOException {
+        String age = String.valueOf(cachedResponse.getAgeSeconds(System.currentTimeMillis()));
+
+        if (isNotModified(request, cachedResponse)) {
+            NOT_MODIFIED_HEADERS.forEach(name -> cachedResponse.getHeaders()
+                .getOrEmpty(name)
+                .forEach(value -> response.addHeader(name, value)));
+            response.setHeader(HttpHeaders.AGE, age);
+            response.setHeader(ProxyResponseCache.CACHE_STATUS_HEADER, cacheStatus);
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        HttpHeaders headers = cachedResponse.getHeaders();
+        CachedBody body = cachedResponse.getBody();
+        ResponseCompressor.Plan plan = ResponseCompressor.Plan.UNCHANGED;
+
+        if (Objects.nonNull(responseCompressor)) {
+            plan = responseCompressor.plan(request, cachedResponse.getStatus(), headers, body.length());
+        }
+
+        if (plan.isTranscoding()) {
+            writeEncodedCachedBody(response, cacheKey, cachedResponse, plan, age, cacheStatus);
+            return;
+        }
+
+        if (Objects.nonNull(responseCompressor)) {
+            headers = responseCompressor.headersFor(plan, plan.source(), body.length(), headers);
+        }
+
+        copyHeaders(response, headers);
+        response.setHeader(HttpHeaders.AGE, age);
+        response.setHeader(ProxyResponseCache.CACHE_STATUS_HEADER, cacheStatus);
+        response.setStatus(cachedResponse.getStatus());
+
+        // Let the connector send disk bodies straight from the page cache to the socket. It opens the file
+        // after the request ends, past the release of the body by the caller, so the store keeps the file for it
+        if (body instanceof DiskCachedBody diskBody
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))
+                && responseCache.getDiskStore().retainForSendfile(diskBody)) {
+            response.setContentLengthLong(diskBody.length());
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, diskBody.getFile().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, diskBody.getOffset());
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, diskBody.getOffset() + diskBody.length());
+            return;
+        }
+
+        body.writeTo(response.getOutputStream());
+    }
+
+    /**
+     * A cached response is compressed once per coding, the copy is kept in the cache next to it
+     * and written from there on the following hits <p>
+     * When copies are not kept, an identity body is compressed while it is written, without copying it
+     * onto the heap first. A body the upstream compressed is decoded in memory, up to a bounded size
+     */
+    private void writeEncodedCachedBody(HttpServletResponse response,
+                                        ResponseCacheKey cacheKey,
+                                        CachedResponse cachedResponse,
+                                        ResponseCompressor.Plan plan,
+                                        String age,
+                                        String cacheStatus) throws IOException {
+        HttpHeaders headers = cachedResponse.getHeaders();
+        CachedBody body = cachedResponse.getBody();
+        boolean keepVariant = Objects.nonNull(cacheKey) && responseCompressor.isCacheVariants();
+        CachedBody variant = keepVariant ? responseCache.getVariant(cacheKey, cachedResponse, plan.target()) : null;
+
+        if (Objects.nonNull(variant)) {
+            try {
+                HttpHeaders variantHeaders = responseCompressor.headersFor(plan, plan.target(), variant.length(), headers);
+                writeCachedHead(response, cachedResponse, variantHeaders, age, cacheStatus);
+                variant.writeTo(response.getOutputStream());
+            } finally {
+                variant.release();
+            }
+
+            return;
+        }
+
+        if (!keepVariant && plan.source() == ContentCoding.IDENTITY) {
+            // The length is only known once the body is sent, it goes out chunked
+            writeCachedHead(response, cachedResponse, responseCompressor.headersFor(plan, plan.target(), -1, headers), age, cacheStatus);
+
+            try (OutputStream out = responseCompressor.encoder(plan.target(), body.length(), response.getOutputStream())) {
+                body.writeTo(out);
+            }
+
+            return;
+        }
+
+        ResponseCompressor.Encoded encoded;
+
+        if (plan.source() == ContentCoding.IDENTITY) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.min(body.length() / 4 + 64, Integer.MAX_VALUE - 8));
+
+            try (OutputStream out = responseCompressor.encoder(plan.target(), body.length(), buffer)) {
+                body.writeTo(out);
+            }
+
+            encoded = new ResponseCompressor.Encoded(plan.target(), buffer.toByteArray());
+        } else {
+            encoded = responseCompressor.transcode(plan, body.toByteArray());
+        }
+
+        if (keepVariant && encoded.coding() == plan.target()) {
+            responseCache.putVariant(cacheKey, cachedResponse, encoded.coding(), encoded.body());
+        }
+
+        HttpHeaders encodedHeaders = responseCompressor.headersFor(plan, encoded.coding(), encoded.body().length, headers);
+        writeCachedHead(response, cachedResponse, encodedHeaders, age, cacheStatus);
+        response.getOutputStream().write(encoded.body());
+    }
+
+    private void writeCachedHead(HttpServletResponse response,
+                                 CachedResponse cachedResponse,
+                                 HttpHeaders headers,
+                                 String age,
+                                 String cacheStatus) {
+        copyHeaders(response, headers);
+        response.setHeader(HttpHeaders.AGE, age);
+        response.setHeader(ProxyResponseCache.CACHE_STATUS_HEADER, cacheStatus);
+        response.setStatus(cachedResponse.getStatus());
+    }
+
+    // Answer client conditional GET and HEAD requests from the cached validators, without sending the body
+    private boolean isNotModified(HttpServletRequest request, CachedResponse cachedResponse) {
+        String method = request.getMethod();
+
+        if (!HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method)) {
+            return false;
+        }
+
+        return responseCache.getPolicy().isNotModified(
+            cachedResponse,
+            request.getHeader(HttpHeaders.IF_NONE_MATCH),
+            request.getHeader(HttpHeaders.IF_MODIFIED_SINCE)
+        );
     }
 
     private void copyHeaders(HttpServletResponse target, HttpHeaders source) {
@@ -0,0 +1,48 @@
+package com.dct.proxy.interceptor;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The included/excluded patterns of {@link ProxyRequestInterceptor}, parsed once at startup <p>
+ * Shared by the {@link ProxyFastPathFilter} and the batch endpoint, so a sub-request reaches the upstream
+ * only on a path a client request could be proxied on
+ *
+ * @author thoaidc
+ */
+public class ProxyRouteMatcher {
+    private final List<PathPattern> includedPatterns;
+    private final List<PathPattern> excludedPatterns;
+
+    public ProxyRouteMatcher(String[] includedPatterns, String[] excludedPatterns) {
+        this.includedPatterns = parsePatterns(includedPatterns);
+        this.excludedPatterns = parsePatterns(excludedPatterns);
+    }
+
+    /**
+     * @param lookupPath the request path, without context path and query string
+     * @return true if a request on this path is proxied
+     */
+    public boolean matches(String lookupPath) {
+        PathContainer path = PathContainer.parsePath(lookupPath);
+
+        // Same semantics as InterceptorRegistration: no included pattern means match all paths
+        boolean included = includedPatterns.isEmpty() || includedPatterns.stream().anyMatch(p -> p.matches(path));
+        boolean excluded = excludedPatterns.stream().anyMatch(p -> p.matches(path));
+        return included && !excluded;
+    }
+
+    private static List<PathPattern> parsePatterns(String[] patterns) {
+        if (Objects.isNull(patterns)) {
+            return Collections.emptyList();
+        }
+
+        return Arrays.stream(patterns).map(PathPatternParser.defaultInstance::parse).toList();
+    }
+}
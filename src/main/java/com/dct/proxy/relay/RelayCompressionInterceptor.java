@@ -0,0 +1,342 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.config.properties.RelayProps;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Zstandard compression of the envelopes exchanged with the relay over HTTP <p>
+ * {@code Accept-Encoding: zstd} is announced, a relay answering with zstd gets its body decoded before the response
+ * is read. With a dictionary, its id is sent in {@link #DICTIONARY_HEADER} and both sides must hold the same dictionary <p>
+ * Request bodies are only compressed once the relay advertised it reads them: its responses carry
+ * {@link #RELAY_ACCEPT_ENCODING_HEADER} listing {@code zstd}, and with a dictionary {@link #DICTIONARY_HEADER}
+ * with the same id. Each advertisement updates the choice, responses without it leave it as is.
+ * The status of a response is never taken as a signal, it may come from the upstream,
+ * and an envelope is never sent twice <p>
+ * Only requests to the relay are handled, other calls of the {@link org.springframework.web.client.RestTemplate}
+ * pass through. Registered before the circuit breaker interceptor, so retries send the body compressed once
+ *
+ * @author thoaidc
+ */
+public class RelayCompressionInterceptor implements ClientHttpRequestInterceptor {
+    private static final Logger log = LoggerFactory.getLogger(RelayCompressionInterceptor.class);
+    public static final String ZSTD = "zstd";
+    public static final String DICTIONARY_HEADER = "X-Zstd-Dictionary";
+    // Set by the relay itself on its responses, with the codings it reads in request bodies
+    public static final String RELAY_ACCEPT_ENCODING_HEADER = "X-Relay-Accept-Encoding";
+    private static final ObjectMapper SAMPLE_MAPPER = new ObjectMapper();
+    private static final Set<String> CREDENTIAL_HEADERS = Set.of("authorization", "proxy-authorization", "cookie");
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+    private static final int SAMPLE_QUEUE_SIZE = 256;
+    private final String relayHost;
+    private final int level;
+    private final int minSizeBytes;
+    private final ZstdDictCompress dictCompress;
+    private final ZstdDictDecompress dictDecompress;
+    private final long dictionaryId;
+    private final Path sampleDirectory;
+    private final int maxSamples;
+    private final ThreadPoolExecutor sampleWriter;
+    private final AtomicInteger samples = new AtomicInteger();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder decodedResponses = new LongAdder();
+    private volatile boolean compressRequests;
+
+    public RelayCompressionInterceptor(RelayProps.CompressionConfig config, String relayHost) throws IOException {
+        this.relayHost = relayHost;
+        this.level = config.getLevel();
+        this.minSizeBytes = config.getMinSizeBytes();
+        this.maxSamples = config.getMaxSamples();
+
+        if (StringUtils.hasText(config.getDictionary())) {
+            byte[] dictionary = Files.readAllBytes(Path.of(config.getDictionary()));
+            this.dictCompress = new ZstdDictCompress(dictionary, level);
+            this.dictDecompress = new ZstdDictDecompress(dictionary);
+            this.dictionaryId = Zstd.getDictIdFromDict(dictionary);
+            log.info("[RELAY_COMPRESSION] - Loaded zstd dictionary {} ({} bytes)", dictionaryId, dictionary.length);
+        } else {
+            this.dictCompress = null;
+            this.dictDecompress = null;
+            this.dictionaryId = 0;
+        }
+
+        if (StringUtils.hasText(config.getSampleDirectory())) {
+            this.sampleDirectory = createOwnerOnlyDirectory(Path.of(config.getSampleDirectory()));
+            this.sampleWriter = new ThreadPoolExecutor(
+                1,
+                1,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(SAMPLE_QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "relay-sample-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy()
+            );
+            log.info("[RELAY_COMPRESSION] - Capturing up to {} envelopes in {}", maxSamples, sampleDirectory);
+        } else {
+            this.sampleDirectory = null;
+            this.sampleWriter = null;
+        }
+    }
+
+    @Override
+    @NonNull
+    public ClientHttpResponse intercept(@NonNull HttpRequest request,
+                                        @NonNull byte[] body,
+                                        @NonNull ClientHttpRequestExecution execution) throws IOException {
+        if (!request.getURI().toString().startsWith(relayHost)) {
+            return execution.execute(request, body);
+        }
+
+        capture(request, body);
+        HttpHeaders headers = request.getHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, ZSTD);
+
+        if (dictionaryId != 0) {
+            headers.set(DICTIONARY_HEADER, Long.toString(dictionaryId));
+        }
+
+        if (!compressRequests || body.length < minSizeBytes) {
+            return decode(negotiate(execution.execute(request, body)));
+        }
+
+        byte[] compressed = Objects.nonNull(dictCompress) ? Zstd.compress(body, dictCompress) : Zstd.compress(body, level);
+        rawBytes.add(body.length);
+        compressedBytes.add(compressed.length);
+        headers.set(HttpHeaders.CONTENT_ENCODING, ZSTD);
+        headers.setContentLength(compressed.length);
+        return decode(negotiate(execution.execute(request, compressed)));
+    }
+
+    // Follow the advertisement of the relay for the next envelopes
+    private ClientHttpResponse negotiate(ClientHttpResponse response) {
+        HttpHeaders headers = response.getHeaders();
+
+        if (!headers.containsKey(RELAY_ACCEPT_ENCODING_HEADER)) {
+            return response;
+        }
+
+        boolean acceptsZstd = headers.getOrEmpty(RELAY_ACCEPT_ENCODING_HEADER)
+                .stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .anyMatch(coding -> ZSTD.equalsIgnoreCase(coding.trim()));
+        boolean sameDictionary = dictionaryId == 0 || Long.toString(dictionaryId).equals(headers.getFirst(DICTIONARY_HEADER));
+        boolean supported = acceptsZstd && sameDictionary;
+
+        if (supported != compressRequests) {
+            compressRequests = supported;
+            log.info("[RELAY_COMPRESSION] - Relay {} zstd envelopes", supported ? "accepts" : "does not accept");
+        }
+
+        return response;
+    }
+
+    private ClientHttpResponse decode(ClientHttpResponse response) throws IOException {
+        List<String> codings = response.getHeaders()
+                .getOrEmpty(HttpHeaders.CONTENT_ENCODING)
+                .stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toList());
+
+        // Only the outermost coding belongs to this hop, the ones below it are the upstream ones
+        if (codings.isEmpty() || !ZSTD.equalsIgnoreCase(codings.getLast())) {
+            return response;
+        }
+
+        codings.removeLast();
+        decodedResponses.increment();
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+
+        if (codings.isEmpty()) {
+            headers.remove(HttpHeaders.CONTENT_ENCODING);
+        } else {
+            headers.set(HttpHeaders.CONTENT_ENCODING, String.join(", ", codings));
+        }
+
+        return new DecodedResponse(response, headers);
+    }
+
+    /**
+     * Keep a copy of a JSON envelope to train a dictionary on. The credentials of the client are removed from
+     * its headers, the file is readable by the owner only and is written off the request thread.
+     * Envelopes are dropped while the writer is busy
+     */
+    private void capture(HttpRequest request, byte[] body) {
+        if (Objects.isNull(sampleDirectory) || samples.get() >= maxSamples) {
+            return;
+        }
+
+        MediaType contentType = request.getHeaders().getContentType();
+
+        // Binary envelopes are not captured, they are not read back as JSON
+        if (Objects.isNull(contentType) || !MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            return;
+        }
+
+        byte[] envelope = body.clone(); // Written once the request has been sent, its body is not kept
+        sampleWriter.execute(() -> {
+            int sample = samples.getAndIncrement();
+
+            if (sample < maxSamples) {
+                writeSample(sampleDirectory.resolve("envelope-" + sample + ".json"), envelope);
+            }
+        });
+    }
+
+    private void writeSample(Path file, byte[] envelope) {
+        try {
+            JsonNode root = SAMPLE_MAPPER.readTree(envelope);
+
+            if (root.get("headers") instanceof ObjectNode headers) {
+                headers.properties().removeIf(header -> CREDENTIAL_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT)));
+            }
+
+            Files.write(createOwnerOnlyFile(file), SAMPLE_MAPPER.writeValueAsBytes(root));
+        } catch (IOException e) {
+            log.warn("[RELAY_COMPRESSION] - Could not capture envelope sample: {}", e.getMessage());
+        }
+    }
+
+    private static Path createOwnerOnlyDirectory(Path directory) throws IOException {
+        if (!isPosix(directory)) {
+            return Files.createDirectories(directory);
+        }
+
+        Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+        return Files.setPosixFilePermissions(directory, OWNER_ONLY_DIRECTORY); // An existing directory is restricted too
+    }
+
+    private static Path createOwnerOnlyFile(Path file) throws IOException {
+        Files.deleteIfExists(file);
+
+        if (!isPosix(file)) {
+            return Files.createFile(file);
+        }
+
+        return Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    /**
+     * Wait for the envelopes captured so far to be written
+     */
+    void awaitSamples() throws InterruptedException, ExecutionException {
+        if (Objects.nonNull(sampleWriter)) {
+            sampleWriter.submit(() -> {}).get();
+        }
+    }
+
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long getDecodedResponseCount() {
+        return decodedResponses.sum();
+    }
+
+    /**
+     * @return true once the relay advertised it reads zstd envelopes, with the same dictionary
+     */
+    public boolean isCompressRequests() {
+        return compressRequests;
+    }
+
+    /**
+     * Response of the relay with its zstd body decoded while it is read
+     */
+    private final class DecodedResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final HttpHeaders headers;
+        private InputStream body;
+
+        private DecodedResponse(ClientHttpResponse response, HttpHeaders headers) {
+            this.response = response;
+            this.headers = headers;
+        }
+
+        @Override
+        @NonNull
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        @NonNull
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        @NonNull
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        @NonNull
+        public InputStream getBody() throws IOException {
+            if (Objects.isNull(body)) {
+                ZstdInputStream in = new ZstdInputStream(response.getBody());
+                body = Objects.nonNull(dictDecompress) ? in.setDict(dictDecompress) : in;
+            }
+
+            return body;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
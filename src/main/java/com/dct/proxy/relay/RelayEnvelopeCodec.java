@@ -0,0 +1,229 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.config.properties.RelayProps;
+import com.dct.proxy.constants.RelayEnvelopeFormat;
+import com.dct.proxy.dto.request.ProxyAPIBinaryRequest;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Encodes the envelopes sent to the relay over HTTP, in JSON or in a binary format chosen per upstream <p>
+ * The JSON encoding is the {@link ProxyAPIRequest} as before. Binary encodings (Smile, CBOR) send a
+ * {@link ProxyAPIBinaryRequest}: the request body travels as raw bytes instead of a nested map.
+ * The format is announced by the {@code Content-Type} <p>
+ * Binary envelopes are only sent once the relay advertised it reads them: its responses carry
+ * {@link #RELAY_ACCEPT_ENVELOPE_HEADER} listing the media types of the formats. Until then, and for formats
+ * it does not list, envelopes are sent in JSON. Each advertisement updates the choice, responses without it
+ * leave it as is. The status of a response is never taken as a signal, it may come from the upstream,
+ * and an envelope is never sent twice <p>
+ * The count, size and encoding time of envelopes are kept per format, to compare the formats on real traffic
+ *
+ * @author thoaidc
+ */
+public class RelayEnvelopeCodec {
+    private static final Logger log = LoggerFactory.getLogger(RelayEnvelopeCodec.class);
+    // Set by the relay itself on its responses, with the media types of the envelopes it reads
+    public static final String RELAY_ACCEPT_ENVELOPE_HEADER = "X-Relay-Accept-Envelope";
+    private final RestTemplate restTemplate;
+    private final String proxyUrl;
+    private final RelayEnvelopeFormat defaultFormat;
+    private final Map<String, RelayEnvelopeFormat> upstreams;
+    private final Map<RelayEnvelopeFormat, ObjectMapper> mappers = new EnumMap<>(RelayEnvelopeFormat.class);
+    private final Map<RelayEnvelopeFormat, Stats> stats = new EnumMap<>(RelayEnvelopeFormat.class);
+    private volatile Set<RelayEnvelopeFormat> accepted = Set.of(RelayEnvelopeFormat.JSON);
+
+    public RelayEnvelopeCodec(RelayProps.CodecConfig config,
+                              ObjectMapper objectMapper,
+                              RestTemplate restTemplate,
+                              String proxyUrl) {
+        this.restTemplate = restTemplate;
+        this.proxyUrl = proxyUrl;
+        this.defaultFormat = config.getFormat();
+        this.upstreams = Map.copyOf(config.getUpstreams());
+        // Binary data in Smile is 7-bit encoded by default, raw bytes are smaller and cheaper to write
+        SmileFactory smileFactory = SmileFactory.builder().disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT).build();
+        this.mappers.put(RelayEnvelopeFormat.JSON, objectMapper);
+        this.mappers.put(RelayEnvelopeFormat.SMILE, objectMapper.copyWith(smileFactory));
+        this.mappers.put(RelayEnvelopeFormat.CBOR, objectMapper.copyWith(new CBORFactory()));
+
+        for (RelayEnvelopeFormat format : RelayEnvelopeFormat.values()) {
+            stats.put(format, new Stats());
+        }
+    }
+
+    /**
+     * Send an envelope to the relay in the format of its upstream, once the relay advertised it reads it
+     * @return the response, as returned by {@link RestTemplate#postForEntity}
+     */
+    public ResponseEntity<byte[]> exchange(ProxyAPIRequest proxyAPIRequest) {
+        RelayEnvelopeFormat format = formatFor(proxyAPIRequest);
+
+        try {
+            ResponseEntity<byte[]> response = post(proxyAPIRequest, format);
+            negotiate(response.getHeaders());
+            return response;
+        } catch (HttpStatusCodeException e) {
+            negotiate(e.getResponseHeaders());
+            throw e;
+        }
+    }
+
+    // The response body is counted in the reservation of the client request while it is read
+    private ResponseEntity<byte[]> post(ProxyAPIRequest proxyAPIRequest, RelayEnvelopeFormat format) {
+        HttpEntity<byte[]> envelope = encode(proxyAPIRequest, format);
+        BodyBudget.Reservation reservation = proxyAPIRequest.getBodyReservation();
+
+        if (Objects.isNull(reservation)) {
+            return restTemplate.postForEntity(proxyUrl, envelope, byte[].class);
+        }
+
+        return restTemplate.execute(
+            proxyUrl,
+            HttpMethod.POST,
+            restTemplate.httpEntityCallback(envelope, byte[].class),
+            response -> RelayEnvelopes.readResponse(response, reservation)
+        );
+    }
+
+    // Follow the advertisement of the relay for the next envelopes
+    private void negotiate(HttpHeaders headers) {
+        if (Objects.isNull(headers) || !headers.containsKey(RELAY_ACCEPT_ENVELOPE_HEADER)) {
+            return;
+        }
+
+        List<MediaType> mediaTypes;
+
+        try {
+            mediaTypes = MediaType.parseMediaTypes(headers.getOrEmpty(RELAY_ACCEPT_ENVELOPE_HEADER));
+        } catch (InvalidMediaTypeException e) {
+            log.warn("[RELAY_CODEC] - Ignored advertisement of the relay: {}", e.getMessage());
+            return;
+        }
+
+        Set<RelayEnvelopeFormat> advertised = EnumSet.of(RelayEnvelopeFormat.JSON);
+
+        for (RelayEnvelopeFormat format : RelayEnvelopeFormat.values()) {
+            if (mediaTypes.stream().anyMatch(mediaType -> mediaType.equalsTypeAndSubtype(format.getMediaType()))) {
+                advertised.add(format);
+            }
+        }
+
+        if (!advertised.equals(accepted)) {
+            accepted = Collections.unmodifiableSet(advertised);
+            log.info("[RELAY_CODEC] - Relay accepts {} envelopes", advertised);
+        }
+    }
+
+    /**
+     * @return the format configured for the target host of the envelope, JSON if the relay did not advertise it
+     */
+    public RelayEnvelopeFormat formatFor(ProxyAPIRequest proxyAPIRequest) {
+        RelayEnvelopeFormat format = defaultFormat;
+
+        if (!upstreams.isEmpty() && Objects.nonNull(proxyAPIRequest.getUrl())) {
+            UriComponents uri = UriComponentsBuilder.fromUriString(proxyAPIRequest.getUrl()).build();
+            String host = uri.getPort() > 0 ? uri.getHost() + ":" + uri.getPort() : uri.getHost();
+            format = Optional.ofNullable(upstreams.get(host))
+                    .or(() -> Optional.ofNullable(upstreams.get(uri.getHost())))
+                    .orElse(defaultFormat);
+        }
+
+        return accepted.contains(format) ? format : RelayEnvelopeFormat.JSON;
+    }
+
+    private HttpEntity<byte[]> encode(ProxyAPIRequest proxyAPIRequest, RelayEnvelopeFormat format) {
+        long start = System.nanoTime();
+        ObjectMapper mapper = mappers.get(format);
+
+        try {
+            byte[] envelope = format == RelayEnvelopeFormat.JSON
+                    ? mapper.writeValueAsBytes(proxyAPIRequest)
+                    : mapper.writeValueAsBytes(toBinaryRequest(proxyAPIRequest));
+
+            stats.get(format).record(envelope.length, System.nanoTime() - start);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(format.getMediaType());
+            headers.setAccept(List.of(MediaType.ALL));
+            return new HttpEntity<>(envelope, headers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode the envelope as " + format, e);
+        }
+    }
+
+    private ProxyAPIBinaryRequest toBinaryRequest(ProxyAPIRequest proxyAPIRequest) throws JsonProcessingException {
+        byte[] body = proxyAPIRequest.getRawBody();
+
+        // Envelopes not built from a client request (batch items, peers) only have the parsed body
+        if (Objects.isNull(body)) {
+            Map<String, Object> parsedBody = proxyAPIRequest.getBody();
+            body = parsedBody.isEmpty() ? BufferPool.EMPTY : mappers.get(RelayEnvelopeFormat.JSON).writeValueAsBytes(parsedBody);
+        }
+
+        ProxyAPIBinaryRequest binaryRequest = new ProxyAPIBinaryRequest();
+        binaryRequest.setUrl(proxyAPIRequest.getUrl());
+        binaryRequest.setMethod(proxyAPIRequest.getMethod());
+        binaryRequest.setHeaders(proxyAPIRequest.getHeaders());
+        binaryRequest.setParams(proxyAPIRequest.getParams());
+        binaryRequest.setBody(body);
+        return binaryRequest;
+    }
+
+    /**
+     * @return the formats the relay advertised it reads, JSON only until it did
+     */
+    public Set<RelayEnvelopeFormat> getAcceptedFormats() {
+        return accepted;
+    }
+
+    public long getEncodedCount(RelayEnvelopeFormat format) {
+        return stats.get(format).count.sum();
+    }
+
+    public long getEncodedBytes(RelayEnvelopeFormat format) {
+        return stats.get(format).bytes.sum();
+    }
+
+    public long getEncodeNanos(RelayEnvelopeFormat format) {
+        return stats.get(format).nanos.sum();
+    }
+
+    private static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private void record(int size, long elapsedNanos) {
+            count.increment();
+            bytes.add(size);
+            nanos.add(elapsedNanos);
+        }
+    }
+}
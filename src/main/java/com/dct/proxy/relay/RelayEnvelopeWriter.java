@@ -0,0 +1,69 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.body.SpooledBody;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes the JSON envelope of a request straight to an output stream, without building it in memory first <p>
+ * The envelope has the same fields as the serialized {@link ProxyAPIRequest}. When the original request body
+ * is available, its bytes are copied into the {@code body} field as they are: the body is neither
+ * serialized again from its parsed map nor buffered with the rest of the envelope.
+ * A body spooled to disk is copied from its file
+ *
+ * @author thoaidc
+ */
+public class RelayEnvelopeWriter {
+    private final ObjectMapper objectMapper;
+
+    public RelayEnvelopeWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write the envelope, the stream is flushed but not closed
+     */
+    public void write(ProxyAPIRequest proxyAPIRequest, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeStringField("url", proxyAPIRequest.getUrl());
+            generator.writeStringField("method", proxyAPIRequest.getMethod());
+            writeMap(generator, "headers", proxyAPIRequest.getHeaders());
+            writeMap(generator, "params", proxyAPIRequest.getParams());
+            generator.writeFieldName("body");
+            byte[] rawBody = proxyAPIRequest.getRawBody();
+            SpooledBody spooledBody = proxyAPIRequest.getSpooledBody();
+
+            if (Objects.nonNull(spooledBody)) {
+                // Copied from the spool file on each attempt, so a retry sends the whole body again
+                generator.writeRawValue("");
+                generator.flush();
+                spooledBody.writeTo(out);
+            } else if (Objects.isNull(rawBody)) {
+                generator.writeObject(proxyAPIRequest.getBody());
+            } else {
+                // Writes the name separator only, the value is the raw body written to the stream itself
+                generator.writeRawValue("");
+                generator.flush();
+                out.write(rawBody);
+            }
+
+            generator.writeEndObject();
+        }
+
+        out.flush();
+    }
+
+    private void writeMap(JsonGenerator generator, String name, Map<String, ?> values) throws IOException {
+        generator.writeFieldName(name);
+        generator.writeObject(values);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.dto.response.RelayEnvelopeResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Conversions between the responses of the relay sent without HTTP (batched, tunneled) and {@link ResponseEntity},
+ * with the same error contract as {@link RestTemplate}
+ *
+ * @author thoaidc
+ */
+final class RelayEnvelopes {
+
+    private RelayEnvelopes() {}
+
+    /**
+     * @throws HttpStatusCodeException if the envelope was answered with a 4xx or 5xx status
+     */
+    static ResponseEntity<byte[]> toResponseEntity(RelayEnvelopeResponse response) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        return toResponseEntity(response.getStatus(), headers, response.getBody());
+    }
+
+    /**
+     * @throws HttpStatusCodeException if the status is 4xx or 5xx
+     */
+    static ResponseEntity<byte[]> toResponseEntity(int statusCode, HttpHeaders headers, byte[] responseBody) {
+        HttpStatusCode status = HttpStatusCode.valueOf(statusCode);
+        byte[] body = Optional.ofNullable(responseBody).orElse(BufferPool.EMPTY);
+        String statusText = Optional.ofNullable(HttpStatus.resolve(status.value()))
+                .map(HttpStatus::getReasonPhrase)
+                .orElse("");
+
+        if (status.is4xxClientError()) {
+            throw HttpClientErrorException.create(status, statusText, headers, body, null);
+        }
+
+        if (status.is5xxServerError()) {
+            throw HttpServerErrorException.create(status, statusText, headers, body, null);
+        }
+
+        return ResponseEntity.status(status).headers(headers).body(body);
+    }
+
+    /**
+     * Same as the response extractor of {@link RestTemplate#postForEntity}, with the body counted
+     * in the reservation of the client request while it is read
+     */
+    static ResponseEntity<byte[]> readResponse(ClientHttpResponse response, BodyBudget.Reservation reservation) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        long contentLength = headers.getContentLength();
+
+        try (InputStream in = reservation.meter(response.getBody(), contentLength, Long.MAX_VALUE)) {
+            byte[] body = BufferPool.unpooled().readAllBytes(in, contentLength);
+            return ResponseEntity.status(response.getStatusCode()).headers(headers).body(body);
+        }
+    }
+
+    static RelayEnvelopeResponse toEnvelope(int status, HttpHeaders headers, byte[] body) {
+        Map<String, List<String>> envelopeHeaders = new LinkedHashMap<>();
+        headers.forEach((name, values) -> {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+                envelopeHeaders.put(name, values);
+            }
+        });
+
+        RelayEnvelopeResponse envelope = new RelayEnvelopeResponse();
+        envelope.setStatus(status);
+        envelope.setHeaders(envelopeHeaders);
+        envelope.setBody(body);
+        return envelope;
+    }
+}
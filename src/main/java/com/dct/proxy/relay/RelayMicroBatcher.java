@@ -0,0 +1,220 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.config.properties.RelayProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.RelayEnvelopeResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Packs the envelopes sent to the remote proxy server within a short window into one POST <p>
+ * The first envelope of a window waits {@code maxDelay} for others, the window is sent earlier once it holds
+ * {@code maxItems} envelopes. No extra thread is involved: the caller closing the window sends the batch
+ * and hands each waiting caller its own response. A window holding one envelope is sent as a regular call <p>
+ * The batch goes through the same {@link RestTemplate} (circuit breaker, retry) and counts as one call.
+ * If the relay has no batch endpoint, batching is turned off and envelopes are sent one by one
+ *
+ * @author thoaidc
+ */
+public class RelayMicroBatcher {
+    private static final Logger log = LoggerFactory.getLogger(RelayMicroBatcher.class);
+    // The relay does not know the batch endpoint
+    private static final Set<Integer> UNSUPPORTED_STATUSES = Set.of(404, 405, 501);
+    // Marks an envelope to send with a regular call by its own caller
+    private static final RelayEnvelopeResponse SEND_ALONE = new RelayEnvelopeResponse();
+    private final RestTemplate restTemplate;
+    private final String proxyUrl;
+    private final String batchUrl;
+    private final int maxItems;
+    private final long maxDelayNanos;
+    private final long timeout;
+    private final Object lock = new Object();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedEnvelopes = new LongAdder();
+    private final LongAdder singleEnvelopes = new LongAdder();
+    private List<Pending> window = new ArrayList<>();
+    private long windowId;
+    private volatile boolean batchSupported = true;
+
+    public RelayMicroBatcher(RelayProps.MicroBatchConfig config, RestTemplate restTemplate, String proxyUrl) {
+        this.restTemplate = restTemplate;
+        this.proxyUrl = proxyUrl;
+        this.batchUrl = proxyUrl + config.getBatchApi();
+        this.maxItems = Math.max(1, config.getMaxItems());
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxDelay());
+        this.timeout = config.getTimeout();
+    }
+
+    /**
+     * Send an envelope to the remote proxy server, batched with the envelopes sent around the same time
+     * @return the response, as returned by {@link RestTemplate#postForEntity}
+     * @throws HttpStatusCodeException if the envelope is answered with an error status, like {@link RestTemplate}
+     */
+    public ResponseEntity<byte[]> exchange(ProxyAPIRequest proxyAPIRequest) {
+        if (!batchSupported) {
+            return sendAlone(proxyAPIRequest);
+        }
+
+        Pending pending = new Pending(proxyAPIRequest);
+        List<Pending> fullWindow = null;
+        long leadingWindowId = -1;
+
+        synchronized (lock) {
+            window.add(pending);
+
+            if (window.size() >= maxItems) {
+                fullWindow = drain();
+            } else if (window.size() == 1) {
+                leadingWindowId = windowId;
+            }
+        }
+
+        if (Objects.nonNull(fullWindow)) {
+            send(fullWindow);
+        } else if (leadingWindowId >= 0) {
+            lead(pending, leadingWindowId);
+        }
+
+        RelayEnvelopeResponse response = await(pending);
+        return SEND_ALONE == response ? sendAlone(proxyAPIRequest) : RelayEnvelopes.toResponseEntity(response);
+    }
+
+    /**
+     * Wait for the end of the window opened by this envelope, then send it unless it was already sent when full
+     */
+    private void lead(Pending pending, long leadingWindowId) {
+        try {
+            pending.future.get(maxDelayNanos, TimeUnit.NANOSECONDS);
+            return;
+        } catch (TimeoutException e) {
+            // The window is over
+        } catch (ExecutionException e) {
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Pending> batch;
+
+        synchronized (lock) {
+            batch = windowId == leadingWindowId ? drain() : null;
+        }
+
+        if (Objects.nonNull(batch)) {
+            send(batch);
+        }
+    }
+
+    // Must hold the lock
+    private List<Pending> drain() {
+        List<Pending> batch = window;
+        window = new ArrayList<>(maxItems);
+        windowId++;
+        return batch;
+    }
+
+    private void send(List<Pending> batch) {
+        if (batch.size() == 1) {
+            batch.getFirst().future.complete(SEND_ALONE);
+            return;
+        }
+
+        List<ProxyAPIRequest> envelopes = batch.stream().map(pending -> pending.request).toList();
+        log.debug("[RELAY_MICRO_BATCH] - Sending {} envelopes in one batch", envelopes.size());
+
+        try {
+            RelayEnvelopeResponse[] responses = restTemplate.postForEntity(
+                batchUrl,
+                new HttpEntity<>(envelopes),
+                RelayEnvelopeResponse[].class
+            ).getBody();
+
+            if (Objects.isNull(responses) || responses.length != batch.size()) {
+                int count = Objects.isNull(responses) ? 0 : responses.length;
+                throw new IllegalStateException("Relay answered " + count + " responses to " + batch.size() + " envelopes");
+            }
+
+            batches.increment();
+            batchedEnvelopes.add(batch.size());
+
+            for (int i = 0; i < responses.length; i++) {
+                batch.get(i).future.complete(responses[i]);
+            }
+        } catch (HttpStatusCodeException e) {
+            if (UNSUPPORTED_STATUSES.contains(e.getStatusCode().value())) {
+                batchSupported = false;
+                log.warn("[RELAY_MICRO_BATCH] - Relay has no batch endpoint ({}), envelopes are sent one by one", batchUrl);
+                batch.forEach(pending -> pending.future.complete(SEND_ALONE));
+                return;
+            }
+
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+    private RelayEnvelopeResponse await(Pending pending) {
+        try {
+            return pending.future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ResourceAccessException("Relay batch not answered within " + timeout + "ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the relay batch", e);
+        }
+    }
+
+    private ResponseEntity<byte[]> sendAlone(ProxyAPIRequest proxyAPIRequest) {
+        singleEnvelopes.increment();
+        return restTemplate.postForEntity(proxyUrl, new HttpEntity<>(proxyAPIRequest), byte[].class);
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return window.size();
+        }
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getBatchedEnvelopeCount() {
+        return batchedEnvelopes.sum();
+    }
+
+    public long getSingleEnvelopeCount() {
+        return singleEnvelopes.sum();
+    }
+
+    private static final class Pending {
+        private final ProxyAPIRequest request;
+        private final CompletableFuture<RelayEnvelopeResponse> future = new CompletableFuture<>();
+
+        private Pending(ProxyAPIRequest request) {
+            this.request = request;
+        }
+    }
+}
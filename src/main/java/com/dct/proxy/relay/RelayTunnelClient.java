@@ -0,0 +1,275 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.common.JsonCodec;
+import com.dct.proxy.config.properties.RelayProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.RelayEnvelopeResponse;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Sends envelopes to the relay over a few persistent {@link TunnelConnection}s instead of one HTTP request each <p>
+ * Each envelope is a stream of its connection, streams are spread round-robin over the connections and at most
+ * {@code maxConcurrentStreams} of them are open per connection. A closed connection fails its open streams
+ * and is opened again by the next envelope. Transport failures are recorded by the circuit breaker,
+ * like the failures of the HTTP client
+ *
+ * @author thoaidc
+ */
+public class RelayTunnelClient implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RelayTunnelClient.class);
+    private final RelayProps.TunnelConfig config;
+    private final JsonCodec jsonCodec;
+    private final CircuitBreaker circuitBreaker;
+    private final Channel[] channels;
+    private final Semaphore streamPermits;
+    private final ScheduledExecutorService heartbeatScheduler;
+    private final AtomicInteger nextChannel = new AtomicInteger();
+    private final LongAdder exchanges = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    public RelayTunnelClient(RelayProps.TunnelConfig config, JsonCodec jsonCodec, CircuitBreaker circuitBreaker) {
+        this.config = config;
+        this.jsonCodec = jsonCodec;
+        this.circuitBreaker = circuitBreaker;
+        this.channels = new Channel[Math.max(1, config.getConnections())];
+        this.streamPermits = new Semaphore(channels.length * config.getMaxConcurrentStreams());
+
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new Channel(i);
+        }
+
+        this.heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "relay-tunnel-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = config.getHeartbeatInterval();
+        this.heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send an envelope to the relay through the tunnel
+     * @return the response, as returned by {@link org.springframework.web.client.RestTemplate#postForEntity}
+     * @throws HttpStatusCodeException if the envelope is answered with an error status
+     * @throws ResourceAccessException if the tunnel fails or the response does not come in time
+     */
+    public ResponseEntity<byte[]> exchange(ProxyAPIRequest proxyAPIRequest) {
+        Supplier<RelayEnvelopeResponse> call = () -> roundTrip(proxyAPIRequest);
+        RelayEnvelopeResponse response = Objects.nonNull(circuitBreaker) ? circuitBreaker.executeSupplier(call) : call.get();
+        return RelayEnvelopes.toResponseEntity(response);
+    }
+
+    // One deadline for the whole call: waiting for a stream, for flow-control credit and for the response
+    private RelayEnvelopeResponse roundTrip(ProxyAPIRequest proxyAPIRequest) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getTimeout());
+        exchanges.increment();
+
+        try {
+            if (!streamPermits.tryAcquire(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+                throw new IOException("Too many streams open on the relay tunnel");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.increment();
+            throw new ResourceAccessException("Interrupted while waiting for a relay tunnel stream");
+        } catch (IOException e) {
+            failures.increment();
+            throw new ResourceAccessException(e.getMessage(), e);
+        }
+
+        try {
+            Channel channel = channels[Math.floorMod(nextChannel.getAndIncrement(), channels.length)];
+            byte[] response = channel.exchange(jsonCodec.writeProxyAPIRequest(proxyAPIRequest), deadline);
+            return jsonCodec.readEnvelopeResponse(response);
+        } catch (IOException e) {
+            failures.increment();
+            throw new ResourceAccessException("Relay tunnel: " + e.getMessage(), e);
+        } finally {
+            streamPermits.release();
+        }
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private void heartbeat() {
+        for (Channel channel : channels) {
+            TunnelConnection connection = channel.connection;
+
+            if (Objects.nonNull(connection) && connection.isOpen()) {
+                connection.heartbeat(config.getHeartbeatTimeout());
+            }
+        }
+    }
+
+    public int getOpenStreamCount() {
+        int count = 0;
+
+        for (Channel channel : channels) {
+            count += channel.streams.size();
+        }
+
+        return count;
+    }
+
+    public long getExchangeCount() {
+        return exchanges.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getReconnectCount() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public void close() {
+        heartbeatScheduler.shutdownNow();
+
+        for (Channel channel : channels) {
+            TunnelConnection connection = channel.connection;
+
+            if (Objects.nonNull(connection)) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * One slot of the pool, its connection is replaced when it closes
+     */
+    private final class Channel implements TunnelConnection.Listener {
+        private final int index;
+        private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+        private final AtomicInteger nextStreamId = new AtomicInteger(1);
+        private volatile TunnelConnection connection;
+
+        private Channel(int index) {
+            this.index = index;
+        }
+
+        private byte[] exchange(byte[] message, long deadline) throws IOException {
+            TunnelConnection current = connect(deadline);
+            // Client streams are odd, like HTTP/2
+            int streamId = nextStreamId.getAndAdd(2) & Integer.MAX_VALUE;
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            streams.put(streamId, new Stream(current, future));
+
+            try {
+                current.sendMessage(streamId, message, TimeUnit.NANOSECONDS.toMillis(remainingNanos(deadline)));
+                return future.get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                current.sendReset(streamId);
+                throw new IOException("No response within " + config.getTimeout() + "ms");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the relay tunnel", e);
+            } finally {
+                streams.remove(streamId);
+            }
+        }
+
+        private TunnelConnection connect(long deadline) throws IOException {
+            TunnelConnection current = connection;
+
+            if (Objects.nonNull(current) && current.isOpen()) {
+                return current;
+            }
+
+            synchronized (this) {
+                if (Objects.nonNull(connection) && connection.isOpen()) {
+                    return connection;
+                }
+
+                Socket socket = new Socket();
+
+                try {
+                    // 0 would be an infinite timeout
+                    long connectTimeout = Math.max(1, Math.min(config.getConnectTimeout(), TimeUnit.NANOSECONDS.toMillis(remainingNanos(deadline))));
+                    socket.connect(new InetSocketAddress(config.getHost(), config.getPort()), (int) connectTimeout);
+                    TunnelConnection opened = new TunnelConnection(
+                        socket,
+                        this,
+                        config.getWindowSize(),
+                        config.getMaxFrameSize(),
+                        config.getMaxMessageSize()
+                    );
+
+                    opened.start("relay-tunnel-" + index);
+
+                    if (Objects.nonNull(connection)) {
+                        reconnects.increment();
+                    }
+
+                    connection = opened;
+                    log.info("[RELAY_TUNNEL] - Connection {} opened to {}:{}", index, config.getHost(), config.getPort());
+                    return opened;
+                } catch (IOException e) {
+                    socket.close();
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void onMessage(TunnelConnection source, int streamId, byte[] message) {
+            Stream stream = streams.get(streamId);
+
+            if (Objects.nonNull(stream)) {
+                stream.future().complete(message);
+            }
+
+            // Handed off to the waiting caller, or dropped if it gave up
+            source.consumed(message.length);
+        }
+
+        @Override
+        public void onReset(TunnelConnection source, int streamId) {
+            Stream stream = streams.get(streamId);
+
+            if (Objects.nonNull(stream)) {
+                stream.future().completeExceptionally(new IOException("Stream reset by the relay"));
+            }
+        }
+
+        @Override
+        public void onClosed(TunnelConnection source, IOException cause) {
+            // None of the streams of this connection can be answered anymore
+            streams.values()
+                .stream()
+                .filter(stream -> stream.connection() == source)
+                .forEach(stream -> stream.future().completeExceptionally(cause));
+        }
+    }
+
+    private record Stream(TunnelConnection connection, CompletableFuture<byte[]> future) {}
+}
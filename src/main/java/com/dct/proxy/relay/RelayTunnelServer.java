@@ -0,0 +1,188 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.common.JsonCodec;
+import com.dct.proxy.config.properties.RelayProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.RelayEnvelopeResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Relay end of the tunnel: accepts {@link TunnelConnection}s and answers each envelope with the handler <p>
+ * Envelopes are handled on a bounded worker pool, the reader threads only parse frames.
+ * Used as the loopback peer, which hands the envelopes to the HTTP relay, to test and benchmark the tunnel locally.
+ * A relay can run it with its own handler
+ *
+ * @author thoaidc
+ */
+public class RelayTunnelServer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RelayTunnelServer.class);
+    private final RelayProps.TunnelConfig config;
+    private final JsonCodec jsonCodec;
+    private final Function<ProxyAPIRequest, ResponseEntity<byte[]>> handler;
+    private final ServerSocket serverSocket;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService heartbeatScheduler;
+    private final Set<TunnelConnection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    /**
+     * @param handler answers an envelope, may throw {@link HttpStatusCodeException} like the HTTP client
+     */
+    public RelayTunnelServer(RelayProps.TunnelConfig config,
+                             InetAddress bindAddress,
+                             int port,
+                             int workerThreads,
+                             JsonCodec jsonCodec,
+                             Function<ProxyAPIRequest, ResponseEntity<byte[]>> handler) throws IOException {
+        this.config = config;
+        this.jsonCodec = jsonCodec;
+        this.handler = handler;
+        this.serverSocket = new ServerSocket(port, 128, bindAddress);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+            workerThreads,
+            workerThreads,
+            60,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(workerThreads * config.getMaxConcurrentStreams()),
+            runnable -> {
+                Thread thread = new Thread(runnable, "relay-tunnel-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+
+        this.workers.allowCoreThreadTimeOut(true);
+        this.heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "relay-tunnel-server-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = config.getHeartbeatInterval();
+        this.heartbeatScheduler.scheduleWithFixedDelay(
+            () -> connections.forEach(connection -> connection.heartbeat(config.getHeartbeatTimeout())),
+            interval,
+            interval,
+            TimeUnit.MILLISECONDS
+        );
+
+        Thread acceptor = new Thread(this::acceptLoop, "relay-tunnel-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("[RELAY_TUNNEL] - Tunnel endpoint listening on {}:{}", bindAddress.getHostAddress(), port);
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                TunnelConnection connection = new TunnelConnection(
+                    socket,
+                    new Listener(),
+                    config.getWindowSize(),
+                    config.getMaxFrameSize(),
+                    config.getMaxMessageSize()
+                );
+
+                connections.add(connection);
+                connection.start("relay-tunnel-server-" + connectionCount.incrementAndGet());
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("[RELAY_TUNNEL] - Could not accept a tunnel connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(TunnelConnection connection, int streamId, byte[] message) {
+        RelayEnvelopeResponse response;
+
+        try {
+            ResponseEntity<byte[]> result = handler.apply(jsonCodec.readProxyAPIRequest(message));
+            response = RelayEnvelopes.toEnvelope(result.getStatusCode().value(), result.getHeaders(), result.getBody());
+        } catch (HttpStatusCodeException e) {
+            HttpHeaders headers = Optional.ofNullable(e.getResponseHeaders()).orElse(new HttpHeaders());
+            response = RelayEnvelopes.toEnvelope(e.getStatusCode().value(), headers, e.getResponseBodyAsByteArray());
+        } catch (Exception e) {
+            log.warn("[RELAY_TUNNEL] - Envelope on stream {} failed: {}", streamId, e.getMessage());
+            byte[] body = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            response = RelayEnvelopes.toEnvelope(HttpStatus.BAD_GATEWAY.value(), new HttpHeaders(), body);
+        }
+
+        try {
+            connection.sendMessage(streamId, jsonCodec.writeEnvelopeResponse(response), config.getTimeout());
+        } catch (IOException e) {
+            log.debug("[RELAY_TUNNEL] - Could not answer stream {}: {}", streamId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        heartbeatScheduler.shutdownNow();
+
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.debug("[RELAY_TUNNEL] - Error closing tunnel endpoint: {}", e.getMessage());
+        }
+
+        connections.forEach(TunnelConnection::close);
+        workers.shutdownNow();
+    }
+
+    private final class Listener implements TunnelConnection.Listener {
+
+        @Override
+        public void onMessage(TunnelConnection connection, int streamId, byte[] message) {
+            try {
+                workers.execute(() -> {
+                    try {
+                        handle(connection, streamId, message);
+                    } finally {
+                        connection.consumed(message.length);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                connection.consumed(message.length);
+                connection.sendReset(streamId);
+            }
+        }
+
+        @Override
+        public void onReset(TunnelConnection connection, int streamId) {
+            // The client gave up, the response is dropped by the client when it comes
+        }
+
+        @Override
+        public void onClosed(TunnelConnection connection, IOException cause) {
+            connections.remove(connection);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BodySpooler;
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.body.SpooledBody;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Sends envelopes to the relay with the envelope generated straight onto the connection <p>
+ * {@link RestTemplate} with interceptors buffers the whole serialized envelope before the circuit breaker
+ * interceptor sees it. Here the {@link RelayEnvelopeWriter} writes to the request stream of the
+ * {@link ClientHttpRequestFactory}, with the same circuit breaker and retry applied around the call.
+ * A retry writes the envelope again from the request held in memory or spooled, nothing is kept from the first attempt.
+ * As with {@link RestTemplate}, only transport failures are recorded by the circuit breaker,
+ * error statuses are thrown as {@link HttpStatusCodeException} afterwards
+ *
+ * @author thoaidc
+ */
+public class StreamingRelaySender {
+    private static final Logger log = LoggerFactory.getLogger(StreamingRelaySender.class);
+    private final ClientHttpRequestFactory requestFactory;
+    private final RelayEnvelopeWriter envelopeWriter;
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+    private final BufferPool bufferPool;
+    private final URI proxyUri;
+
+    public StreamingRelaySender(ClientHttpRequestFactory requestFactory,
+                                RelayEnvelopeWriter envelopeWriter,
+                                CircuitBreaker circuitBreaker,
+                                Retry retry,
+                                BufferPool bufferPool,
+                                String proxyUrl) {
+        this.requestFactory = requestFactory;
+        this.envelopeWriter = envelopeWriter;
+        this.circuitBreaker = circuitBreaker;
+        this.retry = retry;
+        this.bufferPool = bufferPool;
+        this.proxyUri = URI.create(proxyUrl);
+    }
+
+    /**
+     * Send an envelope to the relay
+     * @return the response, as returned by {@link RestTemplate#postForEntity}
+     * @throws HttpStatusCodeException if the envelope is answered with an error status
+     * @throws ResourceAccessException if the call fails
+     */
+    public ResponseEntity<byte[]> exchange(ProxyAPIRequest proxyAPIRequest) {
+        ResponseEntity<byte[]> response = execute(() -> transmit(proxyAPIRequest, bufferPool::readAllBytes, Long.MAX_VALUE));
+        return RelayEnvelopes.toResponseEntity(response.getStatusCode().value(), response.getHeaders(), response.getBody());
+    }
+
+    /**
+     * Send an envelope to the relay, a successful response body above the memory threshold of the spooler
+     * is read into a spool file instead of the heap
+     * @return the response, its body must be closed by the caller
+     * @throws HttpStatusCodeException if the envelope is answered with an error status, its body is read in memory
+     * @throws ResourceAccessException if the call fails
+     */
+    public ResponseEntity<SpooledBody> exchange(ProxyAPIRequest proxyAPIRequest, BodySpooler spooler) {
+        long inMemoryLimit = spooler.getMemoryThresholdBytes() + 1L;
+        ResponseEntity<SpooledBody> response = execute(() -> transmit(proxyAPIRequest, spooler::spool, inMemoryLimit));
+        SpooledBody body = response.getBody();
+
+        if (response.getStatusCode().isError()) {
+            try (body) {
+                RelayEnvelopes.toResponseEntity(response.getStatusCode().value(), response.getHeaders(), body.toByteArray());
+            } catch (IOException e) {
+                throw new ResourceAccessException("I/O error on POST request for \"" + proxyUri + "\": " + e.getMessage());
+            }
+        }
+
+        return response;
+    }
+
+    private <T> ResponseEntity<T> execute(Supplier<ResponseEntity<T>> call) {
+        if (Objects.nonNull(circuitBreaker)) {
+            call = CircuitBreaker.decorateSupplier(circuitBreaker, call);
+        }
+
+        if (Objects.nonNull(retry)) {
+            call = Retry.decorateSupplier(retry, call);
+        }
+
+        return call.get();
+    }
+
+    /**
+     * @param inMemoryLimit bytes of the response body read into memory, counted in the body reservation of the request
+     */
+    private <T> ResponseEntity<T> transmit(ProxyAPIRequest proxyAPIRequest, BodyReader<T> bodyReader, long inMemoryLimit) {
+        try {
+            ClientHttpRequest request = requestFactory.createRequest(proxyUri, HttpMethod.POST);
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.getHeaders().setAccept(List.of(MediaType.ALL));
+
+            if (request instanceof StreamingHttpOutputMessage streamingRequest) {
+                streamingRequest.setBody(out -> envelopeWriter.write(proxyAPIRequest, out));
+            } else {
+                envelopeWriter.write(proxyAPIRequest, request.getBody());
+            }
+
+            try (ClientHttpResponse response = request.execute()) {
+                HttpHeaders headers = new HttpHeaders();
+                headers.putAll(response.getHeaders());
+                T body;
+
+                try (InputStream in = meter(proxyAPIRequest, response, inMemoryLimit)) {
+                    body = bodyReader.read(in, headers.getContentLength());
+                }
+
+                return ResponseEntity.status(response.getStatusCode()).headers(headers).body(body);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.error("[RELAY_STREAMING] - POST {} failed: {}", proxyUri, e.getMessage());
+            throw new ResourceAccessException("I/O error on POST request for \"" + proxyUri + "\": " + e.getMessage());
+        }
+    }
+
+    private static InputStream meter(ProxyAPIRequest proxyAPIRequest,
+                                     ClientHttpResponse response,
+                                     long inMemoryLimit) throws IOException {
+        BodyBudget.Reservation reservation = proxyAPIRequest.getBodyReservation();
+
+        if (Objects.isNull(reservation)) {
+            return response.getBody();
+        }
+
+        return reservation.meter(response.getBody(), response.getHeaders().getContentLength(), inMemoryLimit);
+    }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(InputStream in, long contentLength) throws IOException;
+    }
+}
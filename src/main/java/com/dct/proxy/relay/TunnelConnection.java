@@ -0,0 +1,349 @@
+package com.dct.proxy.relay;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One persistent socket of the relay tunnel, carrying many streams at once <p>
+ * Messages are split into {@link TunnelFrame#DATA} frames of at most {@code maxFrameSize} bytes,
+ * frames of different streams interleave. Flow control is per connection: the sender may have at most
+ * {@code windowSize} payload bytes not yet consumed by the receiver, which gives credit back
+ * with {@link TunnelFrame#WINDOW_UPDATE} frames once its listener has processed or handed off the messages.
+ * The receiver holds at most {@code windowSize} bytes of messages, buffered or waiting for a worker.
+ * A message takes the credit of all its frames before the first one is sent, so that every message started
+ * can be completed by the receiver: a message cannot be larger than the window <p>
+ * A connection that receives nothing, not even a {@link TunnelFrame#PONG}, for {@code heartbeatTimeout}
+ * is closed by {@link #heartbeat} <p>
+ * Used by both ends of the tunnel, incoming messages are handed to the {@link Listener} on the reader thread
+ *
+ * @author thoaidc
+ */
+public class TunnelConnection implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TunnelConnection.class);
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Listener listener;
+    private final int maxFrameSize;
+    private final int maxMessageSize;
+    private final int windowSize;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock windowLock = new ReentrantLock();
+    private final Condition windowAvailable = windowLock.newCondition();
+    private final ReentrantLock creditLock = new ReentrantLock();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // Only used by the reader thread
+    private final Map<Integer, ByteArrayOutputStream> partialMessages = new HashMap<>();
+    private long sendWindow; // Guarded by windowLock
+    private long heldBytes; // Received and not consumed yet, guarded by creditLock
+    private long unacknowledged; // Consumed and not given back yet, guarded by creditLock
+    private volatile long lastReadAt = System.currentTimeMillis();
+
+    /**
+     * Receives the events of a connection, on its reader thread
+     */
+    public interface Listener {
+
+        /**
+         * The credit of the message is given back to the sender once {@link #consumed} is called with its length,
+         * after the message has been processed or handed off
+         */
+        void onMessage(TunnelConnection connection, int streamId, byte[] message);
+
+        void onReset(TunnelConnection connection, int streamId);
+
+        void onClosed(TunnelConnection connection, IOException cause);
+    }
+
+    public TunnelConnection(Socket socket, Listener listener, int windowSize, int maxFrameSize, int maxMessageSize)
+            throws IOException {
+        this.socket = socket;
+        this.listener = listener;
+        this.windowSize = windowSize;
+        this.maxFrameSize = maxFrameSize;
+        this.maxMessageSize = maxMessageSize;
+        this.sendWindow = windowSize;
+        this.socket.setTcpNoDelay(true);
+        this.socket.setKeepAlive(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Start reading frames, on a dedicated daemon thread
+     */
+    public void start(String threadName) {
+        Thread reader = new Thread(this::readLoop, threadName);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    /**
+     * Send a whole message on a stream, waits for flow control credit when the receiver is behind
+     * @param timeoutMillis maximum time spent waiting for credit
+     * @throws IOException if the connection is closed, the message is larger than the window
+     * or no credit is given back in time
+     */
+    public void sendMessage(int streamId, byte[] message, long timeoutMillis) throws IOException {
+        if (message.length > windowSize) {
+            throw new IOException("Message of " + message.length + " bytes exceeds the tunnel window of " + windowSize + " bytes");
+        }
+
+        acquireWindow(message.length, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        int offset = 0;
+
+        do {
+            int length = Math.min(maxFrameSize, message.length - offset);
+            boolean last = offset + length == message.length;
+            byte[] chunk = offset == 0 && last ? message : Arrays.copyOfRange(message, offset, offset + length);
+            writeFrame(new TunnelFrame(TunnelFrame.DATA, last ? TunnelFrame.END_STREAM : 0, streamId, chunk), last);
+            offset += length;
+        } while (offset < message.length);
+    }
+
+    /**
+     * Give back the credit of a message received by the {@link Listener}, once processed or handed off.
+     * Credit is sent back by large steps, or at once when the connection holds no other message
+     * @param bytes the length of the message
+     */
+    public void consumed(int bytes) {
+        long increment = 0;
+        creditLock.lock();
+
+        try {
+            heldBytes -= bytes;
+            unacknowledged += bytes;
+
+            if (unacknowledged >= windowSize / 2 || heldBytes == 0) {
+                increment = unacknowledged;
+                unacknowledged = 0;
+            }
+        } finally {
+            creditLock.unlock();
+        }
+
+        if (increment > 0) {
+            try {
+                writeFrame(TunnelFrame.windowUpdate((int) increment), true);
+            } catch (IOException e) {
+                log.debug("[RELAY_TUNNEL] - Could not give back flow control credit: {}", e.getMessage());
+            }
+        }
+    }
+
+    public void sendReset(int streamId) {
+        try {
+            writeFrame(TunnelFrame.of(TunnelFrame.RESET, streamId), true);
+        } catch (IOException e) {
+            log.debug("[RELAY_TUNNEL] - Could not reset stream {}: {}", streamId, e.getMessage());
+        }
+    }
+
+    /**
+     * Ping the other end, or close the connection if nothing was received for {@code heartbeatTimeout}
+     */
+    public void heartbeat(long heartbeatTimeout) {
+        if (System.currentTimeMillis() - lastReadAt > heartbeatTimeout) {
+            close(new IOException("No frame received for " + heartbeatTimeout + "ms"));
+            return;
+        }
+
+        try {
+            writeFrame(TunnelFrame.of(TunnelFrame.PING, 0), true);
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    private void acquireWindow(int length, long deadline) throws IOException {
+        windowLock.lock();
+
+        try {
+            while (sendWindow < length) {
+                long remaining = deadline - System.nanoTime();
+
+                if (closed.get()) {
+                    throw new IOException("Tunnel connection closed");
+                }
+
+                if (remaining <= 0) {
+                    throw new IOException("No flow control credit from the tunnel peer");
+                }
+
+                windowAvailable.awaitNanos(remaining);
+            }
+
+            sendWindow -= length;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for flow control credit", e);
+        } finally {
+            windowLock.unlock();
+        }
+    }
+
+    private void writeFrame(TunnelFrame frame, boolean flush) throws IOException {
+        if (closed.get()) {
+            throw new IOException("Tunnel connection closed");
+        }
+
+        writeLock.lock();
+
+        try {
+            frame.write(out);
+
+            if (flush) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            close(e);
+            throw e;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (!closed.get()) {
+                TunnelFrame frame = TunnelFrame.read(in, maxFrameSize);
+                lastReadAt = System.currentTimeMillis();
+                handleFrame(frame);
+            }
+        } catch (IOException e) {
+            close(e);
+        } catch (RuntimeException e) {
+            close(new IOException(e));
+        }
+    }
+
+    private void handleFrame(TunnelFrame frame) throws IOException {
+        switch (frame.type()) {
+            case TunnelFrame.DATA -> handleData(frame);
+            case TunnelFrame.WINDOW_UPDATE -> {
+                windowLock.lock();
+
+                try {
+                    sendWindow += frame.getWindowIncrement();
+                    windowAvailable.signalAll();
+                } finally {
+                    windowLock.unlock();
+                }
+            }
+            case TunnelFrame.PING -> writeFrame(TunnelFrame.of(TunnelFrame.PONG, 0), true);
+            case TunnelFrame.RESET -> {
+                ByteArrayOutputStream dropped = partialMessages.remove(frame.streamId());
+
+                if (Objects.nonNull(dropped)) {
+                    consumed(dropped.size());
+                }
+
+                listener.onReset(this, frame.streamId());
+            }
+            case TunnelFrame.GOAWAY -> close(new IOException("Tunnel peer went away"));
+            default -> log.debug("[RELAY_TUNNEL] - Ignored frame of unknown type: {}", frame.type());
+        }
+    }
+
+    private void handleData(TunnelFrame frame) throws IOException {
+        int streamId = frame.streamId();
+        byte[] payload = frame.payload();
+        hold(payload.length);
+        byte[] message;
+
+        if (frame.isEndStream() && !partialMessages.containsKey(streamId)) {
+            message = payload;
+        } else {
+            ByteArrayOutputStream buffer = partialMessages.computeIfAbsent(streamId, id -> new ByteArrayOutputStream());
+
+            if (buffer.size() + payload.length > maxMessageSize) {
+                partialMessages.remove(streamId);
+                consumed(buffer.size() + payload.length);
+                sendReset(streamId);
+                listener.onReset(this, streamId);
+                message = null;
+            } else {
+                buffer.write(payload);
+                message = frame.isEndStream() ? partialMessages.remove(streamId).toByteArray() : null;
+            }
+        }
+
+        // The credit of the message comes back when the listener has consumed it
+        if (Objects.nonNull(message)) {
+            listener.onMessage(this, streamId, message);
+        }
+    }
+
+    private void hold(int bytes) throws IOException {
+        creditLock.lock();
+
+        try {
+            heldBytes += bytes;
+
+            if (heldBytes + unacknowledged > windowSize) {
+                throw new IOException("Tunnel peer sent more than the flow control window of " + windowSize + " bytes");
+            }
+        } finally {
+            creditLock.unlock();
+        }
+    }
+
+    private void close(IOException cause) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        log.warn("[RELAY_TUNNEL] - Connection to {} closed: {}", socket.getRemoteSocketAddress(), cause.getMessage());
+        closeSocket();
+        listener.onClosed(this, cause);
+    }
+
+    private void closeSocket() {
+        windowLock.lock();
+
+        try {
+            windowAvailable.signalAll();
+        } finally {
+            windowLock.unlock();
+        }
+
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.debug("[RELAY_TUNNEL] - Error closing socket: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.get()) {
+            try {
+                writeFrame(TunnelFrame.of(TunnelFrame.GOAWAY, 0), true);
+            } catch (IOException e) {
+                log.debug("[RELAY_TUNNEL] - Could not send GOAWAY: {}", e.getMessage());
+            }
+        }
+
+        close(new IOException("Closed locally"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.dct.proxy.relay;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Frame of the relay tunnel <p>
+ * Layout: payload length (4 bytes), type (1 byte), flags (1 byte), stream id (4 bytes), payload.
+ * A message (an envelope or its response) is carried by the {@link #DATA} frames of one stream,
+ * the last one has the {@link #END_STREAM} flag. Stream id 0 is the connection itself
+ *
+ * @param type one of the frame type constants
+ * @param flags bit set of the flag constants
+ * @param streamId the stream the frame belongs to, 0 for connection frames
+ * @param payload the frame content, never null
+ * @author thoaidc
+ */
+public record TunnelFrame(byte type, byte flags, int streamId, byte[] payload) {
+    public static final int HEADER_SIZE = 10;
+    public static final byte DATA = 0;
+    public static final byte WINDOW_UPDATE = 1; // Payload: the number of bytes the sender may send again
+    public static final byte PING = 2;
+    public static final byte PONG = 3;
+    public static final byte RESET = 4; // The stream is abandoned by the sender
+    public static final byte GOAWAY = 5; // The sender closes the connection
+    public static final byte END_STREAM = 0x1;
+    private static final byte[] EMPTY = new byte[0];
+
+    public static TunnelFrame of(byte type, int streamId) {
+        return new TunnelFrame(type, (byte) 0, streamId, EMPTY);
+    }
+
+    public static TunnelFrame windowUpdate(int increment) {
+        return new TunnelFrame(WINDOW_UPDATE, (byte) 0, 0, ByteBuffer.allocate(Integer.BYTES).putInt(increment).array());
+    }
+
+    public boolean isEndStream() {
+        return (flags & END_STREAM) != 0;
+    }
+
+    public int getWindowIncrement() {
+        return ByteBuffer.wrap(payload).getInt();
+    }
+
+    /**
+     * @throws IOException if the stream ends or the frame is larger than {@code maxFrameSize}
+     */
+    public static TunnelFrame read(DataInputStream in, int maxFrameSize) throws IOException {
+        int length = in.readInt();
+
+        if (length < 0 || length > maxFrameSize) {
+            throw new IOException("Invalid tunnel frame length: " + length);
+        }
+
+        byte type = in.readByte();
+        byte flags = in.readByte();
+        int streamId = in.readInt();
+        byte[] payload = length == 0 ? EMPTY : new byte[length];
+        in.readFully(payload);
+        return new TunnelFrame(type, flags, streamId, payload);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(payload.length);
+        out.writeByte(type);
+        out.writeByte(flags);
+        out.writeInt(streamId);
+        out.write(payload);
+    }
+}
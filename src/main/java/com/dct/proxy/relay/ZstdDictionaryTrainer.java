@@ -0,0 +1,102 @@
+package com.dct.proxy.relay;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Trains the zstd dictionary of the relay link from envelopes captured by {@link RelayCompressionInterceptor}
+ * ({@code app.relay.compression.sample-directory}) <p>
+ * Run from the application jar:
+ * <pre>
+ * java -cp proxy-api-server.jar -Dloader.main=com.dct.proxy.relay.ZstdDictionaryTrainer \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher &lt;sample-directory&gt; &lt;dictionary-file&gt; [dictionary-size]
+ * </pre>
+ * The dictionary is written to the given file, to be configured on both ends of the link
+ * ({@code app.relay.compression.dictionary}). The compression ratio over the samples is reported
+ * with and without the dictionary
+ *
+ * @author thoaidc
+ */
+public final class ZstdDictionaryTrainer {
+    private static final Logger log = LoggerFactory.getLogger(ZstdDictionaryTrainer.class);
+    private static final int DEFAULT_DICTIONARY_SIZE = 112 * 1024;
+    private static final int MAX_SAMPLE_BYTES = 64 * 1024 * 1024;
+    private static final int LEVEL = 3;
+
+    private ZstdDictionaryTrainer() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            log.error("Usage: ZstdDictionaryTrainer <sample-directory> <dictionary-file> [dictionary-size]");
+            System.exit(1);
+        }
+
+        int dictionarySize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DICTIONARY_SIZE;
+        List<byte[]> samples = readSamples(Path.of(args[0]));
+
+        if (samples.isEmpty()) {
+            log.error("No sample found in {}", args[0]);
+            System.exit(1);
+        }
+
+        ZstdDictTrainer trainer = new ZstdDictTrainer(MAX_SAMPLE_BYTES, dictionarySize);
+        int used = 0;
+
+        for (byte[] sample : samples) {
+            if (!trainer.addSample(sample)) {
+                break;
+            }
+
+            used++;
+        }
+
+        byte[] dictionary = trainer.trainSamples();
+        Files.write(Path.of(args[1]), dictionary);
+        log.info("Trained dictionary {} ({} bytes) from {} samples, written to {}",
+                Zstd.getDictIdFromDict(dictionary), dictionary.length, used, args[1]);
+        report(samples, dictionary);
+    }
+
+    private static List<byte[]> readSamples(Path directory) throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                samples.add(Files.readAllBytes(file));
+            }
+        }
+
+        return samples;
+    }
+
+    private static void report(List<byte[]> samples, byte[] dictionary) {
+        long raw = 0;
+        long plain = 0;
+        long trained = 0;
+
+        try (ZstdDictCompress dictCompress = new ZstdDictCompress(dictionary, LEVEL)) {
+            for (byte[] sample : samples) {
+                raw += sample.length;
+                plain += Zstd.compress(sample, LEVEL).length;
+                trained += Zstd.compress(sample, dictCompress).length;
+            }
+        }
+
+        log.info("Samples: {} bytes, zstd: {} bytes ({}x), zstd with dictionary: {} bytes ({}x)",
+                raw, plain, ratio(raw, plain), trained, ratio(raw, trained));
+    }
+
+    private static String ratio(long raw, long compressed) {
+        return String.format("%.1f", compressed == 0 ? 0 : (double) raw / compressed);
+    }
+}
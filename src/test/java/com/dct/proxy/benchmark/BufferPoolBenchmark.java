@@ -0,0 +1,162 @@
+package com.dct.proxy.benchmark;
+
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.config.properties.BodyProps;
+import com.dct.proxy.interceptor.ProxyRequestInterceptor;
+import com.dct.proxy.support.ProxyTestSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes allocated and time spent to read a body without {@code Content-Length} with
+ * {@link BufferPool#readAllBytes}, to copy a body between two streams, and to forward a request carrying such
+ * a body with {@link ProxyRequestInterceptor#forward}, through a {@link BufferPool} that keeps its arrays,
+ * against the same pool allocating every array and the JDK methods <p>
+ * The allocations per operation are reported by the GC profiler as {@code gc.alloc.rate.norm}. Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.classpath -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.classpath) com.dct.proxy.benchmark.BufferPoolBenchmark
+ * </pre>
+ * or through the JMH runner with {@code -prof gc}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferPoolBenchmark {
+    private static final String PATH = "/api/p/orders";
+    private static final byte[] RESPONSE = "{\"id\":1,\"status\":\"CREATED\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"4096", "65536", "524288"})
+    private int bodyBytes;
+
+    private byte[] body;
+    private BufferPool pooled;
+    private BufferPool unpooled;
+    private byte[] json;
+    private ProxyRequestInterceptor pooledInterceptor;
+    private ProxyRequestInterceptor unpooledInterceptor;
+
+    @Setup
+    public void setUp() {
+        body = new byte[bodyBytes];
+        ThreadLocalRandom.current().nextBytes(body);
+        pooled = new BufferPool(new BodyProps.PoolConfig());
+        unpooled = BufferPool.unpooled();
+        json = json(bodyBytes);
+        ProxyTestSupport.quietLogging();
+        RestTemplate relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, RESPONSE).discardEnvelopes().restTemplate();
+        pooledInterceptor = ProxyTestSupport.interceptor(relay).bufferPool(pooled).build();
+        unpooledInterceptor = ProxyTestSupport.interceptor(relay).bufferPool(unpooled).build();
+    }
+
+    @Benchmark
+    public byte[] pooledReadAllBytes() throws IOException {
+        return pooled.readAllBytes(stream(), -1);
+    }
+
+    @Benchmark
+    public byte[] unpooledReadAllBytes() throws IOException {
+        return unpooled.readAllBytes(stream(), -1);
+    }
+
+    @Benchmark
+    public byte[] jdkReadAllBytes() throws IOException {
+        return stream().readAllBytes();
+    }
+
+    @Benchmark
+    public long pooledCopy() throws IOException {
+        return pooled.copy(stream(), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public long unpooledCopy() throws IOException {
+        return unpooled.copy(stream(), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public long jdkTransferTo() throws IOException {
+        return stream().transferTo(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public MockHttpServletResponse pooledForward() throws IOException {
+        return forward(pooledInterceptor);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse unpooledForward() throws IOException {
+        return forward(unpooledInterceptor);
+    }
+
+    // A servlet or socket stream, without the shortcuts of ByteArrayInputStream
+    private InputStream stream() {
+        return new FilterInputStream(new ByteArrayInputStream(body)) {};
+    }
+
+    // A chunked request: the body is read without a known length, as in readAllBytes(in, -1)
+    private MockHttpServletResponse forward(ProxyRequestInterceptor interceptor) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", PATH) {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+        };
+        request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(json);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.forward(request, response);
+        return response;
+    }
+
+    // A JSON object of the given size, a client body the interceptor parses before sending it to the relay
+    private static byte[] json(int size) {
+        String prefix = "{\"data\":\"";
+        String suffix = "\"}";
+        return (prefix + "a".repeat(Math.max(0, size - prefix.length() - suffix.length())) + suffix).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(BufferPoolBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()
+        ).run();
+    }
+}
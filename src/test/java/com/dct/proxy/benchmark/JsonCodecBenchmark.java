@@ -0,0 +1,151 @@
+package com.dct.proxy.benchmark;
+
+import com.dct.proxy.common.JsonCodec;
+import com.dct.proxy.config.DataConverterAutoConfiguration;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.BaseResponseDTO;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the JSON handled for every proxied request: {@link JsonCodec} with the application mapper (cached readers
+ * and writers, Blackbird) against the previous path, a plain {@link ObjectMapper} going through {@link String} <p>
+ * Covers the client body parsed into a map, the envelope sent to the relay and the response written to the client.
+ * Run with the GC profiler to compare allocations:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.classpath -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.classpath) org.openjdk.jmh.Main JsonCodecBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private static final OutputStream DISCARD = OutputStream.nullOutputStream();
+
+    @Param({"1", "50"})
+    private int items;
+
+    private JsonCodec codec;
+    private ObjectMapper plainMapper;
+    private byte[] body;
+    private byte[] envelope;
+    private ProxyAPIRequest proxyAPIRequest;
+    private BaseResponseDTO response;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = new JsonCodec(DataConverterAutoConfiguration.buildObjectMapper());
+        plainMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .setSerializationInclusion(JsonInclude.Include.NON_EMPTY)
+                .registerModule(new JavaTimeModule())
+                .registerModule(new Jdk8Module());
+        Map<String, Object> order = order(items);
+        body = plainMapper.writeValueAsBytes(order);
+        proxyAPIRequest = new ProxyAPIRequest();
+        proxyAPIRequest.setUrl("http://upstream.test/api/p/orders");
+        proxyAPIRequest.setMethod("POST");
+        proxyAPIRequest.setHeaders(Map.of("Content-Type", "application/json", "Accept", "application/json"));
+        proxyAPIRequest.setParams(Map.of("lang", "vi"));
+        proxyAPIRequest.setBody(order);
+        envelope = plainMapper.writeValueAsBytes(proxyAPIRequest);
+        response = BaseResponseDTO.builder().code(200).success(true).message("OK").result(order).build();
+    }
+
+    @Benchmark
+    public Map<String, Object> codecReadMap() throws IOException {
+        return codec.readMap(body);
+    }
+
+    @Benchmark
+    public Map<String, Object> stringReadMap() throws IOException {
+        return plainMapper.readValue(new String(body, StandardCharsets.UTF_8), MAP_TYPE);
+    }
+
+    @Benchmark
+    public byte[] codecWriteProxyAPIRequest() throws IOException {
+        return codec.writeProxyAPIRequest(proxyAPIRequest);
+    }
+
+    @Benchmark
+    public byte[] stringWriteProxyAPIRequest() throws IOException {
+        return plainMapper.writeValueAsString(proxyAPIRequest).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ProxyAPIRequest codecReadProxyAPIRequest() throws IOException {
+        return codec.readProxyAPIRequest(envelope);
+    }
+
+    @Benchmark
+    public ProxyAPIRequest stringReadProxyAPIRequest() throws IOException {
+        return plainMapper.readValue(new String(envelope, StandardCharsets.UTF_8), ProxyAPIRequest.class);
+    }
+
+    @Benchmark
+    public void codecWriteResponse() throws IOException {
+        codec.writeResponse(response, DISCARD);
+    }
+
+    @Benchmark
+    public void stringWriteResponse() throws IOException {
+        DISCARD.write(plainMapper.writeValueAsString(response).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // An order of the given number of lines, as a client of the proxy sends it
+    private static Map<String, Object> order(int items) {
+        List<Map<String, Object>> lines = new ArrayList<>(items);
+
+        for (int i = 0; i < items; i++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("sku", "MED-" + (100000 + i));
+            line.put("name", "Paracetamol 500mg tablet, box of " + (i % 10 + 1) + " blisters");
+            line.put("quantity", i % 7 + 1);
+            line.put("unitPrice", 12500 + i * 10);
+            line.put("status", i % 2 == 0 ? "AVAILABLE" : "BACKORDER");
+            lines.add(line);
+        }
+
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("pharmacyId", "PH-0042");
+        order.put("currency", "VND");
+        order.put("lines", lines);
+        return order;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
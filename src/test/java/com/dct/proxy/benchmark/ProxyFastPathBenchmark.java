@@ -0,0 +1,127 @@
+package com.dct.proxy.benchmark;
+
+import com.dct.proxy.controllers.ProxyController;
+import com.dct.proxy.interceptor.ProxyFastPathFilter;
+import com.dct.proxy.interceptor.ProxyRequestInterceptor;
+import com.dct.proxy.support.ProxyTestSupport;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU time of a proxied request forwarded by {@link ProxyFastPathFilter} against the same request going through
+ * the {@link DispatcherServlet} and the {@link ProxyRequestInterceptor} registered as a handler interceptor <p>
+ * Both paths run the same {@link ProxyRequestInterceptor#forward} against an in-memory relay,
+ * the difference is the dispatching work saved per request. Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.classpath -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.classpath) com.dct.proxy.benchmark.ProxyFastPathBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProxyFastPathBenchmark {
+    private static final String PATH = "/api/p/orders";
+    private static final byte[] RESPONSE = "{\"id\":1,\"status\":\"CREATED\"}".getBytes(StandardCharsets.UTF_8);
+    private ProxyFastPathFilter fastPathFilter;
+    private AnnotationConfigWebApplicationContext context;
+    private DispatcherServlet dispatcherServlet;
+
+    @Setup
+    public void setUp() throws ServletException {
+        ProxyTestSupport.quietLogging();
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, RESPONSE).discardEnvelopes();
+        ProxyRequestInterceptor interceptor = ProxyTestSupport.interceptor(relay.restTemplate()).build();
+        fastPathFilter = new ProxyFastPathFilter(interceptor, new String[] {"/api/**"}, new String[] {"/file/**"});
+
+        MockServletContext servletContext = new MockServletContext();
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(servletContext);
+        context.addBeanFactoryPostProcessor(beanFactory -> beanFactory.registerSingleton("proxyRequestInterceptor", interceptor));
+        context.register(DispatcherConfig.class);
+        dispatcherServlet = new DispatcherServlet(context);
+        dispatcherServlet.init(new MockServletConfig(servletContext));
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcherServlet.destroy();
+        context.close();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse fastPathFilter() throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fastPathFilter.doFilter(request(), response, new MockFilterChain());
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse dispatcherServlet() throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        dispatcherServlet.service(request(), response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request() {
+        return ProxyTestSupport.jsonRequest("POST", PATH, "{\"item\":\"A-1\",\"quantity\":2}");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProxyFastPathBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class DispatcherConfig implements WebMvcConfigurer {
+        private final ProxyRequestInterceptor interceptor;
+
+        DispatcherConfig(ProxyRequestInterceptor interceptor) {
+            this.interceptor = interceptor;
+        }
+
+        @Bean
+        ProxyController proxyController() {
+            return new ProxyController();
+        }
+
+        @Override
+        public void addInterceptors(@NonNull InterceptorRegistry registry) {
+            registry.addInterceptor(interceptor).addPathPatterns("/api/**").excludePathPatterns("/file/**");
+        }
+    }
+}
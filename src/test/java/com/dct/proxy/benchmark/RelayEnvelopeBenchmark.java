@@ -0,0 +1,151 @@
+package com.dct.proxy.benchmark;
+
+import com.dct.proxy.constants.RelayEnvelopeFormat;
+import com.dct.proxy.dto.request.ProxyAPIBinaryRequest;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.relay.RelayEnvelopeCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding cost of the envelopes of {@link RelayEnvelopeCodec}, JSON against the binary formats <p>
+ * The JSON envelope is the {@link ProxyAPIRequest} with the body as a nested map, the binary ones are
+ * the {@link ProxyAPIBinaryRequest} with the body as raw bytes, built with the same factories as the codec.
+ * Decoding is what the relay does with each envelope. The wire size of each envelope is printed before the run.
+ * Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.classpath -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.classpath) com.dct.proxy.benchmark.RelayEnvelopeBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelayEnvelopeBenchmark {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    private RelayEnvelopeFormat format;
+
+    @Param({"1", "50", "1000"})
+    private int items;
+
+    private ObjectMapper mapper;
+    private Object envelope;
+    private Class<?> envelopeType;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = mapper(format);
+        envelope = envelope(format, items);
+        envelopeType = envelope.getClass();
+        encoded = mapper.writeValueAsBytes(envelope);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(envelope);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return mapper.readValue(encoded, envelopeType);
+    }
+
+    private static ObjectMapper mapper(RelayEnvelopeFormat format) {
+        return switch (format) {
+            case JSON -> JSON_MAPPER;
+            case SMILE -> JSON_MAPPER.copyWith(
+                SmileFactory.builder().disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT).build()
+            );
+            case CBOR -> JSON_MAPPER.copyWith(new CBORFactory());
+        };
+    }
+
+    // An order of the given number of lines, as a client of the proxy sends it
+    private static Object envelope(RelayEnvelopeFormat format, int items) throws IOException {
+        List<Map<String, Object>> lines = new ArrayList<>(items);
+
+        for (int i = 0; i < items; i++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("sku", "MED-" + (100000 + i));
+            line.put("name", "Paracetamol 500mg tablet, box of " + (i % 10 + 1) + " blisters");
+            line.put("quantity", i % 7 + 1);
+            line.put("unitPrice", 12500 + i * 10);
+            line.put("status", i % 2 == 0 ? "AVAILABLE" : "BACKORDER");
+            lines.add(line);
+        }
+
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("pharmacyId", "PH-0042");
+        order.put("currency", "VND");
+        order.put("lines", lines);
+        byte[] rawBody = JSON_MAPPER.writeValueAsBytes(order);
+        Map<String, String> headers = Map.of("Content-Type", "application/json", "Authorization", "Bearer token");
+        String url = "http://upstream.test/api/p/orders";
+
+        if (format == RelayEnvelopeFormat.JSON) {
+            ProxyAPIRequest proxyAPIRequest = new ProxyAPIRequest();
+            proxyAPIRequest.setUrl(url);
+            proxyAPIRequest.setMethod("POST");
+            proxyAPIRequest.setHeaders(headers);
+            proxyAPIRequest.setParams(Map.of());
+            proxyAPIRequest.setBody(JSON_MAPPER.readValue(rawBody, new TypeReference<>() {}));
+            return proxyAPIRequest;
+        }
+
+        ProxyAPIBinaryRequest binaryRequest = new ProxyAPIBinaryRequest();
+        binaryRequest.setUrl(url);
+        binaryRequest.setMethod("POST");
+        binaryRequest.setHeaders(headers);
+        binaryRequest.setParams(Map.of());
+        binaryRequest.setBody(rawBody);
+        return binaryRequest;
+    }
+
+    private static void printWireSizes() throws IOException {
+        for (int items : new int[] {1, 50, 1000}) {
+            StringBuilder line = new StringBuilder("Envelope of " + items + " lines:");
+
+            for (RelayEnvelopeFormat format : RelayEnvelopeFormat.values()) {
+                int size = mapper(format).writeValueAsBytes(envelope(format, items)).length;
+                line.append(' ').append(format).append(' ').append(size).append(" bytes");
+            }
+
+            System.out.println(line);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        printWireSizes();
+        new Runner(new OptionsBuilder().include(RelayEnvelopeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,184 @@
+package com.dct.proxy.benchmark;
+
+import com.dct.proxy.common.JsonCodec;
+import com.dct.proxy.config.DataConverterAutoConfiguration;
+import com.dct.proxy.config.properties.RelayProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.relay.RelayTunnelClient;
+import com.dct.proxy.relay.RelayTunnelServer;
+import com.dct.proxy.support.ProxyTestSupport;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Round trip of an envelope to the relay through the {@link RelayTunnelClient}, against the HTTP relay
+ * called with the {@link RestTemplate} and the {@link SimpleClientHttpRequestFactory} of the application <p>
+ * Both relays run on the loopback interface with the same handler and the same number of worker threads:
+ * the HTTP relay is a JDK {@link HttpServer}, the tunnel relay is the loopback peer {@link RelayTunnelServer}.
+ * Only the transport differs. Measured with one caller and with 16 concurrent callers, where the tunnel
+ * multiplexes its streams over {@code connections} sockets <p>
+ * The fork disables Nagle on the JDK server, otherwise its response would wait for a delayed ACK (40ms on Linux)
+ * and the HTTP relay would be measured slower than it is. Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.classpath -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.classpath) org.openjdk.jmh.Main RelayTunnelBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class RelayTunnelBenchmark {
+    private static final int WORKER_THREADS = 16;
+    private static final byte[] RESPONSE = "{\"id\":1,\"status\":\"CREATED\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"1", "50"})
+    private int items;
+
+    private JsonCodec jsonCodec;
+    private ProxyAPIRequest proxyAPIRequest;
+    private HttpServer httpRelay;
+    private ExecutorService httpWorkers;
+    private RestTemplate restTemplate;
+    private String relayUrl;
+    private RelayTunnelServer tunnelRelay;
+    private RelayTunnelClient tunnelClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        ProxyTestSupport.quietLogging();
+        jsonCodec = new JsonCodec(DataConverterAutoConfiguration.buildObjectMapper());
+        proxyAPIRequest = proxyAPIRequest(items);
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        Function<ProxyAPIRequest, ResponseEntity<byte[]>> handler = envelope -> ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(RESPONSE);
+
+        httpWorkers = Executors.newFixedThreadPool(WORKER_THREADS);
+        httpRelay = HttpServer.create(new InetSocketAddress(loopback, 0), 128);
+        httpRelay.setExecutor(httpWorkers);
+        httpRelay.createContext(ProxyTestSupport.RELAY_API, exchange -> {
+            ResponseEntity<byte[]> response = handler.apply(jsonCodec.readProxyAPIRequest(exchange.getRequestBody().readAllBytes()));
+            byte[] body = response.getBody();
+            exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            exchange.sendResponseHeaders(response.getStatusCode().value(), body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        httpRelay.start();
+        relayUrl = "http://" + loopback.getHostAddress() + ":" + httpRelay.getAddress().getPort() + ProxyTestSupport.RELAY_API;
+        restTemplate = new RestTemplate(new SimpleClientHttpRequestFactory());
+
+        RelayProps.TunnelConfig config = new RelayProps.TunnelConfig();
+        config.setHost(loopback.getHostAddress());
+        config.setPort(freePort(loopback));
+        tunnelRelay = new RelayTunnelServer(config, loopback, config.getPort(), WORKER_THREADS, jsonCodec, handler);
+        tunnelClient = new RelayTunnelClient(config, jsonCodec, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        tunnelClient.close();
+        tunnelRelay.close();
+        httpRelay.stop(0);
+        httpWorkers.shutdownNow();
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> http() throws IOException {
+        return httpExchange();
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> tunnel() {
+        return tunnelClient.exchange(proxyAPIRequest);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public ResponseEntity<byte[]> httpConcurrent() throws IOException {
+        return httpExchange();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public ResponseEntity<byte[]> tunnelConcurrent() {
+        return tunnelClient.exchange(proxyAPIRequest);
+    }
+
+    // The envelope is written with the same codec as the tunnel
+    private ResponseEntity<byte[]> httpExchange() throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.postForEntity(relayUrl, new HttpEntity<>(jsonCodec.writeProxyAPIRequest(proxyAPIRequest), headers), byte[].class);
+    }
+
+    private static int freePort(InetAddress address) throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, address)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static ProxyAPIRequest proxyAPIRequest(int items) {
+        List<Map<String, Object>> lines = new ArrayList<>(items);
+
+        for (int i = 0; i < items; i++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("sku", "MED-" + (100000 + i));
+            line.put("quantity", i % 7 + 1);
+            line.put("unitPrice", 12500 + i * 10);
+            lines.add(line);
+        }
+
+        ProxyAPIRequest proxyAPIRequest = new ProxyAPIRequest();
+        proxyAPIRequest.setUrl(ProxyTestSupport.UPSTREAM_HOST + "/api/p/orders");
+        proxyAPIRequest.setMethod("POST");
+        proxyAPIRequest.setHeaders(Map.of(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE));
+        proxyAPIRequest.setBody(Map.of("pharmacyId", "PH-0042", "lines", lines));
+        return proxyAPIRequest;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RelayTunnelBenchmark.class.getSimpleName()).build()).run();
+    }
+}
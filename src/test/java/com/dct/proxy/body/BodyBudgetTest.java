@@ -0,0 +1,119 @@
+package com.dct.proxy.body;
+
+import com.dct.proxy.config.properties.BodyProps;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BodyBudgetTest {
+
+    @Test
+    void bytesAreReleasedWhenTheReservationIsClosed() {
+        BodyBudget budget = budget(1000, 0);
+
+        try (BodyBudget.Reservation reservation = budget.reserve(600)) {
+            reservation.grow(300);
+            assertEquals(900, budget.getUsedBytes());
+        }
+
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void aBodyThatCanNeverFitIsRejectedWith413() {
+        BodyBudget budget = budget(1000, 0);
+
+        BodyRejectedException e = assertThrows(BodyRejectedException.class, () -> budget.reserve(1001));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatus());
+        assertEquals(1, budget.getTooLargeRejectionCount());
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void anExhaustedBudgetIsRejectedWith503AfterTheWait() {
+        BodyBudget budget = budget(1000, 20);
+
+        try (BodyBudget.Reservation ignored = budget.reserve(800)) {
+            BodyRejectedException e = assertThrows(BodyRejectedException.class, () -> budget.reserve(300));
+
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+            assertEquals(1, e.getRetryAfterSeconds());
+            assertEquals(1, budget.getWaitCount());
+            assertEquals(800, budget.getUsedBytes());
+        }
+    }
+
+    @Test
+    void aWaitingReservationGetsTheReleasedBytes() throws Exception {
+        BodyBudget budget = budget(1000, 5000);
+        BodyBudget.Reservation holder = budget.reserve(800);
+        CompletableFuture<BodyBudget.Reservation> waiter = CompletableFuture.supplyAsync(() -> budget.reserve(300));
+
+        while (budget.getWaitCount() == 0) {
+            Thread.onSpinWait();
+        }
+
+        holder.close();
+
+        try (BodyBudget.Reservation reservation = waiter.get(5, TimeUnit.SECONDS)) {
+            assertEquals(300, reservation.bytes());
+            assertEquals(300, budget.getUsedBytes());
+        }
+    }
+
+    @Test
+    void aBodyWithoutLengthIsReservedChunkByChunk() throws IOException {
+        BodyBudget budget = budget(1000, 0);
+
+        try (BodyBudget.Reservation reservation = budget.open();
+             InputStream in = reservation.meter(new ByteArrayInputStream(new byte[250]), -1, Long.MAX_VALUE)) {
+            assertEquals(100, in.read(new byte[100]));
+            assertEquals(100, reservation.bytes());
+
+            in.readAllBytes();
+            assertEquals(300, reservation.bytes());
+        }
+    }
+
+    @Test
+    void anAnnouncedLengthIsReservedBeforeTheRead() {
+        BodyBudget budget = budget(1000, 0);
+
+        try (BodyBudget.Reservation reservation = budget.open()) {
+            reservation.meter(new ByteArrayInputStream(new byte[400]), 400, Long.MAX_VALUE);
+            assertEquals(400, reservation.bytes());
+
+            assertThrows(BodyRejectedException.class, () -> reservation.meter(InputStream.nullInputStream(), 700, Long.MAX_VALUE));
+            assertEquals(400, budget.getUsedBytes());
+        }
+    }
+
+    @Test
+    void aClosedReservationDoesNotGrow() {
+        BodyBudget budget = budget(1000, 0);
+        BodyBudget.Reservation reservation = budget.reserve(100);
+
+        reservation.close();
+        reservation.grow(500);
+
+        assertEquals(0, reservation.bytes());
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    private static BodyBudget budget(long capacityBytes, long maxWait) {
+        BodyProps.BudgetConfig config = new BodyProps.BudgetConfig();
+        config.setMaxInFlightBytes(capacityBytes);
+        config.setMaxWait(maxWait);
+        config.setChunkBytes(100);
+        return new BodyBudget(config);
+    }
+}
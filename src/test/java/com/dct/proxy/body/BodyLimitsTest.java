@@ -0,0 +1,86 @@
+package com.dct.proxy.body;
+
+import com.dct.proxy.config.properties.BodyProps;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BodyLimitsTest {
+
+    @Test
+    void anAnnouncedLengthAboveTheLimitIsRejectedWith413() {
+        BodyLimits limits = limits(100, List.of(), List.of());
+
+        BodyRejectedException e = assertThrows(BodyRejectedException.class, () -> limits.check(request("/api/p/orders", 101, "application/json")));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatus());
+        assertEquals(1, limits.getTooLargeAnnouncedCount());
+        assertEquals(100, limits.check(request("/api/p/orders", 100, "application/json")));
+    }
+
+    @Test
+    void aStreamedBodyIsRejectedOnceItGoesPastTheLimit() throws IOException {
+        BodyLimits limits = limits(100, List.of(), List.of());
+
+        try (InputStream in = limits.limit(new ByteArrayInputStream(new byte[100]), 100)) {
+            assertArrayEquals(new byte[100], in.readAllBytes());
+        }
+
+        InputStream in = limits.limit(new ByteArrayInputStream(new byte[101]), 100);
+        BodyRejectedException e = assertThrows(BodyRejectedException.class, in::readAllBytes);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatus());
+        assertEquals(1, limits.getTooLargeStreamedCount());
+    }
+
+    @Test
+    void aBodyTypeThatIsNotAllowedIsRejectedWith415() {
+        BodyLimits limits = limits(-1, List.of("application/json"), List.of());
+
+        assertEquals(-1, limits.check(request("/api/p/orders", 10, "application/json;charset=UTF-8")));
+        assertEquals(-1, limits.check(request("/api/p/orders", 0, null)));
+
+        BodyRejectedException e = assertThrows(BodyRejectedException.class, () -> limits.check(request("/api/p/orders", 10, "text/plain")));
+
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getStatus());
+        assertThrows(BodyRejectedException.class, () -> limits.check(request("/api/p/orders", 10, null)));
+        assertEquals(2, limits.getUnsupportedTypeCount());
+    }
+
+    @Test
+    void theFirstMatchingRouteOverridesTheDefaults() {
+        BodyProps.RouteConfig uploads = new BodyProps.RouteConfig();
+        uploads.setPattern("/api/p/uploads/**");
+        uploads.setMaxSizeBytes(1000L);
+        uploads.setContentTypes(List.of("multipart/form-data"));
+        BodyLimits limits = limits(100, List.of("application/json"), List.of(uploads));
+
+        assertEquals(1000, limits.check(request("/api/p/uploads/images", 500, "multipart/form-data; boundary=x")));
+        assertThrows(BodyRejectedException.class, () -> limits.check(request("/api/p/uploads/images", 500, "application/json")));
+        assertThrows(BodyRejectedException.class, () -> limits.check(request("/api/p/orders", 500, "application/json")));
+    }
+
+    private static MockHttpServletRequest request(String uri, int contentLength, String contentType) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setContentType(contentType);
+        request.setContent(new byte[contentLength]);
+        return request;
+    }
+
+    private static BodyLimits limits(long maxSizeBytes, List<String> contentTypes, List<BodyProps.RouteConfig> routes) {
+        BodyProps.LimitsConfig config = new BodyProps.LimitsConfig();
+        config.setMaxSizeBytes(maxSizeBytes);
+        config.setContentTypes(contentTypes);
+        config.setRoutes(routes);
+        return new BodyLimits(config);
+    }
+}
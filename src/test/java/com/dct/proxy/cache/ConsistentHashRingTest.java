@@ -0,0 +1,78 @@
+package com.dct.proxy.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+    private static final List<String> NODES = List.of("http://node-a:8080", "http://node-b:8080", "http://node-c:8080");
+    private static final int KEYS = 10_000;
+
+    @Test
+    void ownersDoNotDependOnTheOrderOfTheNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+        ConsistentHashRing reversed = new ConsistentHashRing(NODES.reversed(), 128);
+
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(ring.nodeFor("key-" + i), reversed.nodeFor("key-" + i));
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+        ConsistentHashRing grown = new ConsistentHashRing(
+            List.of("http://node-a:8080", "http://node-b:8080", "http://node-c:8080", "http://node-d:8080"),
+            128
+        );
+        int moved = 0;
+
+        for (int i = 0; i < KEYS; i++) {
+            String before = ring.nodeFor("key-" + i);
+            String after = grown.nodeFor("key-" + i);
+
+            if (!before.equals(after)) {
+                assertEquals("http://node-d:8080", after);
+                moved++;
+            }
+        }
+
+        // About a quarter of the keys, the share of the new node
+        assertTrue(moved > KEYS / 8 && moved < KEYS / 2, "moved " + moved);
+    }
+
+    @Test
+    void keysAreSpreadOverTheNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+        Map<String, Integer> owned = new HashMap<>();
+
+        for (int i = 0; i < KEYS; i++) {
+            owned.merge(ring.nodeFor("key-" + i), 1, Integer::sum);
+        }
+
+        NODES.forEach(node -> assertTrue(owned.get(node) > KEYS / 6, node + " owns " + owned.get(node)));
+    }
+
+    @Test
+    void rejectedNodesPassTheirKeysToTheNextNode() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+
+        for (int i = 0; i < KEYS; i++) {
+            String owner = ring.nodeFor("key-" + i);
+            String fallback = ring.nodeFor("key-" + i, node -> !node.equals(owner));
+
+            assertNotEquals(owner, fallback);
+            assertEquals(fallback, ring.nodeFor("key-" + i, node -> !node.equals(owner)));
+        }
+
+        assertNull(ring.nodeFor("key", node -> false));
+        assertNull(new ConsistentHashRing(List.of(), 128).nodeFor("key"));
+    }
+}
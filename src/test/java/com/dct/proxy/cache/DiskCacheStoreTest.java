@@ -0,0 +1,242 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiskCacheStoreTest {
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int BODY_SIZE = 1000; // Four bodies fill a segment
+    private static final long HOUR = 3_600_000;
+    private final List<DiskCacheStore> stores = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void closeStores() {
+        stores.forEach(DiskCacheStore::close);
+    }
+
+    @Test
+    void sealedEntriesAreReloadedAfterRestart() throws Exception {
+        long now = System.currentTimeMillis();
+        DiskCacheStore store = open();
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+        headers.add(HttpHeaders.SET_COOKIE, "a=1");
+        headers.add(HttpHeaders.SET_COOKIE, "b=2");
+
+        for (int i = 0; i < 6; i++) {
+            store.put(key(i), 200 + i, headers, body(i), now, now + HOUR, now + 2 * HOUR);
+        }
+
+        store.awaitWrites();
+        store.close();
+        DiskCacheStore reloaded = open();
+
+        assertEquals(6, reloaded.getEntryCount());
+
+        for (int i = 0; i < 6; i++) {
+            CachedResponse response = reloaded.get(key(i));
+
+            try {
+                assertEquals(200 + i, response.getStatus());
+                assertEquals(headers, response.getHeaders());
+                assertEquals(now, response.getStoredAt());
+                assertArrayEquals(body(i), response.getBody().toByteArray());
+            } finally {
+                response.getBody().release();
+            }
+        }
+    }
+
+    @Test
+    void crashLosesOnlyTheActiveSegment() throws Exception {
+        long now = System.currentTimeMillis();
+        DiskCacheStore crashed = open();
+
+        // Segment 1 is sealed when the fifth body rolls over to segment 2
+        for (int i = 0; i < 5; i++) {
+            crashed.put(key(i), 200, new HttpHeaders(), body(i), now, now + HOUR, now + HOUR);
+        }
+
+        crashed.awaitWrites();
+        // Not closed, as after a crash
+        stores.remove(crashed);
+        DiskCacheStore reloaded = open();
+
+        assertEquals(4, reloaded.getEntryCount());
+        assertTrue(reloaded.contains(key(3)));
+        assertFalse(reloaded.contains(key(4)));
+    }
+
+    @Test
+    void compactionRelocatesLiveEntriesAndDropsSparseSegments() throws Exception {
+        long now = System.currentTimeMillis();
+        DiskCacheStore store = open();
+        List<ResponseCacheKey> evicted = new ArrayList<>();
+        store.setEvictionListener(evicted::add);
+
+        for (int i = 0; i < 5; i++) {
+            store.put(key(i), 200, new HttpHeaders(), body(i), now, now + HOUR, now + HOUR);
+        }
+
+        store.put(key(5), 200, new HttpHeaders(), body(5), now - 2 * HOUR, now - HOUR, now - 1);
+        store.awaitWrites();
+        Path firstSegment = directory.resolve("segment-00000001.dat");
+        store.remove(key(0));
+
+        store.compact();
+
+        // Segment 1 still holds three quarters of live data
+        assertEquals(List.of(key(5)), evicted);
+        assertTrue(Files.exists(firstSegment));
+
+        store.remove(key(1));
+        store.remove(key(2));
+        store.compact();
+
+        // Key 3 is the only live entry left in segment 1, it moved to the active segment
+        assertFalse(Files.exists(firstSegment));
+        assertEquals(List.of(key(5)), evicted);
+        assertBody(store, 3);
+        assertBody(store, 4);
+
+        store.close();
+        DiskCacheStore reloaded = open();
+
+        assertEquals(2, reloaded.getEntryCount());
+        assertBody(reloaded, 3);
+        assertBody(reloaded, 4);
+        assertNull(reloaded.get(key(0)));
+    }
+
+    @Test
+    void segmentHandedToSendfileOutlivesItsDrop() throws Exception {
+        long now = System.currentTimeMillis();
+        DiskCacheStore store = open(500);
+
+        for (int i = 0; i < 5; i++) {
+            store.put(key(i), 200, new HttpHeaders(), body(i), now, now + HOUR, now + HOUR);
+        }
+
+        store.awaitWrites();
+        Path firstSegment = directory.resolve("segment-00000001.dat");
+        CachedResponse response = store.get(key(0));
+        DiskCachedBody body = (DiskCachedBody) response.getBody();
+
+        assertEquals(firstSegment, body.getFile());
+        assertTrue(store.retainForSendfile(body));
+        body.release(); // Released by the request before the container sends the file
+
+        for (int i = 0; i < 4; i++) {
+            store.remove(key(i));
+        }
+
+        store.compact();
+
+        assertFalse(store.contains(key(0)));
+        assertTrue(Files.exists(firstSegment));
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (Files.exists(firstSegment) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertFalse(Files.exists(firstSegment));
+    }
+
+    @Test
+    void removalCancelsAQueuedWrite() throws Exception {
+        long now = System.currentTimeMillis();
+        DiskCacheStore store = open();
+
+        store.put(key(0), 200, new HttpHeaders(), body(0), now, now + HOUR, now + HOUR);
+        store.remove(key(0));
+        store.awaitWrites();
+
+        assertFalse(store.contains(key(0)));
+        assertNull(store.get(key(0)));
+
+        store.close();
+        assertFalse(open().contains(key(0)));
+    }
+
+    @Test
+    void restartsDoNotAccumulateEmptySegments() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            open().close();
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(), files.filter(file -> file.getFileName().toString().endsWith(".dat")).toList());
+        }
+
+        long now = System.currentTimeMillis();
+        DiskCacheStore store = open();
+        store.put(key(0), 200, new HttpHeaders(), body(0), now, now + HOUR, now + HOUR);
+        store.awaitWrites();
+        store.close();
+        open().close();
+
+        DiskCacheStore reloaded = open();
+        assertEquals(1, reloaded.getEntryCount());
+        reloaded.close();
+
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().endsWith(".dat")).count());
+        }
+    }
+
+    private DiskCacheStore open() throws Exception {
+        return open(HOUR);
+    }
+
+    private DiskCacheStore open(long deleteDelay) throws Exception {
+        ResponseCacheProps.DiskConfig config = new ResponseCacheProps.DiskConfig();
+        config.setDirectory(directory.toString());
+        config.setSegmentSizeBytes(SEGMENT_SIZE);
+        config.setMaxSizeBytes(16L * SEGMENT_SIZE);
+        config.setCompactionInterval(HOUR);
+        config.setDeleteDelay(deleteDelay);
+        DiskCacheStore store = DiskCacheStore.open(config);
+        stores.add(store);
+        return store;
+    }
+
+    private static void assertBody(DiskCacheStore store, int i) {
+        CachedResponse response = store.get(key(i));
+
+        try {
+            assertArrayEquals(body(i), response.getBody().toByteArray());
+        } finally {
+            response.getBody().release();
+        }
+    }
+
+    private static ResponseCacheKey key(int i) {
+        return new ResponseCacheKey("GET", "http://upstream.test/items/" + i, "/items/" + i, List.of());
+    }
+
+    private static byte[] body(int i) {
+        byte[] body = new byte[BODY_SIZE];
+        Arrays.fill(body, (byte) ('a' + i));
+        return body;
+    }
+}
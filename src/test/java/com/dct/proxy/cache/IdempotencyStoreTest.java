@@ -0,0 +1,243 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.IdempotencyProps;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyStoreTest {
+    private static final int DUPLICATES = 16;
+    private static final String KEY = "POST /api/p/orders - order-1";
+    private static final String FINGERPRINT = IdempotencyStore.fingerprint("POST", "/api/p/orders", bytes("{\"item\":1}"));
+    private final ExecutorService executor = Executors.newFixedThreadPool(DUPLICATES);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch arrived = new CountDownLatch(DUPLICATES);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentDuplicatesAreForwardedOnce() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(new IdempotencyProps());
+        ResponseEntity<byte[]> created = ResponseEntity.status(HttpStatus.CREATED).body(bytes("{\"id\":1}"));
+
+        List<IdempotencyStore.Result> results = runDuplicates(store, () -> {
+            awaitDuplicates();
+            return created;
+        });
+
+        assertEquals(1, calls.get());
+        assertEquals(Map.of(IdempotencyStore.Outcome.ORIGINAL, 1L, IdempotencyStore.Outcome.REPLAYED, DUPLICATES - 1L), outcomes(results));
+        results.forEach(result -> assertSame(created, result.response()));
+        assertEquals(0, store.getInFlightCount());
+        assertEquals(1, store.getStoredCount());
+
+        // A retry after completion is answered from the store
+        IdempotencyStore.Result retry = store.execute(KEY, FINGERPRINT, this::unexpectedCall);
+        assertEquals(IdempotencyStore.Outcome.REPLAYED, retry.outcome());
+        assertSame(created, retry.response());
+    }
+
+    @Test
+    void failedOriginalHandsOverToOneDuplicate() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(new IdempotencyProps());
+        ResponseEntity<byte[]> created = ResponseEntity.status(HttpStatus.CREATED).body(bytes("{\"id\":1}"));
+        List<Throwable> failures = new ArrayList<>();
+
+        List<IdempotencyStore.Result> results = runDuplicates(store, () -> {
+            if (calls.get() == 1) {
+                awaitDuplicates();
+                throw new IllegalStateException("Upstream unreachable");
+            }
+
+            return created;
+        }, failures);
+
+        assertEquals(2, calls.get());
+        assertEquals(1, failures.size());
+        assertEquals(Map.of(IdempotencyStore.Outcome.ORIGINAL, 1L, IdempotencyStore.Outcome.REPLAYED, DUPLICATES - 2L), outcomes(results));
+        results.forEach(result -> assertSame(created, result.response()));
+    }
+
+    @Test
+    void serverErrorsAreSharedButNotStored() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(new IdempotencyProps());
+        ResponseEntity<byte[]> unavailable = ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(bytes("{}"));
+
+        List<IdempotencyStore.Result> results = runDuplicates(store, () -> {
+            awaitDuplicates();
+            return unavailable;
+        });
+
+        // Duplicates that joined the original share its response, later ones are forwarded again
+        assertTrue(calls.get() >= 1);
+        assertEquals(calls.get(), outcomes(results).get(IdempotencyStore.Outcome.ORIGINAL));
+        assertEquals(0, store.getStoredCount());
+        assertEquals(IdempotencyStore.Outcome.ORIGINAL, store.execute(KEY, FINGERPRINT, () -> unavailable).outcome());
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRejectedWhileInFlightAndAfter() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(new IdempotencyProps());
+        String otherFingerprint = IdempotencyStore.fingerprint("POST", "/api/p/orders", bytes("{\"item\":2}"));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<IdempotencyStore.Result> original = executor.submit(() -> store.execute(KEY, FINGERPRINT, () -> {
+            started.countDown();
+            await(release);
+            return ResponseEntity.ok(bytes("{}"));
+        }));
+
+        started.await(5, TimeUnit.SECONDS);
+        IdempotencyStore.Result inFlight = store.execute(KEY, otherFingerprint, this::unexpectedCall);
+        release.countDown();
+
+        assertEquals(IdempotencyStore.Outcome.MISMATCH, inFlight.outcome());
+        assertNull(inFlight.response());
+        assertEquals(IdempotencyStore.Outcome.ORIGINAL, original.get(5, TimeUnit.SECONDS).outcome());
+        assertEquals(IdempotencyStore.Outcome.MISMATCH, store.execute(KEY, otherFingerprint, this::unexpectedCall).outcome());
+        assertEquals(2, store.getMismatchCount());
+    }
+
+    @Test
+    void duplicateGivesUpAfterMaxWait() throws Exception {
+        IdempotencyProps props = new IdempotencyProps();
+        props.setMaxWait(50);
+        IdempotencyStore store = new IdempotencyStore(props);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<IdempotencyStore.Result> original = executor.submit(() -> store.execute(KEY, FINGERPRINT, () -> {
+            started.countDown();
+            await(release);
+            return ResponseEntity.ok(bytes("{}"));
+        }));
+
+        started.await(5, TimeUnit.SECONDS);
+        IdempotencyStore.Result duplicate = store.execute(KEY, FINGERPRINT, this::unexpectedCall);
+        release.countDown();
+
+        assertEquals(IdempotencyStore.Outcome.IN_PROGRESS, duplicate.outcome());
+        assertEquals(IdempotencyStore.Outcome.ORIGINAL, original.get(5, TimeUnit.SECONDS).outcome());
+        assertEquals(1, store.getInProgressCount());
+    }
+
+    @Test
+    void callersWithTheSameKeyDoNotShareAReplay() {
+        IdempotencyStore store = new IdempotencyStore(new IdempotencyProps());
+        String alice = ProxyResponseCache.resolvePrincipal(Map.of(HttpHeaders.AUTHORIZATION, "Bearer alice")::get);
+        String bob = ProxyResponseCache.resolvePrincipal(Map.of(HttpHeaders.AUTHORIZATION, "Bearer bob")::get);
+        String aliceKey = store.resolveKey("POST", "/api/p/orders", "order-1", alice);
+        String bobKey = store.resolveKey("POST", "/api/p/orders", "order-1", bob);
+        String anonymousKey = store.resolveKey("POST", "/api/p/orders", "order-1", null);
+        ResponseEntity<byte[]> aliceOrder = ResponseEntity.status(HttpStatus.CREATED).body(bytes("{\"id\":1}"));
+        ResponseEntity<byte[]> bobOrder = ResponseEntity.status(HttpStatus.CREATED).body(bytes("{\"id\":2}"));
+
+        assertNull(ProxyResponseCache.resolvePrincipal(Map.<String, String>of()::get));
+        assertEquals(3, Set.of(aliceKey, bobKey, anonymousKey).size());
+
+        IdempotencyStore.Result aliceResult = store.execute(aliceKey, FINGERPRINT, () -> aliceOrder);
+        IdempotencyStore.Result bobResult = store.execute(bobKey, FINGERPRINT, () -> bobOrder);
+        IdempotencyStore.Result aliceRetry = store.execute(aliceKey, FINGERPRINT, this::unexpectedCall);
+
+        assertEquals(IdempotencyStore.Outcome.ORIGINAL, aliceResult.outcome());
+        assertEquals(IdempotencyStore.Outcome.ORIGINAL, bobResult.outcome());
+        assertSame(bobOrder, bobResult.response());
+        assertEquals(IdempotencyStore.Outcome.REPLAYED, aliceRetry.outcome());
+        assertSame(aliceOrder, aliceRetry.response());
+        assertEquals(IdempotencyStore.Outcome.ORIGINAL, store.execute(anonymousKey, FINGERPRINT, () -> bobOrder).outcome());
+    }
+
+    private List<IdempotencyStore.Result> runDuplicates(IdempotencyStore store,
+                                                        Supplier<ResponseEntity<byte[]>> upstream) throws Exception {
+        List<Throwable> failures = new ArrayList<>();
+        List<IdempotencyStore.Result> results = runDuplicates(store, upstream, failures);
+        assertEquals(List.of(), failures);
+        return results;
+    }
+
+    private List<IdempotencyStore.Result> runDuplicates(IdempotencyStore store,
+                                                        Supplier<ResponseEntity<byte[]>> upstream,
+                                                        List<Throwable> failures) throws Exception {
+        List<Future<IdempotencyStore.Result>> futures = new ArrayList<>();
+
+        for (int i = 0; i < DUPLICATES; i++) {
+            futures.add(executor.submit(() -> {
+                arrived.countDown();
+                return store.execute(KEY, FINGERPRINT, () -> {
+                    calls.incrementAndGet();
+                    return upstream.get();
+                });
+            }));
+        }
+
+        List<IdempotencyStore.Result> results = new ArrayList<>();
+
+        for (Future<IdempotencyStore.Result> future : futures) {
+            try {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                failures.add(e.getCause());
+            }
+        }
+
+        return results;
+    }
+
+    // The original completes once every duplicate was submitted and had time to join it
+    private void awaitDuplicates() {
+        await(arrived);
+
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ResponseEntity<byte[]> unexpectedCall() {
+        throw new AssertionError("Duplicate forwarded to the upstream");
+    }
+
+    private static Map<IdempotencyStore.Outcome, Long> outcomes(List<IdempotencyStore.Result> results) {
+        return results.stream().collect(Collectors.groupingBy(IdempotencyStore.Result::outcome, Collectors.counting()));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,156 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.constants.ActivateStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapCachedBodyTest {
+    private static final int SLAB_SIZE = 1024;
+    private static final int BODY_SIZE = 2 * SLAB_SIZE; // Two slabs per body
+
+    @Test
+    void allocationsBeyondTheBudgetAreRefused() {
+        OffHeapSlabAllocator allocator = new OffHeapSlabAllocator(4 * SLAB_SIZE, SLAB_SIZE);
+
+        assertNull(allocator.acquire(5L * SLAB_SIZE));
+        assertNull(OffHeapCachedBody.copyOf(allocator, new byte[5 * SLAB_SIZE]));
+        assertEquals(0, allocator.getUsedSlabCount());
+
+        OffHeapCachedBody first = OffHeapCachedBody.copyOf(allocator, body('a'));
+        OffHeapCachedBody second = OffHeapCachedBody.copyOf(allocator, body('b'));
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(OffHeapCachedBody.copyOf(allocator, new byte[1]));
+        assertEquals(allocator.getMaxSizeBytes(), allocator.getUsedBytes());
+
+        first.release();
+
+        assertNotNull(allocator.acquire(1));
+        assertEquals(3, allocator.getUsedSlabCount());
+    }
+
+    @Test
+    void releasedSlabsAreReused() {
+        OffHeapSlabAllocator allocator = new OffHeapSlabAllocator(4 * SLAB_SIZE, SLAB_SIZE);
+
+        for (int i = 0; i < 10; i++) {
+            OffHeapCachedBody body = OffHeapCachedBody.copyOf(allocator, body((char) ('a' + i)));
+            assertArrayEquals(body((char) ('a' + i)), body.toByteArray());
+            body.release();
+        }
+
+        assertEquals(2, allocator.getCreatedSlabCount());
+        assertEquals(0, allocator.getUsedSlabCount());
+    }
+
+    @Test
+    void slabsAreFreedOnceByTheLastReference() {
+        OffHeapSlabAllocator allocator = new OffHeapSlabAllocator(4 * SLAB_SIZE, SLAB_SIZE);
+        OffHeapCachedBody body = OffHeapCachedBody.copyOf(allocator, body('a'));
+
+        assertTrue(body.retain());
+        body.release();
+        assertEquals(2, allocator.getUsedSlabCount());
+
+        body.release();
+        assertEquals(0, allocator.getUsedSlabCount());
+        assertFalse(body.retain());
+        assertThrows(IllegalStateException.class, body::release);
+        assertEquals(0, allocator.getUsedSlabCount());
+
+        // Slabs freed twice would be handed out to two bodies at once
+        ByteBuffer[] first = allocator.acquire(2L * SLAB_SIZE);
+        ByteBuffer[] second = allocator.acquire(2L * SLAB_SIZE);
+        Set<ByteBuffer> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinct.addAll(Arrays.asList(first));
+        distinct.addAll(Arrays.asList(second));
+
+        assertEquals(4, distinct.size());
+        assertNull(allocator.acquire(1));
+    }
+
+    @Test
+    void bodiesCollectedWithoutReleaseGiveTheirSlabsBack() throws InterruptedException {
+        OffHeapSlabAllocator allocator = new OffHeapSlabAllocator(4 * SLAB_SIZE, SLAB_SIZE);
+        assertNotNull(OffHeapCachedBody.copyOf(allocator, body('a')));
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (allocator.getLeakCount() == 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, allocator.getLeakCount());
+        assertEquals(0, allocator.getUsedSlabCount());
+    }
+
+    @Test
+    void evictedBodyStaysReadableUntilItsReaderReleasesIt() throws Exception {
+        ResponseCacheProps props = new ResponseCacheProps();
+        props.setMaxEntrySizeBytes(SLAB_SIZE); // Every body goes off-heap
+        props.getOffHeap().setActivate(ActivateStatus.ENABLED);
+        props.getOffHeap().setSlabSizeBytes(SLAB_SIZE);
+        props.getOffHeap().setMaxSizeBytes(BODY_SIZE); // Room for one body
+        ProxyResponseCache cache = new ProxyResponseCache(props);
+        OffHeapSlabAllocator allocator = cache.getOffHeapAllocator();
+
+        cache.put(key(0), response(body('a')));
+        CachedResponse reader = cache.get(key(0));
+        // The first body is evicted to make room, its slabs stay with the reader so the second one is refused
+        cache.put(key(1), response(body('b')));
+
+        assertNull(cache.get(key(0)));
+        assertNull(cache.get(key(1)));
+        assertEquals(2, allocator.getUsedSlabCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reader.getBody().writeTo(out);
+        assertArrayEquals(body('a'), out.toByteArray());
+
+        reader.getBody().release();
+        assertEquals(0, allocator.getUsedSlabCount());
+
+        cache.put(key(1), response(body('b')));
+        CachedResponse stored = cache.get(key(1));
+        assertArrayEquals(body('b'), stored.getBody().toByteArray());
+        stored.getBody().release();
+        assertEquals(2, allocator.getUsedSlabCount());
+        assertEquals(2, allocator.getCreatedSlabCount());
+        assertEquals(0, allocator.getLeakCount());
+        cache.close();
+    }
+
+    private static ResponseCacheKey key(int i) {
+        return new ResponseCacheKey("GET", "http://upstream.test/items/" + i, "/items/" + i, List.of());
+    }
+
+    private static ResponseEntity<byte[]> response(byte[] body) {
+        return ResponseEntity.status(HttpStatus.OK).header(HttpHeaders.CACHE_CONTROL, "public, max-age=60").body(body);
+    }
+
+    private static byte[] body(char fill) {
+        byte[] body = new byte[BODY_SIZE];
+        Arrays.fill(body, (byte) fill);
+        return body;
+    }
+}
@@ -0,0 +1,40 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.support.ProxyTestSupport;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PeerResponseCacheTest {
+
+    @Test
+    void onlyTheSharedTokenIsAccepted() {
+        try (PeerResponseCache peerCache = peerCache("s3cret")) {
+            assertTrue(peerCache.isValidToken("s3cret"));
+            assertFalse(peerCache.isValidToken("other"));
+            assertFalse(peerCache.isValidToken(null));
+            assertFalse(peerCache.isValidToken(""));
+        }
+    }
+
+    @Test
+    void everyCallIsRejectedWithoutAToken() {
+        try (PeerResponseCache peerCache = peerCache("")) {
+            assertFalse(peerCache.isValidToken(""));
+            assertFalse(peerCache.isValidToken(null));
+            assertFalse(peerCache.isValidToken("anything"));
+        }
+    }
+
+    private static PeerResponseCache peerCache(String token) {
+        ResponseCacheProps.PeerConfig config = new ResponseCacheProps.PeerConfig();
+        config.setSelf("http://node-a:8080");
+        config.setNodes(List.of("http://node-b:8080"));
+        config.setToken(token);
+        return new PeerResponseCache(config, ProxyTestSupport.jsonCodec());
+    }
+}
@@ -0,0 +1,116 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProxyResponseCacheTest {
+    private static final String URL = "http://upstream.test/products/1";
+    private static final byte[] BODY = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+    private final ProxyResponseCache cache = new ProxyResponseCache(new ResponseCacheProps());
+
+    @Test
+    void credentialedRequestsGetADistinctPrincipal() {
+        ResponseCacheKey anonymous = cache.buildKey(request(Map.of()));
+        ResponseCacheKey alice = cache.buildKey(request(Map.of(HttpHeaders.AUTHORIZATION, "Bearer alice")));
+        ResponseCacheKey bob = cache.buildKey(request(Map.of(HttpHeaders.COOKIE, "session=bob")));
+
+        assertFalse(anonymous.isCredentialed());
+        assertTrue(alice.isCredentialed());
+        assertNotEquals(alice.getPrincipal(), bob.getPrincipal());
+        assertFalse(alice.getPrincipal().contains("alice"));
+        // The stored response is shared, the principal is not part of the key identity
+        assertEquals(anonymous, alice);
+    }
+
+    @Test
+    void privateByDefaultResponsesToCredentialedRequestsAreNotStored() {
+        ResponseCacheKey alice = cache.buildKey(request(Map.of(HttpHeaders.AUTHORIZATION, "Bearer alice")));
+
+        cache.put(alice, response("max-age=60"));
+
+        assertNull(cache.get(cache.buildKey(request(Map.of()))));
+        assertNull(cache.get(alice));
+    }
+
+    @Test
+    void shareableResponsesToCredentialedRequestsAreStored() {
+        ResponseCacheKey alice = cache.buildKey(request(Map.of(HttpHeaders.AUTHORIZATION, "Bearer alice")));
+        ResponseCacheKey bob = cache.buildKey(request(Map.of(HttpHeaders.AUTHORIZATION, "Bearer bob")));
+
+        cache.put(alice, response("public, max-age=60"));
+        CachedResponse cachedResponse = cache.get(bob);
+
+        assertNotNull(cachedResponse);
+        cachedResponse.getBody().release();
+    }
+
+    @Test
+    void credentialedRequestsMissResponsesStoredForAnonymousRequests() {
+        ResponseCacheKey anonymous = cache.buildKey(request(Map.of()));
+        ResponseCacheKey alice = cache.buildKey(request(Map.of(HttpHeaders.AUTHORIZATION, "Bearer alice")));
+
+        cache.put(anonymous, response("max-age=60"));
+
+        assertNull(cache.get(alice));
+        CachedResponse cachedResponse = cache.get(anonymous);
+        assertNotNull(cachedResponse);
+        cachedResponse.getBody().release();
+    }
+
+    @Test
+    void responsesSettingCookiesAreNotStored() {
+        ResponseCacheKey anonymous = cache.buildKey(request(Map.of()));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("public, max-age=60");
+        headers.add(HttpHeaders.SET_COOKIE, "session=abc");
+
+        cache.put(anonymous, ResponseEntity.status(HttpStatus.OK).headers(headers).body(BODY));
+
+        assertNull(cache.get(anonymous));
+    }
+
+    @Test
+    void cookiesOfA304AreNotMergedIntoTheStoredResponse() {
+        ResponseCacheKey anonymous = cache.buildKey(request(Map.of()));
+        cache.put(anonymous, response("max-age=60"));
+        CachedResponse stored = cache.lookup(anonymous);
+        HttpHeaders notModified = new HttpHeaders();
+        notModified.setCacheControl("max-age=120");
+        notModified.add(HttpHeaders.SET_COOKIE, "session=abc");
+
+        cache.revalidated(anonymous, stored, notModified);
+        stored.getBody().release();
+        CachedResponse revalidated = cache.get(anonymous);
+
+        assertNotNull(revalidated);
+        assertFalse(revalidated.getHeaders().containsKey(HttpHeaders.SET_COOKIE));
+        assertEquals("max-age=120", revalidated.getHeaders().getCacheControl());
+        revalidated.getBody().release();
+    }
+
+    private static ProxyAPIRequest request(Map<String, String> headers) {
+        ProxyAPIRequest request = new ProxyAPIRequest();
+        request.setMethod("GET");
+        request.setUrl(URL);
+        request.setHeaders(headers);
+        return request;
+    }
+
+    private static ResponseEntity<byte[]> response(String cacheControl) {
+        return ResponseEntity.status(HttpStatus.OK).header(HttpHeaders.CACHE_CONTROL, cacheControl).body(BODY);
+    }
+}
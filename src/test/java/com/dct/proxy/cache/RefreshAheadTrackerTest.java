@@ -0,0 +1,43 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RefreshAheadTrackerTest {
+    private final RefreshAheadTracker tracker = new RefreshAheadTracker(new ResponseCacheProps.RefreshAheadConfig());
+
+    @AfterEach
+    void tearDown() {
+        tracker.close();
+    }
+
+    @Test
+    void hitsOfAnonymousRequestsAreTracked() {
+        ResponseCacheKey key = new ResponseCacheKey("GET", "http://upstream.test/a", "/a", List.of());
+
+        tracker.recordHit(key, new ProxyAPIRequest(), cachedResponse());
+
+        assertEquals(1, tracker.getTrackedKeyCount());
+    }
+
+    @Test
+    void requestsCarryingCredentialsAreNotKeptForRefresh() {
+        ResponseCacheKey key = new ResponseCacheKey("GET", "http://upstream.test/a", "/a", List.of(), "principal");
+
+        tracker.recordHit(key, new ProxyAPIRequest(), cachedResponse());
+
+        assertEquals(0, tracker.getTrackedKeyCount());
+    }
+
+    private static CachedResponse cachedResponse() {
+        long now = System.currentTimeMillis();
+        return new CachedResponse(200, new HttpHeaders(), new HeapCachedBody(new byte[] {1}), now, now + 60_000);
+    }
+}
@@ -0,0 +1,155 @@
+package com.dct.proxy.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+    private static final ResponseCacheKey KEY = new ResponseCacheKey("GET", "http://upstream.test/a", "/a", List.of());
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final RequestCoalescer coalescer = new RequestCoalescer(5000);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void followersShareTheResponseOfTheLeader() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ResponseEntity<byte[]> response = ResponseEntity.ok(new byte[] {1});
+        Supplier<ResponseEntity<byte[]>> upstreamCall = () -> {
+            calls.incrementAndGet();
+            await(release);
+            return response;
+        };
+
+        Future<ResponseEntity<byte[]>> leader = executor.submit(() -> coalescer.execute(KEY, upstreamCall));
+        awaitInFlight();
+        Future<ResponseEntity<byte[]>> follower = submitFollower(KEY, upstreamCall);
+        release.countDown();
+
+        assertSame(response, leader.get(5, TimeUnit.SECONDS));
+        assertSame(response, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, coalescer.getCollapsedCalls());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    void followerIsPromotedWhenTheLeaderFails() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ResponseEntity<byte[]> response = ResponseEntity.ok(new byte[] {1});
+
+        Future<ResponseEntity<byte[]>> leader = executor.submit(() -> coalescer.execute(KEY, () -> {
+            await(release);
+            throw new IllegalStateException("upstream failed");
+        }));
+        awaitInFlight();
+        Future<ResponseEntity<byte[]>> follower = submitFollower(KEY, () -> response);
+        release.countDown();
+
+        Exception failure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertSame(response, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, coalescer.getPromotions());
+        assertEquals(2, coalescer.getLeaderCalls());
+    }
+
+    @Test
+    void requestsOfDifferentPrincipalsAreNotCollapsed() throws Exception {
+        ResponseCacheKey alice = new ResponseCacheKey("GET", "http://upstream.test/a", "/a", List.of(), "alice");
+        ResponseCacheKey bob = new ResponseCacheKey("GET", "http://upstream.test/a", "/a", List.of(), "bob");
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<ResponseEntity<byte[]>> upstreamCall = () -> {
+            calls.incrementAndGet();
+            await(release);
+            return ResponseEntity.ok(new byte[] {1});
+        };
+
+        Future<ResponseEntity<byte[]>> first = executor.submit(() -> coalescer.execute(alice, upstreamCall));
+        Future<ResponseEntity<byte[]>> second = executor.submit(() -> coalescer.execute(bob, upstreamCall));
+
+        while (coalescer.getInFlightCount() < 2) {
+            Thread.onSpinWait();
+        }
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, calls.get());
+        assertEquals(0, coalescer.getCollapsedCalls());
+    }
+
+    @Test
+    void responsesSettingCookiesAreNotHandedToFollowers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ResponseEntity<byte[]> leaderResponse = ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, "session=leader")
+                .body(new byte[] {1});
+        ResponseEntity<byte[]> followerResponse = ResponseEntity.ok(new byte[] {2});
+
+        Future<ResponseEntity<byte[]>> leader = executor.submit(() -> coalescer.execute(KEY, () -> {
+            await(release);
+            return leaderResponse;
+        }));
+        awaitInFlight();
+        Future<ResponseEntity<byte[]>> follower = submitFollower(KEY, () -> followerResponse);
+        release.countDown();
+
+        assertSame(leaderResponse, leader.get(5, TimeUnit.SECONDS));
+        assertSame(followerResponse, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(0, coalescer.getCollapsedCalls());
+    }
+
+    private void awaitInFlight() {
+        while (coalescer.getInFlightCount() == 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    // Returns once the follower waits for the flight of the leader
+    private Future<ResponseEntity<byte[]>> submitFollower(ResponseCacheKey key,
+                                                         Supplier<ResponseEntity<byte[]>> upstreamCall) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Thread[] thread = new Thread[1];
+        Future<ResponseEntity<byte[]>> follower = executor.submit(() -> {
+            thread[0] = Thread.currentThread();
+            started.countDown();
+            return coalescer.execute(key, upstreamCall);
+        });
+        started.await();
+
+        while (thread[0].getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+
+        return follower;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
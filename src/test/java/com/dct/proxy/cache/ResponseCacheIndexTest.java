@@ -0,0 +1,93 @@
+package com.dct.proxy.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseCacheIndexTest {
+
+    @Test
+    void pathPrefixMatchesWholeSegmentsOnly() {
+        ResponseCacheIndex index = new ResponseCacheIndex();
+        ResponseCacheKey product = key("/products/12");
+        ResponseCacheKey reviews = key("/products/12/reviews");
+        ResponseCacheKey otherProduct = key("/products/123");
+        ResponseCacheKey otherReviews = key("/products/123/reviews");
+        List.of(product, reviews, otherProduct, otherReviews, key("/products"), key("/productsearch")).forEach(k -> index.add(k, List.of()));
+
+        assertEquals(Set.of(product, reviews), Set.copyOf(index.findByPathPrefix("/products/12")));
+        assertEquals(Set.of(otherProduct, otherReviews), Set.copyOf(index.findByPathPrefix("/products/123")));
+        assertEquals(List.of(reviews), index.findByPathPrefix("/products/12/reviews"));
+        assertTrue(index.findByPathPrefix("/products/1").isEmpty());
+    }
+
+    @Test
+    void pathPrefixEndingWithASlashMatchesEverythingBelowIt() {
+        ResponseCacheIndex index = new ResponseCacheIndex();
+        ResponseCacheKey product = key("/products/12");
+        ResponseCacheKey otherProduct = key("/products/123");
+        ResponseCacheKey reviews = key("/products/123/reviews");
+        List.of(product, otherProduct, reviews, key("/products"), key("/productsearch")).forEach(k -> index.add(k, List.of()));
+
+        // Below the prefix only: /products itself and /productsearch are left
+        assertEquals(Set.of(product, otherProduct, reviews), Set.copyOf(index.findByPathPrefix("/products/")));
+        assertEquals(List.of(reviews), index.findByPathPrefix("/products/123/"));
+        assertTrue(index.findByPathPrefix("/products/12/").isEmpty());
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void tagsAreReplacedByTheNextVersionOfAKey() {
+        ResponseCacheIndex index = new ResponseCacheIndex();
+        ResponseCacheKey product = key("/products/12");
+        ResponseCacheKey otherProduct = key("/products/123");
+
+        index.add(product, List.of("product-12", "catalog"));
+        index.add(otherProduct, List.of("catalog"));
+
+        assertEquals(List.of(product), index.findByTag("product-12"));
+        assertEquals(Set.of(product, otherProduct), Set.copyOf(index.findByTag("catalog")));
+
+        index.add(product, List.of("product-12"));
+
+        assertEquals(List.of(otherProduct), index.findByTag("catalog"));
+        assertEquals(2, index.size());
+
+        index.remove(otherProduct);
+
+        assertTrue(index.findByTag("catalog").isEmpty());
+        assertTrue(index.findByTag("unknown").isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void urlMatchesEveryVariantOfThatUrlOnly() {
+        ResponseCacheIndex index = new ResponseCacheIndex();
+        ResponseCacheKey get = new ResponseCacheKey("GET", url("/products/12"), "/products/12", List.of("vi"));
+        ResponseCacheKey english = new ResponseCacheKey("GET", url("/products/12"), "/products/12", List.of("en"));
+        ResponseCacheKey head = new ResponseCacheKey("HEAD", url("/products/12"), "/products/12", List.of("vi"));
+        ResponseCacheKey page = new ResponseCacheKey("GET", url("/products/12?page=2"), "/products/12", List.of("vi"));
+        List.of(get, english, head, page).forEach(k -> index.add(k, List.of()));
+
+        assertEquals(Set.of(get, english, head), Set.copyOf(index.findByUrl("/products/12", url("/products/12"))));
+        assertEquals(List.of(page), index.findByUrl("/products/12", url("/products/12?page=2")));
+        assertTrue(index.findByUrl("/products/123", url("/products/123")).isEmpty());
+
+        index.removeIfAbsent(page, k -> true);
+        assertEquals(4, index.size());
+        index.removeIfAbsent(page, k -> false);
+        assertEquals(3, index.size());
+    }
+
+    private static ResponseCacheKey key(String path) {
+        return new ResponseCacheKey("GET", url(path), path, List.of());
+    }
+
+    private static String url(String pathAndQuery) {
+        return "http://upstream.test" + pathAndQuery;
+    }
+}
@@ -0,0 +1,264 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.constants.ActivateStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseCachePolicyTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void sharedMaxAgeWinsOverMaxAge() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheProps());
+
+        assertEquals(60_000, policy.resolveTtl("/a", 200, headers("max-age=10, s-maxage=60"), NOW));
+    }
+
+    @Test
+    void ageIsSubtractedFromTheLifetime() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheProps());
+        HttpHeaders headers = headers("max-age=60");
+        headers.set(HttpHeaders.AGE, "20");
+
+        assertEquals(40_000, policy.resolveTtl("/a", 200, headers, NOW));
+    }
+
+    @Test
+    void expiresIsRelativeToTheUpstreamDate() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheProps());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setDate(NOW - 5_000);
+        headers.setExpires(NOW + 25_000);
+
+        assertEquals(30_000, policy.resolveTtl("/a", 200, headers, NOW));
+    }
+
+    @Test
+    void noStoreAndPrivateAreNeverStored() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheProps());
+
+        assertEquals(-1, policy.resolveTtl("/a", 200, headers("no-store"), NOW));
+        assertEquals(-1, policy.resolveTtl("/a", 200, headers("private, max-age=60"), NOW));
+        assertEquals(0, policy.resolveTtl("/a", 200, headers("no-cache"), NOW));
+    }
+
+    @Test
+    void routeTtlOverridesTheUpstreamLifetime() {
+        ResponseCacheProps props = new ResponseCacheProps();
+        ResponseCacheProps.RouteConfig route = new ResponseCacheProps.RouteConfig();
+        route.setPattern("/products/**");
+        route.setTtl(120_000L);
+        props.setRoutes(List.of(route));
+        ResponseCachePolicy policy = new ResponseCachePolicy(props);
+
+        assertEquals(120_000, policy.resolveTtl("/products/1", 200, headers("max-age=5"), NOW));
+        assertEquals(5_000, policy.resolveTtl("/orders/1", 200, headers("max-age=5"), NOW));
+    }
+
+    @Test
+    void varyOutsideTheKeyIsNotStored() {
+        ResponseCacheProps props = new ResponseCacheProps();
+        props.setVaryHeaders(List.of("Accept"));
+        ResponseCachePolicy policy = new ResponseCachePolicy(props);
+        HttpHeaders headers = headers("max-age=60");
+        headers.setVary(List.of("Accept-Language"));
+
+        assertEquals(-1, policy.resolveTtl("/a", 200, headers, NOW));
+    }
+
+    @Test
+    void responsesSettingCookiesAreNotShareable() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheProps());
+        HttpHeaders headers = headers("public, max-age=60");
+        headers.add(HttpHeaders.SET_COOKIE, "session=abc");
+
+        assertFalse(policy.isShareable(headers, false));
+        assertFalse(policy.isShareable(headers, true));
+    }
+
+    @Test
+    void credentialedRequestsNeedAnExplicitlyShareableResponse() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheProps());
+
+        assertTrue(policy.isShareable(headers("max-age=60"), false));
+        assertFalse(policy.isShareable(headers("max-age=60"), true));
+        assertTrue(policy.isShareable(headers("public, max-age=60"), true));
+        assertTrue(policy.isShareable(headers("s-maxage=60"), true));
+        assertTrue(policy.isShareable(headers("max-age=60, must-revalidate"), true));
+    }
+
+    @Test
+    void defaultStaleWindowsOnlyApplyToResponsesThatWereFresh() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(staleProps());
+
+        assertEquals(NOW + 60_000 + 300_000, policy.resolveRetainUntil(200, headers("max-age=60"), NOW, NOW + 60_000));
+        assertEquals(NOW, policy.resolveRetainUntil(200, new HttpHeaders(), NOW, NOW));
+        assertEquals(NOW, policy.resolveRetainUntil(200, headers("max-age=0"), NOW, NOW));
+    }
+
+    @Test
+    void explicitStaleDirectivesApplyWithoutFreshness() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(staleProps());
+        HttpHeaders headers = headers("max-age=0, stale-while-revalidate=10, stale-if-error=20");
+
+        assertEquals(NOW + 20_000, policy.resolveRetainUntil(200, headers, NOW, NOW));
+        CachedResponse stale = cachedResponse(headers, NOW, NOW);
+        assertTrue(policy.canServeStaleWhileRevalidate(stale, NOW + 9_000));
+        assertFalse(policy.canServeStaleWhileRevalidate(stale, NOW + 11_000));
+        assertTrue(policy.canServeStaleIfError(stale, NOW + 19_000));
+        assertFalse(policy.canServeStaleIfError(stale, NOW + 21_000));
+    }
+
+    @Test
+    void responsesWithoutFreshnessAreNotServedStaleByDefault() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(staleProps());
+        CachedResponse withoutFreshness = cachedResponse(new HttpHeaders(), NOW, NOW);
+        CachedResponse wasFresh = cachedResponse(headers("max-age=60"), NOW, NOW + 60_000);
+
+        assertFalse(policy.canServeStaleWhileRevalidate(withoutFreshness, NOW + 1));
+        assertFalse(policy.canServeStaleIfError(withoutFreshness, NOW + 1));
+        assertTrue(policy.canServeStaleWhileRevalidate(wasFresh, NOW + 60_000 + 29_000));
+        assertTrue(policy.canServeStaleIfError(wasFresh, NOW + 60_000 + 299_000));
+    }
+
+    @Test
+    void mustRevalidateIsNeverServedStale() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(staleProps());
+        CachedResponse stale = cachedResponse(headers("max-age=60, must-revalidate, stale-if-error=60"), NOW, NOW + 60_000);
+
+        assertFalse(policy.canServeStaleWhileRevalidate(stale, NOW + 60_001));
+        assertFalse(policy.canServeStaleIfError(stale, NOW + 60_001));
+    }
+
+    @Test
+    void responsesWithAValidatorAreRetainedForRevalidation() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(revalidationProps());
+        HttpHeaders headers = headers("max-age=60");
+        headers.setETag("\"v1\"");
+
+        assertEquals(NOW + 60_000 + 600_000, policy.resolveRetainUntil(200, headers, NOW, NOW + 60_000));
+        assertEquals(NOW + 60_000, policy.resolveRetainUntil(200, headers("max-age=60"), NOW, NOW + 60_000));
+    }
+
+    @Test
+    void ifNoneMatchUsesWeakComparison() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(revalidationProps());
+        HttpHeaders headers = headers("max-age=60");
+        headers.setETag("W/\"v1\"");
+        CachedResponse cachedResponse = cachedResponse(headers, NOW, NOW + 60_000);
+
+        assertTrue(policy.isNotModified(cachedResponse, "\"v0\", \"v1\"", null));
+        assertTrue(policy.isNotModified(cachedResponse, "*", null));
+        assertFalse(policy.isNotModified(cachedResponse, "\"v2\"", null));
+        // If-None-Match takes precedence over If-Modified-Since
+        assertFalse(policy.isNotModified(cachedResponse, "\"v2\"", "Tue, 15 Nov 2050 08:12:31 GMT"));
+    }
+
+    @Test
+    void ifModifiedSinceComparesWithLastModified() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(revalidationProps());
+        HttpHeaders headers = headers("max-age=60");
+        headers.setLastModified(NOW);
+        CachedResponse cachedResponse = cachedResponse(headers, NOW, NOW + 60_000);
+        HttpHeaders conditions = new HttpHeaders();
+
+        conditions.setIfModifiedSince(NOW + 1_000);
+        assertTrue(policy.isNotModified(cachedResponse, null, conditions.getFirst(HttpHeaders.IF_MODIFIED_SINCE)));
+        conditions.setIfModifiedSince(NOW - 1_000);
+        assertFalse(policy.isNotModified(cachedResponse, null, conditions.getFirst(HttpHeaders.IF_MODIFIED_SINCE)));
+    }
+
+    @Test
+    void conditionalRequestsAreNotEvaluatedWithoutRevalidation() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheProps());
+        HttpHeaders headers = headers("max-age=60");
+        headers.setETag("\"v1\"");
+
+        assertFalse(policy.isNotModified(cachedResponse(headers, NOW, NOW + 60_000), "\"v1\"", null));
+    }
+
+    @Test
+    void negativeStatusesAreStoredForTheirTtl() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(negativeProps());
+
+        assertEquals(10_000, policy.resolveTtl("/a", 404, new HttpHeaders(), NOW));
+        assertEquals(60_000, policy.resolveTtl("/a", 410, headers("max-age=600"), NOW));
+        assertEquals(5_000, policy.resolveTtl("/a", 503, new HttpHeaders(), NOW));
+        assertEquals(-1, policy.resolveTtl("/a", 500, new HttpHeaders(), NOW));
+        assertEquals(-1, policy.resolveTtl("/a", 404, headers("no-store"), NOW));
+        assertTrue(policy.isNegative(cachedResponse(404)));
+        assertFalse(policy.isNegative(cachedResponse(200)));
+    }
+
+    @Test
+    void negativeCachingIsOffUnlessActivated() {
+        ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheProps());
+
+        assertFalse(policy.isNegativeStatus(404));
+        assertEquals(-1, policy.resolveTtl("/a", 404, new HttpHeaders(), NOW));
+    }
+
+    @Test
+    void firstMatchingRouteOverridesTheStatusTtls() {
+        ResponseCacheProps props = negativeProps();
+        ResponseCacheProps.NegativeRouteConfig search = new ResponseCacheProps.NegativeRouteConfig();
+        search.setPattern("/products/search/**");
+        search.setStatuses(Map.of(404, 0L, 500, 2_000L));
+        ResponseCacheProps.NegativeRouteConfig products = new ResponseCacheProps.NegativeRouteConfig();
+        products.setPattern("/products/**");
+        products.setStatuses(Map.of(404, 120_000L));
+        props.getNegative().setRoutes(List.of(search, products));
+        ResponseCachePolicy policy = new ResponseCachePolicy(props);
+
+        assertEquals(120_000, policy.resolveTtl("/products/1", 404, new HttpHeaders(), NOW));
+        // 0 disables negative caching of the status on the route
+        assertEquals(-1, policy.resolveTtl("/products/search/x", 404, new HttpHeaders(), NOW));
+        // A status configured on a route only is stored on that route only
+        assertTrue(policy.isNegativeStatus(500));
+        assertEquals(2_000, policy.resolveTtl("/products/search/x", 500, new HttpHeaders(), NOW));
+        assertEquals(-1, policy.resolveTtl("/products/1", 500, new HttpHeaders(), NOW));
+        // Statuses the route does not configure fall back to the global TTLs
+        assertEquals(60_000, policy.resolveTtl("/products/1", 410, new HttpHeaders(), NOW));
+        assertEquals(10_000, policy.resolveTtl("/orders/1", 404, new HttpHeaders(), NOW));
+    }
+
+    private static ResponseCacheProps negativeProps() {
+        ResponseCacheProps props = new ResponseCacheProps();
+        props.getNegative().setActivate(ActivateStatus.ENABLED);
+        return props;
+    }
+
+    private static ResponseCacheProps revalidationProps() {
+        ResponseCacheProps props = new ResponseCacheProps();
+        props.getRevalidation().setActivate(ActivateStatus.ENABLED);
+        return props;
+    }
+
+    private static ResponseCacheProps staleProps() {
+        ResponseCacheProps props = new ResponseCacheProps();
+        props.getStale().setActivate(ActivateStatus.ENABLED);
+        return props;
+    }
+
+    static CachedResponse cachedResponse(HttpHeaders headers, long storedAt, long expiresAt) {
+        return new CachedResponse(200, headers, new HeapCachedBody(new byte[0]), storedAt, expiresAt);
+    }
+
+    private static CachedResponse cachedResponse(int status) {
+        return new CachedResponse(status, new HttpHeaders(), new HeapCachedBody(new byte[0]), NOW, NOW + 10_000);
+    }
+
+    static HttpHeaders headers(String cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(cacheControl);
+        return headers;
+    }
+}
@@ -0,0 +1,114 @@
+package com.dct.proxy.cache;
+
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryAfterSuppressorTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void retryAfterIsReadAsSecondsOrAsAnHttpDate() {
+        HttpHeaders date = new HttpHeaders();
+        date.setDate(HttpHeaders.RETRY_AFTER, NOW + 90_000);
+
+        assertEquals(120_000, RetryAfterSuppressor.resolveRetryAfter(retryAfter(" 120 "), NOW));
+        assertEquals(90_000, RetryAfterSuppressor.resolveRetryAfter(date, NOW));
+        assertEquals(-10_000, RetryAfterSuppressor.resolveRetryAfter(dated(NOW - 10_000), NOW));
+        assertEquals(-1, RetryAfterSuppressor.resolveRetryAfter(new HttpHeaders(), NOW));
+        assertEquals(-1, RetryAfterSuppressor.resolveRetryAfter(retryAfter("soon"), NOW));
+    }
+
+    @Test
+    void routeIsSuppressedForTheAnnouncedSeconds() {
+        RetryAfterSuppressor suppressor = new RetryAfterSuppressor(new ResponseCacheProps.NegativeConfig());
+
+        suppressor.suppress("/products/1", retryAfter("30"));
+
+        assertRemaining(30_000, suppressor.getRemainingMillis("/products/1"));
+        // Without route patterns, only the exact path is suppressed
+        assertEquals(0, suppressor.getRemainingMillis("/products/2"));
+        assertEquals(1, suppressor.getSuppressedCallCount());
+    }
+
+    @Test
+    void routeIsSuppressedUntilTheAnnouncedDate() {
+        RetryAfterSuppressor suppressor = new RetryAfterSuppressor(new ResponseCacheProps.NegativeConfig());
+
+        suppressor.suppress("/products/1", dated(System.currentTimeMillis() + 60_000));
+
+        assertRemaining(60_000, suppressor.getRemainingMillis("/products/1"));
+    }
+
+    @Test
+    void suppressionIsCappedByMaxRetryAfter() {
+        ResponseCacheProps.NegativeConfig config = new ResponseCacheProps.NegativeConfig();
+        config.setMaxRetryAfter(10_000);
+        RetryAfterSuppressor suppressor = new RetryAfterSuppressor(config);
+
+        suppressor.suppress("/products/1", retryAfter("86400"));
+        suppressor.suppress("/products/2", dated(System.currentTimeMillis() + 86_400_000));
+
+        assertRemaining(10_000, suppressor.getRemainingMillis("/products/1"));
+        assertRemaining(10_000, suppressor.getRemainingMillis("/products/2"));
+    }
+
+    @Test
+    void pathsOfARoutePatternShareTheSuppression() {
+        ResponseCacheProps.NegativeConfig config = new ResponseCacheProps.NegativeConfig();
+        ResponseCacheProps.NegativeRouteConfig route = new ResponseCacheProps.NegativeRouteConfig();
+        route.setPattern("/products/**");
+        route.setStatuses(Map.of(503, 1_000L));
+        config.setRoutes(List.of(route));
+        RetryAfterSuppressor suppressor = new RetryAfterSuppressor(config);
+
+        suppressor.suppress("/products/1", retryAfter("30"));
+        // A shorter announcement does not shorten the suppression
+        suppressor.suppress("/products/2", retryAfter("5"));
+
+        assertRemaining(30_000, suppressor.getRemainingMillis("/products/3"));
+        assertEquals(0, suppressor.getRemainingMillis("/orders/1"));
+        assertEquals(1, suppressor.getSuppressedRouteCount());
+    }
+
+    @Test
+    void passedOrMissingRetryAfterDoesNotSuppress() throws InterruptedException {
+        RetryAfterSuppressor suppressor = new RetryAfterSuppressor(new ResponseCacheProps.NegativeConfig());
+
+        suppressor.suppress("/products/1", new HttpHeaders());
+        suppressor.suppress("/products/1", retryAfter("0"));
+        suppressor.suppress("/products/1", dated(System.currentTimeMillis() - 60_000));
+        assertEquals(0, suppressor.getSuppressedRouteCount());
+
+        suppressor.suppress("/products/1", retryAfter("1"));
+        Thread.sleep(1_100);
+
+        // An expired suppression is dropped on the next lookup
+        assertEquals(0, suppressor.getRemainingMillis("/products/1"));
+        assertEquals(0, suppressor.getSuppressedRouteCount());
+        assertEquals(0, suppressor.getSuppressedCallCount());
+    }
+
+    // Within the announced time, minus what elapsed since it was recorded
+    private static void assertRemaining(long expected, long remaining) {
+        assertTrue(remaining > expected - 2_000 && remaining <= expected, "Remaining " + remaining + "ms, expected " + expected + "ms");
+    }
+
+    private static HttpHeaders retryAfter(String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, value);
+        return headers;
+    }
+
+    private static HttpHeaders dated(long date) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setDate(HttpHeaders.RETRY_AFTER, date);
+        return headers;
+    }
+}
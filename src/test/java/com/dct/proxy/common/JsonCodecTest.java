@@ -0,0 +1,173 @@
+package com.dct.proxy.common;
+
+import com.dct.proxy.config.DataConverterAutoConfiguration;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.BaseResponseDTO;
+import com.dct.proxy.dto.response.RelayEnvelopeResponse;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The cached readers and writers over the application mapper, with Blackbird, against the same mapper without it
+ */
+class JsonCodecTest {
+    private final ObjectMapper objectMapper = DataConverterAutoConfiguration.buildObjectMapper();
+    private final ObjectMapper reflectionMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .setSerializationInclusion(JsonInclude.Include.NON_EMPTY)
+            .registerModule(new JavaTimeModule())
+            .registerModule(new Jdk8Module());
+    private final JsonCodec codec = new JsonCodec(objectMapper);
+
+    @Test
+    void applicationMapperUsesBlackbird() {
+        assertTrue(objectMapper.getRegisteredModuleIds().contains(new BlackbirdModule().getTypeId()));
+        assertFalse(reflectionMapper.getRegisteredModuleIds().contains(new BlackbirdModule().getTypeId()));
+    }
+
+    @Test
+    void proxyAPIRequestRoundTrip() throws IOException {
+        ProxyAPIRequest proxyAPIRequest = proxyAPIRequest();
+        proxyAPIRequest.setRawBody("{\"ignored\":true}".getBytes(StandardCharsets.UTF_8));
+
+        byte[] json = codec.writeProxyAPIRequest(proxyAPIRequest);
+
+        assertArrayEquals(reflectionMapper.writeValueAsBytes(proxyAPIRequest), json);
+        assertFalse(new String(json, StandardCharsets.UTF_8).contains("rawBody"));
+
+        for (ProxyAPIRequest read : List.of(codec.readProxyAPIRequest(json), codec.readProxyAPIRequest(new ByteArrayInputStream(json)))) {
+            assertEquals(proxyAPIRequest.getUrl(), read.getUrl());
+            assertEquals(proxyAPIRequest.getMethod(), read.getMethod());
+            assertEquals(proxyAPIRequest.getHeaders(), read.getHeaders());
+            assertEquals(proxyAPIRequest.getParams(), read.getParams());
+            assertEquals(proxyAPIRequest.getBody(), read.getBody());
+            assertNull(read.getRawBody());
+        }
+    }
+
+    @Test
+    void envelopeResponseRoundTrip() throws IOException {
+        RelayEnvelopeResponse response = new RelayEnvelopeResponse();
+        response.setStatus(201);
+        response.setHeaders(Map.of("Content-Type", List.of("application/json"), "Set-Cookie", List.of("a=1", "b=2")));
+        response.setBody(new byte[] {0, 1, 2, (byte) 0xff});
+
+        byte[] json = codec.writeEnvelopeResponse(response);
+        RelayEnvelopeResponse read = codec.readEnvelopeResponse(json);
+
+        assertArrayEquals(reflectionMapper.writeValueAsBytes(response), json);
+        assertEquals(response.getStatus(), read.getStatus());
+        assertEquals(response.getHeaders(), read.getHeaders());
+        assertArrayEquals(response.getBody(), read.getBody());
+    }
+
+    @Test
+    void responseWritesMatchReflectionAndLeaveTheStreamOpen() throws IOException {
+        BaseResponseDTO response = BaseResponseDTO.builder().code(200).success(true).message("OK").result(body()).total(2L).build();
+        CloseTrackingStream out = new CloseTrackingStream();
+
+        codec.writeResponse(response, out);
+        out.write('\n');
+
+        byte[] expected = reflectionMapper.writeValueAsBytes(response);
+        assertArrayEquals(expected, codec.writeResponse(response));
+        assertEquals(new String(expected, StandardCharsets.UTF_8) + "\n", out.toString(StandardCharsets.UTF_8));
+        assertFalse(out.closed);
+
+        BaseResponseDTO read = reflectionMapper.readValue(expected, BaseResponseDTO.class);
+        assertEquals(response.getCode(), read.getCode());
+        assertEquals(response.getStatus(), read.getStatus());
+        assertEquals(response.getMessage(), read.getMessage());
+        assertEquals(response.getResult(), read.getResult());
+        assertEquals(response.getTotal(), read.getTotal());
+    }
+
+    @Test
+    void mapRoundTripAndObjectCheck() throws IOException {
+        Map<String, Object> body = body();
+        byte[] json = codec.writeMap(body);
+
+        assertEquals(body, codec.readMap(json));
+        assertEquals(body, codec.readMap(new ByteArrayInputStream(json)));
+        assertTrue(codec.isJsonObject(new ByteArrayInputStream(json)));
+        assertFalse(codec.isJsonObject(new ByteArrayInputStream("[1,2]".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(codec.isJsonObject(new ByteArrayInputStream("{\"a\":1} {}".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(codec.isJsonObject(new ByteArrayInputStream("{\"a\":".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void sharedReadersAndWritersAcrossThreads() throws Exception {
+        ProxyAPIRequest proxyAPIRequest = proxyAPIRequest();
+        byte[] expected = reflectionMapper.writeValueAsBytes(proxyAPIRequest);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> codec.writeProxyAPIRequest(codec.readProxyAPIRequest(expected))));
+            }
+
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ProxyAPIRequest proxyAPIRequest() {
+        ProxyAPIRequest proxyAPIRequest = new ProxyAPIRequest();
+        proxyAPIRequest.setUrl("http://upstream.test/api/p/orders");
+        proxyAPIRequest.setMethod("POST");
+        proxyAPIRequest.setHeaders(Map.of("Content-Type", "application/json"));
+        proxyAPIRequest.setParams(Map.of("page", 1, "tags", List.of("a", "b")));
+        proxyAPIRequest.setBody(body());
+        return proxyAPIRequest;
+    }
+
+    private static Map<String, Object> body() {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("sku", "MED-100001");
+        line.put("quantity", 2);
+        line.put("price", 12.5);
+        line.put("note", "café");
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("pharmacyId", "PH-0042");
+        body.put("urgent", true);
+        body.put("lines", List.of(line));
+        return body;
+    }
+
+    private static final class CloseTrackingStream extends ByteArrayOutputStream {
+        private boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
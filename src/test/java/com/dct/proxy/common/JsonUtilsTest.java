@@ -0,0 +1,144 @@
+package com.dct.proxy.common;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonUtilsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void validJsonIsCheckedOnTheWholeInput() {
+        assertTrue(JsonUtils.isValidJson("{\"a\":[1,2,{\"b\":null}]}"));
+        assertTrue(JsonUtils.isValidJson(" [] "));
+        assertTrue(JsonUtils.isValidJson("\"text\""));
+        // A sequence of values is accepted, trailing content that is not JSON is not
+        assertTrue(JsonUtils.isValidJson("{} {}"));
+        assertFalse(JsonUtils.isValidJson("{} garbage"));
+        assertFalse(JsonUtils.isValidJson("{\"a\":1"));
+        assertFalse(JsonUtils.isValidJson("[1,]"));
+        assertFalse(JsonUtils.isValidJson("{'a':1}"));
+        assertFalse(JsonUtils.isValidJson(" \n"));
+        assertFalse(JsonUtils.isValidJson((String) null));
+    }
+
+    @Test
+    void validJsonBytesAreCheckedLikeStrings() {
+        assertTrue(JsonUtils.isValidJson("{} {}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(JsonUtils.isValidJson("{} garbage".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(JsonUtils.isValidJson("\t\r\n ".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(JsonUtils.isValidJson((byte[]) null));
+    }
+
+    @Test
+    void arrayFileIsStreamedOneElementAtATime() throws IOException {
+        Path file = write("[{\"id\":1},{\"id\":2},{\"id\":3}]");
+
+        try (Stream<Map> elements = JsonUtils.streamJsonArrayFromFile(file.toString(), Map.class)) {
+            assertEquals(List.of(1, 2, 3), elements.map(element -> element.get("id")).toList());
+        }
+
+        try (MappingIterator<Map> iterator = JsonUtils.iterateJsonArrayFromFile(file.toString(), Map.class)) {
+            assertEquals(Map.of("id", 1), iterator.next());
+            assertEquals(Map.of("id", 2), iterator.next());
+            assertEquals(Map.of("id", 3), iterator.next());
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    void streamFailsOnInvalidContentAndRunsItsCloseHandler() throws IOException {
+        Path file = write("[{\"id\":1},{\"id\":");
+        AtomicBoolean closed = new AtomicBoolean();
+        List<Object> read = new ArrayList<>();
+
+        try (Stream<Map> elements = JsonUtils.streamJsonArrayFromFile(file.toString(), Map.class).onClose(() -> closed.set(true))) {
+            assertThrows(RuntimeException.class, () -> elements.forEach(element -> read.add(element.get("id"))));
+        }
+
+        assertEquals(List.of(1), read);
+        assertTrue(closed.get());
+        assertThrows(IOException.class, () -> JsonUtils.streamJsonArrayFromFile(tempDir.resolve("missing.json").toString(), Map.class));
+    }
+
+    @Test
+    void writerCreatesAnArrayElementByElement() throws IOException {
+        Path file = write("previous content");
+
+        try (JsonArrayWriter writer = JsonUtils.openJsonArrayWriter(file.toString(), false)) {
+            writer.write(Map.of("id", 1));
+            writer.write(Map.of("id", 2));
+        }
+
+        assertEquals("[{\"id\":1},{\"id\":2}]", Files.readString(file));
+
+        try (JsonArrayWriter ignored = JsonUtils.openJsonArrayWriter(file.toString(), false)) {
+            // Nothing written
+        }
+
+        assertEquals("[]", Files.readString(file));
+    }
+
+    @Test
+    void appendingKeepsTheFileAValidArray() throws IOException {
+        Path file = write("[{\"id\":1}]\n");
+
+        try (JsonArrayWriter writer = JsonUtils.openJsonArrayWriter(file.toString(), true)) {
+            writer.write(Map.of("id", 2));
+        }
+
+        try (JsonArrayWriter writer = JsonUtils.openJsonArrayWriter(file.toString(), true)) {
+            writer.write(Map.of("id", 3));
+        }
+
+        assertTrue(JsonUtils.isValidJson(Files.readString(file)));
+        assertEquals(List.of(Map.of("id", 1), Map.of("id", 2), Map.of("id", 3)), JsonUtils.readJsonArrayFromFile(file.toString(), Map.class));
+    }
+
+    @Test
+    void appendingToAnEmptyArrayOrFileAddsNoSeparator() throws IOException {
+        Path emptyArray = write("[ \n]  ");
+        Path emptyFile = write("");
+        Path missing = tempDir.resolve("missing.json");
+
+        for (Path file : List.of(emptyArray, emptyFile, missing)) {
+            try (JsonArrayWriter writer = JsonUtils.openJsonArrayWriter(file.toString(), true)) {
+                writer.write(Map.of("id", 1));
+            }
+
+            assertTrue(JsonUtils.isValidJson(Files.readString(file)), file.toString());
+            assertEquals(List.of(Map.of("id", 1)), JsonUtils.readJsonArrayFromFile(file.toString(), Map.class));
+        }
+    }
+
+    @Test
+    void appendingToAFileWithoutAnArrayFailsAndLeavesItUnchanged() throws IOException {
+        Path file = write("{\"id\":1}");
+
+        assertThrows(IOException.class, () -> JsonUtils.openJsonArrayWriter(file.toString(), true));
+        assertEquals("{\"id\":1}", Files.readString(file));
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = Files.createTempFile(tempDir, "array", ".json");
+        Files.writeString(file, content);
+        return file;
+    }
+}
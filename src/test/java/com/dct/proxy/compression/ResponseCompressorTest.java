@@ -0,0 +1,236 @@
+package com.dct.proxy.compression;
+
+import com.dct.proxy.config.properties.CompressionProps;
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.constants.ContentCoding;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ResponseCompressorTest {
+    private static final byte[] BODY = "{\"items\":[\"paracetamol\",\"ibuprofen\"]}".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void acceptEncodingQualityValuesAndWildcards() {
+        ResponseCompressor compressor = new ResponseCompressor(props(false));
+
+        assertEquals(ContentCoding.GZIP, target(compressor, "gzip"));
+        assertEquals(ContentCoding.GZIP, target(compressor, "x-gzip"));
+        assertEquals(ContentCoding.GZIP, target(compressor, "GZIP;Q=0.3"));
+        assertEquals(ContentCoding.GZIP, target(compressor, "*;q=0.5"));
+        assertEquals(ContentCoding.GZIP, target(compressor, "br;q=1, gzip;q=0.8"));
+        // An explicit q=0 wins over the wildcard
+        assertEquals(ContentCoding.IDENTITY, target(compressor, "gzip;q=0, *;q=0.5"));
+        assertEquals(ContentCoding.IDENTITY, target(compressor, "identity"));
+        assertEquals(ContentCoding.IDENTITY, target(compressor, "gzip;q=invalid"));
+        assertEquals(ContentCoding.IDENTITY, target(compressor, null));
+    }
+
+    @Test
+    void brotliIsPreferredOnlyAtAnEqualOrHigherQuality() {
+        assumeTrue(BrotliCodec.isAvailable());
+        ResponseCompressor compressor = new ResponseCompressor(props(true));
+
+        assertEquals(ContentCoding.BR, target(compressor, "gzip, br"));
+        assertEquals(ContentCoding.BR, target(compressor, "*"));
+        assertEquals(ContentCoding.GZIP, target(compressor, "br;q=0.5, gzip"));
+    }
+
+    @Test
+    void smallOrIncompressibleBodiesAreUnchanged() {
+        ResponseCompressor compressor = new ResponseCompressor(props(false));
+        HttpHeaders image = new HttpHeaders();
+        image.setContentType(MediaType.IMAGE_PNG);
+
+        assertSame(ResponseCompressor.Plan.UNCHANGED, compressor.plan(request("gzip"), 200, json(), 100));
+        assertSame(ResponseCompressor.Plan.UNCHANGED, compressor.plan(request("gzip"), 200, image, BODY.length));
+        assertSame(ResponseCompressor.Plan.UNCHANGED, compressor.plan(request("gzip"), 206, json(), BODY.length));
+        assertSame(ResponseCompressor.Plan.UNCHANGED, compressor.plan(head("gzip"), 200, json(), BODY.length));
+    }
+
+    @Test
+    void noTransformIsNeverTouched() throws IOException {
+        ResponseCompressor compressor = new ResponseCompressor(props(false));
+        HttpHeaders identity = json();
+        identity.setCacheControl("public, No-Transform");
+        HttpHeaders gzip = json();
+        gzip.setCacheControl("no-transform");
+        gzip.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        assertSame(ResponseCompressor.Plan.UNCHANGED, compressor.plan(request("gzip"), 200, identity, BODY.length));
+        // Not even decoded for a client that cannot read it
+        assertSame(ResponseCompressor.Plan.UNCHANGED, compressor.plan(request(null), 200, gzip, gzip(BODY).length));
+    }
+
+    @Test
+    void compressedBodiesPassThroughOrAreDecoded() throws IOException {
+        ResponseCompressor compressor = new ResponseCompressor(props(false));
+        HttpHeaders headers = json();
+        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        byte[] compressed = gzip(BODY);
+
+        ResponseCompressor.Plan passThrough = compressor.plan(request("br;q=0.9, gzip;q=0.5"), 200, headers, compressed.length);
+
+        assertFalse(passThrough.isTranscoding());
+        assertTrue(passThrough.vary());
+        assertEquals(1, compressor.getPassedThroughCount());
+        assertSame(compressed, compressor.transcode(passThrough, compressed).body());
+
+        ResponseCompressor.Plan decode = compressor.plan(request("identity"), 200, headers, compressed.length);
+        ResponseCompressor.Encoded encoded = compressor.transcode(decode, compressed);
+
+        assertEquals(new ResponseCompressor.Plan(ContentCoding.GZIP, ContentCoding.IDENTITY, true), decode);
+        assertEquals(ContentCoding.IDENTITY, encoded.coding());
+        assertArrayEquals(BODY, encoded.body());
+        assertEquals(1, compressor.getDecodedCount());
+        assertEquals(0, compressor.getCompressedCount());
+    }
+
+    @Test
+    void bodiesDecodingPastTheCapAreRelayedInTheirCoding() throws IOException {
+        CompressionProps props = props(false);
+        props.setMaxDecodedSizeBytes(1024);
+        ResponseCompressor compressor = new ResponseCompressor(props);
+        HttpHeaders headers = json();
+        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        byte[] compressed = gzip(new byte[10 * 1024]);
+
+        ResponseCompressor.Plan plan = compressor.plan(request(null), 200, headers, compressed.length);
+        ResponseCompressor.Encoded encoded = compressor.transcode(plan, compressed);
+
+        assertTrue(plan.isTranscoding());
+        assertEquals(ContentCoding.GZIP, encoded.coding());
+        assertSame(compressed, encoded.body());
+        assertEquals(0, compressor.getDecodedCount());
+    }
+
+    @Test
+    void transcodedResponsesGetAWeakEtagAndVaryOnce() throws IOException {
+        ResponseCompressor compressor = new ResponseCompressor(props(false));
+        HttpHeaders source = json();
+        source.setETag("\"v1\"");
+        source.setVary(List.of(HttpHeaders.ORIGIN));
+        source.setContentLength(BODY.length);
+
+        ResponseCompressor.Plan plan = compressor.plan(request("gzip"), 200, source, BODY.length);
+        ResponseCompressor.Encoded encoded = compressor.transcode(plan, BODY);
+        HttpHeaders headers = compressor.headersFor(plan, encoded.coding(), encoded.body().length, source);
+
+        assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(encoded.body().length, headers.getContentLength());
+        assertEquals("W/\"v1\"", headers.getETag());
+        assertEquals(List.of(HttpHeaders.ORIGIN, HttpHeaders.ACCEPT_ENCODING), headers.getVary());
+        assertArrayEquals(BODY, gunzip(encoded.body()));
+        // The cached headers are not modified
+        assertEquals("\"v1\"", source.getETag());
+        assertNull(source.getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        // Headers already varying on Accept-Encoding and a weak validator are kept as they are
+        HttpHeaders again = compressor.headersFor(plan, ContentCoding.GZIP, -1, headers);
+        assertEquals(List.of(HttpHeaders.ORIGIN, HttpHeaders.ACCEPT_ENCODING), again.getVary());
+        assertEquals("W/\"v1\"", again.getETag());
+        assertFalse(again.containsKey(HttpHeaders.CONTENT_LENGTH));
+    }
+
+    @Test
+    void passThroughKeepsTheValidatorAndOnlyAddsVary() throws IOException {
+        ResponseCompressor compressor = new ResponseCompressor(props(false));
+        HttpHeaders source = json();
+        source.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        source.setETag("\"v1\"");
+
+        ResponseCompressor.Plan plan = compressor.plan(request("gzip"), 200, source, gzip(BODY).length);
+        HttpHeaders headers = compressor.headersFor(plan, ContentCoding.GZIP, gzip(BODY).length, source);
+
+        assertEquals("\"v1\"", headers.getETag());
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), headers.getVary());
+        assertSame(source, compressor.headersFor(ResponseCompressor.Plan.UNCHANGED, ContentCoding.IDENTITY, 0, source));
+    }
+
+    @Test
+    void encoderCompressesWhileWritingAndCountsBytes() throws IOException {
+        ResponseCompressor compressor = new ResponseCompressor(props(false));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (OutputStream encoder = compressor.encoder(ContentCoding.GZIP, BODY.length, out)) {
+            encoder.write(BODY, 0, 1000);
+            encoder.write(BODY, 1000, BODY.length - 1000);
+        }
+
+        assertArrayEquals(BODY, gunzip(out.toByteArray()));
+        assertEquals(1, compressor.getCompressedCount());
+        assertEquals(BODY.length, compressor.getBytesIn());
+        assertEquals(out.size(), compressor.getBytesOut());
+        assertSame(out, compressor.encoder(ContentCoding.IDENTITY, BODY.length, out));
+    }
+
+    private static ContentCoding target(ResponseCompressor compressor, String acceptEncoding) {
+        ResponseCompressor.Plan plan = compressor.plan(request(acceptEncoding), 200, json(), BODY.length);
+        return plan.isTranscoding() ? plan.target() : plan.source();
+    }
+
+    private static CompressionProps props(boolean brotli) {
+        CompressionProps props = new CompressionProps();
+        props.setActivate(ActivateStatus.ENABLED);
+        CompressionProps.BrotliConfig brotliConfig = new CompressionProps.BrotliConfig();
+        brotliConfig.setActivate(brotli ? ActivateStatus.ENABLED : ActivateStatus.DISABLED);
+        props.setBrotli(brotliConfig);
+        return props;
+    }
+
+    private static MockHttpServletRequest request(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/p/items");
+
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+
+        return request;
+    }
+
+    private static MockHttpServletRequest head(String acceptEncoding) {
+        MockHttpServletRequest request = request(acceptEncoding);
+        request.setMethod("HEAD");
+        return request;
+    }
+
+    private static HttpHeaders json() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.dct.proxy.controllers;
+
+import com.dct.proxy.batch.ProxyBatchExecutor;
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BodyLimits;
+import com.dct.proxy.body.BodyRejectedException;
+import com.dct.proxy.config.properties.BatchProps;
+import com.dct.proxy.config.properties.BodyProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.BatchItemResponse;
+import com.dct.proxy.interceptor.ProxyRouteMatcher;
+import com.dct.proxy.support.ProxyTestSupport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletInputStream;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchControllerTest {
+    private static final String BATCH = "[{\"method\":\"GET\",\"path\":\"/api/p/products/1\"},{\"method\":\"GET\",\"path\":\"/api/p/products/2\"}]";
+    private static final ProxyRouteMatcher ROUTES = new ProxyRouteMatcher(new String[] {"/api/**"}, new String[] {"/file/**", "/static/**"});
+    private ProxyBatchExecutor batchExecutor;
+
+    @AfterEach
+    void tearDown() {
+        if (batchExecutor != null) {
+            batchExecutor.close();
+        }
+    }
+
+    @Test
+    void subResponsesAreCountedInTheReservationOfTheBatch() throws Exception {
+        BodyBudget budget = budget(10_000);
+        Queue<BodyBudget.Reservation> reservations = new ConcurrentLinkedQueue<>();
+        BatchController controller = controller(budget, proxyAPIRequest -> {
+            BodyBudget.Reservation reservation = proxyAPIRequest.getBodyReservation();
+            reservations.add(reservation);
+            reservation.grow(1000);
+            return ResponseEntity.ok("{}".getBytes(StandardCharsets.UTF_8));
+        });
+
+        List<BatchItemResponse> responses = controller.batch(request(BATCH));
+
+        assertEquals(2, responses.size());
+        assertEquals(2, reservations.size());
+        assertNotNull(reservations.peek());
+        assertTrue(reservations.stream().allMatch(reservation -> reservation == reservations.peek()));
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void aBatchBodyAboveTheBudgetIsRejectedBeforeItIsRead() {
+        BodyBudget budget = budget(BATCH.length() - 1);
+        BatchController controller = controller(budget, proxyAPIRequest -> ResponseEntity.ok(new byte[0]));
+        MockHttpServletRequest request = request(BATCH);
+
+        BodyRejectedException e = assertThrows(BodyRejectedException.class, () -> controller.batch(request));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatus());
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void aSubResponseAboveTheBudgetFailsAloneWithItsStatus() throws Exception {
+        BodyBudget budget = budget(1000);
+        BatchController controller = controller(budget, proxyAPIRequest -> {
+            proxyAPIRequest.getBodyReservation().grow(2000);
+            return ResponseEntity.ok(new byte[0]);
+        });
+
+        List<BatchItemResponse> responses = controller.batch(request(BATCH));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), responses.get(0).getStatus());
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void anAnnouncedBodyAboveTheLimitIsRejectedBeforeItIsRead() {
+        BatchController controller = controller(budget(10_000), limits(BATCH.length() - 1, List.of()), this::unexpected);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", BatchController.BATCH_PATH) {
+            @Override
+            public long getContentLengthLong() {
+                return BATCH.length();
+            }
+
+            @Override
+            public ServletInputStream getInputStream() {
+                throw new AssertionError("The body must not be read");
+            }
+        };
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        BodyRejectedException e = assertThrows(BodyRejectedException.class, () -> controller.batch(request));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatus());
+    }
+
+    @Test
+    void aStreamedBodyAboveTheLimitIsRejectedOnceItGoesPastIt() {
+        BatchController controller = controller(budget(10_000), limits(BATCH.length() - 1, List.of()), this::unexpected);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", BatchController.BATCH_PATH) {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.addHeader(HttpHeaders.TRANSFER_ENCODING, "chunked");
+        request.setContent(BATCH.getBytes(StandardCharsets.UTF_8));
+
+        BodyRejectedException e = assertThrows(BodyRejectedException.class, () -> controller.batch(request));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatus());
+    }
+
+    @Test
+    void aBodyTypeThatIsNotAllowedIsRejectedWith415() {
+        BatchController controller = controller(budget(10_000), limits(-1, List.of("application/json")), this::unexpected);
+        MockHttpServletRequest request = request(BATCH);
+        request.setContentType(MediaType.TEXT_PLAIN_VALUE);
+
+        BodyRejectedException e = assertThrows(BodyRejectedException.class, () -> controller.batch(request));
+
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getStatus());
+    }
+
+    @Test
+    void subRequestsOutsideTheProxiedRoutesAreRejectedAlone() throws Exception {
+        Queue<String> sent = new ConcurrentLinkedQueue<>();
+        BatchController controller = controller(budget(10_000), proxyAPIRequest -> {
+            sent.add(proxyAPIRequest.getUrl());
+            return ResponseEntity.ok(new byte[0]);
+        });
+        String batch = "[{\"method\":\"GET\",\"path\":\"/api/p/products/1?lang=vi\"},"
+                + "{\"method\":\"GET\",\"path\":\"/file/secret\"},"
+                + "{\"method\":\"GET\",\"path\":\"/actuator/env\"},"
+                + "{\"method\":\"GET\",\"path\":\"/api/../file/secret\"},"
+                + "{\"method\":\"GET\",\"path\":\"/api/%2e%2e/file/secret\"}]";
+
+        List<BatchItemResponse> responses = controller.batch(request(batch));
+
+        assertEquals(List.of(200, 400, 400, 400, 400), responses.stream().map(BatchItemResponse::getStatus).toList());
+        assertEquals(List.of(ProxyTestSupport.UPSTREAM_HOST + "/api/p/products/1?lang=vi"), List.copyOf(sent));
+        assertEquals(1, batchExecutor.getSucceededCount());
+        assertEquals(4, batchExecutor.getFailedCount());
+    }
+
+    @Test
+    void aSubRequestFinishingAfterItsTimeoutIsCountedOnce() throws Exception {
+        CountDownLatch finished = new CountDownLatch(1);
+        BatchProps props = new BatchProps();
+        props.setItemTimeout(50);
+        BatchController controller = controller(props, budget(10_000), null, proxyAPIRequest -> {
+            try {
+                Thread.sleep(300);
+                return ResponseEntity.ok(new byte[0]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                finished.countDown();
+            }
+        });
+
+        List<BatchItemResponse> responses = controller.batch(request("[{\"method\":\"GET\",\"path\":\"/api/p/slow\"}]"));
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT.value(), responses.get(0).getStatus());
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(1, batchExecutor.getTimedOutCount());
+        assertEquals(0, batchExecutor.getSucceededCount());
+        assertEquals(0, batchExecutor.getFailedCount());
+    }
+
+    private ResponseEntity<byte[]> unexpected(ProxyAPIRequest proxyAPIRequest) {
+        throw new AssertionError("No sub-request must be sent");
+    }
+
+    private BatchController controller(BodyBudget budget, Function<ProxyAPIRequest, ResponseEntity<byte[]>> exchange) {
+        return controller(budget, null, exchange);
+    }
+
+    private BatchController controller(BodyBudget budget,
+                                       BodyLimits limits,
+                                       Function<ProxyAPIRequest, ResponseEntity<byte[]>> exchange) {
+        return controller(new BatchProps(), budget, limits, exchange);
+    }
+
+    private BatchController controller(BatchProps props,
+                                       BodyBudget budget,
+                                       BodyLimits limits,
+                                       Function<ProxyAPIRequest, ResponseEntity<byte[]>> exchange) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        batchExecutor = new ProxyBatchExecutor(props, ProxyTestSupport.UPSTREAM_HOST, ROUTES, objectMapper, exchange);
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("bodyBudget", budget);
+
+        if (limits != null) {
+            beanFactory.addBean("bodyLimits", limits);
+        }
+
+        return new BatchController(
+            batchExecutor,
+            props,
+            objectMapper,
+            beanFactory.getBeanProvider(Validator.class),
+            beanFactory.getBeanProvider(BodyBudget.class),
+            beanFactory.getBeanProvider(BodyLimits.class)
+        );
+    }
+
+    private static MockHttpServletRequest request(String json) {
+        return ProxyTestSupport.jsonRequest("POST", BatchController.BATCH_PATH, json);
+    }
+
+    private static BodyLimits limits(long maxSizeBytes, List<String> contentTypes) {
+        BodyProps.LimitsConfig config = new BodyProps.LimitsConfig();
+        config.setMaxSizeBytes(maxSizeBytes);
+        config.setContentTypes(contentTypes);
+        return new BodyLimits(config);
+    }
+
+    private static BodyBudget budget(long capacityBytes) {
+        BodyProps.BudgetConfig config = new BodyProps.BudgetConfig();
+        config.setMaxInFlightBytes(capacityBytes);
+        config.setMaxWait(0);
+        return new BodyBudget(config);
+    }
+}
@@ -0,0 +1,164 @@
+package com.dct.proxy.controllers;
+
+import com.dct.proxy.cache.ProxyResponseCache;
+import com.dct.proxy.cache.ResponseCacheKey;
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.dto.request.CachePurgeRequest;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.CachePurgeResponse;
+import com.dct.proxy.exception.BaseAuthenticationException;
+import com.dct.proxy.exception.BaseBadRequestException;
+import com.dct.proxy.support.ProxyTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachePurgeControllerTest {
+
+    @Test
+    void doesNotStartWithoutAToken() {
+        assertThrows(IllegalStateException.class, () -> controller(""));
+        assertThrows(IllegalStateException.class, () -> controller(null));
+    }
+
+    @Test
+    void onlyTheAdminTokenIsAccepted() {
+        CachePurgeController controller = controller("s3cret");
+
+        assertThrows(BaseAuthenticationException.class, () -> controller.purge(request(), null));
+        assertThrows(BaseAuthenticationException.class, () -> controller.purge(request(), "other"));
+        assertDoesNotThrow(() -> controller.purge(request(), "s3cret"));
+    }
+
+    @Test
+    void tagPurgeInvalidatesEveryTaggedEntry() {
+        ProxyResponseCache cache = new ProxyResponseCache(props("s3cret"));
+        CachePurgeController controller = new CachePurgeController(cache, ProxyTestSupport.proxyProperties(), props("s3cret"));
+        ResponseCacheKey product = store(cache, "/products/12", Map.of(), "product-12 catalog");
+        ResponseCacheKey otherProduct = store(cache, "/products/123", Map.of(), "product-123, catalog");
+        ResponseCacheKey order = store(cache, "/orders/7", Map.of(), "orders");
+
+        CachePurgeRequest request = new CachePurgeRequest();
+        request.setTags(List.of(" catalog ", "unknown"));
+        CachePurgeResponse response = purge(controller, request);
+
+        assertEquals(Map.of(" catalog ", 2, "unknown", 0), response.getTags());
+        assertEquals(2, response.getTotal());
+        assertNull(cache.get(product));
+        assertNull(cache.get(otherProduct));
+        assertNotNull(cache.get(order));
+    }
+
+    @Test
+    void urlPurgeInvalidatesEveryVariantOfThatUrlOnly() {
+        ResponseCacheProps props = props("s3cret");
+        props.setVaryHeaders(List.of(HttpHeaders.ACCEPT_LANGUAGE));
+        ProxyResponseCache cache = new ProxyResponseCache(props);
+        CachePurgeController controller = new CachePurgeController(cache, ProxyTestSupport.proxyProperties(), props);
+        ResponseCacheKey vietnamese = store(cache, "/products/12?lang=vi&page=1", Map.of(HttpHeaders.ACCEPT_LANGUAGE, "vi"), "");
+        ResponseCacheKey english = store(cache, "/products/12?lang=vi&page=1", Map.of(HttpHeaders.ACCEPT_LANGUAGE, "en"), "");
+        ResponseCacheKey otherQuery = store(cache, "/products/12?lang=vi&page=2", Map.of(HttpHeaders.ACCEPT_LANGUAGE, "vi"), "");
+        ResponseCacheKey otherProduct = store(cache, "/products/123?lang=vi&page=1", Map.of(HttpHeaders.ACCEPT_LANGUAGE, "vi"), "");
+
+        CachePurgeRequest request = new CachePurgeRequest();
+        // Query parameters in another order still name the same URL
+        request.setUrls(List.of("/products/12?page=1&lang=vi"));
+        CachePurgeResponse response = purge(controller, request);
+
+        assertEquals(Map.of("/products/12?page=1&lang=vi", 2), response.getUrls());
+        assertNull(cache.get(vietnamese));
+        assertNull(cache.get(english));
+        assertNotNull(cache.get(otherQuery));
+        assertNotNull(cache.get(otherProduct));
+    }
+
+    @Test
+    void bulkBatchPurgesUrlsPrefixesAndTagsTogether() {
+        ResponseCacheProps props = props("s3cret");
+        props.getPurge().setMaxBatchSize(3);
+        ProxyResponseCache cache = new ProxyResponseCache(props);
+        CachePurgeController controller = new CachePurgeController(cache, ProxyTestSupport.proxyProperties(), props);
+        ResponseCacheKey product = store(cache, "/products/12", Map.of(), "");
+        ResponseCacheKey reviews = store(cache, "/products/12/reviews", Map.of(), "");
+        ResponseCacheKey otherProduct = store(cache, "/products/123", Map.of(), "");
+        ResponseCacheKey order = store(cache, "/orders/7", Map.of(), "");
+        ResponseCacheKey pharmacy = store(cache, "/pharmacies/42", Map.of(), "pharmacy-42");
+        ResponseCacheKey stock = store(cache, "/stock/1", Map.of(), "");
+
+        CachePurgeRequest request = new CachePurgeRequest();
+        request.setUrls(List.of("/orders/7"));
+        request.setPrefixes(List.of("/products/12"));
+        request.setTags(List.of("pharmacy-42"));
+        CachePurgeResponse response = purge(controller, request);
+
+        assertEquals(Map.of("/orders/7", 1), response.getUrls());
+        assertEquals(Map.of("/products/12", 2), response.getPrefixes());
+        assertEquals(Map.of("pharmacy-42", 1), response.getTags());
+        assertEquals(4, response.getTotal());
+        assertNull(cache.get(product));
+        assertNull(cache.get(reviews));
+        assertNull(cache.get(order));
+        assertNull(cache.get(pharmacy));
+        // Segment match: /products/123 is not below /products/12
+        assertNotNull(cache.get(otherProduct));
+        assertNotNull(cache.get(stock));
+
+        // Purged again, the same batch finds nothing left
+        assertEquals(0, purge(controller, request).getTotal());
+
+        CachePurgeRequest tooLarge = new CachePurgeRequest();
+        tooLarge.setPrefixes(List.of("/stock/", "/products/", "/orders/", "/pharmacies/"));
+        assertThrows(BaseBadRequestException.class, () -> controller.purge(tooLarge, "s3cret"));
+        assertThrows(BaseBadRequestException.class, () -> controller.purge(new CachePurgeRequest(), "s3cret"));
+        assertNotNull(cache.get(stock));
+    }
+
+    private static CachePurgeResponse purge(CachePurgeController controller, CachePurgeRequest request) {
+        return (CachePurgeResponse) controller.purge(request, "s3cret").getResult();
+    }
+
+    // Stored the way the interceptor stores an upstream response, tagged with a Surrogate-Key header
+    private static ResponseCacheKey store(ProxyResponseCache cache, String pathAndQuery, Map<String, String> headers, String tags) {
+        ProxyAPIRequest request = new ProxyAPIRequest();
+        request.setUrl(ProxyTestSupport.UPSTREAM_HOST + pathAndQuery);
+        request.setMethod("GET");
+        request.setHeaders(headers);
+        ResponseCacheKey key = cache.buildKey(request);
+        cache.put(key, ResponseEntity.status(HttpStatus.OK)
+                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=60")
+                .header("Surrogate-Key", tags)
+                .body(pathAndQuery.getBytes(StandardCharsets.UTF_8)));
+        assertNotNull(cache.get(key));
+        return key;
+    }
+
+    private static CachePurgeController controller(String token) {
+        ResponseCacheProps props = props(token);
+        return new CachePurgeController(new ProxyResponseCache(props), ProxyTestSupport.proxyProperties(), props);
+    }
+
+    private static ResponseCacheProps props(String token) {
+        ResponseCacheProps props = new ResponseCacheProps();
+        props.getPurge().setActivate(ActivateStatus.ENABLED);
+        props.getPurge().setToken(token);
+        return props;
+    }
+
+    private static CachePurgeRequest request() {
+        CachePurgeRequest request = new CachePurgeRequest();
+        request.setTags(List.of("products"));
+        return request;
+    }
+}
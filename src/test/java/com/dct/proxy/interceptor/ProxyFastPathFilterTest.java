@@ -0,0 +1,75 @@
+package com.dct.proxy.interceptor;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ProxyFastPathFilterTest {
+    private final ProxyRequestInterceptor interceptor = mock(ProxyRequestInterceptor.class);
+    private final FilterChain chain = mock(FilterChain.class);
+
+    @Test
+    void forwardsIncludedPaths() throws Exception {
+        ProxyFastPathFilter filter = new ProxyFastPathFilter(interceptor, new String[] {"/api/**"}, new String[] {"/api/static/**"});
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/p/orders");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(interceptor).forward(request, response);
+        verify(chain, never()).doFilter(any(), any());
+    }
+
+    @Test
+    void passesExcludedPathsToTheChain() throws Exception {
+        ProxyFastPathFilter filter = new ProxyFastPathFilter(interceptor, new String[] {"/api/**"}, new String[] {"/api/static/**"});
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/static/app.js");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        verify(interceptor, never()).forward(any(), any());
+    }
+
+    @Test
+    void passesPathsNotIncludedToTheChain() throws Exception {
+        ProxyFastPathFilter filter = new ProxyFastPathFilter(interceptor, new String[] {"/api/**"}, null);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/health");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        verify(interceptor, never()).forward(any(), any());
+    }
+
+    @Test
+    void forwardsAllPathsWithoutIncludedPatterns() throws Exception {
+        ProxyFastPathFilter filter = new ProxyFastPathFilter(interceptor, null, new String[] {"/file/**"});
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/orders");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(interceptor).forward(request, response);
+    }
+
+    @Test
+    void matchesWithoutTheContextPath() throws Exception {
+        ProxyFastPathFilter filter = new ProxyFastPathFilter(interceptor, new String[] {"/api/**"}, null);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/proxy/api/p/orders");
+        request.setContextPath("/proxy");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(interceptor).forward(request, response);
+    }
+}
@@ -0,0 +1,237 @@
+package com.dct.proxy.interceptor;
+
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BodyLimits;
+import com.dct.proxy.body.BodySpooler;
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.config.properties.BodyProps;
+import com.dct.proxy.relay.RelayEnvelopeWriter;
+import com.dct.proxy.relay.StreamingRelaySender;
+import com.dct.proxy.support.ProxyTestSupport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every buffer taken from the pool is given back, whatever the path of the request
+ */
+class ProxyRequestInterceptorBufferTest {
+    private static final String PATH = "/api/p/orders";
+    private static final int SPOOL_THRESHOLD = 4 * 1024;
+    private BufferPool bufferPool;
+
+    @TempDir
+    Path spoolDirectory;
+
+    @BeforeEach
+    void setUp() {
+        BodyProps.PoolConfig config = new BodyProps.PoolConfig();
+        config.setMinBufferBytes(256);
+        config.setMaxBufferBytes(64 * 1024);
+        config.setLeakDetection(true);
+        bufferPool = new BufferPool(config);
+    }
+
+    @AfterEach
+    void noBufferIsOutstanding() {
+        assertTrue(bufferPool.getAcquiredCount() > 0);
+        assertEquals(0, bufferPool.getOutstandingCount());
+        assertEquals(0, bufferPool.getLeakCount());
+    }
+
+    @Test
+    void proxiedRequestsGiveTheirBuffersBack() throws Exception {
+        byte[] responseBody = json(20 * 1024);
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, responseBody);
+        ProxyRequestInterceptor interceptor = ProxyTestSupport.interceptor(relay.restTemplate())
+                .bodyBudget(budget())
+                .bufferPool(bufferPool)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletResponse response = forward(interceptor, chunked(json(10 * 1024)));
+
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertArrayEquals(responseBody, response.getContentAsByteArray());
+        }
+    }
+
+    @Test
+    void spooledBodiesGiveTheirBuffersBack() throws Exception {
+        byte[] responseBody = json(3 * SPOOL_THRESHOLD);
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, responseBody);
+        BodySpooler spooler = spooler();
+        ProxyRequestInterceptor interceptor = ProxyTestSupport.interceptor(relay.restTemplate())
+                .bodySpooler(spooler)
+                .streamingRelaySender(streamingRelaySender(relay))
+                .bodyBudget(budget())
+                .bufferPool(bufferPool)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletResponse response = forward(interceptor, chunked(json(2 * SPOOL_THRESHOLD)));
+
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertArrayEquals(responseBody, response.getContentAsByteArray());
+        }
+
+        assertTrue(spooler.getSpooledBodyCount() > 0);
+        assertEquals(0, spooler.getActiveFileCount());
+    }
+
+    @Test
+    void failedRequestsGiveTheirBuffersBack() throws Exception {
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.INTERNAL_SERVER_ERROR, json(8 * 1024));
+        BodyProps.LimitsConfig limits = new BodyProps.LimitsConfig();
+        limits.setMaxSizeBytes(16 * 1024);
+        ProxyRequestInterceptor interceptor = ProxyTestSupport.interceptor(relay.restTemplate())
+                .bodySpooler(spooler())
+                .streamingRelaySender(streamingRelaySender(relay))
+                .bodyLimits(new BodyLimits(limits))
+                .bodyBudget(budget())
+                .bufferPool(bufferPool)
+                .build();
+
+        // Answered with an error status by the relay
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), forward(interceptor, chunked(json(2 * SPOOL_THRESHOLD))).getStatus());
+
+        // Past the body limit while it is read
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), forward(interceptor, chunked(json(32 * 1024))).getStatus());
+
+        // Client connection lost while the body is read
+        MockHttpServletRequest broken = chunked(json(2 * 1024));
+        MockHttpServletRequest failing = new MockHttpServletRequest("POST", PATH) {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+
+            @Override
+            public ServletInputStream getInputStream() {
+                return new FailingInputStream(broken.getContentAsByteArray());
+            }
+        };
+        failing.setContentType(broken.getContentType());
+        failing.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), forward(interceptor, failing).getStatus());
+        assertEquals(1, relay.getCallCount());
+    }
+
+    @Test
+    void spooledBodiesParsedOnTheHeapStayInTheBudget() throws Exception {
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, json(1024));
+        BodyProps.BudgetConfig config = new BodyProps.BudgetConfig();
+        config.setMaxInFlightBytes(3 * SPOOL_THRESHOLD);
+        config.setMaxWait(0);
+        BodyBudget budget = new BodyBudget(config);
+        ProxyRequestInterceptor interceptor = ProxyTestSupport.interceptor(relay.restTemplate())
+                .bodySpooler(spooler())
+                .bodyBudget(budget)
+                .bufferPool(bufferPool)
+                .build();
+
+        // Without streaming sender, the spooled body is parsed: past the budget once it is counted in full
+        assertEquals(HttpStatus.OK.value(), forward(interceptor, chunked(json(2 * SPOOL_THRESHOLD))).getStatus());
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), forward(interceptor, chunked(json(4 * SPOOL_THRESHOLD))).getStatus());
+        assertEquals(1, relay.getCallCount());
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    private static MockHttpServletResponse forward(ProxyRequestInterceptor interceptor,
+                                                   MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.forward(request, response);
+        return response;
+    }
+
+    // Without Content-Length, the body is read into pooled arrays of growing size
+    private static MockHttpServletRequest chunked(byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", PATH) {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        request.setContentType("application/json");
+        request.addHeader("Transfer-Encoding", "chunked");
+        request.setContent(body);
+        return request;
+    }
+
+    private static byte[] json(int size) {
+        char[] value = new char[Math.max(0, size - 10)];
+        Arrays.fill(value, 'x');
+        return ("{\"v\":\"" + new String(value) + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private BodySpooler spooler() throws IOException {
+        BodyProps.SpoolConfig config = new BodyProps.SpoolConfig();
+        config.setMemoryThresholdBytes(SPOOL_THRESHOLD);
+        config.setDirectory(spoolDirectory.toString());
+        return new BodySpooler(config, bufferPool);
+    }
+
+    private StreamingRelaySender streamingRelaySender(ProxyTestSupport.StubRelay relay) {
+        return new StreamingRelaySender(
+            relay,
+            new RelayEnvelopeWriter(new ObjectMapper()),
+            null,
+            null,
+            bufferPool,
+            ProxyTestSupport.RELAY_HOST + ProxyTestSupport.RELAY_API
+        );
+    }
+
+    private static BodyBudget budget() {
+        return new BodyBudget(new BodyProps.BudgetConfig());
+    }
+
+    // Fails once the first half of the body is read
+    private static final class FailingInputStream extends ServletInputStream {
+        private final byte[] body;
+        private int position;
+
+        private FailingInputStream(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position >= body.length / 2) {
+                throw new IOException("Connection reset by peer");
+            }
+
+            return body[position++];
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {}
+    }
+}
@@ -0,0 +1,165 @@
+package com.dct.proxy.interceptor;
+
+import com.dct.proxy.cache.CacheRefreshExecutor;
+import com.dct.proxy.cache.ProxyResponseCache;
+import com.dct.proxy.cache.RetryAfterSuppressor;
+import com.dct.proxy.compression.ResponseCompressor;
+import com.dct.proxy.config.properties.CompressionProps;
+import com.dct.proxy.config.properties.ResponseCacheProps;
+import com.dct.proxy.constants.ActivateStatus;
+import com.dct.proxy.support.ProxyTestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProxyRequestInterceptorCacheTest {
+    private static final String PATH = "/api/p/products/1";
+    private static final byte[] BODY = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+    private final CacheRefreshExecutor refreshExecutor = new CacheRefreshExecutor(1, 4);
+
+    @AfterEach
+    void tearDown() {
+        refreshExecutor.close();
+    }
+
+    @Test
+    void staleResponsesAreRevalidatedInTheRequestOfCredentialedClients() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("public, max-age=0, stale-while-revalidate=60");
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, BODY).respond(HttpStatus.OK, headers, BODY);
+        ProxyRequestInterceptor interceptor = ProxyTestSupport.interceptor(relay.restTemplate())
+                .responseCache(new ProxyResponseCache(staleProps()))
+                .refreshExecutor(refreshExecutor)
+                .build();
+
+        assertEquals("MISS", forward(interceptor, null));
+        assertEquals(1, relay.getCallCount());
+
+        // Served stale, the refresh runs in the background
+        assertEquals("STALE", forward(interceptor, null));
+        awaitCalls(relay, 2);
+
+        // Never served stale nor replayed later, the upstream is called in the request
+        assertEquals("MISS", forward(interceptor, "Bearer alice"));
+        assertEquals(3, relay.getCallCount());
+        Thread.sleep(100);
+        assertEquals(3, relay.getCallCount());
+    }
+
+    @Test
+    void largeCachedBodiesAreCompressedOnceAndTheirVariantKeptOffHeap() throws Exception {
+        byte[] body = ("[" + "{\"id\":1,\"name\":\"paracetamol\"},".repeat(500) + "{}]").getBytes(StandardCharsets.UTF_8);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("public, max-age=60");
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, body).respond(HttpStatus.OK, headers, body);
+        ResponseCacheProps props = new ResponseCacheProps();
+        props.setMaxEntrySizeBytes(1024); // Both the response and its gzip variant go off-heap
+        props.getOffHeap().setActivate(ActivateStatus.ENABLED);
+        props.getOffHeap().setSlabSizeBytes(4096);
+        props.getOffHeap().setMaxSizeBytes(1024 * 1024);
+        CompressionProps compressionProps = new CompressionProps();
+        CompressionProps.BrotliConfig brotli = new CompressionProps.BrotliConfig();
+        brotli.setActivate(ActivateStatus.DISABLED);
+        compressionProps.setBrotli(brotli);
+        ResponseCompressor compressor = new ResponseCompressor(compressionProps);
+        ProxyResponseCache cache = new ProxyResponseCache(props);
+        ProxyRequestInterceptor interceptor = ProxyTestSupport.interceptor(relay.restTemplate())
+                .responseCache(cache)
+                .responseCompressor(compressor)
+                .build();
+
+        try {
+            forward(interceptor, null);
+
+            for (int i = 0; i < 2; i++) {
+                MockHttpServletRequest request = ProxyTestSupport.jsonRequest("GET", PATH, null);
+                request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                interceptor.forward(request, response);
+
+                assertEquals("HIT", response.getHeader(ProxyResponseCache.CACHE_STATUS_HEADER));
+                assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+                assertArrayEquals(body, new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())).readAllBytes());
+            }
+
+            assertEquals(1, relay.getCallCount());
+            assertEquals(1, compressor.getCompressedCount());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    void negativeResponsesAreCachedAndRetryAfterSuppressesTheRoute() throws Exception {
+        ResponseCacheProps props = new ResponseCacheProps();
+        props.getNegative().setActivate(ActivateStatus.ENABLED);
+        props.getNegative().setStatuses(Map.of(404, 60_000L)); // The 503 is not cached, only suppressed
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.NOT_FOUND, BODY);
+        ProxyRequestInterceptor interceptor = ProxyTestSupport.interceptor(relay.restTemplate())
+                .responseCache(new ProxyResponseCache(props))
+                .retryAfterSuppressor(new RetryAfterSuppressor(props.getNegative()))
+                .build();
+
+        // The 404 is answered from the cache for its TTL
+        assertEquals("MISS", forward(interceptor, null));
+        assertEquals("HIT", forward(interceptor, null));
+        assertEquals(1, relay.getCallCount());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "30");
+        relay.respond(HttpStatus.SERVICE_UNAVAILABLE, headers, BODY);
+        MockHttpServletRequest request = ProxyTestSupport.jsonRequest("GET", "/api/p/products/2", null);
+        interceptor.forward(request, new MockHttpServletResponse());
+        assertEquals(2, relay.getCallCount());
+
+        // Answered locally while the route is suppressed
+        request = ProxyTestSupport.jsonRequest("GET", "/api/p/products/2", null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.forward(request, response);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        assertEquals("30", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(2, relay.getCallCount());
+    }
+
+    private static void awaitCalls(ProxyTestSupport.StubRelay relay, int calls) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (relay.getCallCount() < calls && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(calls, relay.getCallCount());
+    }
+
+    private static String forward(ProxyRequestInterceptor interceptor, String authorization) throws Exception {
+        MockHttpServletRequest request = ProxyTestSupport.jsonRequest("GET", PATH, null);
+
+        if (authorization != null) {
+            request.addHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.forward(request, response);
+        return response.getHeader(ProxyResponseCache.CACHE_STATUS_HEADER);
+    }
+
+    private static ResponseCacheProps staleProps() {
+        ResponseCacheProps props = new ResponseCacheProps();
+        props.getStale().setActivate(ActivateStatus.ENABLED);
+        return props;
+    }
+}
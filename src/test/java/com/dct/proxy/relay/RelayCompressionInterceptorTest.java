@@ -0,0 +1,127 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.config.properties.RelayProps;
+import com.github.luben.zstd.Zstd;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelayCompressionInterceptorTest {
+    private static final String RELAY_HOST = "http://relay.test";
+    private static final byte[] ENVELOPE = new byte[1024];
+
+    static {
+        Arrays.fill(ENVELOPE, (byte) 'a');
+    }
+
+    private final List<byte[]> sent = new ArrayList<>();
+    private final List<String> sentCodings = new ArrayList<>();
+
+    @Test
+    void envelopesAreSentUncompressedUntilTheRelayAdvertisesZstd() throws IOException {
+        RelayCompressionInterceptor interceptor = new RelayCompressionInterceptor(new RelayProps.CompressionConfig(), RELAY_HOST);
+
+        send(interceptor, response(HttpStatus.OK, null));
+        assertNull(sentCodings.getLast());
+        assertFalse(interceptor.isCompressRequests());
+
+        send(interceptor, response(HttpStatus.OK, "gzip, zstd"));
+        assertNull(sentCodings.getLast());
+        assertTrue(interceptor.isCompressRequests());
+
+        send(interceptor, response(HttpStatus.OK, null));
+        assertEquals(RelayCompressionInterceptor.ZSTD, sentCodings.getLast());
+        assertArrayEquals(ENVELOPE, Zstd.decompress(sent.getLast(), ENVELOPE.length));
+    }
+
+    @Test
+    void upstream415IsNeitherReplayedNorASignal() throws IOException {
+        RelayCompressionInterceptor interceptor = new RelayCompressionInterceptor(new RelayProps.CompressionConfig(), RELAY_HOST);
+        send(interceptor, response(HttpStatus.OK, "zstd"));
+
+        ClientHttpResponse response = send(interceptor, response(HttpStatus.UNSUPPORTED_MEDIA_TYPE, null));
+
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, response.getStatusCode());
+        assertEquals(2, sent.size());
+        assertTrue(interceptor.isCompressRequests());
+    }
+
+    @Test
+    void relayWithdrawingZstdGetsUncompressedEnvelopes() throws IOException {
+        RelayCompressionInterceptor interceptor = new RelayCompressionInterceptor(new RelayProps.CompressionConfig(), RELAY_HOST);
+        send(interceptor, response(HttpStatus.OK, "zstd"));
+
+        ClientHttpResponse response = send(interceptor, response(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "identity"));
+        send(interceptor, response(HttpStatus.OK, null));
+
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, response.getStatusCode());
+        assertEquals(3, sent.size());
+        assertFalse(interceptor.isCompressRequests());
+        assertNull(sentCodings.getLast());
+        assertArrayEquals(ENVELOPE, sent.getLast());
+    }
+
+    @Test
+    void capturedEnvelopesHaveNoCredentialsAndAreOwnerOnly(@TempDir Path directory) throws Exception {
+        RelayProps.CompressionConfig config = new RelayProps.CompressionConfig();
+        config.setSampleDirectory(directory.resolve("samples").toString());
+        RelayCompressionInterceptor interceptor = new RelayCompressionInterceptor(config, RELAY_HOST);
+        byte[] envelope = ("{\"url\":\"http://upstream.test/api/p/orders\",\"method\":\"POST\","
+                + "\"headers\":{\"Authorization\":\"Bearer secret\",\"cookie\":\"SESSION=secret\","
+                + "\"Content-Type\":\"application/json\"},\"body\":{\"item\":1}}").getBytes(StandardCharsets.UTF_8);
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, URI.create(RELAY_HOST + "/api/proxy"));
+        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        interceptor.intercept(request, envelope, (executed, body) -> response(HttpStatus.OK, null));
+        interceptor.awaitSamples();
+
+        Path sample = directory.resolve("samples").resolve("envelope-0.json");
+        String captured = Files.readString(sample);
+        assertFalse(captured.contains("secret"));
+        assertTrue(captured.contains("\"Content-Type\":\"application/json\""));
+        assertTrue(captured.contains("\"body\":{\"item\":1}"));
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(sample));
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(sample.getParent()));
+    }
+
+    private ClientHttpResponse send(RelayCompressionInterceptor interceptor, MockClientHttpResponse response) throws IOException {
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, URI.create(RELAY_HOST + "/api/proxy"));
+        return interceptor.intercept(request, ENVELOPE, (executed, body) -> {
+            sent.add(body);
+            sentCodings.add(executed.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+            return response;
+        });
+    }
+
+    private static MockClientHttpResponse response(HttpStatus status, String relayAcceptEncoding) {
+        MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], status);
+
+        if (relayAcceptEncoding != null) {
+            response.getHeaders().set(RelayCompressionInterceptor.RELAY_ACCEPT_ENCODING_HEADER, relayAcceptEncoding);
+        }
+
+        return response;
+    }
+}
@@ -0,0 +1,143 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.config.properties.BodyProps;
+import com.dct.proxy.config.properties.RelayProps;
+import com.dct.proxy.constants.RelayEnvelopeFormat;
+import com.dct.proxy.dto.request.ProxyAPIBinaryRequest;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.support.ProxyTestSupport;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RelayEnvelopeCodecTest {
+    private static final String PROXY_URL = ProxyTestSupport.RELAY_HOST + ProxyTestSupport.RELAY_API;
+    private static final byte[] OK = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final String RAW_BODY = "{\"item\":\"A-1\",\"quantity\":2,\"note\":\"café\"}";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void smileEnvelopeDecodesToTheSameRequestAsJson() throws IOException {
+        roundTrip(RelayEnvelopeFormat.SMILE, new ObjectMapper(new SmileFactory()));
+    }
+
+    @Test
+    void cborEnvelopeDecodesToTheSameRequestAsJson() throws IOException {
+        roundTrip(RelayEnvelopeFormat.CBOR, new ObjectMapper(new CBORFactory()));
+    }
+
+    @Test
+    void upstream415IsNeitherReplayedNorASignal() {
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, OK);
+        RelayEnvelopeCodec codec = codec(RelayEnvelopeFormat.SMILE, relay);
+        relay.respond(HttpStatus.OK, advertise("application/x-jackson-smile"), OK);
+        codec.exchange(request());
+
+        relay.respond(HttpStatus.UNSUPPORTED_MEDIA_TYPE, new HttpHeaders(), OK);
+        HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> codec.exchange(request()));
+
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getStatusCode());
+        assertEquals(2, relay.getCallCount());
+        assertEquals(RelayEnvelopeFormat.SMILE, codec.formatFor(request()));
+    }
+
+    @Test
+    void envelopesFollowEachAdvertisementOfTheRelay() {
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, OK);
+        RelayEnvelopeCodec codec = codec(RelayEnvelopeFormat.CBOR, relay);
+        assertEquals(RelayEnvelopeFormat.JSON, codec.formatFor(request()));
+
+        relay.respond(HttpStatus.OK, advertise("application/json, application/cbor"), OK);
+        codec.exchange(request());
+        assertEquals(RelayEnvelopeFormat.CBOR, codec.formatFor(request()));
+
+        // Error responses of the relay carry its advertisement as well
+        relay.respond(HttpStatus.BAD_GATEWAY, advertise("application/json"), OK);
+        assertThrows(RuntimeException.class, () -> codec.exchange(request()));
+        assertEquals(Set.of(RelayEnvelopeFormat.JSON), codec.getAcceptedFormats());
+        assertEquals(RelayEnvelopeFormat.JSON, codec.formatFor(request()));
+    }
+
+    @Test
+    void responseBodyIsCountedInTheReservationOfTheRequest() {
+        byte[] body = new byte[500];
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, body);
+        RelayEnvelopeCodec codec = new RelayEnvelopeCodec(new RelayProps.CodecConfig(), new ObjectMapper(), relay.restTemplate(), PROXY_URL);
+        BodyBudget budget = new BodyBudget(new BodyProps.BudgetConfig());
+
+        try (BodyBudget.Reservation reservation = budget.open()) {
+            ProxyAPIRequest proxyAPIRequest = request();
+            proxyAPIRequest.setBodyReservation(reservation);
+
+            ResponseEntity<byte[]> response = codec.exchange(proxyAPIRequest);
+
+            assertArrayEquals(body, response.getBody());
+            assertEquals(body.length, reservation.bytes());
+        }
+    }
+
+    private void roundTrip(RelayEnvelopeFormat format, ObjectMapper binaryMapper) throws IOException {
+        ProxyTestSupport.StubRelay relay = new ProxyTestSupport.StubRelay(HttpStatus.OK, OK);
+        RelayEnvelopeCodec codec = codec(format, relay);
+        relay.respond(HttpStatus.OK, advertise(format.getMediaType().toString()), OK);
+
+        codec.exchange(request()); // JSON until the relay advertised the format
+        codec.exchange(request());
+
+        List<byte[]> envelopes = relay.getEnvelopes();
+        ProxyAPIRequest json = objectMapper.readValue(envelopes.get(0), ProxyAPIRequest.class);
+        ProxyAPIBinaryRequest binary = binaryMapper.readValue(envelopes.get(1), ProxyAPIBinaryRequest.class);
+
+        assertEquals(1, codec.getEncodedCount(RelayEnvelopeFormat.JSON));
+        assertEquals(1, codec.getEncodedCount(format));
+        assertEquals(envelopes.get(1).length, codec.getEncodedBytes(format));
+        assertEquals(json.getUrl(), binary.getUrl());
+        assertEquals(json.getMethod(), binary.getMethod());
+        assertEquals(json.getHeaders(), binary.getHeaders());
+        assertEquals(json.getParams(), binary.getParams());
+        // The raw body travels as is, not rebuilt from the parsed map
+        assertArrayEquals(RAW_BODY.getBytes(StandardCharsets.UTF_8), binary.getBody());
+        assertEquals(json.getBody(), objectMapper.readValue(binary.getBody(), new TypeReference<Map<String, Object>>() {}));
+    }
+
+    private RelayEnvelopeCodec codec(RelayEnvelopeFormat format, ProxyTestSupport.StubRelay relay) {
+        RelayProps.CodecConfig config = new RelayProps.CodecConfig();
+        config.setFormat(format);
+        return new RelayEnvelopeCodec(config, objectMapper, relay.restTemplate(), PROXY_URL);
+    }
+
+    private static HttpHeaders advertise(String mediaTypes) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(RelayEnvelopeCodec.RELAY_ACCEPT_ENVELOPE_HEADER, mediaTypes);
+        return headers;
+    }
+
+    private static ProxyAPIRequest request() {
+        ProxyAPIRequest proxyAPIRequest = new ProxyAPIRequest();
+        proxyAPIRequest.setMethod("POST");
+        proxyAPIRequest.setUrl(ProxyTestSupport.UPSTREAM_HOST + "/api/p/orders");
+        proxyAPIRequest.setHeaders(Map.of("Content-Type", "application/json"));
+        proxyAPIRequest.setParams(Map.of("page", 1));
+
+        proxyAPIRequest.setBody(Map.of("item", "A-1", "quantity", 2, "note", "café"));
+        proxyAPIRequest.setRawBody(RAW_BODY.getBytes(StandardCharsets.UTF_8));
+        return proxyAPIRequest;
+    }
+}
@@ -0,0 +1,286 @@
+package com.dct.proxy.relay;
+
+import com.dct.proxy.config.properties.RelayProps;
+import com.dct.proxy.dto.request.ProxyAPIRequest;
+import com.dct.proxy.dto.response.RelayEnvelopeResponse;
+import com.dct.proxy.support.ProxyTestSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelayMicroBatcherTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Set<Thread> callers = ConcurrentHashMap.newKeySet();
+    private final List<Thread> senders = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void windowIsFlushedAfterMaxDelay() throws Exception {
+        ProxyTestSupport.StubRelay relay = relay(this::echo);
+        RelayMicroBatcher batcher = batcher(relay, 32, 200, 5000);
+
+        List<Future<ResponseEntity<byte[]>>> results = exchangeConcurrently(batcher, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(url(i), new String(results.get(i).get(5, TimeUnit.SECONDS).getBody(), StandardCharsets.UTF_8));
+        }
+
+        assertEquals(1, relay.getCallCount());
+        assertTrue(isBatch(relay.getEnvelopes().getFirst()));
+        assertEquals(1, batcher.getBatchCount());
+        assertEquals(3, batcher.getBatchedEnvelopeCount());
+        assertEquals(0, batcher.getPendingCount());
+    }
+
+    @Test
+    void fullWindowIsSentByTheCallerThatFillsIt() throws Exception {
+        ProxyTestSupport.StubRelay relay = relay(this::echo);
+        // The window would stay open for a minute if it were not sent when full
+        RelayMicroBatcher batcher = batcher(relay, 3, 60000, 5000);
+        long start = System.nanoTime();
+
+        List<Future<ResponseEntity<byte[]>>> results = exchangeConcurrently(batcher, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(url(i), new String(results.get(i).get(5, TimeUnit.SECONDS).getBody(), StandardCharsets.UTF_8));
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+        assertEquals(1, relay.getCallCount());
+        assertEquals(1, batcher.getBatchCount());
+        // No extra thread: the batch went out on one of the callers
+        assertEquals(1, senders.size());
+        assertTrue(callers.contains(senders.getFirst()));
+    }
+
+    @Test
+    void singleEnvelopeWindowIsSentAlone() throws Exception {
+        ProxyTestSupport.StubRelay relay = relay(this::echo);
+        RelayMicroBatcher batcher = batcher(relay, 32, 20, 5000);
+
+        ResponseEntity<byte[]> response = batcher.exchange(request(0));
+
+        assertEquals(url(0), new String(response.getBody(), StandardCharsets.UTF_8));
+        assertEquals(1, relay.getCallCount());
+        assertFalse(isBatch(relay.getEnvelopes().getFirst()));
+        assertEquals(0, batcher.getBatchCount());
+        assertEquals(1, batcher.getSingleEnvelopeCount());
+    }
+
+    @Test
+    void relayWithoutBatchEndpointFallsBackToOneByOne() throws Exception {
+        for (HttpStatus status : List.of(HttpStatus.NOT_FOUND, HttpStatus.METHOD_NOT_ALLOWED, HttpStatus.NOT_IMPLEMENTED)) {
+            ProxyTestSupport.StubRelay relay = relay(envelope -> isBatch(envelope) ? new MockClientHttpResponse(new byte[0], status) : echo(envelope));
+            RelayMicroBatcher batcher = batcher(relay, 2, 60000, 5000);
+
+            List<Future<ResponseEntity<byte[]>>> results = exchangeConcurrently(batcher, 2);
+
+            for (int i = 0; i < 2; i++) {
+                assertEquals(url(i), new String(results.get(i).get(5, TimeUnit.SECONDS).getBody(), StandardCharsets.UTF_8));
+            }
+
+            // One rejected batch, then each envelope alone, and no batch is tried again
+            assertEquals(3, relay.getCallCount());
+            batcher.exchange(request(2));
+            assertEquals(4, relay.getCallCount());
+            assertEquals(1, relay.getEnvelopes().stream().filter(RelayMicroBatcherTest::isBatch).count());
+            assertEquals(3, batcher.getSingleEnvelopeCount());
+            assertEquals(0, batcher.getBatchCount());
+        }
+    }
+
+    @Test
+    void errorStatusOfAnEnvelopeIsThrownToItsCallerOnly() throws Exception {
+        ProxyTestSupport.StubRelay relay = relay(envelope -> batchResponse(envelope, url -> url.equals(url(1)) ? 409 : 200));
+        RelayMicroBatcher batcher = batcher(relay, 2, 60000, 5000);
+
+        List<Future<ResponseEntity<byte[]>>> results = exchangeConcurrently(batcher, 2);
+
+        assertEquals(url(0), new String(results.get(0).get(5, TimeUnit.SECONDS).getBody(), StandardCharsets.UTF_8));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> results.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.CONFLICT, ((HttpClientErrorException) failure.getCause()).getStatusCode());
+    }
+
+    @Test
+    void responseCountMismatchFailsEveryCaller() throws Exception {
+        ProxyTestSupport.StubRelay relay = relay(envelope -> json(List.of(envelope(200, url(0)))));
+        RelayMicroBatcher batcher = batcher(relay, 2, 60000, 5000);
+
+        List<Future<ResponseEntity<byte[]>>> results = exchangeConcurrently(batcher, 2);
+
+        for (Future<ResponseEntity<byte[]>> result : results) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, failure.getCause());
+        }
+
+        assertEquals(1, relay.getCallCount());
+        assertEquals(0, batcher.getBatchCount());
+    }
+
+    @Test
+    void callerWaitingForABatchGivesUpAfterTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ProxyTestSupport.StubRelay relay = relay(envelope -> {
+            await(release);
+            return echo(envelope);
+        });
+        RelayMicroBatcher batcher = batcher(relay, 2, 20, 100);
+
+        try {
+            List<Future<ResponseEntity<byte[]>>> results = exchangeConcurrently(batcher, 2);
+            long start = System.nanoTime();
+            Future<ResponseEntity<byte[]>> waiting = results.get(0);
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+
+            assertInstanceOf(ResourceAccessException.class, failure.getCause());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Callers started in order, each once the previous one joined the window
+     */
+    private List<Future<ResponseEntity<byte[]>>> exchangeConcurrently(RelayMicroBatcher batcher, int count) throws InterruptedException {
+        List<Future<ResponseEntity<byte[]>>> results = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            ProxyAPIRequest request = request(i);
+            int pending = batcher.getPendingCount();
+            results.add(executor.submit(() -> {
+                callers.add(Thread.currentThread());
+                return batcher.exchange(request);
+            }));
+
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (i < count - 1 && batcher.getPendingCount() == pending && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+
+        return results;
+    }
+
+    private RelayMicroBatcher batcher(ProxyTestSupport.StubRelay relay, int maxItems, long maxDelay, long timeout) {
+        RelayProps.MicroBatchConfig config = new RelayProps.MicroBatchConfig();
+        config.setMaxItems(maxItems);
+        config.setMaxDelay(maxDelay);
+        config.setTimeout(timeout);
+        return new RelayMicroBatcher(config, relay.restTemplate(), ProxyTestSupport.RELAY_HOST + ProxyTestSupport.RELAY_API);
+    }
+
+    private ProxyTestSupport.StubRelay relay(Function<byte[], MockClientHttpResponse> responder) {
+        return new ProxyTestSupport.StubRelay(HttpStatus.OK, new byte[0]).respond(envelope -> {
+            senders.add(Thread.currentThread());
+            return responder.apply(envelope);
+        });
+    }
+
+    // Answers each envelope with its URL, in a batch or alone
+    private MockClientHttpResponse echo(byte[] envelope) {
+        if (isBatch(envelope)) {
+            return batchResponse(envelope, url -> 200);
+        }
+
+        return new MockClientHttpResponse(read(envelope).get("url").asText().getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+    }
+
+    private static MockClientHttpResponse batchResponse(byte[] envelope, Function<String, Integer> status) {
+        List<RelayEnvelopeResponse> responses = new ArrayList<>();
+
+        for (JsonNode request : read(envelope)) {
+            String url = request.get("url").asText();
+            responses.add(envelope(status.apply(url), url));
+        }
+
+        return json(responses);
+    }
+
+    private static RelayEnvelopeResponse envelope(int status, String url) {
+        RelayEnvelopeResponse response = new RelayEnvelopeResponse();
+        response.setStatus(status);
+        response.setHeaders(Map.of());
+        response.setBody(url.getBytes(StandardCharsets.UTF_8));
+        return response;
+    }
+
+    private static MockClientHttpResponse json(Object body) {
+        try {
+            MockClientHttpResponse response = new MockClientHttpResponse(MAPPER.writeValueAsBytes(body), HttpStatus.OK);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            return response;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonNode read(byte[] envelope) {
+        try {
+            return MAPPER.readTree(envelope);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isBatch(byte[] envelope) {
+        return read(envelope).isArray();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ProxyAPIRequest request(int i) {
+        ProxyAPIRequest request = new ProxyAPIRequest();
+        request.setUrl(url(i));
+        request.setMethod("GET");
+        request.setHeaders(Map.of(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE));
+        return request;
+    }
+
+    private static String url(int i) {
+        return ProxyTestSupport.UPSTREAM_HOST + "/api/p/items/" + i;
+    }
+}
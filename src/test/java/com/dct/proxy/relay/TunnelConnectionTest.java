@@ -0,0 +1,115 @@
+package com.dct.proxy.relay;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TunnelConnectionTest {
+    private static final int WINDOW_SIZE = 1000;
+    private static final int MAX_FRAME_SIZE = 100;
+    private ServerSocket serverSocket;
+    private Socket clientSocket;
+    private Socket acceptedSocket;
+    private final Recorder receiver = new Recorder();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        clientSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        acceptedSocket = serverSocket.accept();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        clientSocket.close();
+        acceptedSocket.close();
+        serverSocket.close();
+    }
+
+    @Test
+    void creditComesBackOnlyOnceTheMessageIsConsumed() throws Exception {
+        TunnelConnection sender = connection(clientSocket, new Recorder());
+        TunnelConnection receiving = connection(acceptedSocket, receiver);
+
+        sender.sendMessage(1, new byte[600], 1000);
+        byte[] message = receiver.messages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(message);
+        assertEquals(600, message.length);
+
+        // Received and handed to the listener, not consumed yet: the sender has 400 bytes of credit left
+        assertThrows(IOException.class, () -> sender.sendMessage(3, new byte[600], 200));
+
+        receiving.consumed(message.length);
+        assertDoesNotThrow(() -> sender.sendMessage(5, new byte[600], 5000));
+        assertArrayEquals(new byte[600], receiver.messages.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void aMessageLargerThanTheWindowIsNotSent() {
+        TunnelConnection sender = connection(clientSocket, new Recorder());
+        connection(acceptedSocket, receiver);
+
+        assertThrows(IOException.class, () -> sender.sendMessage(1, new byte[WINDOW_SIZE + 1], 1000));
+    }
+
+    @Test
+    void aPeerSendingPastTheWindowIsDisconnected() throws Exception {
+        TunnelConnection receiving = connection(acceptedSocket, receiver);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+
+        for (int i = 0; i <= WINDOW_SIZE / MAX_FRAME_SIZE; i++) {
+            new TunnelFrame(TunnelFrame.DATA, (byte) 0, 1, new byte[MAX_FRAME_SIZE]).write(out);
+        }
+
+        out.flush();
+
+        assertNotNull(receiver.closed.get(5, TimeUnit.SECONDS));
+        assertFalse(receiving.isOpen());
+    }
+
+    private TunnelConnection connection(Socket socket, Recorder listener) {
+        try {
+            TunnelConnection connection = new TunnelConnection(socket, listener, WINDOW_SIZE, MAX_FRAME_SIZE, WINDOW_SIZE);
+            connection.start("tunnel-test");
+            return connection;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Recorder implements TunnelConnection.Listener {
+        private final BlockingQueue<byte[]> messages = new LinkedBlockingQueue<>();
+        private final CompletableFuture<IOException> closed = new CompletableFuture<>();
+
+        @Override
+        public void onMessage(TunnelConnection connection, int streamId, byte[] message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void onReset(TunnelConnection connection, int streamId) {}
+
+        @Override
+        public void onClosed(TunnelConnection connection, IOException cause) {
+            closed.complete(cause);
+        }
+    }
+}
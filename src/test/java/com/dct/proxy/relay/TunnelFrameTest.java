@@ -0,0 +1,69 @@
+package com.dct.proxy.relay;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TunnelFrameTest {
+
+    @Test
+    void framesAreReadAsWritten() throws IOException {
+        byte[] payload = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        new TunnelFrame(TunnelFrame.DATA, (byte) 0, 7, payload).write(out);
+        new TunnelFrame(TunnelFrame.DATA, TunnelFrame.END_STREAM, 7, payload).write(out);
+        TunnelFrame.of(TunnelFrame.PING, 0).write(out);
+
+        assertEquals(3 * TunnelFrame.HEADER_SIZE + 2 * payload.length, bytes.size());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        TunnelFrame first = TunnelFrame.read(in, 1024);
+        assertEquals(TunnelFrame.DATA, first.type());
+        assertEquals(7, first.streamId());
+        assertFalse(first.isEndStream());
+        assertArrayEquals(payload, first.payload());
+
+        assertTrue(TunnelFrame.read(in, 1024).isEndStream());
+
+        TunnelFrame ping = TunnelFrame.read(in, 1024);
+        assertEquals(TunnelFrame.PING, ping.type());
+        assertEquals(0, ping.payload().length);
+        assertThrows(EOFException.class, () -> TunnelFrame.read(in, 1024));
+    }
+
+    @Test
+    void windowUpdatesCarryTheirIncrement() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TunnelFrame.windowUpdate(524288).write(new DataOutputStream(bytes));
+
+        TunnelFrame frame = TunnelFrame.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 16);
+
+        assertEquals(TunnelFrame.WINDOW_UPDATE, frame.type());
+        assertEquals(524288, frame.getWindowIncrement());
+    }
+
+    @Test
+    void framesLargerThanTheMaximumAreRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new TunnelFrame(TunnelFrame.DATA, (byte) 0, 1, new byte[17]).write(new DataOutputStream(bytes));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThrows(IOException.class, () -> TunnelFrame.read(in, 16));
+
+        DataInputStream negative = new DataInputStream(new ByteArrayInputStream(new byte[] {-1, -1, -1, -1, 0, 0, 0, 0, 0, 1}));
+        assertThrows(IOException.class, () -> TunnelFrame.read(negative, 16));
+    }
+}
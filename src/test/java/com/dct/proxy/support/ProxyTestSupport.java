@@ -0,0 +1,248 @@
+package com.dct.proxy.support;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.dct.proxy.body.BodyBudget;
+import com.dct.proxy.body.BodyLimits;
+import com.dct.proxy.body.BodySpooler;
+import com.dct.proxy.body.BufferPool;
+import com.dct.proxy.cache.CacheRefreshExecutor;
+import com.dct.proxy.cache.ProxyResponseCache;
+import com.dct.proxy.cache.RequestCoalescer;
+import com.dct.proxy.cache.RetryAfterSuppressor;
+import com.dct.proxy.common.JsonCodec;
+import com.dct.proxy.compression.ResponseCompressor;
+import com.dct.proxy.config.properties.ServerProxyProperties;
+import com.dct.proxy.interceptor.ProxyRequestInterceptor;
+import com.dct.proxy.relay.StreamingRelaySender;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Builds a {@link ProxyRequestInterceptor} talking to an in-memory relay, for the tests and benchmarks
+ * of the forwarding path
+ */
+public final class ProxyTestSupport {
+    public static final String RELAY_HOST = "http://relay.test";
+    public static final String RELAY_API = "/api/proxy";
+    public static final String UPSTREAM_HOST = "http://upstream.test";
+
+    private ProxyTestSupport() {}
+
+    /**
+     * Logs of each forwarded request are left out of the benchmarks
+     */
+    public static void quietLogging() {
+        Logger root = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.WARN);
+    }
+
+    public static ServerProxyProperties proxyProperties() {
+        ServerProxyProperties properties = new ServerProxyProperties();
+        properties.setHost(RELAY_HOST);
+        properties.setProxyApi(RELAY_API);
+        properties.setPharmaIntegrationHost(UPSTREAM_HOST);
+        return properties;
+    }
+
+    public static JsonCodec jsonCodec() {
+        return new JsonCodec(new ObjectMapper());
+    }
+
+    public static MockHttpServletRequest jsonRequest(String method, String uri, String json) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        if (json != null) {
+            request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            request.setContent(json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return request;
+    }
+
+    /**
+     * Relay answering every envelope with a fixed response, the envelopes sent are recorded
+     */
+    public static final class StubRelay implements ClientHttpRequestFactory {
+        private final Queue<byte[]> envelopes = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicReference<Function<byte[], MockClientHttpResponse>> responder = new AtomicReference<>();
+        private volatile boolean keepEnvelopes = true;
+
+        public StubRelay(HttpStatus status, byte[] body) {
+            respond(status, new HttpHeaders(), body);
+        }
+
+        public StubRelay respond(HttpStatus status, HttpHeaders headers, byte[] body) {
+            return respond(envelope -> {
+                MockClientHttpResponse response = new MockClientHttpResponse(body, status);
+                response.getHeaders().putAll(headers);
+                response.getHeaders().setContentLength(body.length);
+                return response;
+            });
+        }
+
+        public StubRelay respond(Function<byte[], MockClientHttpResponse> responder) {
+            this.responder.set(responder);
+            return this;
+        }
+
+        /**
+         * Envelopes are not kept, for the benchmarks
+         */
+        public StubRelay discardEnvelopes() {
+            keepEnvelopes = false;
+            return this;
+        }
+
+        public List<byte[]> getEnvelopes() {
+            return List.copyOf(envelopes);
+        }
+
+        public int getCallCount() {
+            return calls.get();
+        }
+
+        public RestTemplate restTemplate() {
+            return new RestTemplate(this);
+        }
+
+        @Override
+        public MockClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+            return new MockClientHttpRequest(httpMethod, uri) {
+                @Override
+                protected MockClientHttpResponse executeInternal() {
+                    byte[] envelope = getBodyAsBytes();
+                    calls.incrementAndGet();
+
+                    if (keepEnvelopes) {
+                        envelopes.add(envelope);
+                    }
+
+                    MockClientHttpResponse response = responder.get().apply(envelope);
+                    setResponse(response);
+                    return response;
+                }
+            };
+        }
+    }
+
+    public static InterceptorBuilder interceptor(RestTemplate restTemplate) {
+        return new InterceptorBuilder(restTemplate);
+    }
+
+    /**
+     * The optional components of the interceptor, all absent by default
+     */
+    public static final class InterceptorBuilder {
+        private final RestTemplate restTemplate;
+        private ProxyResponseCache responseCache;
+        private RequestCoalescer requestCoalescer;
+        private CacheRefreshExecutor refreshExecutor;
+        private RetryAfterSuppressor retryAfterSuppressor;
+        private StreamingRelaySender streamingRelaySender;
+        private ResponseCompressor responseCompressor;
+        private BodySpooler bodySpooler;
+        private BodyBudget bodyBudget;
+        private BodyLimits bodyLimits;
+        private BufferPool bufferPool;
+
+        private InterceptorBuilder(RestTemplate restTemplate) {
+            this.restTemplate = restTemplate;
+        }
+
+        public InterceptorBuilder responseCache(ProxyResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        public InterceptorBuilder requestCoalescer(RequestCoalescer requestCoalescer) {
+            this.requestCoalescer = requestCoalescer;
+            return this;
+        }
+
+        public InterceptorBuilder refreshExecutor(CacheRefreshExecutor refreshExecutor) {
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+
+        public InterceptorBuilder retryAfterSuppressor(RetryAfterSuppressor retryAfterSuppressor) {
+            this.retryAfterSuppressor = retryAfterSuppressor;
+            return this;
+        }
+
+        public InterceptorBuilder streamingRelaySender(StreamingRelaySender streamingRelaySender) {
+            this.streamingRelaySender = streamingRelaySender;
+            return this;
+        }
+
+        public InterceptorBuilder responseCompressor(ResponseCompressor responseCompressor) {
+            this.responseCompressor = responseCompressor;
+            return this;
+        }
+
+        public InterceptorBuilder bodySpooler(BodySpooler bodySpooler) {
+            this.bodySpooler = bodySpooler;
+            return this;
+        }
+
+        public InterceptorBuilder bodyBudget(BodyBudget bodyBudget) {
+            this.bodyBudget = bodyBudget;
+            return this;
+        }
+
+        public InterceptorBuilder bodyLimits(BodyLimits bodyLimits) {
+            this.bodyLimits = bodyLimits;
+            return this;
+        }
+
+        public InterceptorBuilder bufferPool(BufferPool bufferPool) {
+            this.bufferPool = bufferPool;
+            return this;
+        }
+
+        public ProxyRequestInterceptor build() {
+            return new ProxyRequestInterceptor(
+                proxyProperties(),
+                restTemplate,
+                jsonCodec(),
+                responseCache,
+                requestCoalescer,
+                refreshExecutor,
+                null,
+                null,
+                retryAfterSuppressor,
+                null,
+                null,
+                null,
+                null,
+                null,
+                streamingRelaySender,
+                responseCompressor,
+                bodySpooler,
+                bodyBudget,
+                bodyLimits,
+                bufferPool
+            );
+        }
+    }
+}